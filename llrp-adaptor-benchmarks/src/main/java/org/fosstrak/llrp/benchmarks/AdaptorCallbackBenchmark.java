@@ -0,0 +1,88 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fosstrak.llrp.adaptor.AdaptorCallback;
+import org.fosstrak.llrp.adaptor.AdaptorImpl;
+import org.fosstrak.llrp.adaptor.AdaptorWorker;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the adaptor callback receiving the messages of a reader. the binary 
+ * variant decodes the message (as done for remote adaptors), the local 
+ * variant receives the decoded message.
+ * @author sawielan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdaptorCallbackBenchmark {
+	
+	/** the number of tags in the report. */
+	@Param({"1", "10", "100"})
+	public int tagCount;
+	
+	/** the callback under test. */
+	private AdaptorCallback callback;
+	
+	/** the binary encoded report. */
+	private byte[] encoded;
+	
+	/** the decoded report. */
+	private RO_ACCESS_REPORT report;
+	
+	@Setup
+	public void setup() throws Exception {
+		report = ReportFactory.createReport(tagCount);
+		encoded = report.encodeBinary();
+		callback = new AdaptorCallback(false);
+		// the worker links the callback to its adaptor.
+		new AdaptorWorker(callback, new AdaptorImpl("adaptor"));
+	}
+	
+	@Benchmark
+	public void notifyBinary() throws Exception {
+		callback.notify(encoded, "reader");
+	}
+	
+	@Benchmark
+	public void notifyDecoded() throws Exception {
+		callback.notify(report, "reader");
+	}
+}
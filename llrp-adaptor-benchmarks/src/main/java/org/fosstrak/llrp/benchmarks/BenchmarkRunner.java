@@ -0,0 +1,54 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks with the GC profiler enabled, thus next to the 
+ * throughput also the allocation rate is reported. all the JMH command line 
+ * options are accepted (eg. a regular expression selecting the benchmarks or 
+ * "-p tagCount=1,1000").
+ * @author sawielan
+ *
+ */
+public final class BenchmarkRunner {
+	
+	private BenchmarkRunner() {
+	}
+	
+	/**
+	 * @param args the JMH command line options.
+	 * @throws Exception when the benchmarks could not be run.
+	 */
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
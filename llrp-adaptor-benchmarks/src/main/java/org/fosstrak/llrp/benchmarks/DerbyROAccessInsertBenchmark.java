@@ -0,0 +1,139 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.fosstrak.llrp.client.ROAccessReportsRepository;
+import org.fosstrak.llrp.client.Repository;
+import org.fosstrak.llrp.client.RepositoryFactory;
+import org.fosstrak.llrp.client.repository.sql.DerbyRepository;
+import org.fosstrak.llrp.client.repository.sql.roaccess.AbstractSQLROAccessReportsRepository;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * logging of RO_ACCESS_REPORTs into the RO_ACCESS_REPORTS table of an 
+ * embedded derby database (created in a temporary directory). with a batch 
+ * size of 0 every report is written in its own transaction, otherwise the 
+ * rows of several reports are collected into one JDBC batch.
+ * @author sawielan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DerbyROAccessInsertBenchmark {
+	
+	/** the number of tags in the report. */
+	@Param({"1", "100"})
+	public int tagCount;
+	
+	/** the number of rows collected before they are written. */
+	@Param({"0", "1000"})
+	public int batchSize;
+	
+	/** the directory holding the database. */
+	private File directory;
+	
+	/** the repository. */
+	private Repository repository;
+	
+	/** the RO_ACCESS_REPORTS repository under test. */
+	private ROAccessReportsRepository roAccess;
+	
+	/** the report to log. */
+	private RO_ACCESS_REPORT report;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		report = ReportFactory.createReport(tagCount);
+		
+		directory = File.createTempFile("llrp-bench", "");
+		directory.delete();
+		directory.mkdirs();
+		
+		repository = RepositoryFactory.create(RepositoryFactory.createMap(
+				new String [][] {
+					{RepositoryFactory.ARG_DB_CLASSNAME, DerbyRepository.class.getName()},
+					{DerbyRepository.ARG_REPO_LOCATION, directory.getAbsolutePath() + File.separator},
+					{RepositoryFactory.ARG_USERNAME, "llrp"},
+					{RepositoryFactory.ARG_PASSWRD, "llrp"},
+					{RepositoryFactory.ARG_JDBC_STRING, ""},
+					{RepositoryFactory.ARG_WIPE_DB, "true"},
+					{RepositoryFactory.ARG_LOG_RO_ACCESS_REPORT, "true"},
+					{RepositoryFactory.ARG_WIPE_RO_ACCESS_REPORTS_DB, "true"},
+					{RepositoryFactory.ARG_RO_ACCESS_BATCH_SIZE, Integer.toString(batchSize)}
+				}));
+		roAccess = repository.getROAccessRepository();
+	}
+	
+	@TearDown(Level.Iteration)
+	public void clear() throws Exception {
+		// keep the table small, so the iterations are comparable.
+		roAccess.clear();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if (roAccess instanceof AbstractSQLROAccessReportsRepository) {
+			((AbstractSQLROAccessReportsRepository) roAccess).flush();
+		}
+		repository.close();
+		delete(directory);
+	}
+	
+	@Benchmark
+	public void insert() {
+		roAccess.handle("adaptor", "reader", report);
+	}
+	
+	/**
+	 * deletes a directory recursively.
+	 * @param file the file or directory to delete.
+	 */
+	private static void delete(File file) {
+		File [] children = file.listFiles();
+		if (null != children) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
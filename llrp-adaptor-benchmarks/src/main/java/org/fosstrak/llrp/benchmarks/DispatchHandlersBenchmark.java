@@ -0,0 +1,130 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fosstrak.llrp.adaptor.AdaptorManagement;
+import org.fosstrak.llrp.client.MessageHandler;
+import org.llrp.ltk.generated.messages.KEEPALIVE;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.types.LLRPMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * dispatching of a message to the full and partial handlers registered at 
+ * the {@link AdaptorManagement}. half of the partial handlers is interested 
+ * into RO_ACCESS_REPORTs, the other half into KEEPALIVE messages.
+ * @author sawielan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchHandlersBenchmark {
+	
+	/** the number of full handlers. */
+	@Param({"1", "16"})
+	public int fullHandlers;
+	
+	/** the number of partial handlers. */
+	@Param({"0", "64"})
+	public int partialHandlers;
+	
+	/** the number of tags in the report. */
+	@Param({"10"})
+	public int tagCount;
+	
+	/** the registered handlers. */
+	private MessageHandler [] full;
+	
+	/** the registered partial handlers. */
+	private MessageHandler [] partial;
+	
+	/** the report to dispatch. */
+	private RO_ACCESS_REPORT report;
+	
+	/** consumes the messages. */
+	private Blackhole sink;
+	
+	@Setup
+	public void setup(Blackhole blackhole) {
+		sink = blackhole;
+		report = ReportFactory.createReport(tagCount);
+		AdaptorManagement mgmt = AdaptorManagement.getInstance();
+		
+		full = new MessageHandler[fullHandlers];
+		for (int i=0; i<fullHandlers; i++) {
+			full[i] = new SinkHandler();
+			mgmt.registerFullHandler(full[i]);
+		}
+		partial = new MessageHandler[partialHandlers];
+		for (int i=0; i<partialHandlers; i++) {
+			partial[i] = new SinkHandler();
+			mgmt.registerPartialHandler(partial[i], 
+					(i % 2 == 0) ? RO_ACCESS_REPORT.class : KEEPALIVE.class);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		AdaptorManagement mgmt = AdaptorManagement.getInstance();
+		for (int i=0; i<fullHandlers; i++) {
+			mgmt.deregisterFullHandler(full[i]);
+		}
+		for (int i=0; i<partialHandlers; i++) {
+			mgmt.deregisterPartialHandler(partial[i], 
+					(i % 2 == 0) ? RO_ACCESS_REPORT.class : KEEPALIVE.class);
+		}
+	}
+	
+	@Benchmark
+	public void dispatch() {
+		AdaptorManagement.getInstance().dispatchHandlers(
+				"adaptor", "reader", report);
+	}
+	
+	/**
+	 * handler passing the messages into the black hole.
+	 */
+	private final class SinkHandler implements MessageHandler {
+		public void handle(String adaptorName, String readerName,
+				LLRPMessage message) {
+			sink.consume(message);
+		}
+	}
+}
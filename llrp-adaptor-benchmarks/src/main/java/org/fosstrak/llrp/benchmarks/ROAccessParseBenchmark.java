@@ -0,0 +1,79 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItem;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessReportBatch;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * parsing of an RO_ACCESS_REPORT into log entries (as done for every report 
+ * written to the RO_ACCESS_REPORTS table).
+ * @author sawielan
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ROAccessParseBenchmark {
+	
+	/** the number of tags in the report. */
+	@Param({"1", "10", "100"})
+	public int tagCount;
+	
+	/** the report to parse. */
+	private RO_ACCESS_REPORT report;
+	
+	@Setup
+	public void setup() {
+		report = ReportFactory.createReport(tagCount);
+	}
+	
+	@Benchmark
+	public List<ROAccessItem> parseItems() {
+		return ROAccessItem.parse(report, "adaptor", "reader", 
+				System.currentTimeMillis());
+	}
+	
+	@Benchmark
+	public ROAccessReportBatch parseBatch() {
+		return ROAccessReportBatch.parse(report, "adaptor", "reader", 
+				System.currentTimeMillis());
+	}
+}
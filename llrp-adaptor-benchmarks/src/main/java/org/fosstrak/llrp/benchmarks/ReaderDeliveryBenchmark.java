@@ -0,0 +1,145 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.benchmarks;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.fosstrak.llrp.adaptor.AdaptorImpl;
+import org.fosstrak.llrp.adaptor.AsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.LocalAsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.ReaderImpl;
+import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.types.LLRPMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * the path of a message from LTK into the reader 
+ * ({@link ReaderImpl#messageReceived(LLRPMessage)}) through the in queue to 
+ * the receivers registered at the adaptor. every invocation hands a batch 
+ * of reports to the reader and waits until all of them are delivered. the 
+ * reader is connected in accepting mode (it only binds a local port).
+ * @author sawielan
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderDeliveryBenchmark {
+	
+	/** the number of reports handed to the reader per invocation. */
+	private static final int BATCH = 1000;
+	
+	/** the number of tags in the report. */
+	@Param({"1", "100"})
+	public int tagCount;
+	
+	/** the local port the reader binds. */
+	@Param({"15084"})
+	public int port;
+	
+	/** the reader under test. */
+	private ReaderImpl reader;
+	
+	/** the adaptor of the reader. */
+	private AdaptorImpl adaptor;
+	
+	/** the report to deliver. */
+	private RO_ACCESS_REPORT report;
+	
+	/** counts the delivered messages. */
+	private final CountingReceiver receiver = new CountingReceiver();
+	
+	/** the number of messages expected to be delivered. */
+	private long expected = 0;
+	
+	@Setup
+	public void setup() throws Exception {
+		report = ReportFactory.createReport(tagCount);
+		adaptor = new AdaptorImpl("adaptor");
+		adaptor.registerForAsynchronous(receiver);
+		reader = new ReaderImpl(adaptor, "reader", "localhost", port);
+		reader.connect(false);
+	}
+	
+	@TearDown
+	public void tearDown() throws Exception {
+		reader.disconnect();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void deliver() {
+		for (int i=0; i<BATCH; i++) {
+			reader.messageReceived(report);
+		}
+		expected += BATCH;
+		// messages dropped by a full in queue are delivered never.
+		final long target = expected - reader.getInQueue().getDroppedCount();
+		while (receiver.delivered.get() < target) {
+			Thread.yield();
+		}
+	}
+	
+	/**
+	 * local receiver counting the delivered messages.
+	 */
+	private static final class CountingReceiver 
+		implements AsynchronousNotifiable, LocalAsynchronousNotifiable {
+		
+		/** the number of delivered messages. */
+		private final AtomicLong delivered = new AtomicLong(0);
+
+		public void notify(LLRPMessage message, String readerName) 
+			throws RemoteException {
+			
+			delivered.incrementAndGet();
+		}
+
+		public void notify(byte[] message, String readerName) 
+			throws RemoteException {
+			
+			delivered.incrementAndGet();
+		}
+
+		public void notifyError(LLRPRuntimeException e, String readerName) 
+			throws RemoteException {
+		}
+	}
+}
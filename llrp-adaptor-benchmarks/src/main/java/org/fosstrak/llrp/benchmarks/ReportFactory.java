@@ -0,0 +1,141 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.benchmarks;
+
+import java.util.Random;
+
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.AntennaID;
+import org.llrp.ltk.generated.parameters.C1G2_CRC;
+import org.llrp.ltk.generated.parameters.C1G2_PC;
+import org.llrp.ltk.generated.parameters.ChannelIndex;
+import org.llrp.ltk.generated.parameters.EPC_96;
+import org.llrp.ltk.generated.parameters.FirstSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.LastSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.PeakRSSI;
+import org.llrp.ltk.generated.parameters.ROSpecID;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.generated.parameters.TagSeenCount;
+import org.llrp.ltk.types.Integer96_HEX;
+import org.llrp.ltk.types.SignedByte;
+import org.llrp.ltk.types.UnsignedInteger;
+import org.llrp.ltk.types.UnsignedLong_DATETIME;
+import org.llrp.ltk.types.UnsignedShort;
+
+/**
+ * creates synthetic RO_ACCESS_REPORTs for the benchmarks. the content is 
+ * derived from a fixed seed, thus the reports are the same in every run.
+ * @author sawielan
+ *
+ */
+public final class ReportFactory {
+	
+	/** the seed for the random content. */
+	private static final long SEED = 4711L;
+	
+	/** the time stamp of the first tag in microseconds. */
+	private static final long FIRST_SEEN = 1262304000000000L;
+	
+	private ReportFactory() {
+	}
+	
+	/**
+	 * creates an RO_ACCESS_REPORT with the given number of tags. every tag 
+	 * carries the typical parameters of an inventory (EPC, ROSpecID, antenna, 
+	 * RSSI, channel, time stamps, seen count, PC and CRC).
+	 * @param tagCount the number of TagReportData entries.
+	 * @return the report.
+	 */
+	public static RO_ACCESS_REPORT createReport(int tagCount) {
+		Random random = new Random(SEED);
+		RO_ACCESS_REPORT report = new RO_ACCESS_REPORT();
+		for (int i=0; i<tagCount; i++) {
+			report.addToTagReportDataList(createTag(random, i));
+		}
+		return report;
+	}
+	
+	/**
+	 * creates a binary encoded RO_ACCESS_REPORT with the given number of tags.
+	 * @param tagCount the number of TagReportData entries.
+	 * @return the binary encoded report.
+	 * @throws Exception when the report could not be encoded.
+	 */
+	public static byte[] createEncodedReport(int tagCount) throws Exception {
+		return createReport(tagCount).encodeBinary();
+	}
+	
+	/**
+	 * creates one tag report.
+	 * @param random the source of the random content.
+	 * @param i the index of the tag.
+	 * @return the tag report.
+	 */
+	private static TagReportData createTag(Random random, int i) {
+		TagReportData tag = new TagReportData();
+		
+		EPC_96 epc = new EPC_96();
+		epc.setEPC(new Integer96_HEX(String.format("3074257bf7194e4%09x", 
+				random.nextInt() & 0x7fffffff)));
+		tag.setEPCParameter(epc);
+		
+		ROSpecID roSpecID = new ROSpecID();
+		roSpecID.setROSpecID(new UnsignedInteger(1));
+		tag.setROSpecID(roSpecID);
+		
+		AntennaID antennaID = new AntennaID();
+		antennaID.setAntennaID(new UnsignedShort(1 + random.nextInt(4)));
+		tag.setAntennaID(antennaID);
+		
+		PeakRSSI rssi = new PeakRSSI();
+		rssi.setPeakRSSI(new SignedByte(-30 - random.nextInt(50)));
+		tag.setPeakRSSI(rssi);
+		
+		ChannelIndex channel = new ChannelIndex();
+		channel.setChannelIndex(new UnsignedShort(1 + random.nextInt(50)));
+		tag.setChannelIndex(channel);
+		
+		final long seen = FIRST_SEEN + i * 1000L;
+		FirstSeenTimestampUTC firstSeen = new FirstSeenTimestampUTC();
+		firstSeen.setMicroseconds(new UnsignedLong_DATETIME(seen));
+		tag.setFirstSeenTimestampUTC(firstSeen);
+		
+		LastSeenTimestampUTC lastSeen = new LastSeenTimestampUTC();
+		lastSeen.setMicroseconds(new UnsignedLong_DATETIME(
+				seen + random.nextInt(1000000)));
+		tag.setLastSeenTimestampUTC(lastSeen);
+		
+		TagSeenCount seenCount = new TagSeenCount();
+		seenCount.setTagCount(new UnsignedShort(1 + random.nextInt(20)));
+		tag.setTagSeenCount(seenCount);
+		
+		C1G2_PC pc = new C1G2_PC();
+		pc.setPC_Bits(new UnsignedShort(0x3000));
+		tag.addToAirProtocolTagDataList(pc);
+		
+		C1G2_CRC crc = new C1G2_CRC();
+		crc.setCRC(new UnsignedShort(random.nextInt(0xffff)));
+		tag.addToAirProtocolTagDataList(crc);
+		
+		return tag;
+	}
+}
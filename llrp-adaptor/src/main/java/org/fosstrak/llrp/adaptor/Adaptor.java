@@ -26,6 +26,7 @@ import java.rmi.RemoteException;
 import java.util.List;
 
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetricsSnapshot;
 
 /**
  * The interface Adaptor provides a general interface how to 
@@ -86,6 +87,26 @@ public interface Adaptor extends Remote {
 			boolean clientInitiatedConnection,
 			boolean connectImmediately) throws RemoteException, LLRPRuntimeException;
 	
+	/**
+	 * defines a new LLRP reader on this adaptor with its own settings of 
+	 * the queues (see {@link #define(String, String, int, boolean, boolean)}).
+	 * @param readerName the name of the LLRP reader.
+	 * @param readerAddress the address where to contact the LLRP reader.
+	 * @param port the port where to connect to.
+	 * @param clientInitiatedConnection whether the client establishes the connection.
+	 * @param connectImmediately whether the reader connects immediately.
+	 * @param queueSettings the settings of the queues of the reader (null 
+	 * for the defaults).
+	 * @throws LLRPRuntimeException if a runtime exception occurs (like duplicate reader name etc. ...).
+	 * @throws RemoteException when there was an rmi exception.
+	 */
+	void define(String readerName, 
+			String readerAddress, 
+			int port, 
+			boolean clientInitiatedConnection,
+			boolean connectImmediately,
+			ReaderQueueSettings queueSettings) throws RemoteException, LLRPRuntimeException;
+	
 	/**
 	 * removes a LLRP reader from this adaptor.
 	 * @param readerName the name of the LLRP reader to remove.
@@ -193,5 +214,12 @@ public interface Adaptor extends Remote {
 	 * @throws RemoteException whenver there is an error on transport level (rmi).
 	 */
 	void errorCallback(LLRPRuntimeException e, String readerName) throws RemoteException;
+	
+	/**
+	 * returns the metrics of all the readers on this adaptor.
+	 * @return a list holding a copy of the metrics of each reader.
+	 * @throws RemoteException when there was an rmi exception.
+	 */
+	List<ReaderMetricsSnapshot> getMetrics() throws RemoteException;
 
 }
@@ -37,7 +37,7 @@ import org.llrp.ltk.types.LLRPMessage;
  * @author sawielan
  *
  */
-public class AdaptorCallback extends UnicastRemoteObject implements AsynchronousNotifiable {
+public class AdaptorCallback extends UnicastRemoteObject implements BatchAsynchronousNotifiable, LocalAsynchronousNotifiable {
 	
 	/**
 	 * serial id.
@@ -91,6 +91,25 @@ public class AdaptorCallback extends UnicastRemoteObject implements Asynchronous
 		}
 	}
 	
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.BatchAsynchronousNotifiable#notify(org.fosstrak.llrp.adaptor.MessageBatch)
+	 */
+	public void notify(MessageBatch batch) throws RemoteException {
+		// dispatch the frames one after another to keep their order.
+		for (int i=0; i<batch.size(); i++) {
+			notify(batch.getMessage(i), batch.getReaderName(i));
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.LocalAsynchronousNotifiable#notify(org.llrp.ltk.types.LLRPMessage, java.lang.String)
+	 */
+	public void notify(LLRPMessage message, String readerName) throws RemoteException {
+		// local adaptor, the message is already decoded.
+		AdaptorManagement.getInstance().dispatchHandlers(
+				worker.getAdaptor().getAdaptorName(), readerName, message);
+	}
+	
 	/**
 	 * sets the worker that holds this callback.
 	 * @param worker the worker that holds this callback.
@@ -32,14 +32,20 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.apache.log4j.Logger;
 import org.fosstrak.llrp.adaptor.exception.LLRPDuplicateNameException;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.metrics.MetricsRegistry;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetrics;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetricsSnapshot;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
 import org.fosstrak.llrp.adaptor.util.AsynchronousNotifiableList;
+import org.llrp.ltk.exceptions.InvalidLLRPMessageException;
+import org.llrp.ltk.types.LLRPMessage;
 
 /**
  * This adaptor implements the Adaptor interface.  
  * @author sawielan
  *
  */
-public class AdaptorImpl extends UnicastRemoteObject implements Adaptor, Serializable {
+public class AdaptorImpl extends UnicastRemoteObject implements Adaptor, LocalAdaptor, Serializable {
 	
 	/**
 	 * default serial for serialization.
@@ -86,6 +92,12 @@ public class AdaptorImpl extends UnicastRemoteObject implements Adaptor, Seriali
 		define(new ReaderImpl(this, readerName, readerAddress, port), clientInitiatedConnection, connectImmediately);
 	}
 	
+	@Override
+	public void define(String readerName, String readerAddress, int port, boolean clientInitiatedConnection, 
+			boolean connectImmediately, ReaderQueueSettings queueSettings) throws RemoteException, LLRPRuntimeException {
+		define(new ReaderImpl(this, readerName, readerAddress, port, queueSettings), clientInitiatedConnection, connectImmediately);
+	}
+	
 	private void define(Reader reader, boolean clientInitiatedConnection, boolean connectImmediately) throws RemoteException, LLRPRuntimeException {		
 		final String readerName = reader.getReaderName();
 		
@@ -128,6 +140,15 @@ public class AdaptorImpl extends UnicastRemoteObject implements Adaptor, Seriali
 		}
 		Reader reader = readers.remove(readerName);
 		reader.disconnect();
+		if (reader instanceof ReaderImpl) {
+			// drop the metrics (and their JMX registration) of the reader.
+			ReaderMetrics metrics = ((ReaderImpl) reader).getReaderMetrics();
+			MetricsRegistry.getInstance().remove(metrics.getAdaptorName(), 
+					metrics.getReaderName());
+		}
+		if (adaptorManagement != null) {
+			adaptorManagement.readerUndefined(adaptorName, readerName);
+		}
 		commit();
 	}
 
@@ -163,6 +184,51 @@ public class AdaptorImpl extends UnicastRemoteObject implements Adaptor, Seriali
 		
 		readers.get(readerName).send(message);
 	}
+	
+	/**
+	 * local fast path for callers living in the same virtual machine as the 
+	 * adaptor: the message object is handed to the reader without binary 
+	 * encoding in between (unless the reader is not local).
+	 * @param readerName the name of the reader.
+	 * @param message the LLRP message.
+	 * @throws RemoteException whenever there is an rmi exception.
+	 * @throws LLRPRuntimeException if the reader does not exist or the 
+	 * message could not be encoded.
+	 */
+	public void sendLLRPMessage(String readerName, LLRPMessage message) throws RemoteException, LLRPRuntimeException {
+		sendLLRPMessage(readerName, message, null);
+	}
+	
+	/**
+	 * like {@link #sendLLRPMessage(String, LLRPMessage)}, the future is 
+	 * completed once the message has been written to the connection of the 
+	 * reader (or handed to a remote reader).
+	 * @param readerName the name of the reader.
+	 * @param message the LLRP message.
+	 * @param future informed about the outcome (can be null).
+	 * @throws RemoteException whenever there is an rmi exception.
+	 * @throws LLRPRuntimeException if the reader does not exist or the 
+	 * message could not be encoded.
+	 */
+	public void sendLLRPMessage(String readerName, LLRPMessage message, SendFuture future) throws RemoteException, LLRPRuntimeException {
+		Reader reader = readers.get(readerName);
+		if (null == reader) {
+			throw new LLRPRuntimeException("Reader '" + readerName + "' does not exist.");
+		}
+		
+		if (reader instanceof LocalReader) {
+			((LocalReader) reader).send(message, future);
+			return;
+		}
+		try {
+			reader.send(message.encodeBinary());
+		} catch (InvalidLLRPMessageException e) {
+			throw new LLRPRuntimeException(e.getMessage());
+		}
+		if (null != future) {
+			future.complete();
+		}
+	}
 
 	@Override
 	public void sendLLRPMessageToAllReaders(byte[] message) throws RemoteException, LLRPRuntimeException {
@@ -181,10 +247,33 @@ public class AdaptorImpl extends UnicastRemoteObject implements Adaptor, Seriali
 		toNotify.notify(message, readerName);
 	}
 
+	/**
+	 * local fast path for readers living in the same virtual machine as the 
+	 * adaptor: the already decoded message is passed on and only gets 
+	 * binary encoded for receivers that are connected via RMI.
+	 * @param message the LLRP message received from the reader.
+	 * @param readerName the name of the reader that received the message.
+	 * @throws RemoteException whenever there is an rmi exception.
+	 */
+	public void messageReceivedCallback(LLRPMessage message, String readerName) throws RemoteException {
+		toNotify.notify(message, readerName);
+	}
+
 	@Override	
 	public void deregisterFromAsynchronous(AsynchronousNotifiable receiver) throws RemoteException {
 		toNotify.remove(receiver);
 	}
+	
+	/**
+	 * waits until the messages received so far have been delivered to the 
+	 * receivers registered for asynchronous messages.
+	 * @param timeout the maximum time to wait in ms.
+	 * @return true if all the messages have been delivered, false upon timeout.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	public boolean awaitNotified(long timeout) throws InterruptedException {
+		return toNotify.awaitIdle(timeout);
+	}
 
 	@Override
 	public void errorCallback(LLRPRuntimeException e, String readerName) throws RemoteException {
@@ -196,6 +285,15 @@ public class AdaptorImpl extends UnicastRemoteObject implements Adaptor, Seriali
 		return readers.get(readerName);
 	}
 
+	@Override
+	public List<ReaderMetricsSnapshot> getMetrics() throws RemoteException {
+		List<ReaderMetricsSnapshot> metrics = new LinkedList<ReaderMetricsSnapshot> ();
+		for (Reader reader : readers.values()) {
+			metrics.add(reader.getMetrics());
+		}
+		return metrics;
+	}
+
 	@Override
 	public void setAdaptorName(String adaptorName) throws RemoteException {
 		this.adaptorName = adaptorName;
@@ -28,11 +28,11 @@ import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.fosstrak.llrp.adaptor.config.Configuration;
@@ -42,6 +42,9 @@ import org.fosstrak.llrp.adaptor.config.type.ReaderConfiguration;
 import org.fosstrak.llrp.adaptor.exception.LLRPDuplicateNameException;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
 import org.fosstrak.llrp.adaptor.queue.QueueEntry;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.fosstrak.llrp.adaptor.util.CoalescingCommitter;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
 import org.fosstrak.llrp.client.LLRPExceptionHandler;
 import org.fosstrak.llrp.client.LLRPExceptionHandlerTypeMap;
 import org.fosstrak.llrp.client.MessageHandler;
@@ -102,6 +105,25 @@ public final class AdaptorManagement {
 	/** the name for the default local adaptor. */
 	public static final String DEFAULT_ADAPTOR_NAME = "DEFAULT";
 	
+	/** key in the read parameters for the delay in ms of a commit (see {@link #commit()}). */
+	public static final String KEY_COMMIT_DELAY = "commitDelay";
+	
+	/** the default delay in ms of a commit. */
+	public static final long DEFAULT_COMMIT_DELAY = 500L;
+	
+	/** 
+	 * key in the read parameters for the number of messages the queue of a 
+	 * reader accepts. a single adaptor is configured with the key followed 
+	 * by a dot and the name of the adaptor.
+	 */
+	public static final String KEY_QUEUE_CAPACITY = "adaptorQueueCapacity";
+	
+	/** 
+	 * key in the read parameters for the window in ms within which repeated 
+	 * sightings of a tag are merged (see {@link TagSmoother}). 
+	 */
+	public static final String KEY_TAG_SMOOTHING_WINDOW = "tagSmoothingWindow";
+	
 	/** the logger. */
 	private static Logger log = Logger.getLogger(AdaptorManagement.class);
 
@@ -151,11 +173,35 @@ public final class AdaptorManagement {
 	/** all the worker threads running an adaptor held by the management (remote adaptors). */
 	private Map<String, AdaptorWorker> remoteWorkers = new ConcurrentHashMap<String, AdaptorWorker> ();
 	
-	/** a list of handlers that like to receive all the LLRP messages. */
-	private List<MessageHandler> fullHandlers = Collections.synchronizedList(new LinkedList<MessageHandler> ());
+	/** the handlers that like to receive all or only certain LLRP messages. */
+	private final HandlerRegistry handlers = new HandlerRegistry();
+	
+	/** merges repeated tag sightings before they reach the handlers. */
+	private final TagSmoother smoother = new TagSmoother(handlers);
+	
+	/** the read parameters configuring the reader bring-up (see {@link ReaderBringUp}). */
+	private Map<String, Object> bringUpParameters = null;
+	
+	/** the number of messages the queue of a reader accepts (unless configured per adaptor). */
+	private volatile int defaultQueueCapacity = AdaptorWorker.QUEUE_THRESHOLD;
 	
-	/** these handlers would like to receive only certain LLRP Messages. */
-	private Map<Class<?>, List<MessageHandler> > partialHandlers = new ConcurrentHashMap<Class<?>, List<MessageHandler> > ();
+	/** the queue capacities configured per adaptor. */
+	private final Map<String, Integer> queueCapacities = new ConcurrentHashMap<String, Integer> ();
+	
+	/** the bring-up of the readers of the last loaded configuration. */
+	private volatile ReaderBringUp bringUp = null;
+	
+	/** merges bursts of commits into one write of the configuration. */
+	private final CoalescingCommitter committer = new CoalescingCommitter(new Runnable() {
+		public void run() {
+			try {
+				storeToConfiguration();
+			} catch (LLRPRuntimeException e) {
+				log.error("could not commit the changes to the configuration file", e);
+				setStatus(true, e, LLRPExceptionHandlerTypeMap.EXCEPTION_ADAPTOR_MANAGEMENT_NOT_INITIALIZED);
+			}
+		}
+	}, DEFAULT_COMMIT_DELAY);
 	
 	/**
 	 * initializes the AdaptorManagement. Make sure this method is only invoked <strong>once</strong>.
@@ -192,6 +238,14 @@ public final class AdaptorManagement {
 		
 		this.export = export;
 		
+		// size the shared pool before any reader gets started.
+		SharedExecutor.configure(readParameters);
+		bringUpParameters = readParameters;
+		configureCommitDelay(readParameters);
+		configureQueueCapacities(readParameters);
+		configureTagSmoothing(readParameters);
+		ReaderQueueSettings.configure(readParameters);
+		
 		log.debug("initialize configuration strategy " + configurationClass);
 		configLoader = initializeConfigurationStrategy(readParameters, writeParameters, configurationClass);
 
@@ -246,13 +300,7 @@ public final class AdaptorManagement {
 		clearWorkers();
 		
 		// drop all the handlers
-		synchronized (fullHandlers) {
-			fullHandlers.clear();
-		}
-		
-		synchronized (partialHandlers) {
-			partialHandlers.clear();
-		}
+		handlers.clear();
 		
 		load();
 		log.debug("finished reset");
@@ -273,15 +321,166 @@ public final class AdaptorManagement {
 	}
 	
 	/**
-	 * commits the adaptor managements internal configuration state as a snapshot to the configuration.
+	 * commits the adaptor managements internal configuration state as a snapshot to the configuration. 
+	 * the snapshot is taken after the commit delay (see {@link #KEY_COMMIT_DELAY}), all the commits 
+	 * within the delay are merged into one write of the configuration.
 	 */
 	public void commit() {
 		if (isCommitChanges()) {
+			committer.request();
+		}
+	}
+	
+	/**
+	 * writes the pending commits to the configuration now.
+	 */
+	public void flushCommits() {
+		committer.flush();
+	}
+	
+	/**
+	 * opens a bulk change. all the commits until the matching 
+	 * {@link #endBulkChange()} are written as one snapshot of the configuration 
+	 * when the bulk change ends. use this when defining many adaptors or readers:<br/>
+	 * <code>management.beginBulkChange();</code><br/>
+	 * <code>try {</code><br/>
+	 * <code>	// define the readers...</code><br/>
+	 * <code>} finally {</code><br/>
+	 * <code>	management.endBulkChange();</code><br/>
+	 * <code>}</code><br/>
+	 * bulk changes can be nested.
+	 */
+	public void beginBulkChange() {
+		committer.begin();
+	}
+	
+	/**
+	 * ends a bulk change (see {@link #beginBulkChange()}). when the outermost 
+	 * bulk change ends, the pending commits are written to the configuration.
+	 */
+	public void endBulkChange() {
+		committer.end();
+	}
+	
+	/**
+	 * @return the delay in ms of a commit.
+	 */
+	public long getCommitDelay() {
+		return committer.getDelay();
+	}
+	
+	/**
+	 * @param delay the delay in ms of a commit (0 writes the configuration 
+	 * upon every commit).
+	 */
+	public void setCommitDelay(long delay) {
+		committer.setDelay(delay);
+	}
+	
+	/**
+	 * configures the commit delay from the given parameters (see 
+	 * {@link #KEY_COMMIT_DELAY}). missing or illegal values are ignored.
+	 * @param parameters the parameters (might be null).
+	 */
+	private void configureCommitDelay(Map<String, Object> parameters) {
+		if ((null == parameters) || (null == parameters.get(KEY_COMMIT_DELAY))) {
+			return;
+		}
+		Object value = parameters.get(KEY_COMMIT_DELAY);
+		try {
+			setCommitDelay(Long.parseLong(value.toString().trim()));
+		} catch (IllegalArgumentException e) {
+			log.error(String.format("illegal value for %s: %s", KEY_COMMIT_DELAY, value));
+		}
+	}
+	
+	/**
+	 * @return the smoother merging repeated tag sightings.
+	 */
+	public TagSmoother getTagSmoother() {
+		return smoother;
+	}
+	
+	/**
+	 * configures the tag smoothing window from the given parameters (see 
+	 * {@link #KEY_TAG_SMOOTHING_WINDOW}). missing or illegal values are ignored.
+	 * @param parameters the parameters (might be null).
+	 */
+	private void configureTagSmoothing(Map<String, Object> parameters) {
+		if ((null == parameters) || (null == parameters.get(KEY_TAG_SMOOTHING_WINDOW))) {
+			return;
+		}
+		Object value = parameters.get(KEY_TAG_SMOOTHING_WINDOW);
+		try {
+			smoother.setWindow(Long.parseLong(value.toString().trim()));
+		} catch (IllegalArgumentException e) {
+			log.error(String.format("illegal value for %s: %s", KEY_TAG_SMOOTHING_WINDOW, value));
+		}
+	}
+	
+	/**
+	 * sets the number of messages the queue of a reader of an adaptor 
+	 * accepts. applies 
+	 * to adaptors defined afterwards.
+	 * @param adaptorName the name of the adaptor or null for the default of 
+	 * all the adaptors without their own capacity.
+	 * @param capacity the capacity.
+	 */
+	public void setQueueCapacity(String adaptorName, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		if (null == adaptorName) {
+			defaultQueueCapacity = capacity;
+		} else {
+			queueCapacities.put(adaptorName, capacity);
+		}
+	}
+	
+	/**
+	 * returns the number of messages the queue of a reader of an adaptor 
+	 * accepts.
+	 * @param adaptorName the name of the adaptor or null for the default.
+	 * @return the capacity of the queue of the adaptor if defined, else the 
+	 * configured capacity.
+	 */
+	public int getQueueCapacity(String adaptorName) {
+		if (null == adaptorName) {
+			return defaultQueueCapacity;
+		}
+		AdaptorWorker worker = workers.get(adaptorName);
+		if (null != worker) {
+			return worker.getQueueCapacity();
+		}
+		Integer capacity = queueCapacities.get(adaptorName);
+		return (null == capacity) ? defaultQueueCapacity : capacity;
+	}
+	
+	/**
+	 * configures the queue capacities from the given parameters (see 
+	 * {@link #KEY_QUEUE_CAPACITY}). missing or illegal values are ignored.
+	 * @param parameters the read parameters.
+	 */
+	private void configureQueueCapacities(Map<String, Object> parameters) {
+		if (null == parameters) {
+			return;
+		}
+		final String prefix = KEY_QUEUE_CAPACITY + ".";
+		for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+			String key = entry.getKey();
+			if ((null == key) || (null == entry.getValue()) || !key.startsWith(KEY_QUEUE_CAPACITY)) {
+				continue;
+			}
+			String adaptorName = null;
+			if (key.startsWith(prefix)) {
+				adaptorName = key.substring(prefix.length());
+			} else if (!key.equals(KEY_QUEUE_CAPACITY)) {
+				continue;
+			}
 			try {
-				storeToConfiguration();
-			} catch (LLRPRuntimeException e) {
-				log.error("could not commit the changes to the configuration file", e);
-				setStatus(true, e, LLRPExceptionHandlerTypeMap.EXCEPTION_ADAPTOR_MANAGEMENT_NOT_INITIALIZED);
+				setQueueCapacity(adaptorName, Integer.parseInt(entry.getValue().toString().trim()));
+			} catch (IllegalArgumentException e) {
+				log.error(String.format("illegal value for %s: %s", key, entry.getValue()));
 			}
 		}
 	}
@@ -312,6 +511,9 @@ public final class AdaptorManagement {
 	public synchronized void shutdown() {
 		log.debug("shutting AdaptorManagement down.");
 		
+		// write the pending changes before the scheduler stops.
+		committer.flush();
+		
 		// first disconnect the local readers.
 		disconnectReaders();
 		
@@ -331,6 +533,13 @@ public final class AdaptorManagement {
 				}
 			}
 		} // synchronized adaptorManagement
+		
+		// dispatch the tags still held back by the smoothing.
+		smoother.stop();
+		
+		// finally stop the shared threads (recreated upon next use).
+		KeepAliveScheduler.getInstance().shutdown();
+		SharedExecutor.shutdown();
 	}
 	
 	/**
@@ -448,7 +657,7 @@ public final class AdaptorManagement {
 			// local case
 			adaptor = new AdaptorImpl(adaptorName);
 			((AdaptorImpl)adaptor).setAdaptorManagement(this);
-			worker = new AdaptorWorker(cb, adaptor);
+			worker = new AdaptorWorker(cb, adaptor, getQueueCapacity(adaptorName));
 			worker.setAdaptorIpAddress(null);
 			// insertion must take place atomically on both workers and localWorkers
 			synchronized (workers) {
@@ -461,7 +670,7 @@ public final class AdaptorManagement {
 			}
 		} else {
 			// remote case
-			worker = new AdaptorWorker(cb, adaptor);
+			worker = new AdaptorWorker(cb, adaptor, getQueueCapacity(adaptorName));
 			// store the ip address of the remote adaptor.
 			worker.setAdaptorIpAddress(address);
 
@@ -477,8 +686,8 @@ public final class AdaptorManagement {
 		}
 		registerCallbackOnAdapter(adaptor, cb);
 		
-		// register the thread.
-		new Thread(worker).start();
+		// start the worker (runs on the shared executor).
+		worker.start();
 		
 		// if the user requests an export of the adaptor we do this...
 		// the adaptor HAS to be local!
@@ -557,6 +766,18 @@ public final class AdaptorManagement {
 		commit();
 	}
 	
+	/**
+	 * drops the queue of a reader that got undefined on one of the adaptors.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 */
+	void readerUndefined(String adaptorName, String readerName) {
+		AdaptorWorker worker = workers.get(adaptorName);
+		if (null != worker) {
+			worker.removeReader(readerName);
+		}
+	}
+	
 	/**
 	 * returns a list of all the available adaptor names.
 	 * @return a list of all the available adaptor names.
@@ -648,22 +869,105 @@ public final class AdaptorManagement {
 	 * @param adaptorName the name of the adaptor holding the llrp reader.
 	 * @param readerName the name of the llrp reader.
 	 * @param message the LLRPMessage.
-	 * @throws LLRPRuntimeException when the queue of the adaptor is full.
+	 * @throws LLRPRuntimeException when the queue of the reader is full.
 	 */
 	public void enqueueLLRPMessage(String adaptorName, String readerName, LLRPMessage message) throws LLRPRuntimeException {
+		AdaptorWorker theWorker = getWorker(adaptorName, readerName);
+		log.debug("enqueueLLRPMessage(" + adaptorName + ", " + readerName + ")");
+		// a full queue is back-pressure, not a lost reader: nothing is posted.
+		theWorker.enqueue(new QueueEntry(message, readerName, adaptorName));
+	}
+	
+	/**
+	 * enqueue an LLRPMessage to be sent to a llrp reader. when the queue of 
+	 * the reader is full, the caller waits for free space.
+	 * @param adaptorName the name of the adaptor holding the llrp reader.
+	 * @param readerName the name of the llrp reader.
+	 * @param message the LLRPMessage.
+	 * @param timeout how long to wait at most.
+	 * @param unit the time unit of the timeout.
+	 * @return true if enqueued, false if the queue stayed full until the 
+	 * timeout (or the thread got interrupted).
+	 * @throws LLRPRuntimeException when the adaptor does not exist.
+	 */
+	public boolean enqueueLLRPMessage(String adaptorName, String readerName, LLRPMessage message, 
+			long timeout, TimeUnit unit) throws LLRPRuntimeException {
+		
+		AdaptorWorker theWorker = getWorker(adaptorName, readerName);
+		try {
+			return theWorker.offer(new QueueEntry(message, readerName, adaptorName), timeout, unit);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * enqueue an LLRPMessage to be sent to a llrp reader without throwing. 
+	 * the returned future is completed once the message has been written to 
+	 * the connection of the reader (for a remote adaptor: once the remote 
+	 * adaptor accepted the message). it fails when the adaptor does not 
+	 * exist, the queue is full or the message could not be sent.
+	 * @param adaptorName the name of the adaptor holding the llrp reader.
+	 * @param readerName the name of the llrp reader.
+	 * @param message the LLRPMessage (must not be modified afterwards).
+	 * @return the future of the sending.
+	 */
+	public SendFuture enqueueLLRPMessageAsync(String adaptorName, String readerName, LLRPMessage message) {
+		SendFuture future = new SendFuture();
+		try {
+			AdaptorWorker theWorker = getWorker(adaptorName, readerName);
+			theWorker.enqueue(new QueueEntry(message, readerName, adaptorName, future));
+		} catch (LLRPRuntimeException e) {
+			future.fail(e);
+		}
+		return future;
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @return the number of messages waiting in the queues of the adaptor.
+	 * @throws LLRPRuntimeException when the adaptor does not exist.
+	 */
+	public int getQueueDepth(String adaptorName) throws LLRPRuntimeException {
+		return getWorker(adaptorName, "").getQueueDepth();
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the number of messages waiting in the queue of the reader.
+	 * @throws LLRPRuntimeException when the adaptor does not exist.
+	 */
+	public int getQueueDepth(String adaptorName, String readerName) throws LLRPRuntimeException {
+		return getWorker(adaptorName, readerName).getQueueDepth(readerName);
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @return the number of messages rejected by the queues of the adaptor.
+	 * @throws LLRPRuntimeException when the adaptor does not exist.
+	 */
+	public long getRejectedCount(String adaptorName) throws LLRPRuntimeException {
+		return getWorker(adaptorName, "").getRejectedCount();
+	}
+	
+	/**
+	 * returns the worker of an adaptor.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader (for the error report).
+	 * @return the worker.
+	 * @throws LLRPRuntimeException when the adaptor does not exist (posted to 
+	 * the exception handler) or the management is in an error state.
+	 */
+	private AdaptorWorker getWorker(String adaptorName, String readerName) throws LLRPRuntimeException {
 		checkStatus();
 		
 		AdaptorWorker theWorker = workers.get(adaptorName);
 		if (null == theWorker) {
 			postAndThenThrowException(new LLRPRuntimeException("Adaptor does not exist"), LLRPExceptionHandlerTypeMap.EXCEPTION_ADAPTER_NOT_EXIST, adaptorName, readerName);
 		}
-		
-		if (!theWorker.isReady()) {
-			LLRPRuntimeException e = new LLRPRuntimeException("Queue is full");
-			postAndThenThrowException(e, LLRPExceptionHandlerTypeMap.EXCEPTION_READER_LOST, "AdaptorManagement", readerName);
-		}
-		log.debug("enqueueLLRPMessage(" + adaptorName + ", " + readerName + ")");
-		theWorker.enqueue(new QueueEntry(message, readerName, adaptorName));
+		return theWorker;
 	}
 	
 	/**
@@ -671,8 +975,7 @@ public final class AdaptorManagement {
 	 * @param handler the handler.
 	 */
 	public void registerFullHandler(MessageHandler handler) {
-		// fullHandlers is a synchronized collection, thus no explicit synchronization required.
-		fullHandlers.add(handler);
+		handlers.registerFullHandler(handler);
 	}
 	
 	/**
@@ -680,8 +983,7 @@ public final class AdaptorManagement {
 	 * @param handler the handler to be removed.
 	 */
 	public void deregisterFullHandler(MessageHandler handler) {
-		// fullHandlers is a synchronized collection, thus no explicit synchronization required.
-		fullHandlers.remove(handler);
+		handlers.deregisterFullHandler(handler);
 	}
 	
 	/**
@@ -690,24 +992,18 @@ public final class AdaptorManagement {
 	 * @return true if the handler is present, false otherwise.
 	 */
 	public boolean hasFullHandler(MessageHandler handler) {
-		return fullHandlers.contains(handler);
+		return handlers.hasFullHandler(handler);
 	}
 	
 	/**
 	 * register a handler that will receive only a restricted set of messages.
 	 * @param handler the handler.
-	 * @param clzz the type of messages that the handler likes to receive (example KEEPALIVE.class).
+	 * @param clzz the type of messages that the handler likes to receive (example KEEPALIVE.class). 
+	 * the handler also receives the messages of subclasses of clzz (or of classes 
+	 * implementing clzz when clzz is an interface).
 	 */
 	public void registerPartialHandler(MessageHandler handler, Class<?> clzz) {
-		synchronized (partialHandlers) {
-			List<MessageHandler> handlers = partialHandlers.get(clzz);			
-			if (null == handlers) {
-				List<MessageHandler> temp = Collections.synchronizedList(new LinkedList<MessageHandler> ());
-				handlers = temp;
-				partialHandlers.put(clzz, handlers);
-			}
-			handlers.add(handler);
-		}
+		handlers.registerPartialHandler(handler, clzz);
 	}
 	
 	/**
@@ -716,12 +1012,7 @@ public final class AdaptorManagement {
 	 * @param clzz the class where the handler is registered.
 	 */
 	public void deregisterPartialHandler(MessageHandler handler, Class<?> clzz) {
-		// partialHandlers is synchronized thus retrieval is safe.
-		List<MessageHandler> handlers = partialHandlers.get(clzz);
-		if (null != handlers) {
-			// handlers is a synchronized collection, thus we can safely work on it.
-			handlers.remove(handler);
-		}
+		handlers.deregisterPartialHandler(handler, clzz);
 	}
 	
 	/**
@@ -731,18 +1022,15 @@ public final class AdaptorManagement {
 	 * @return true if the handler is present, false otherwise.
 	 */
 	public boolean hasPartialHandler(MessageHandler handler, Class<?> clzz) {
-		// partialHandlers and its content are synchronized, thus reading on it is safe without explicit synchronization.
-		List<MessageHandler> handlers = partialHandlers.get(clzz);
-		if (null != handlers) {
-			return handlers.contains(handler);
-		}
-		return false;
+		return handlers.hasPartialHandler(handler, clzz);
 	}
 	
 	/**
 	 * dispatches an LLRP message to all the registered full handlers. All the 
 	 * handlers that have interest into the class of the message will be 
-	 * informed as well.
+	 * informed as well. when tag smoothing is enabled, the tags of 
+	 * RO_ACCESS_REPORTs are dispatched once the smoothing window has passed 
+	 * (see {@link TagSmoother}).
 	 * @param adaptorName the name of the adapter that received the message.
 	 * @param readerName the reader that received the message. 
 	 * @param message the LLRP message itself.
@@ -750,18 +1038,8 @@ public final class AdaptorManagement {
 	public void dispatchHandlers(String adaptorName, String readerName, 
 			LLRPMessage message) {
 		
-		// handle full handlers...
-		for (MessageHandler handler : fullHandlers) {
-			handler.handle(adaptorName, readerName, message);
-		}
-		
-		// handle partial handlers
-		List<MessageHandler> handlers = partialHandlers.get(message.getClass());
-		if (null != handlers) {
-			for (MessageHandler handler : handlers) {
-				handler.handle(adaptorName, readerName, message);
-			}
-		}
+		// the registry is read without locking.
+		smoother.dispatch(adaptorName, readerName, message);
 	}
 
 	/**
@@ -840,11 +1118,18 @@ public final class AdaptorManagement {
 
 		log.debug("loading configuration.");
 		
+		// write the pending changes before the adaptors get replaced.
+		committer.flush();
+		
 		// store the commit mode.
 		boolean commitMode = isCommitChanges();
 		setCommitChanges(false);
 		
 		boolean isExported = false;
+		
+		// the readers are defined one after another but connected 
+		// concurrently once all of them are defined.
+		ReaderBringUp readerBringUp = ReaderBringUp.create(bringUpParameters);
 		synchronized (AdaptorManagement.class) {
 			// clear out all available adaptors
 			clearWorkers();
@@ -911,10 +1196,16 @@ public final class AdaptorManagement {
 							log.debug(String.format("Load llrp reader: '%s' on '%s:%d', clientInitiatedConnection: %b, connectImmediately: %b", 
 									readerName, readerIp, readerPort, readerClientInitiated, connectImmediately));
 							
-							// create the reader
+							// create the reader, the connection gets established 
+							// by the bring-up.
 							try {
-								// try to establish the connection immediately
-								adaptor.define(readerName, readerIp, readerPort, readerClientInitiated, connectImmediately);
+								adaptor.define(readerName, readerIp, readerPort, readerClientInitiated, false, 
+										readerConfiguration.getQueueSettings());
+								if (connectImmediately) {
+									Reader reader = adaptor.getReader(readerName);
+									reader.setConnectImmediate(true);
+									readerBringUp.submit(reader, readerClientInitiated);
+								}
 								log.debug(String.format("reader '%s' successfully created", readerName));
 							} catch (RemoteException e) {
 								log.error(String.format("could not create reader '%s'", readerName), e);
@@ -927,6 +1218,29 @@ public final class AdaptorManagement {
 		
 		// restore the commit mode.
 		setCommitChanges(commitMode);
+		
+		bringUp = readerBringUp;
+		readerBringUp.start();
+		try {
+			// wait for the reachable readers. readers still connecting when 
+			// the timeout elapses continue in the background.
+			if (!readerBringUp.await(readerBringUp.getConnectTimeout())) {
+				log.warn(String.format("%d readers still connecting, continuing in the background.", 
+						readerBringUp.getPending()));
+			}
+		} catch (InterruptedException e) {
+			log.debug("interrupted while waiting for the readers to connect.");
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * returns the bring-up of the readers of the last loaded configuration. 
+	 * it tells how many readers are connected, failed or still connecting.
+	 * @return the bring-up or null if no configuration has been loaded.
+	 */
+	public ReaderBringUp getReaderBringUp() {
+		return bringUp;
 	}
 	
 	/**
@@ -962,7 +1276,9 @@ public final class AdaptorManagement {
 							String ip = reader.getReaderAddress();
 							int port = reader.getPort();
 							
-							readerConfigurations.add(new ReaderConfiguration(readerName, ip, port, clientInit, connectImmediately));
+							ReaderConfiguration readerConfiguration = new ReaderConfiguration(readerName, ip, port, clientInit, connectImmediately);
+							readerConfiguration.setQueueSettings(reader.getQueueSettings());
+							readerConfigurations.add(readerConfiguration);
 						}
 					} catch (RemoteException e) {
 						// local configuration therefore we can ignore the remote exception.
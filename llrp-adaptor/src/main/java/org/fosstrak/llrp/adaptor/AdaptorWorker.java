@@ -21,11 +21,23 @@
 
 package org.fosstrak.llrp.adaptor;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.rmi.RemoteException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import org.apache.log4j.Logger;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.metrics.StripedCounter;
+import org.fosstrak.llrp.adaptor.queue.MessageQueue;
 import org.fosstrak.llrp.adaptor.queue.QueueEntry;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.fosstrak.llrp.adaptor.util.SerialQueueWorker;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
 import org.fosstrak.llrp.client.LLRPExceptionHandlerTypeMap;
 import org.llrp.ltk.exceptions.InvalidLLRPMessageException;
 
@@ -33,26 +45,45 @@ import org.llrp.ltk.exceptions.InvalidLLRPMessageException;
  * an LLRPAdaptorWorker holds an Adaptor and a callback. the worker
  * enqueues messages and dispatches them to the corresponding reader.
  * through the callback it can retrieve messages that then will be 
- * dispatched to the MessageRepository.
+ * dispatched to the MessageRepository.<br/>
+ * the worker does not own a thread. every reader gets its own queue that is 
+ * processed on the pool of the {@link SharedExecutor} (one task per reader 
+ * at a time). the messages to different readers are therefore sent in 
+ * parallel while the order of the messages to one reader is preserved. 
+ * messages to readers not defined on the adaptor are rejected, the queue 
+ * of a reader is dropped when the reader gets undefined.
  * @author sawielan
  *
  */
-public class AdaptorWorker implements Runnable {
+public class AdaptorWorker {
 	
-	/** the worker does not accept more messages in the queue than this threshold. */
+	/** the default number of messages the queue of a reader accepts. */
 	public static final int QUEUE_THRESHOLD = 100;
 	
+	/** how long a producer waiting for space in the queue parks (ns). */
+	private static final long PRODUCER_PARK_NANOS = 50000L;
+	
 	/** the callback for asynchronous message retrieval. */
 	private AdaptorCallback callback = null;
 	
 	/** the adaptor holding the connection to the readers. */
 	private Adaptor adaptor = null;	
 	
-	/** the queue holding messages to be sent to readers. */
-	private final ConcurrentLinkedQueue<QueueEntry> outQueue = new ConcurrentLinkedQueue<QueueEntry> ();
+	/** the worker does not accept more messages per reader than this capacity. */
+	private final int capacity;
+	
+	/** the queues holding the messages to be sent, by reader name. */
+	private final ConcurrentHashMap<String, ReaderQueue> readerQueues = 
+		new ConcurrentHashMap<String, ReaderQueue> ();
+	
+	/** as long as this value is set to true the worker sends messages. */
+	private volatile boolean running = false;
+	
+	/** the number of messages accepted into the queue. */
+	private final StripedCounter enqueued = new StripedCounter();
 	
-	/** as long as this value is set to true the worker will accept and process messages. */
-	private boolean isRunning = true;
+	/** the number of messages rejected because the queue was full. */
+	private final StripedCounter rejected = new StripedCounter();
 	
 	/** the ip address of this adaptor. if its the local adaptor it returns null. */
 	private String adaptorIpAddress = null;
@@ -74,15 +105,28 @@ public class AdaptorWorker implements Runnable {
 	/** the number of allowed connection failures between adaptor and client. */
 	public static final int MAX_CONN_FAILURES = 3;
 	
-	private static final long WAIT_INTERVALL = 100L;
-	
-	
+
 	/**
 	 * creates a new LLRPAdaptorWorker. 
 	 * @param callback the callback for asynchronous message retrieval. 
 	 * @param adaptor the adaptor holding the connection to the readers. 
 	 */
 	public AdaptorWorker(AdaptorCallback callback, Adaptor adaptor) {
+		this(callback, adaptor, QUEUE_THRESHOLD);
+	}
+
+	/**
+	 * creates a new LLRPAdaptorWorker. 
+	 * @param callback the callback for asynchronous message retrieval. 
+	 * @param adaptor the adaptor holding the connection to the readers. 
+	 * @param capacity the number of messages the queue of a reader accepts.
+	 */
+	public AdaptorWorker(AdaptorCallback callback, Adaptor adaptor, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		
 		this.callback = callback;
 		callback.setWorker(this);
 		
@@ -93,63 +137,128 @@ public class AdaptorWorker implements Runnable {
 			throw new IllegalArgumentException(ex);
 		}
 	}
-	public void run() {
-		while (isRunning) {
-			try {
-				QueueEntry entry = null;
-				synchronized (outQueue) {
-					// if the outQueue is empty we put this thread to sleep. 
-					// when someone posts a new message to the queue to 
-					// poster has to call the notifyAll() method and by 
-					// that awake this thread.
-					while (outQueue.isEmpty()) {
-						outQueue.wait(WAIT_INTERVALL);
-					}
-					// the thread has been awakened and is now able to 
-					// process the first element in the queue.
-					entry = outQueue.remove();
-					
-					process(entry);
-				}
-			} catch (InterruptedException e) {
-				log.info("got interrupted", e);
-			}
+	
+	/**
+	 * starts the worker. from now on enqueued messages get processed on 
+	 * the shared executor.
+	 */
+	public void start() {
+		log.debug("starting worker for adaptor " + adaptorName);
+		running = true;
+		for (ReaderQueue queue : readerQueues.values()) {
+			queue.worker.start();
 		}
-		
 	}
 	
 	/**
-	 * call this method if you want to stop the worker thread.
+	 * call this method if you want to stop the worker.
 	 */
 	public void tearDown() {
-		// set isRunning to false.
-		isRunning = false;
-		
-		// wakeup the thread to let it stop.
-		synchronized (outQueue) {
-			outQueue.notifyAll();
+		running = false;
+		for (ReaderQueue queue : readerQueues.values()) {
+			queue.worker.stop();
 		}
 	}
 	
+	/**
+	 * drops the queue of a reader (when the reader got undefined). the 
+	 * messages not yet sent are failed.
+	 * @param readerName the name of the reader.
+	 */
+	public void removeReader(String readerName) {
+		ReaderQueue queue = readerQueues.remove(readerName);
+		if (null == queue) {
+			return;
+		}
+		log.debug(String.format("dropping the queue of reader %s on adaptor %s", 
+				readerName, adaptorName));
+		queue.worker.stop();
+		LLRPRuntimeException cause = new LLRPRuntimeException(
+				"Reader '" + readerName + "' does not exist.");
+		for (QueueEntry entry = queue.poll(); null != entry; entry = queue.poll()) {
+			fail(entry.getFuture(), cause);
+		}
+	}
+	
+	/**
+	 * @param readerName the name of the reader.
+	 * @return true if the reader is defined on the adaptor.
+	 */
+	private boolean isDefined(String readerName) {
+		try {
+			return getAdaptor().containsReader(readerName);
+		} catch (RemoteException e) {
+			log.debug("could not query the adaptor for reader " + readerName);
+			return false;
+		}
+	}
+	
+	/**
+	 * returns the queue of a reader and creates it if the reader is defined 
+	 * on the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the queue of the reader or null if the reader does not exist.
+	 */
+	private ReaderQueue getReaderQueue(String readerName) {
+		ReaderQueue queue = readerQueues.get(readerName);
+		if (null == queue) {
+			if ((null == readerName) || !isDefined(readerName)) {
+				return null;
+			}
+			ReaderQueue created = new ReaderQueue();
+			queue = readerQueues.putIfAbsent(readerName, created);
+			if (null == queue) {
+				queue = created;
+				if (running) {
+					queue.worker.start();
+					// the worker might have been torn down meanwhile.
+					if (!running) {
+						queue.worker.stop();
+					}
+				}
+			}
+		}
+		return queue;
+	}
+	
 	/**
 	 * send a queued element through the adaptor to the reader.
 	 * @param entry the queued element to be sent.
 	 */
 	private void process(QueueEntry entry) {
+		final SendFuture future = entry.getFuture();
 		try {
-			getAdaptor().sendLLRPMessage(entry.getReaderName(), entry.getMessage().encodeBinary());
+			Adaptor adaptor = getAdaptor();
+			if (adaptor instanceof LocalAdaptor) {
+				// local adaptor: hand over the message object as it is.
+				((LocalAdaptor) adaptor).sendLLRPMessage(entry.getReaderName(), entry.getMessage(), future);
+			} else {
+				adaptor.sendLLRPMessage(entry.getReaderName(), entry.getMessage().encodeBinary());
+				// the remote adaptor accepted the message.
+				if (null != future) {
+					future.complete();
+				}
+			}
+			return;
 		} catch (LLRPRuntimeException e) {
+			fail(future, e);
 			AdaptorManagement.getInstance().postException(new LLRPRuntimeException(e.getMessage()),
 					LLRPExceptionHandlerTypeMap.EXCEPTION_MSG_SENDING_ERROR,
 					entry.getAdaptorName(),
 					entry.getReaderName());
+			// the reader might have been undefined behind our back.
+			if (!isDefined(entry.getReaderName())) {
+				removeReader(entry.getReaderName());
+			}
 		} catch (InvalidLLRPMessageException e) {
+			fail(future, e);
 			AdaptorManagement.getInstance().postException(new LLRPRuntimeException(e.getMessage()),
 					LLRPExceptionHandlerTypeMap.EXCEPTION_MSG_SYNTAX_ERROR,
 					entry.getAdaptorName(),
 					entry.getReaderName());
 					
 		} catch (Exception e) {
+			fail(future, e);
 			AdaptorManagement.getInstance().postException(new LLRPRuntimeException(e.getMessage()),
 					LLRPExceptionHandlerTypeMap.EXCEPTION_MSG_SENDING_ERROR,
 					entry.getAdaptorName(),
@@ -157,6 +266,17 @@ public class AdaptorWorker implements Runnable {
 		}
 	}
 
+	/**
+	 * fails the future of a message (if there is one).
+	 * @param future the future or null.
+	 * @param cause the cause of the failure.
+	 */
+	private static void fail(SendFuture future, Throwable cause) {
+		if (null != future) {
+			future.fail(cause);
+		}
+	}
+
 	/**
 	 * returns the callback for asynchronous message retrieval. 
 	 * @return the callback for asynchronous message retrieval. 
@@ -174,29 +294,131 @@ public class AdaptorWorker implements Runnable {
 	}
 	
 	/**
-	 * signals whether this worker is ready to accept messages.
+	 * signals whether this worker is ready to accept messages (the worker 
+	 * is running and not all the queues of the readers are full).
 	 * @return true if ok, else otherwise.
 	 */
 	public boolean isReady() {
-		if (outQueue.size() >= QUEUE_THRESHOLD) {
+		if (!running) {
 			return false;
 		}
-		return true;
+		if (readerQueues.isEmpty()) {
+			return true;
+		}
+		for (ReaderQueue queue : readerQueues.values()) {
+			if (!queue.isFull()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * signals whether this worker is ready to accept messages for a reader.
+	 * @param readerName the name of the reader.
+	 * @return true if ok, else otherwise.
+	 */
+	public boolean isReady(String readerName) {
+		if (!running) {
+			return false;
+		}
+		ReaderQueue queue = readerQueues.get(readerName);
+		return (null == queue) || !queue.isFull();
 	}
 	
 	/**
 	 * enqueues a message to be sent.
 	 * @param e the queue element holding the message.
-	 * @throws LLRPRuntimeException when worker is not ready or queue is full
+	 * @throws LLRPRuntimeException when worker is not ready, the queue is full 
+	 * or the reader does not exist.
 	 */
 	public void enqueue(QueueEntry e) throws LLRPRuntimeException {
-		if (!isReady()) {
+		if (!running) {
+			rejected.increment();
 			throw new LLRPRuntimeException("Queue is full or worker not ready.");
 		}
-		synchronized (outQueue) {
-			outQueue.add(e);
-			outQueue.notifyAll();
+		final ReaderQueue queue = getReaderQueue(e.getReaderName());
+		if (null == queue) {
+			rejected.increment();
+			throw new LLRPRuntimeException("Reader '" + e.getReaderName() + "' does not exist.");
+		}
+		if (!queue.offer(e)) {
+			rejected.increment();
+			throw new LLRPRuntimeException("Queue is full or worker not ready.");
 		}
+		enqueued.increment();
+	}
+	
+	/**
+	 * enqueues a message to be sent and waits for space in the queue if 
+	 * needed.
+	 * @param e the queue element holding the message.
+	 * @param timeout how long to wait at most.
+	 * @param unit the time unit of the timeout.
+	 * @return true if enqueued, false if the worker is not ready, the reader 
+	 * does not exist or upon timeout.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	public boolean offer(QueueEntry e, long timeout, TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		final ReaderQueue queue = getReaderQueue(e.getReaderName());
+		while (running && (null != queue)) {
+			if (queue.offer(e)) {
+				enqueued.increment();
+				return true;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (deadline - System.nanoTime() <= 0) {
+				break;
+			}
+			LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+		}
+		rejected.increment();
+		return false;
+	}
+	
+	/**
+	 * @return the number of messages the queue of a reader accepts.
+	 */
+	public int getQueueCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @return the number of messages waiting in the queues of all readers.
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (ReaderQueue queue : readerQueues.values()) {
+			depth += queue.queue.size();
+		}
+		return depth;
+	}
+	
+	/**
+	 * @param readerName the name of the reader.
+	 * @return the number of messages waiting in the queue of the reader.
+	 */
+	public int getQueueDepth(String readerName) {
+		ReaderQueue queue = readerQueues.get(readerName);
+		return (null == queue) ? 0 : queue.queue.size();
+	}
+	
+	/**
+	 * @return the number of messages accepted into the queue.
+	 */
+	public long getEnqueuedCount() {
+		return enqueued.sum();
+	}
+	
+	/**
+	 * @return the number of messages rejected because the queue was full 
+	 * (or the worker not ready).
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
 	}
 
 	/**
@@ -243,4 +465,73 @@ public class AdaptorWorker implements Runnable {
 	public String getAdaptorName() {
 		return adaptorName;
 	}
+	
+	/**
+	 * the queue of the messages to one reader.
+	 */
+	private final class ReaderQueue {
+		
+		/** the queue holding the messages to be sent to the reader. */
+		private final MessageQueue<QueueEntry> queue = new RingBufferQueue<QueueEntry> (
+				capacity, OverflowPolicy.DROP_NEWEST, WaitStrategy.PARK);
+		
+		/** 
+		 * the number of messages accepted and not yet taken off the queue. 
+		 * a producer reserves its slot here before offering, so concurrent 
+		 * producers cannot exceed the capacity (the ring buffer rounds its 
+		 * size up).
+		 */
+		private final AtomicInteger accepted = new AtomicInteger(0);
+		
+		/** drains the queue on the shared executor. */
+		private final SerialQueueWorker<QueueEntry> worker = new SerialQueueWorker<QueueEntry>(queue) {
+			@Override
+			protected void process(QueueEntry entry) {
+				accepted.decrementAndGet();
+				AdaptorWorker.this.process(entry);
+			}
+		};
+		
+		/**
+		 * enqueues a message unless the queue holds <code>capacity</code> 
+		 * messages already.
+		 * @param entry the message.
+		 * @return true if enqueued.
+		 */
+		private boolean offer(QueueEntry entry) {
+			for (;;) {
+				final int n = accepted.get();
+				if (n >= capacity) {
+					return false;
+				}
+				if (accepted.compareAndSet(n, n + 1)) {
+					break;
+				}
+			}
+			if (worker.offer(entry)) {
+				return true;
+			}
+			accepted.decrementAndGet();
+			return false;
+		}
+		
+		/**
+		 * takes a message off the queue without processing it.
+		 * @return the message or null if the queue is empty.
+		 */
+		private QueueEntry poll() {
+			QueueEntry entry = queue.poll();
+			if (null != entry) {
+				accepted.decrementAndGet();
+			}
+			return entry;
+		}
+		
+		/**
+		 * @return true if the queue holds <code>capacity</code> messages.
+		 */
+		private boolean isFull() {
+			return accepted.get() >= capacity;
+		}
+	}
 }
@@ -0,0 +1,44 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.rmi.RemoteException;
+
+/**
+ * receivers of asynchronous messages that accept many messages per call. 
+ * the adaptor collects the messages for such a receiver and delivers them 
+ * in batches, which saves one round-trip per message when the receiver is 
+ * connected via RMI. receivers only implementing 
+ * {@link AsynchronousNotifiable} keep getting one call per message.
+ * @author sawielan
+ *
+ */
+public interface BatchAsynchronousNotifiable extends AsynchronousNotifiable {
+	
+	/**
+	 * when asynchronous messages arrived, this method will be invoked. the 
+	 * frames of the batch must be processed in their order.
+	 * @param batch the messages together with the names of the readers.
+	 * @throws RemoteException when there has been an error in the communication.
+	 */
+	void notify(MessageBatch batch) throws RemoteException;
+}
@@ -0,0 +1,69 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import org.apache.mina.common.ByteBuffer;
+import org.apache.mina.common.IoSession;
+import org.apache.mina.common.WriteFuture;
+import org.llrp.ltk.net.LLRPConnector;
+import org.llrp.ltk.net.LLRPEndpoint;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * an {@link LLRPConnector} able to write binary encoded messages as they are. 
+ * the protocol codec passes buffers through without encoding them.
+ * @author sawielan
+ *
+ */
+class FrameConnector extends LLRPConnector implements FrameWriter {
+	
+	/**
+	 * creates a connector.
+	 * @param endpoint the endpoint receiving the messages.
+	 * @param host the address of the reader.
+	 * @param port the port of the reader.
+	 */
+	FrameConnector(LLRPEndpoint endpoint, String host, int port) {
+		super(endpoint, host, port);
+	}
+
+	public WriteFuture writeFrame(byte[] frame) {
+		return write(ByteBuffer.wrap(frame));
+	}
+
+	public WriteFuture writeMessage(LLRPMessage message) {
+		return write(message);
+	}
+	
+	/**
+	 * writes to the session.
+	 * @param message the message or buffer.
+	 * @return the write future or null if there is no open session.
+	 */
+	private WriteFuture write(Object message) {
+		IoSession s = session;
+		if ((null == s) || !s.isConnected()) {
+			return null;
+		}
+		return s.write(message);
+	}
+}
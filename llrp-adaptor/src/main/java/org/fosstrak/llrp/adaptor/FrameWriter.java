@@ -0,0 +1,52 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import org.apache.mina.common.WriteFuture;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * an LTK connection that can write binary encoded LLRP messages onto the 
+ * wire as they are (without encoding an LTK message). unlike 
+ * <code>LLRPConnection.send</code> the writes return the future of the 
+ * session, so the caller learns when the message has been written.
+ * @author sawielan
+ *
+ */
+interface FrameWriter {
+
+	/**
+	 * writes a binary encoded LLRP message.
+	 * @param frame the binary encoded message.
+	 * @return the write future or null if the session is not established 
+	 * (nothing written).
+	 */
+	WriteFuture writeFrame(byte[] frame);
+	
+	/**
+	 * writes an LLRP message (encoded by the protocol codec).
+	 * @param message the message.
+	 * @return the write future or null if the session is not established 
+	 * (nothing written).
+	 */
+	WriteFuture writeMessage(LLRPMessage message);
+}
@@ -0,0 +1,302 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fosstrak.llrp.client.MessageHandler;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * registry of the {@link MessageHandler}s that receive the LLRP messages 
+ * dispatched by the {@link AdaptorManagement}. full handlers receive all the 
+ * messages, partial handlers only the messages that are instances of the 
+ * class they are registered for (the class can be a super class or an 
+ * interface of the message class).<br/>
+ * <br/>
+ * the registrations are kept in an immutable snapshot that is replaced upon 
+ * every registration and deregistration (copy on write). dispatching reads 
+ * the current snapshot without any locking. the partial handlers matching a 
+ * message class are resolved once per snapshot and cached as an array. a 
+ * partial handler registered for several matching classes (or several 
+ * times for the same class) receives a message only once. a handler 
+ * registered as full and as partial handler receives a message twice.
+ * @author sawielan
+ *
+ */
+public class HandlerRegistry {
+	
+	/** empty handler array. */
+	private static final MessageHandler [] NONE = new MessageHandler[0];
+	
+	/** the current registrations. replaced on every change. */
+	private volatile Snapshot snapshot = new Snapshot(NONE, 
+			Collections.<Class<?>, MessageHandler[]>emptyMap());
+	
+	/**
+	 * register a handler that will receive all the messages.
+	 * @param handler the handler.
+	 */
+	public synchronized void registerFullHandler(MessageHandler handler) {
+		Snapshot s = snapshot;
+		snapshot = new Snapshot(add(s.full, handler), s.partial);
+	}
+	
+	/**
+	 * remove a handler from the full handlers.
+	 * @param handler the handler to be removed.
+	 * @return true if the handler was registered.
+	 */
+	public synchronized boolean deregisterFullHandler(MessageHandler handler) {
+		Snapshot s = snapshot;
+		MessageHandler [] full = remove(s.full, handler);
+		if (full == s.full) {
+			return false;
+		}
+		snapshot = new Snapshot(full, s.partial);
+		return true;
+	}
+	
+	/**
+	 * @param handler the handler to check for.
+	 * @return true if the handler is registered as full handler.
+	 */
+	public boolean hasFullHandler(MessageHandler handler) {
+		return indexOf(snapshot.full, handler) >= 0;
+	}
+	
+	/**
+	 * register a handler that will receive only the messages that are 
+	 * instances of the given class.
+	 * @param handler the handler.
+	 * @param clzz the type of messages the handler likes to receive (example 
+	 * KEEPALIVE.class). 
+	 */
+	public synchronized void registerPartialHandler(MessageHandler handler, 
+			Class<?> clzz) {
+		
+		Snapshot s = snapshot;
+		Map<Class<?>, MessageHandler[]> partial = 
+			new LinkedHashMap<Class<?>, MessageHandler[]> (s.partial);
+		MessageHandler [] handlers = partial.get(clzz);
+		partial.put(clzz, add((null == handlers) ? NONE : handlers, handler));
+		snapshot = new Snapshot(s.full, partial);
+	}
+	
+	/**
+	 * remove a handler from the partial handlers of the given class.
+	 * @param handler the handler to remove.
+	 * @param clzz the class where the handler is registered.
+	 * @return true if the handler was registered.
+	 */
+	public synchronized boolean deregisterPartialHandler(MessageHandler handler, 
+			Class<?> clzz) {
+		
+		Snapshot s = snapshot;
+		MessageHandler [] handlers = s.partial.get(clzz);
+		if (null == handlers) {
+			return false;
+		}
+		MessageHandler [] remaining = remove(handlers, handler);
+		if (remaining == handlers) {
+			return false;
+		}
+		Map<Class<?>, MessageHandler[]> partial = 
+			new LinkedHashMap<Class<?>, MessageHandler[]> (s.partial);
+		if (remaining.length == 0) {
+			partial.remove(clzz);
+		} else {
+			partial.put(clzz, remaining);
+		}
+		snapshot = new Snapshot(s.full, partial);
+		return true;
+	}
+	
+	/**
+	 * @param handler the handler to check.
+	 * @param clzz the class where to search for the handler.
+	 * @return true if the handler is registered for exactly the given class.
+	 */
+	public boolean hasPartialHandler(MessageHandler handler, Class<?> clzz) {
+		MessageHandler [] handlers = snapshot.partial.get(clzz);
+		return (null != handlers) && (indexOf(handlers, handler) >= 0);
+	}
+	
+	/**
+	 * removes all the handlers.
+	 */
+	public synchronized void clear() {
+		snapshot = new Snapshot(NONE, 
+				Collections.<Class<?>, MessageHandler[]>emptyMap());
+	}
+	
+	/**
+	 * @return a copy of the full handlers.
+	 */
+	public MessageHandler [] getFullHandlers() {
+		return snapshot.full.clone();
+	}
+	
+	/**
+	 * @param messageClass the class of a message.
+	 * @return a copy of the partial handlers receiving messages of the given class.
+	 */
+	public MessageHandler [] getPartialHandlers(Class<?> messageClass) {
+		return snapshot.resolve(messageClass).clone();
+	}
+	
+	/**
+	 * dispatches an LLRP message to all the full handlers and then to the 
+	 * partial handlers matching the class of the message.
+	 * @param adaptorName the name of the adapter that received the message.
+	 * @param readerName the reader that received the message. 
+	 * @param message the LLRP message itself.
+	 */
+	public void dispatch(String adaptorName, String readerName, 
+			LLRPMessage message) {
+		
+		final Snapshot s = snapshot;
+		for (MessageHandler handler : s.full) {
+			handler.handle(adaptorName, readerName, message);
+		}
+		for (MessageHandler handler : s.resolve(message.getClass())) {
+			handler.handle(adaptorName, readerName, message);
+		}
+	}
+	
+	/**
+	 * @return a new array with the handler appended.
+	 */
+	private static MessageHandler [] add(MessageHandler [] handlers, 
+			MessageHandler handler) {
+		
+		MessageHandler [] result = new MessageHandler[handlers.length + 1];
+		System.arraycopy(handlers, 0, result, 0, handlers.length);
+		result[handlers.length] = handler;
+		return result;
+	}
+	
+	/**
+	 * @return a new array without the first occurrence of the handler or 
+	 * the given array if the handler is not contained.
+	 */
+	private static MessageHandler [] remove(MessageHandler [] handlers, 
+			MessageHandler handler) {
+		
+		final int index = indexOf(handlers, handler);
+		if (index < 0) {
+			return handlers;
+		}
+		MessageHandler [] result = new MessageHandler[handlers.length - 1];
+		System.arraycopy(handlers, 0, result, 0, index);
+		System.arraycopy(handlers, index + 1, result, index, 
+				handlers.length - index - 1);
+		return result;
+	}
+	
+	/**
+	 * @return the index of the handler (compared with equals) or -1.
+	 */
+	private static int indexOf(MessageHandler [] handlers, 
+			MessageHandler handler) {
+		
+		for (int i=0; i<handlers.length; i++) {
+			if ((null == handler) ? (null == handlers[i]) : handler.equals(handlers[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * immutable state of the registry.
+	 */
+	private static final class Snapshot {
+		
+		/** the full handlers. */
+		private final MessageHandler [] full;
+		
+		/** the partial handlers by the class they are registered for. */
+		private final Map<Class<?>, MessageHandler[]> partial;
+		
+		/** the partial handlers resolved by message class. */
+		private final Map<Class<?>, MessageHandler[]> resolved = 
+			new ConcurrentHashMap<Class<?>, MessageHandler[]> ();
+		
+		private Snapshot(MessageHandler [] full, 
+				Map<Class<?>, MessageHandler[]> partial) {
+			
+			this.full = full;
+			this.partial = partial;
+		}
+		
+		/**
+		 * @param messageClass the class of a message.
+		 * @return the partial handlers receiving messages of the given class.
+		 */
+		private MessageHandler [] resolve(Class<?> messageClass) {
+			if (partial.isEmpty()) {
+				return NONE;
+			}
+			MessageHandler [] handlers = resolved.get(messageClass);
+			if (null == handlers) {
+				// races are harmless, the result is always the same.
+				handlers = collect(messageClass);
+				resolved.put(messageClass, handlers);
+			}
+			return handlers;
+		}
+		
+		/**
+		 * collects the partial handlers registered for the given class, its 
+		 * super classes or its interfaces. the handlers are ordered by the 
+		 * class they are registered for (in the order the classes got their 
+		 * first handler) and then by registration. a handler registered for 
+		 * several of the classes is kept at its first position only.
+		 * @param messageClass the class of a message.
+		 * @return the matching handlers.
+		 */
+		private MessageHandler [] collect(Class<?> messageClass) {
+			List<MessageHandler> handlers = new ArrayList<MessageHandler> ();
+			Map<MessageHandler, Boolean> seen = 
+				new IdentityHashMap<MessageHandler, Boolean> ();
+			for (Map.Entry<Class<?>, MessageHandler[]> entry : partial.entrySet()) {
+				if (!entry.getKey().isAssignableFrom(messageClass)) {
+					continue;
+				}
+				for (MessageHandler handler : entry.getValue()) {
+					if (null == seen.put(handler, Boolean.TRUE)) {
+						handlers.add(handler);
+					}
+				}
+			}
+			return handlers.isEmpty() ? NONE : 
+				handlers.toArray(new MessageHandler[handlers.size()]);
+		}
+	}
+}
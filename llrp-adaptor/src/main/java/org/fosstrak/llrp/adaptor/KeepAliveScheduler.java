@@ -0,0 +1,307 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetrics;
+import org.fosstrak.llrp.adaptor.util.HashedWheelTimer;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
+
+/**
+ * tracks the keep-alive deadlines of all the readers in the virtual machine 
+ * on one {@link HashedWheelTimer}. a reader registers a {@link Watch} when 
+ * connecting and touches it whenever a KEEPALIVE arrives. when no keep-alive 
+ * arrived within the window (allowed misses times keep-alive period) after 
+ * the last one, the timeout handler of the reader gets invoked on the 
+ * {@link SharedExecutor}.<br/>
+ * <br/>
+ * touching a watch only records the time of the keep-alive. the timeout is 
+ * re-armed lazily when it fires before the (moved) deadline, so the timer 
+ * is not involved in every keep-alive. a lost reader is detected at most one 
+ * tick after its deadline. the detection latency (time between deadline and 
+ * detection) is recorded and exposed through the getters of the scheduler 
+ * and in the {@link ReaderMetrics} of the reader (if given).
+ * @author sawielan
+ *
+ */
+public final class KeepAliveScheduler {
+	
+	/** the duration of one tick of the wheel in milliseconds. */
+	public static final long TICK_DURATION = 100L;
+	
+	/** the number of buckets in the wheel. */
+	public static final int TICKS_PER_WHEEL = 512;
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(KeepAliveScheduler.class);
+	
+	/** the instance of the singleton. */
+	private static KeepAliveScheduler instance = new KeepAliveScheduler();
+	
+	/** the timer holding the deadlines. */
+	private final HashedWheelTimer timer = new HashedWheelTimer("llrp-keepalive", 
+			TICK_DURATION, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL, null);
+	
+	/** the number of active watches. */
+	private final AtomicInteger numWatches = new AtomicInteger(0);
+	
+	/** the number of detected connection losses. */
+	private final AtomicLong numDetections = new AtomicLong(0);
+	
+	/** the sum of all the detection latencies in nanoseconds. */
+	private final AtomicLong totalLatency = new AtomicLong(0);
+	
+	/** the maximum detection latency in nanoseconds. */
+	private final AtomicLong maxLatency = new AtomicLong(0);
+	
+	/** the last detection latency in nanoseconds. */
+	private volatile long lastLatency = 0;
+	
+	/** private constructor for singleton. */
+	private KeepAliveScheduler() {
+	}
+	
+	/**
+	 * returns the singleton of the KeepAliveScheduler.
+	 * @return the singleton of the KeepAliveScheduler.
+	 */
+	public static KeepAliveScheduler getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * starts to watch the keep-alives of a reader. the deadline starts with 
+	 * the creation of the watch.
+	 * @param readerName the name of the reader (for logging).
+	 * @param window the time in milliseconds after the last keep-alive when 
+	 * the reader is considered lost.
+	 * @param onTimeout invoked on the shared executor when the reader is lost.
+	 * @return a watch to be touched upon each keep-alive.
+	 */
+	public Watch watch(String readerName, long window, Runnable onTimeout) {
+		return watch(readerName, window, onTimeout, null);
+	}
+	
+	/**
+	 * starts to watch the keep-alives of a reader. the deadline starts with 
+	 * the creation of the watch.
+	 * @param readerName the name of the reader (for logging).
+	 * @param window the time in milliseconds after the last keep-alive when 
+	 * the reader is considered lost.
+	 * @param onTimeout invoked on the shared executor when the reader is lost.
+	 * @param metrics the metrics of the reader recording the detection 
+	 * latency (might be null).
+	 * @return a watch to be touched upon each keep-alive.
+	 */
+	public Watch watch(String readerName, long window, Runnable onTimeout, ReaderMetrics metrics) {
+		if (window <= 0) {
+			throw new IllegalArgumentException("window must be positive: " + window);
+		}
+		Watch watch = new Watch(readerName, TimeUnit.MILLISECONDS.toNanos(window), onTimeout, metrics);
+		numWatches.incrementAndGet();
+		watch.arm(watch.windowNanos);
+		return watch;
+	}
+	
+	/**
+	 * records the latency of a detection.
+	 * @param latency the latency in nanoseconds.
+	 */
+	private void recordDetection(long latency) {
+		numDetections.incrementAndGet();
+		totalLatency.addAndGet(latency);
+		lastLatency = latency;
+		long max = maxLatency.get();
+		while ((latency > max) && !maxLatency.compareAndSet(max, latency)) {
+			max = maxLatency.get();
+		}
+	}
+	
+	/**
+	 * @return the number of readers currently watched.
+	 */
+	public int getNumWatches() {
+		return numWatches.get();
+	}
+	
+	/**
+	 * @return the number of connection losses detected so far.
+	 */
+	public long getNumDetections() {
+		return numDetections.get();
+	}
+	
+	/**
+	 * @return the latency of the last detection in milliseconds (time between 
+	 * the deadline and the detection of the lost reader).
+	 */
+	public long getLastDetectionLatency() {
+		return TimeUnit.NANOSECONDS.toMillis(lastLatency);
+	}
+	
+	/**
+	 * @return the maximum detection latency in milliseconds.
+	 */
+	public long getMaxDetectionLatency() {
+		return TimeUnit.NANOSECONDS.toMillis(maxLatency.get());
+	}
+	
+	/**
+	 * @return the average detection latency in milliseconds.
+	 */
+	public double getAverageDetectionLatency() {
+		final long n = numDetections.get();
+		if (n == 0) {
+			return 0;
+		}
+		return totalLatency.get() / (n * 1000000.0);
+	}
+	
+	/**
+	 * stops the timer thread (restarted upon the next watch). all the 
+	 * watches are dropped.
+	 */
+	public void shutdown() {
+		timer.stop();
+		numWatches.set(0);
+	}
+	
+	/**
+	 * the keep-alive deadline of one reader.
+	 */
+	public final class Watch implements Runnable {
+		
+		/** the name of the reader. */
+		private final String readerName;
+		
+		/** the window in nanoseconds. */
+		private final long windowNanos;
+		
+		/** invoked when the reader is lost. */
+		private final Runnable onTimeout;
+		
+		/** the metrics of the reader (might be null). */
+		private final ReaderMetrics metrics;
+		
+		/** the time of the last keep-alive (System.nanoTime()). */
+		private volatile long lastKeepAlive = System.nanoTime();
+		
+		/** the currently armed timeout. */
+		private volatile HashedWheelTimer.Timeout timeout = null;
+		
+		/** set as long as the watch is active (cleared by cancel or expiry). */
+		private final AtomicBoolean active = new AtomicBoolean(true);
+		
+		/**
+		 * @param readerName the name of the reader.
+		 * @param windowNanos the window in nanoseconds.
+		 * @param onTimeout invoked when the reader is lost.
+		 * @param metrics the metrics of the reader (might be null).
+		 */
+		private Watch(String readerName, long windowNanos, Runnable onTimeout, ReaderMetrics metrics) {
+			this.readerName = readerName;
+			this.windowNanos = windowNanos;
+			this.onTimeout = onTimeout;
+			this.metrics = metrics;
+		}
+		
+		/**
+		 * records the arrival of a keep-alive.
+		 */
+		public void touch() {
+			lastKeepAlive = System.nanoTime();
+		}
+		
+		/**
+		 * stops watching the reader.
+		 */
+		public void cancel() {
+			if (!active.compareAndSet(true, false)) {
+				return;
+			}
+			numWatches.decrementAndGet();
+			HashedWheelTimer.Timeout t = timeout;
+			if (null != t) {
+				t.cancel();
+			}
+		}
+		
+		/**
+		 * @return true as long as the reader is watched.
+		 */
+		public boolean isActive() {
+			return active.get();
+		}
+		
+		/**
+		 * arms the timer.
+		 * @param delay the delay in nanoseconds.
+		 */
+		private void arm(long delay) {
+			timeout = timer.newTimeout(this, delay, TimeUnit.NANOSECONDS);
+			if (!active.get()) {
+				// cancelled concurrently.
+				timeout.cancel();
+			}
+		}
+		
+		/**
+		 * invoked by the timer. checks the deadline and either re-arms the 
+		 * timer or reports the lost reader.
+		 */
+		public void run() {
+			if (!active.get()) {
+				return;
+			}
+			final long now = System.nanoTime();
+			final long deadline = lastKeepAlive + windowNanos;
+			if (deadline - now > 0) {
+				// a keep-alive arrived meanwhile.
+				arm(deadline - now);
+				return;
+			}
+			if (!active.compareAndSet(true, false)) {
+				// cancelled concurrently.
+				return;
+			}
+			numWatches.decrementAndGet();
+			final long latency = now - deadline;
+			recordDetection(latency);
+			if (null != metrics) {
+				metrics.readerLost(latency);
+			}
+			log.debug(String.format("reader %s lost, detected %d ms after the deadline.", 
+					readerName, TimeUnit.NANOSECONDS.toMillis(latency)));
+			try {
+				SharedExecutor.getExecutor().execute(onTimeout);
+			} catch (RejectedExecutionException e) {
+				log.debug("could not report lost reader " + readerName + " (shutting down?).");
+			}
+		}
+	}
+}
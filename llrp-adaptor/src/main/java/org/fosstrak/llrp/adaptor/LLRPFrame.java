@@ -0,0 +1,161 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.util.Arrays;
+
+import org.jdom.Document;
+import org.llrp.ltk.exceptions.InvalidLLRPMessageException;
+import org.llrp.ltk.generated.LLRPMessageFactory;
+import org.llrp.ltk.types.BitList;
+import org.llrp.ltk.types.LLRPBitList;
+import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.SignedShort;
+import org.llrp.ltk.types.UnsignedInteger;
+
+/**
+ * an LLRP message kept in its binary encoded form. only the header of the 
+ * frame is checked, the body is not parsed. connections able to write raw 
+ * frames (see {@link FrameWriter}) put the bytes onto the wire as they are, 
+ * everywhere else the frame behaves like any other LLRP message (the 
+ * message is decoded lazily when its content is needed).
+ * @author sawielan
+ *
+ */
+public class LLRPFrame extends LLRPMessage {
+	
+	/** the length of the LLRP message header in bytes. */
+	public static final int HEADER_LENGTH = 10;
+	
+	/** the binary encoded message. */
+	private final byte[] frame;
+	
+	/** the message type. */
+	private final int type;
+	
+	/** the decoded message (created upon request). */
+	private volatile LLRPMessage decoded = null;
+	
+	/**
+	 * creates a frame from a binary encoded message.
+	 * @param frame the binary encoded message.
+	 * @throws InvalidLLRPMessageException if the header is malformed or the 
+	 * length in the header does not match the length of the frame.
+	 */
+	public LLRPFrame(byte[] frame) throws InvalidLLRPMessageException {
+		if ((null == frame) || (frame.length < HEADER_LENGTH)) {
+			throw new InvalidLLRPMessageException("frame shorter than the LLRP header");
+		}
+		final long length = readUnsignedInt(frame, 2);
+		if (length != frame.length) {
+			throw new InvalidLLRPMessageException(String.format(
+					"length %d in the header does not match the frame length %d", length, frame.length));
+		}
+		this.frame = frame;
+		type = ((frame[0] & 0x03) << 8) | (frame[1] & 0xFF);
+		
+		final int v = (frame[0] >> 2) & 0x07;
+		version = new BitList((v >> 2) & 1, (v >> 1) & 1, v & 1);
+		messageID = new UnsignedInteger(readUnsignedInt(frame, 6));
+		messageLength = new UnsignedInteger(length);
+	}
+	
+	/**
+	 * reads a 32 bit unsigned big endian integer.
+	 * @param b the bytes.
+	 * @param offset where the integer starts.
+	 * @return the integer.
+	 */
+	private static long readUnsignedInt(byte[] b, int offset) {
+		return ((b[offset] & 0xFFL) << 24) | ((b[offset + 1] & 0xFFL) << 16) 
+			| ((b[offset + 2] & 0xFFL) << 8) | (b[offset + 3] & 0xFFL);
+	}
+	
+	/**
+	 * @return the binary encoded message (not copied, do not modify).
+	 */
+	public byte[] getFrame() {
+		return frame;
+	}
+	
+	/**
+	 * decodes the frame into the corresponding LTK message.
+	 * @return the decoded message.
+	 * @throws InvalidLLRPMessageException if the frame could not be decoded.
+	 */
+	public LLRPMessage decode() throws InvalidLLRPMessageException {
+		LLRPMessage message = decoded;
+		if (null == message) {
+			message = LLRPMessageFactory.createLLRPMessage(frame);
+			decoded = message;
+		}
+		return message;
+	}
+	
+	/**
+	 * decodes the frame and turns a failure into an unchecked exception (for 
+	 * the accessors that do not declare one).
+	 * @return the decoded message.
+	 */
+	private LLRPMessage decodeUnchecked() {
+		try {
+			return decode();
+		} catch (InvalidLLRPMessageException e) {
+			throw new IllegalStateException("could not decode frame: " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	protected LLRPBitList encodeBinarySpecific() throws InvalidLLRPMessageException {
+		return new LLRPBitList(Arrays.copyOfRange(frame, HEADER_LENGTH, frame.length));
+	}
+
+	@Override
+	protected void decodeBinarySpecific(LLRPBitList binary) throws InvalidLLRPMessageException {
+		throw new InvalidLLRPMessageException("a frame can not be decoded into");
+	}
+
+	@Override
+	public SignedShort getTypeNum() {
+		return new SignedShort(type);
+	}
+
+	@Override
+	public String getName() {
+		return decodeUnchecked().getName();
+	}
+
+	@Override
+	public String getResponseType() {
+		return decodeUnchecked().getResponseType();
+	}
+
+	@Override
+	public Document encodeXML() throws InvalidLLRPMessageException {
+		return decode().encodeXML();
+	}
+
+	@Override
+	public void decodeXML(Document document) throws InvalidLLRPMessageException {
+		throw new InvalidLLRPMessageException("a frame can not be decoded into");
+	}
+}
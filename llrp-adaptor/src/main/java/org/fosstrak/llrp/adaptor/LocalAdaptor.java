@@ -0,0 +1,65 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.rmi.RemoteException;
+
+import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * adaptors living in the same virtual machine as the caller implement this 
+ * interface in order to accept the LLRP message object instead of its binary 
+ * encoded form. like {@link LocalAsynchronousNotifiable} the interface does 
+ * on purpose not extend <code>java.rmi.Remote</code>, so an RMI stub never 
+ * implements it and the caller can detect a local adaptor with an 
+ * <code>instanceof</code>.<br/>
+ * <br/>
+ * the message is queued and sent later, the caller must not modify it 
+ * after handing it over.
+ * @author sawielan
+ *
+ */
+public interface LocalAdaptor {
+
+	/**
+	 * sends a message to a reader of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param message the LLRP message.
+	 * @throws RemoteException whenever there is an error in the delivery.
+	 * @throws LLRPRuntimeException if the reader does not exist.
+	 */
+	void sendLLRPMessage(String readerName, LLRPMessage message) throws RemoteException, LLRPRuntimeException;
+	
+	/**
+	 * sends a message to a reader of the adaptor and informs a future about 
+	 * the outcome.
+	 * @param readerName the name of the reader.
+	 * @param message the LLRP message.
+	 * @param future completed when the message has been written to the 
+	 * connection of the reader, failed when it could not be sent (can be null).
+	 * @throws RemoteException whenever there is an error in the delivery.
+	 * @throws LLRPRuntimeException if the reader does not exist.
+	 */
+	void sendLLRPMessage(String readerName, LLRPMessage message, SendFuture future) throws RemoteException, LLRPRuntimeException;
+}
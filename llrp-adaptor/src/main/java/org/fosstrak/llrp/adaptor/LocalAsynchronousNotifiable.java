@@ -0,0 +1,51 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.rmi.RemoteException;
+
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * receivers of asynchronous messages that live in the same virtual machine 
+ * as the reader can implement this interface in order to get the already 
+ * decoded LLRP message instead of the binary encoded form. the interface 
+ * does on purpose not extend <code>java.rmi.Remote</code>: an RMI stub does 
+ * therefore never implement it, so the reader can safely detect with an 
+ * <code>instanceof</code> whether a receiver is local or whether the message 
+ * has to be serialized for the transport.<br/>
+ * <br/>
+ * the same message instance is handed to all local receivers, so 
+ * implementations must not modify the message.
+ * @author sawielan
+ *
+ */
+public interface LocalAsynchronousNotifiable {
+
+	/**
+	 * when an asynchronous message arrived, this method will be invoked.
+	 * @param message the decoded LLRPMessage arrived asynchronously.
+	 * @param readerName the name of the reader that read the message.
+	 * @throws RemoteException when there has been an error in the delivery.
+	 */
+	void notify(LLRPMessage message, String readerName) throws RemoteException;
+}
@@ -0,0 +1,54 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.rmi.RemoteException;
+
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * readers living in the same virtual machine as the caller implement this 
+ * interface in order to accept the LLRP message object instead of its binary 
+ * encoded form (see {@link LocalAdaptor}).
+ * @author sawielan
+ *
+ */
+public interface LocalReader {
+
+	/**
+	 * send a message to the llrp reader.
+	 * @param message the LLRP message (must not be modified afterwards).
+	 * @throws RemoteException whenever there is an error in the delivery.
+	 */
+	void send(LLRPMessage message) throws RemoteException;
+	
+	/**
+	 * send a message to the llrp reader and inform a future about the 
+	 * outcome.
+	 * @param message the LLRP message (must not be modified afterwards).
+	 * @param future completed when the message has been written to the 
+	 * connection, failed when it could not be sent (can be null).
+	 * @throws RemoteException whenever there is an error in the delivery.
+	 */
+	void send(LLRPMessage message, SendFuture future) throws RemoteException;
+}
@@ -0,0 +1,118 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.io.Serializable;
+
+/**
+ * a batch of binary encoded LLRP messages (frames) together with the name 
+ * of the reader each message was received from. the frames are kept in the 
+ * order they were added. used to deliver many asynchronous messages with 
+ * one RMI call (see {@link BatchAsynchronousNotifiable}).
+ * @author sawielan
+ *
+ */
+public class MessageBatch implements Serializable {
+	
+	/** serial version id. */
+	private static final long serialVersionUID = 1L;
+	
+	/** the names of the readers per frame. */
+	private String[] readerNames;
+	
+	/** the binary encoded messages. */
+	private byte[][] messages;
+	
+	/** the number of frames in the batch. */
+	private int size = 0;
+	
+	/**
+	 * creates an empty batch.
+	 * @param capacity the expected number of frames (the batch grows if needed).
+	 */
+	public MessageBatch(int capacity) {
+		capacity = Math.max(1, capacity);
+		readerNames = new String[capacity];
+		messages = new byte[capacity][];
+	}
+	
+	/**
+	 * appends a frame to the batch.
+	 * @param readerName the name of the reader the message was received from.
+	 * @param message the binary encoded message.
+	 */
+	public void add(String readerName, byte[] message) {
+		if (size == messages.length) {
+			final int capacity = 2 * size;
+			String[] names = new String[capacity];
+			byte[][] frames = new byte[capacity][];
+			System.arraycopy(readerNames, 0, names, 0, size);
+			System.arraycopy(messages, 0, frames, 0, size);
+			readerNames = names;
+			messages = frames;
+		}
+		readerNames[size] = readerName;
+		messages[size] = message;
+		size++;
+	}
+	
+	/**
+	 * @return the number of frames in the batch.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return true if there are no frames in the batch.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * @param index the index of the frame.
+	 * @return the name of the reader the message was received from.
+	 */
+	public String getReaderName(int index) {
+		check(index);
+		return readerNames[index];
+	}
+	
+	/**
+	 * @param index the index of the frame.
+	 * @return the binary encoded message.
+	 */
+	public byte[] getMessage(int index) {
+		check(index);
+		return messages[index];
+	}
+	
+	/**
+	 * @param index the index to check.
+	 */
+	private void check(int index) {
+		if ((index < 0) || (index >= size)) {
+			throw new IndexOutOfBoundsException(String.format("index %d, size %d", index, size));
+		}
+	}
+}
@@ -25,6 +25,7 @@ import java.rmi.Remote;
 import java.rmi.RemoteException;
 
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetricsSnapshot;
 
 /**
  * This class models a logical entity of a physical reader. it maintains 
@@ -98,6 +99,13 @@ public interface Reader extends Remote  {
 	 * @throws RemoteException whenever there is an rmi error.
 	 */
 	boolean isClientInitiated() throws RemoteException;
+	
+	/**
+	 * returns the settings the queues of this reader were created from.
+	 * @return the settings of the queues or null if the reader uses the defaults.
+	 * @throws RemoteException whenever there is an rmi error.
+	 */
+	ReaderQueueSettings getQueueSettings() throws RemoteException;
 
 	/**
 	 * sets the connect behavior to the specified value.
@@ -174,4 +182,12 @@ public interface Reader extends Remote  {
 	 * @throws RemoteException whenever there is an RMI error.
 	 */
 	ReaderMetaData getMetaData() throws RemoteException;
+	
+	/**
+	 * the metrics contain the message and byte counters, the queue depths, 
+	 * the number of messages per type and the decode and dispatch latencies.
+	 * @return a copy of the current metrics of this reader.
+	 * @throws RemoteException whenever there is an RMI error.
+	 */
+	ReaderMetricsSnapshot getMetrics() throws RemoteException;
 }
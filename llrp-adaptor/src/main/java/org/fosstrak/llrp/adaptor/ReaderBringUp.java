@@ -0,0 +1,295 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * connects the readers of a configuration concurrently. one unreachable 
+ * reader no longer delays the readers defined after it by the full connect 
+ * timeout: at most <code>parallelism</code> connects run at the same time 
+ * and each connect attempt is bounded by the connect timeout.<br/>
+ * <br/>
+ * the connects run on a dedicated pool as they block on the network. the 
+ * {@link org.fosstrak.llrp.adaptor.util.SharedExecutor} is not used, the 
+ * message delivery of the readers already connected must not starve.<br/>
+ * <br/>
+ * usage: submit all the readers, call {@link #start()} and then wait 
+ * with {@link #await(long)}. connects not finished when the wait elapses 
+ * continue in the background.
+ * @author sawielan
+ *
+ */
+public class ReaderBringUp {
+	
+	/** key in the read parameters for the number of concurrent connects. */
+	public static final String KEY_PARALLELISM = "readerConnectParallelism";
+	
+	/** key in the read parameters for the connect timeout in ms. */
+	public static final String KEY_CONNECT_TIMEOUT = "readerConnectTimeout";
+	
+	/** the default number of concurrent connects. */
+	public static final int DEFAULT_PARALLELISM = 16;
+	
+	/** the default connect timeout in ms. */
+	public static final long DEFAULT_CONNECT_TIMEOUT = ReaderImpl.DEFAULT_CONNECT_TIMEOUT;
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(ReaderBringUp.class);
+	
+	/** the number of concurrent connects. */
+	private final int parallelism;
+	
+	/** the connect timeout in ms. */
+	private final long connectTimeout;
+	
+	/** the pool running the connects (created upon start). */
+	private ExecutorService pool = null;
+	
+	/** the connects not yet started. */
+	private final List<Runnable> tasks = new LinkedList<Runnable> ();
+	
+	/** the number of readers to connect (fixed upon start). */
+	private volatile int total = 0;
+	
+	/** counts down when a connect finishes. */
+	private CountDownLatch done = null;
+	
+	/** the number of readers connected. */
+	private final AtomicInteger connected = new AtomicInteger(0);
+	
+	/** the number of readers that could not be connected. */
+	private final AtomicInteger failed = new AtomicInteger(0);
+	
+	/** when the bring-up was started. */
+	private long startTime = 0;
+	
+	/**
+	 * creates a bring-up with the given limits.
+	 * @param parallelism the number of concurrent connects (at least 1).
+	 * @param connectTimeout the connect timeout in ms (at least 1).
+	 */
+	public ReaderBringUp(int parallelism, long connectTimeout) {
+		if ((parallelism < 1) || (connectTimeout < 1)) {
+			throw new IllegalArgumentException(String.format(
+					"illegal parallelism %d or connect timeout %d", 
+					parallelism, connectTimeout));
+		}
+		this.parallelism = parallelism;
+		this.connectTimeout = connectTimeout;
+	}
+	
+	/**
+	 * creates a bring-up configured by the given parameters (see 
+	 * {@link #KEY_PARALLELISM} and {@link #KEY_CONNECT_TIMEOUT}). missing 
+	 * or illegal values fall back to the defaults.
+	 * @param parameters the parameters (might be null).
+	 * @return the bring-up.
+	 */
+	public static ReaderBringUp create(Map<String, Object> parameters) {
+		int parallelism = (int) parse(parameters, KEY_PARALLELISM, DEFAULT_PARALLELISM);
+		long connectTimeout = parse(parameters, KEY_CONNECT_TIMEOUT, DEFAULT_CONNECT_TIMEOUT);
+		return new ReaderBringUp(parallelism, connectTimeout);
+	}
+	
+	/**
+	 * @param parameters the parameters (might be null).
+	 * @param key the key of the value.
+	 * @param defaultValue the value to use if missing or illegal.
+	 * @return the positive value of the key or the default value.
+	 */
+	private static long parse(Map<String, Object> parameters, String key, long defaultValue) {
+		if ((null == parameters) || (null == parameters.get(key))) {
+			return defaultValue;
+		}
+		Object value = parameters.get(key);
+		try {
+			long parsed = Long.parseLong(value.toString().trim());
+			if (parsed > 0) {
+				return parsed;
+			}
+		} catch (NumberFormatException e) {
+			// fall through.
+		}
+		log.error(String.format("illegal value for %s: %s", key, value));
+		return defaultValue;
+	}
+	
+	/**
+	 * registers a reader to be connected. must be invoked before 
+	 * {@link #start()}.
+	 * @param reader the reader to connect.
+	 * @param clientInitiated whether the connection is initiated by the client.
+	 */
+	public synchronized void submit(final Reader reader, final boolean clientInitiated) {
+		if (null != done) {
+			throw new IllegalStateException("bring-up already started");
+		}
+		tasks.add(new Runnable() {
+			public void run() {
+				connect(reader, clientInitiated);
+			}
+		});
+	}
+	
+	/**
+	 * starts connecting the submitted readers.
+	 */
+	public synchronized void start() {
+		if (null != done) {
+			return;
+		}
+		total = tasks.size();
+		done = new CountDownLatch(total);
+		startTime = System.currentTimeMillis();
+		if (tasks.isEmpty()) {
+			return;
+		}
+		log.info(String.format("connecting %d readers (%d at a time, timeout %d ms).", 
+				tasks.size(), parallelism, connectTimeout));
+		pool = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()), 
+				new ThreadFactory() {
+					private final AtomicInteger counter = new AtomicInteger(0);
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "llrp-connect-" + counter.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		for (Runnable task : tasks) {
+			pool.execute(task);
+		}
+		tasks.clear();
+		// the threads terminate as soon as all the connects are done.
+		pool.shutdown();
+	}
+	
+	/**
+	 * connects one reader and records the outcome.
+	 * @param reader the reader.
+	 * @param clientInitiated whether the connection is initiated by the client.
+	 */
+	private void connect(Reader reader, boolean clientInitiated) {
+		String readerName = null;
+		boolean success = false;
+		try {
+			readerName = reader.getReaderName();
+			if (reader instanceof ReaderImpl) {
+				((ReaderImpl) reader).setConnectTimeout(connectTimeout);
+			}
+			reader.connect(clientInitiated);
+			success = reader.isConnected();
+		} catch (Exception e) {
+			// the reader reports the error itself.
+			log.debug(String.format("could not connect reader '%s': %s", readerName, 
+					e.getMessage()));
+		}
+		
+		final int ok = success ? connected.incrementAndGet() : connected.get();
+		final int nok = success ? failed.get() : failed.incrementAndGet();
+		done.countDown();
+		final int step = Math.max(1, total / 10);
+		if ((ok + nok == total) || ((ok + nok) % step == 0)) {
+			log.info(String.format("reader bring-up: %d of %d done, %d connected, %d failed (%d ms).", 
+					ok + nok, total, ok, nok, System.currentTimeMillis() - startTime));
+		}
+	}
+	
+	/**
+	 * waits for the connects to finish.
+	 * @param timeout the maximum time to wait in ms.
+	 * @return true if all the connects finished, false if the time elapsed.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	public boolean await(long timeout) throws InterruptedException {
+		CountDownLatch latch;
+		synchronized (this) {
+			latch = done;
+		}
+		if (null == latch) {
+			throw new IllegalStateException("bring-up not started");
+		}
+		return latch.await(timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * the time to wait for all the readers when each slot might be taken by 
+	 * an unreachable reader for the full connect timeout.
+	 * @return the worst case duration of the bring-up in ms.
+	 */
+	public long getWorstCaseDuration() {
+		long rounds = (getTotal() + parallelism - 1) / parallelism;
+		return rounds * connectTimeout;
+	}
+	
+	/**
+	 * @return the number of readers to connect.
+	 */
+	public synchronized int getTotal() {
+		return (null == done) ? tasks.size() : total;
+	}
+	
+	/**
+	 * @return the number of readers connected.
+	 */
+	public int getConnected() {
+		return connected.get();
+	}
+	
+	/**
+	 * @return the number of readers that could not be connected.
+	 */
+	public int getFailed() {
+		return failed.get();
+	}
+	
+	/**
+	 * @return the number of connects still running or waiting.
+	 */
+	public synchronized int getPending() {
+		return (null == done) ? tasks.size() : (int) done.getCount();
+	}
+	
+	/**
+	 * @return the number of concurrent connects.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	/**
+	 * @return the connect timeout in ms.
+	 */
+	public long getConnectTimeout() {
+		return connectTimeout;
+	}
+}
@@ -23,14 +23,27 @@ package org.fosstrak.llrp.adaptor;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
+import org.apache.mina.common.IoFuture;
+import org.apache.mina.common.IoFutureListener;
+import org.apache.mina.common.WriteFuture;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.metrics.MetricsRegistry;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetrics;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetricsSnapshot;
+import org.fosstrak.llrp.adaptor.queue.MessageQueue;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
 import org.fosstrak.llrp.adaptor.util.AsynchronousNotifiableList;
+import org.fosstrak.llrp.adaptor.util.SerialQueueWorker;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
 import org.fosstrak.llrp.client.LLRPExceptionHandlerTypeMap;
 import org.llrp.ltk.exceptions.InvalidLLRPMessageException;
-import org.llrp.ltk.generated.LLRPMessageFactory;
 import org.llrp.ltk.generated.enumerations.KeepaliveTriggerType;
 import org.llrp.ltk.generated.messages.KEEPALIVE;
 import org.llrp.ltk.generated.messages.SET_READER_CONFIG;
@@ -51,15 +64,18 @@ import org.llrp.ltk.types.UnsignedInteger;
  * maintains two queues to decouple the user interface from the actual message 
  * delivery over the network.<br/>
  * 1. from the user to the LLRP reader: the message to be sent is put into a 
- * queue. a queue watch-dog awakes as soon as there are messages in the queue 
+ * queue. a queue worker is scheduled as soon as there are messages in the queue 
  * and delivers them via LTK.<br/>
  * 2. from the LLRP reader to user: the incoming message from the reader is 
- * stored into a queue. a queue watch-dog awakes as soon as there are messages 
- * in the queue and delivers them to the user.
+ * stored into a queue. a queue worker is scheduled as soon as there are messages 
+ * in the queue and delivers them to the user.<br/>
+ * the queue workers do not own a thread, they run on the pool of the 
+ * {@link SharedExecutor}. each queue is processed by at most one task at a 
+ * time, so the order of the messages per reader is preserved.
  * @author sawielan
  *
  */
-public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Reader {
+public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Reader, LocalReader {
 	
 	/**
 	 * serial version.
@@ -84,34 +100,61 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 	/** default how many times a keep-alive can be missed. */
 	public static final int DEFAULT_MISS_KEEPALIVE = 3;
 
-	/**
-	 * the queue workers periodically wake up in order to check the queues even when not notified.
-	 */
-	private static final long PERIODICAL_WAKEUP_TIME = 500L;
+	/** default capacity of the queue holding the incoming messages. */
+	public static final int DEFAULT_IN_QUEUE_CAPACITY = 8192;
+	
+	/** default capacity of the queue holding the outgoing messages. */
+	public static final int DEFAULT_OUT_QUEUE_CAPACITY = 1024;
 	
+	/** the default timeout in ms for a connection attempt to the reader. */
+	public static final long DEFAULT_CONNECT_TIMEOUT = 10000L;
+	
+	/** the timeout in ms for a connection attempt to the reader. */
+	private volatile long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+
 	/** flag whether to throw an exception when a timeout occurred. */
 	private boolean throwExceptionKeepAlive = true;
 	
 	/** meta-data about the reader, if connection is up, number of packages, etc... */
 	private ReaderMetaData metaData = new ReaderMetaData();
 	
+	/** the counters and latencies of this reader (also exported via JMX). */
+	private final ReaderMetrics metrics;
+	
 	/** IO handler. */
 	private LLRPIoHandlerAdapter handler = null;
 	
 	/** handle to the connection watch-dog. */
-	private Thread watchDog = null;
+	private volatile KeepAliveScheduler.Watch watchDog = null;
 	
 	/** handle to the out queue worker. */
-	private Thread outQueueWorker = null;
+	private volatile SerialQueueWorker<LLRPMessage> outQueueWorker = null;
+	
+	/** the futures of the queued messages waiting for the outcome (by identity). */
+	private final Map<LLRPMessage, SendFuture> pendingSends = 
+		Collections.synchronizedMap(new IdentityHashMap<LLRPMessage, SendFuture> ());
 	
 	/** handle to the in queue worker. */
-	private Thread inQueueWorker = null;
+	private volatile SerialQueueWorker<LLRPMessage> inQueueWorker = null;
+	
+	/** 
+	 * queue to hold the incoming messages (already decoded by LTK). the 
+	 * network thread must never wait on the handlers, so messages are 
+	 * dropped when the queue is full (unless configured otherwise, see 
+	 * {@link ReaderQueueSettings}).
+	 */
+	private volatile MessageQueue<LLRPMessage> inqueue = null;
 	
-	/** queue to hold the incoming messages.*/
-	private final ConcurrentLinkedQueue<byte[]> inqueue = new ConcurrentLinkedQueue<byte[]> ();
+	/** 
+	 * queue to hold the outgoing messages. the senders might run on the 
+	 * shared pool themselves, so they must not wait for the out queue 
+	 * worker: messages are dropped (and reported) when the queue is full 
+	 * (unless configured otherwise, see {@link ReaderQueueSettings}).
+	 */
+	private volatile MessageQueue<LLRPMessage> outqueue = null;
 	
-	/** queue to hold the outgoing messages. */
-	private final ConcurrentLinkedQueue<LLRPMessage> outqueue = new ConcurrentLinkedQueue<LLRPMessage> ();
+	/** the settings the queues were created from (null for the defaults). */
+	private ReaderQueueSettings queueSettings = null;
 	
 	/** queue policies. */
 	public enum QueuePolicy {
@@ -141,6 +184,21 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 	 * @throws RemoteException whenever there is an RMI exception
 	 */
 	public ReaderImpl(Adaptor adaptor, String readerName, String readerAddress, int port) throws RemoteException {
+		this(adaptor, readerName, readerAddress, port, null);
+	}
+	
+	/**
+	 * constructor for a local reader stub. the stub maintains connection
+	 * to the llrp reader.
+	 * @param adaptor the adaptor responsible for this reader.
+	 * @param readerName the name of this reader.
+	 * @param readerAddress the address where to connect.
+	 * @param port the port where to connect.
+	 * @param queueSettings the settings of the queues (null for the defaults).
+	 * @throws RemoteException whenever there is an RMI exception
+	 */
+	public ReaderImpl(Adaptor adaptor, String readerName, String readerAddress, int port, 
+			ReaderQueueSettings queueSettings) throws RemoteException {
 		this.adaptor = adaptor;
 		metaData.setAllowNKeepAliveMisses(DEFAULT_MISS_KEEPALIVE);
 		metaData.setKeepAlivePeriod(DEFAULT_KEEPALIVE_PERIOD);
@@ -151,6 +209,18 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 			port = Constants.DEFAULT_LLRP_PORT;
 		}
 		metaData.setPort(port);
+		if ((null != queueSettings) && !queueSettings.isEmpty()) {
+			this.queueSettings = new ReaderQueueSettings(queueSettings);
+		}
+		ReaderQueueSettings settings = (null == this.queueSettings) ? 
+				new ReaderQueueSettings() : this.queueSettings;
+		inqueue = settings.createInQueue();
+		outqueue = settings.createOutQueue();
+		
+		String adaptorName = (null == adaptor) ? null : adaptor.getAdaptorName();
+		metrics = MetricsRegistry.getInstance().getReaderMetrics(adaptorName, readerName);
+		metrics.setInQueue(inqueue);
+		metrics.setOutQueue(outqueue);
 	}
 	
 	/*
@@ -170,19 +240,24 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 			metaData.setClientInitiated(clientInitiatedConnection);
 			
 			// start a new counter session
-			metaData.newSession();
+			metrics.newSession();
 			
 			if (readerConnection == null) {
 				log.debug("setup new connection.");
 				readerConnection = prepareConnectionAndConnect();
+				if (readerConnection == null) {
+					// the failed attempt has already been reported. 
+					log.info(String.format("reader %s could not be connected.", metaData.getReaderName()));
+					return;
+				}
 			}
 
 			metaData.setConnected(true);
 			
-			outQueueWorker = new Thread(getOutQueueWorker());
+			outQueueWorker = getOutQueueWorker();
 			outQueueWorker.start();
 			
-			inQueueWorker = new Thread(getInQueueWorker());
+			inQueueWorker = getInQueueWorker();
 			inQueueWorker.start();
 	
 			// only do heart beat in client initiated mode.
@@ -211,21 +286,22 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 			}
 				
 			// run ltk connector.
-			LLRPConnector connector = new LLRPConnector(this, metaData.getReaderAddress(), metaData.getPort());
+			LLRPConnector connector = new FrameConnector(this, metaData.getReaderAddress(), metaData.getPort());
 			connector.getHandler().setKeepAliveAck(true);
 			connector.getHandler().setKeepAliveForward(true);
 			try {
-				connector.connect();
+				connector.connect(connectTimeout);
 			} catch (LLRPConnectionAttemptFailedException e) {
 				log.error("connection attempt to reader " + metaData.getReaderName() + " failed");
 				reportException(new LLRPRuntimeException("connection attempt to reader " + metaData.getReaderName() + " failed"));
+				return null;
 			}
 			
 			return connector;
 		}
 		log.debug("preparing connection in accepting mode with an LLRPAcceptor");
 		// run the ltk acceptor
-		LLRPAcceptor acceptor = new LLRPAcceptor(this, metaData.getPort());
+		LLRPAcceptor acceptor = new FrameAcceptor(this, metaData.getPort());
 		handler = new LLRPIoHandlerAdapterImpl(acceptor);
 		handler.setKeepAliveAck(true);
 		acceptor.getHandler().setKeepAliveForward(true);
@@ -263,20 +339,24 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 		}
 		
 		metaData.setConnected(false);
+		failPendingSends(new LLRPRuntimeException(String.format("reader %s has been disconnected", metaData.getReaderName())));
 		
 		// stop the outqueue worker
-		if (null != outQueueWorker) {
-			outQueueWorker.interrupt();
+		SerialQueueWorker<LLRPMessage> worker = outQueueWorker;
+		if (null != worker) {
+			worker.stop();
 		}
 		
 		// stop the inqueue worker
-		if (null != inQueueWorker) {
-			inQueueWorker.interrupt();
+		worker = inQueueWorker;
+		if (null != worker) {
+			worker.stop();
 		}
 		
 		// stop the connection watch-dog.
-		if (null != watchDog) {
-			watchDog.interrupt();
+		KeepAliveScheduler.Watch watch = watchDog;
+		if (null != watch) {
+			watch.cancel();
 		}
 	}
 	
@@ -300,10 +380,11 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 			return;
 		}
 		
-		// try to create the llrp message from the byte array.
+		// only check the header, the frame is written out as it is.
+		// no decoding happens here, so the decode latency is not recorded.
 		LLRPMessage llrpMessage = null;
 		try {
-			llrpMessage = LLRPMessageFactory.createLLRPMessage(message);
+			llrpMessage = new LLRPFrame(message);
 		} catch (InvalidLLRPMessageException e) {
 			reportException(new LLRPRuntimeException(e.getMessage()));
 		}
@@ -313,10 +394,80 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 			return;
 		}
 		
-		// put the message into the outqueue
-		synchronized (outqueue) {
-			outqueue.add(llrpMessage);
-			outqueue.notifyAll();
+		enqueue(llrpMessage);
+	}
+	
+	/**
+	 * sends an LLRP message object to the reader (local fast path without 
+	 * binary encoding in between).
+	 * @param message the LLRP message (must not be modified afterwards).
+	 * @throws RemoteException never thrown (local call).
+	 */
+	public void send(LLRPMessage message) throws RemoteException {
+		send(message, null);
+	}
+	
+	/**
+	 * sends an LLRP message object to the reader (local fast path without 
+	 * binary encoding in between).
+	 * @param message the LLRP message (must not be modified afterwards).
+	 * @param future completed when the message has been written to the 
+	 * connection, failed when it could not be sent (can be null). the same 
+	 * message instance must not be sent again while its future is pending.
+	 * @throws RemoteException never thrown (local call).
+	 */
+	public void send(LLRPMessage message, SendFuture future) throws RemoteException {
+		if (!metaData.isConnected() || (readerConnection == null)) {
+			LLRPRuntimeException e = new LLRPRuntimeException(String.format("reader %s is not connected", metaData.getReaderName()));
+			if (null != future) {
+				future.fail(e);
+			}
+			reportException(e);
+			return;
+		}
+		if (message == null) {
+			log.warn(String.format("do not send empty llrp message on reader %s", metaData.getReaderName()));
+			if (null != future) {
+				future.fail(new LLRPRuntimeException("empty llrp message"));
+			}
+			return;
+		}
+		if (null != future) {
+			pendingSends.put(message, future);
+		}
+		if (!enqueue(message) && (null != future)) {
+			pendingSends.remove(message);
+			future.fail(new LLRPRuntimeException(String.format("out queue of reader %s is full, message dropped", metaData.getReaderName())));
+		}
+	}
+	
+	/**
+	 * puts a message into the out queue.
+	 * @param llrpMessage the message.
+	 * @return false if the message has been dropped.
+	 */
+	private boolean enqueue(LLRPMessage llrpMessage) {
+		SerialQueueWorker<LLRPMessage> worker = outQueueWorker;
+		boolean accepted = (null != worker) ? worker.offer(llrpMessage) : outqueue.offer(llrpMessage);
+		if (!accepted) {
+			metrics.messageDropped();
+			reportException(new LLRPRuntimeException(String.format("out queue of reader %s is full, message dropped", metaData.getReaderName())));
+		}
+		return accepted;
+	}
+	
+	/**
+	 * fails the futures of all the messages not yet sent.
+	 * @param cause the cause of the failure.
+	 */
+	private void failPendingSends(Throwable cause) {
+		List<SendFuture> futures;
+		synchronized (pendingSends) {
+			futures = new ArrayList<SendFuture> (pendingSends.values());
+			pendingSends.clear();
+		}
+		for (SendFuture future : futures) {
+			future.fail(cause);
 		}
 	}
 	
@@ -326,18 +477,53 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 	 * @throws RemoteException at RMI exception.
 	 */
 	private void sendLLRPMessage(LLRPMessage llrpMessage) throws RemoteException {
+		final SendFuture future = pendingSends.isEmpty() ? null : pendingSends.remove(llrpMessage);
 		try {
-			// send the message.
-			readerConnection.send(llrpMessage);
-			metaData.packageSent();
+			if (readerConnection instanceof FrameWriter) {
+				// frames go onto the wire as they are.
+				FrameWriter writer = (FrameWriter) readerConnection;
+				WriteFuture written = (llrpMessage instanceof LLRPFrame) ? 
+						writer.writeFrame(((LLRPFrame) llrpMessage).getFrame()) : writer.writeMessage(llrpMessage);
+				if (null == written) {
+					LLRPRuntimeException e = new LLRPRuntimeException(String.format("session to reader %s is not yet established", metaData.getReaderName()));
+					if (null != future) {
+						future.fail(e);
+					}
+					reportException(e);
+					return;
+				}
+				if (null != future) {
+					written.addListener(new IoFutureListener() {
+						public void operationComplete(IoFuture ioFuture) {
+							if (((WriteFuture) ioFuture).isWritten()) {
+								future.complete();
+							} else {
+								future.fail(new LLRPRuntimeException(String.format("could not write to reader %s", metaData.getReaderName())));
+							}
+						}
+					});
+				}
+			} else {
+				readerConnection.send(llrpMessage);
+				if (null != future) {
+					future.complete();
+				}
+			}
+			metrics.messageSent(llrpMessage);
 		} catch (NullPointerException npe) {
 			log.error("caught nullpointer exception.", npe);
+			if (null != future) {
+				future.fail(npe);
+			}
 			// a null-pointer exception occurs when the reader is no more connected.
 			// we therefore report the exception to the GUI.
 			disconnect();
 			reportException(new LLRPRuntimeException(String.format("reader %s is not connected", metaData.getReaderName()), npe,	LLRPExceptionHandlerTypeMap.EXCEPTION_READER_LOST));
 		} catch (Exception e) {
 			log.error(e);
+			if (null != future) {
+				future.fail(e);
+			}
 			// just to be sure...
 			disconnect();			
 		}		
@@ -369,43 +555,79 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 		if (message == null) {
 			return;
 		}
-		byte[] binaryEncoded;
-		try {
-			binaryEncoded = message.encodeBinary();
-		} catch (InvalidLLRPMessageException e1) {
-			reportException(new LLRPRuntimeException(e1.getMessage()));
-			return;
-		}
-		metaData.packageReceived();
+		metrics.messageReceived(message);
 		if (message instanceof KEEPALIVE) {
 			metaData.setAlive(true);
+			KeepAliveScheduler.Watch watch = watchDog;
+			if (null != watch) {
+				watch.touch();
+			}
 			log.debug("received keepalive message from the reader:" + metaData.getReaderName());
 			if (!metaData.isReportKeepAlive()) {
 				return;
 			}
 		}
 		
-		// put the message into the inqueue.
-		synchronized (inqueue) {
-			inqueue.add(binaryEncoded);
-			inqueue.notifyAll();
+		// put the message into the inqueue. the message is kept in its 
+		// decoded form, it gets only encoded when delivered over RMI.
+		final MessageQueue<LLRPMessage> queue = inqueue;
+		final SerialQueueWorker<LLRPMessage> worker = inQueueWorker;
+		boolean accepted = (null != worker) ? worker.offer(message) : queue.offer(message);
+		if (!accepted) {
+			metrics.messageDropped();
+			long dropped = queue.getDroppedCount();
+			// do not flood the log, report the first drop and then every 
+			// power of two.
+			if ((dropped & (dropped - 1)) == 0) {
+				log.warn(String.format("in queue of reader %s is full, dropped %d messages so far.", 
+						metaData.getReaderName(), dropped));
+			}
 		}
 	}
 
 	/**
-	 * deliver a received message to the handlers.
-	 * @param binaryEncoded the binary encoded LLRP message.
+	 * deliver a received message to the handlers. when the adaptor lives in 
+	 * the same virtual machine, the decoded message is passed on directly. 
+	 * the message is only binary encoded (at most once) when there is a 
+	 * receiver that is connected via RMI.
+	 * @param message the LLRP message.
+	 */
+	private void deliverMessage(LLRPMessage message) {
+		final long start = System.nanoTime();
+		try {
+			dispatchMessage(message);
+		} finally {
+			metrics.dispatched(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * hands a received message to the adaptor and the registered receivers.
+	 * @param message the LLRP message.
 	 */
-	private void deliverMessage(byte[] binaryEncoded) {
+	private void dispatchMessage(LLRPMessage message) {
+		byte[] binaryEncoded = null;
 		try {
-			adaptor.messageReceivedCallback(binaryEncoded, metaData.getReaderName());
+			if (adaptor instanceof AdaptorImpl) {
+				((AdaptorImpl) adaptor).messageReceivedCallback(message, metaData.getReaderName());
+			} else {
+				binaryEncoded = message.encodeBinary();
+				adaptor.messageReceivedCallback(binaryEncoded, metaData.getReaderName());
+			}
 		} catch (RemoteException e) {
 			reportException(new LLRPRuntimeException(e.getMessage()));
+		} catch (InvalidLLRPMessageException e) {
+			reportException(new LLRPRuntimeException(e.getMessage()));
+			return;
 		}
 		
 		// also notify all the registered notifyables.
 		try {
-			toNotify.notify(binaryEncoded, metaData.getReaderName());
+			if (binaryEncoded != null) {
+				toNotify.notify(binaryEncoded, metaData.getReaderName());
+			} else {
+				toNotify.notify(message, metaData.getReaderName());
+			}
 		} catch (RemoteException e) {
 			reportException(new LLRPRuntimeException(e.getMessage()));
 		}
@@ -434,6 +656,11 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 	public boolean isClientInitiated() throws RemoteException {
 		return metaData.isClientInitiated();
 	}
+	
+	@Override
+	public ReaderQueueSettings getQueueSettings() throws RemoteException {
+		return (null == queueSettings) ? null : new ReaderQueueSettings(queueSettings);
+	}
 
 	@Override
 	public void setClientInitiated(boolean clientInitiated) throws RemoteException {
@@ -516,33 +743,27 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 			log.error("the given heartbeat message is illegal.", e);
 		}
 		
-		// run the watch-dog
-		watchDog = new Thread(new Runnable() {
+		// register the deadline at the shared keep-alive scheduler.
+		final long window = metaData.getAllowNKeepAliveMisses() * metaData.getKeepAlivePeriod();
+		KeepAliveScheduler.Watch old = watchDog;
+		if (null != old) {
+			old.cancel();
+		}
+		log.debug("starting connection watchdog.");
+		watchDog = KeepAliveScheduler.getInstance().watch(metaData.getReaderName(), window, new Runnable() {
 			public void run() {
-				log.debug("starting connection watchdog.");
+				log.debug("connection timed out...");
+				metaData.setAlive(false);
 				try {
-					while (isConnected()) {
-						try {
-							Thread.sleep(metaData.getAllowNKeepAliveMisses() * metaData.getKeepAlivePeriod());
-							if (!metaData.isAlive()) {
-								log.debug("connection timed out...");
-								disconnect();
-								if (throwExceptionKeepAlive) {
-									reportException(new LLRPRuntimeException("Connection timed out", LLRPExceptionHandlerTypeMap.EXCEPTION_READER_LOST));
-								}
-							}
-							metaData.setAlive(false);
-						} catch (InterruptedException e) {
-							log.debug("received interrupt - stopping watchdog.");
-						}
-					}
+					disconnect();
 				} catch (RemoteException e) {
-					log.error("could not connect to the reader with the watchdog.", e);
+					log.error("could not disconnect the reader with the watchdog.", e);
+				}
+				if (throwExceptionKeepAlive) {
+					reportException(new LLRPRuntimeException("Connection timed out", LLRPExceptionHandlerTypeMap.EXCEPTION_READER_LOST));
 				}
-				log.debug("connection watchdog stopped.");
 			}
-		});
-		watchDog.start();
+		}, metrics);
 	}
 
 	/* (non-Javadoc)
@@ -576,62 +797,126 @@ public class ReaderImpl extends UnicastRemoteObject implements LLRPEndpoint, Rea
 
 	@Override
 	public final ReaderMetaData getMetaData() throws RemoteException {
-		return new ReaderMetaData(metaData);
+		ReaderMetaData copy = new ReaderMetaData(metaData);
+		copy.setPackagesReceived(clamp(metrics.getMessagesIn()));
+		copy.setPackagesSent(clamp(metrics.getMessagesOut()));
+		copy.setPackagesCurrentSessionReceived(clamp(metrics.getSessionMessagesIn()));
+		copy.setPackagesCurrentSessionSent(clamp(metrics.getSessionMessagesOut()));
+		return copy;
 	}
 	
 	/**
-	 * creates a runnable that watches the out queue for new messages to be 
-	 * sent. at arrival of a new message, the message is sent via LTK.
-	 * @return a runnable.
+	 * @param value a counter value.
+	 * @return the value limited to the range of an int.
 	 */
-	private Runnable getOutQueueWorker() {
-		return new Runnable() {
-			public void run() {
+	private static int clamp(long value) {
+		return (int) Math.min(Integer.MAX_VALUE, value);
+	}
+	
+	@Override
+	public ReaderMetricsSnapshot getMetrics() throws RemoteException {
+		return metrics.snapshot();
+	}
+	
+	/**
+	 * @return the live metrics of this reader.
+	 */
+	public ReaderMetrics getReaderMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * @return the timeout in ms for a connection attempt to the reader.
+	 */
+	public long getConnectTimeout() {
+		return connectTimeout;
+	}
+	
+	/**
+	 * sets the timeout for a connection attempt to the reader (client 
+	 * initiated connections only).
+	 * @param connectTimeout the timeout in ms (must be positive).
+	 */
+	public void setConnectTimeout(long connectTimeout) {
+		if (connectTimeout <= 0) {
+			throw new IllegalArgumentException("connect timeout must be positive: " + connectTimeout);
+		}
+		this.connectTimeout = connectTimeout;
+	}
+	
+	/**
+	 * @return the queue holding the incoming messages.
+	 */
+	public MessageQueue<LLRPMessage> getInQueue() {
+		return inqueue;
+	}
+	
+	/**
+	 * replaces the queue holding the incoming messages (eg. to change the 
+	 * capacity, the overflow policy or the wait strategy). must be invoked 
+	 * before the reader gets connected. readers created by an adaptor are 
+	 * configured via {@link ReaderQueueSettings} instead. the queue is not 
+	 * reflected by {@link #getQueueSettings()}.
+	 * @param inqueue the new queue.
+	 */
+	public void setInQueue(MessageQueue<LLRPMessage> inqueue) {
+		if (null == inqueue) {
+			throw new IllegalArgumentException("queue must not be null");
+		}
+		this.inqueue = inqueue;
+		metrics.setInQueue(inqueue);
+	}
+	
+	/**
+	 * @return the queue holding the outgoing messages.
+	 */
+	public MessageQueue<LLRPMessage> getOutQueue() {
+		return outqueue;
+	}
+	
+	/**
+	 * replaces the queue holding the outgoing messages. must be invoked 
+	 * before the reader gets connected (see {@link #setInQueue(MessageQueue)}).
+	 * @param outqueue the new queue.
+	 */
+	public void setOutQueue(MessageQueue<LLRPMessage> outqueue) {
+		if (null == outqueue) {
+			throw new IllegalArgumentException("queue must not be null");
+		}
+		this.outqueue = outqueue;
+		metrics.setOutQueue(outqueue);
+	}
+	
+	/**
+	 * creates a worker that drains the out queue. the messages are sent via 
+	 * LTK.
+	 * @return a worker running on the shared executor.
+	 */
+	private SerialQueueWorker<LLRPMessage> getOutQueueWorker() {
+		return new SerialQueueWorker<LLRPMessage>(outqueue) {
+			@Override
+			protected void process(LLRPMessage msg) {
 				try {
-					while (true) {
-						synchronized (outqueue) {
-							while (outqueue.isEmpty()) {
-								outqueue.wait(PERIODICAL_WAKEUP_TIME);
-							}
-							
-							LLRPMessage msg = outqueue.remove();
-							try {
-								sendLLRPMessage(msg);
-							} catch (RemoteException e) {
-								log.debug(String.format("Could not send message: %s", e.getMessage()), e);
-							}
-						}
-					}
-				} catch (InterruptedException e) {
-					log.debug("stopping out queue worker.");
+					sendLLRPMessage(msg);
+				} catch (RemoteException e) {
+					log.debug(String.format("Could not send message: %s", e.getMessage()), e);
 				}
 			}
 		};
 	}
 	
 	/**
-	 * creates a runnable that watches the in queue for new messages and at 
-	 * arrival, delivers them to the management.
-	 * @return a runnable.
+	 * creates a worker that drains the in queue and delivers the messages 
+	 * to the management. no lock is held while delivering, so the network 
+	 * thread can always enqueue new messages.
+	 * @return a worker running on the shared executor.
 	 */
-	private Runnable getInQueueWorker() {
-		return new Runnable() {
-			public void run() {
-				try {
-					synchronized (inqueue) {
-						while (true) {
-							while (inqueue.isEmpty()) {
-								inqueue.wait(PERIODICAL_WAKEUP_TIME);
-							}
-							
-							byte[] msg = inqueue.remove();
-							deliverMessage(msg);
-						}
-					}
-				} catch (InterruptedException e) {
-					log.debug("stopping in queue worker.");
-				}
-			}			
+	private SerialQueueWorker<LLRPMessage> getInQueueWorker() {
+		return new SerialQueueWorker<LLRPMessage>(inqueue) {
+			@Override
+			protected void process(LLRPMessage msg) {
+				deliverMessage(msg);
+			}
 		};
 	}
 
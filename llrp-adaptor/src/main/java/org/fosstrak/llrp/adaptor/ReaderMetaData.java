@@ -113,15 +113,17 @@ public class ReaderMetaData implements Remote, Serializable  {
 	/**
 	 * starts a new session.
 	 */
-	public void newSession() {
+	public synchronized void newSession() {
 		packagesCurrentSessionReceived = 0;
 		packagesCurrentSessionSent = 0;
 	}
 	
 	/**
-	 * increases the number of received packages by one.
+	 * increases the number of received packages by one. the readers keep 
+	 * their counters in {@link org.fosstrak.llrp.adaptor.metrics.ReaderMetrics} 
+	 * and only copy them into the meta data handed out.
 	 */
-	public void packageReceived() {
+	public synchronized void packageReceived() {
 		packagesReceived++;
 		packagesCurrentSessionReceived++;
 	}
@@ -129,7 +131,7 @@ public class ReaderMetaData implements Remote, Serializable  {
 	/**
 	 * increases the number of sent packages by one.
 	 */
-	public void packageSent() {
+	public synchronized void packageSent() {
 		packagesSent++;
 		packagesCurrentSessionSent++;
 	}
@@ -0,0 +1,315 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.adaptor;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.fosstrak.llrp.adaptor.queue.MessageQueue;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
+
+/**
+ * the settings of the queues of a reader (see {@link ReaderImpl#getInQueue()} 
+ * and {@link ReaderImpl#getOutQueue()}). the settings are handed to the 
+ * reader upon its definition (see {@link Adaptor#define(String, String, int, 
+ * boolean, boolean, ReaderQueueSettings)}) and are kept by the reader. a 
+ * setting left null falls back to the default settings.<br/>
+ * <br/>
+ * the defaults apply to all the readers of the virtual machine. they are 
+ * configured from the read parameters of the {@link AdaptorManagement} (see 
+ * {@link #configure(Map)}).
+ * @author sawielan
+ *
+ */
+public class ReaderQueueSettings implements Serializable {
+	
+	/** serial version. */
+	private static final long serialVersionUID = 1L;
+	
+	/** key in the read parameters for the default capacity of the in queue. */
+	public static final String KEY_IN_QUEUE_CAPACITY = "readerInQueueCapacity";
+	
+	/** key in the read parameters for the default capacity of the out queue. */
+	public static final String KEY_OUT_QUEUE_CAPACITY = "readerOutQueueCapacity";
+	
+	/** key in the read parameters for the default overflow policy. */
+	public static final String KEY_OVERFLOW_POLICY = "readerQueueOverflowPolicy";
+	
+	/** key in the read parameters for the default wait strategy. */
+	public static final String KEY_WAIT_STRATEGY = "readerQueueWaitStrategy";
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(ReaderQueueSettings.class);
+	
+	/** the default settings. */
+	private static volatile ReaderQueueSettings defaults = createDefaults();
+	
+	/** the capacity of the in queue. */
+	private Integer inQueueCapacity = null;
+	
+	/** the capacity of the out queue. */
+	private Integer outQueueCapacity = null;
+	
+	/** what to do when a queue is full. */
+	private OverflowPolicy overflowPolicy = null;
+	
+	/** how to wait for messages. */
+	private WaitStrategy waitStrategy = null;
+	
+	/**
+	 * creates settings falling back to the defaults.
+	 */
+	public ReaderQueueSettings() {
+	}
+	
+	/**
+	 * creates a copy of the given settings.
+	 * @param settings the settings to copy.
+	 */
+	public ReaderQueueSettings(ReaderQueueSettings settings) {
+		inQueueCapacity = settings.inQueueCapacity;
+		outQueueCapacity = settings.outQueueCapacity;
+		overflowPolicy = settings.overflowPolicy;
+		waitStrategy = settings.waitStrategy;
+	}
+	
+	/**
+	 * @return the capacity of the in queue (null for the default).
+	 */
+	public Integer getInQueueCapacity() {
+		return inQueueCapacity;
+	}
+	
+	/**
+	 * @param inQueueCapacity the capacity of the in queue (null for the default).
+	 */
+	public void setInQueueCapacity(Integer inQueueCapacity) {
+		checkCapacity(inQueueCapacity);
+		this.inQueueCapacity = inQueueCapacity;
+	}
+	
+	/**
+	 * @return the capacity of the out queue (null for the default).
+	 */
+	public Integer getOutQueueCapacity() {
+		return outQueueCapacity;
+	}
+	
+	/**
+	 * @param outQueueCapacity the capacity of the out queue (null for the default).
+	 */
+	public void setOutQueueCapacity(Integer outQueueCapacity) {
+		checkCapacity(outQueueCapacity);
+		this.outQueueCapacity = outQueueCapacity;
+	}
+	
+	/**
+	 * @return what to do when a queue is full (null for the default).
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * sets what to do when a queue is full. be aware that 
+	 * {@link OverflowPolicy#BLOCK} lets the network thread wait for the 
+	 * handlers when the in queue is full.
+	 * @param overflowPolicy the overflow policy (null for the default).
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+	
+	/**
+	 * @return how to wait for messages (null for the default).
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+	
+	/**
+	 * @param waitStrategy how to wait for messages (null for the default).
+	 */
+	public void setWaitStrategy(WaitStrategy waitStrategy) {
+		this.waitStrategy = waitStrategy;
+	}
+	
+	/**
+	 * @return true if all the settings fall back to the defaults.
+	 */
+	public boolean isEmpty() {
+		return (null == inQueueCapacity) && (null == outQueueCapacity) 
+			&& (null == overflowPolicy) && (null == waitStrategy);
+	}
+	
+	/**
+	 * parses and sets a setting given by a key of the read parameters.
+	 * @param key the key without the reader name (eg. {@link #KEY_IN_QUEUE_CAPACITY}).
+	 * @param value the value.
+	 * @throws IllegalArgumentException when the key is unknown or the value illegal.
+	 */
+	private void set(String key, String value) {
+		if (KEY_IN_QUEUE_CAPACITY.equals(key)) {
+			setInQueueCapacity(Integer.parseInt(value));
+		} else if (KEY_OUT_QUEUE_CAPACITY.equals(key)) {
+			setOutQueueCapacity(Integer.parseInt(value));
+		} else if (KEY_OVERFLOW_POLICY.equals(key)) {
+			setOverflowPolicy(OverflowPolicy.valueOf(value));
+		} else if (KEY_WAIT_STRATEGY.equals(key)) {
+			setWaitStrategy(WaitStrategy.valueOf(value));
+		} else {
+			throw new IllegalArgumentException("unknown key " + key);
+		}
+	}
+	
+	/**
+	 * @param capacity the capacity to check (might be null).
+	 * @throws IllegalArgumentException when the capacity is not positive.
+	 */
+	private static void checkCapacity(Integer capacity) {
+		if ((null != capacity) && (capacity < 1)) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("in:%s, out:%s, overflow:%s, wait:%s", 
+				inQueueCapacity, outQueueCapacity, overflowPolicy, waitStrategy);
+	}
+	
+	/**
+	 * @return the built-in defaults.
+	 */
+	private static ReaderQueueSettings createDefaults() {
+		ReaderQueueSettings settings = new ReaderQueueSettings();
+		settings.inQueueCapacity = ReaderImpl.DEFAULT_IN_QUEUE_CAPACITY;
+		settings.outQueueCapacity = ReaderImpl.DEFAULT_OUT_QUEUE_CAPACITY;
+		settings.overflowPolicy = OverflowPolicy.DROP_NEWEST;
+		settings.waitStrategy = WaitStrategy.PARK;
+		return settings;
+	}
+	
+	/**
+	 * configures the defaults from the given parameters (see 
+	 * {@link #KEY_IN_QUEUE_CAPACITY}, {@link #KEY_OUT_QUEUE_CAPACITY}, 
+	 * {@link #KEY_OVERFLOW_POLICY} and {@link #KEY_WAIT_STRATEGY}). applies 
+	 * to readers created afterwards. missing or illegal values are ignored.
+	 * @param parameters the parameters (might be null).
+	 */
+	public static synchronized void configure(Map<String, Object> parameters) {
+		if (null == parameters) {
+			return;
+		}
+		final String[] keys = new String[] { 
+				KEY_IN_QUEUE_CAPACITY, KEY_OUT_QUEUE_CAPACITY, KEY_OVERFLOW_POLICY, KEY_WAIT_STRATEGY };
+		ReaderQueueSettings settings = new ReaderQueueSettings(defaults);
+		for (String key : keys) {
+			Object value = parameters.get(key);
+			if (null == value) {
+				continue;
+			}
+			try {
+				settings.set(key, value.toString().trim());
+			} catch (IllegalArgumentException e) {
+				log.error(String.format("illegal value for %s: %s", key, value));
+			}
+		}
+		defaults = settings;
+	}
+	
+	/**
+	 * @return a copy of the default settings.
+	 */
+	public static ReaderQueueSettings getDefaults() {
+		return new ReaderQueueSettings(defaults);
+	}
+	
+	/**
+	 * sets the default settings. settings left null keep their current 
+	 * default. applies to readers created afterwards.
+	 * @param settings the new defaults.
+	 */
+	public static synchronized void setDefaults(ReaderQueueSettings settings) {
+		ReaderQueueSettings merged = new ReaderQueueSettings(defaults);
+		if (null != settings.inQueueCapacity) {
+			merged.inQueueCapacity = settings.inQueueCapacity;
+		}
+		if (null != settings.outQueueCapacity) {
+			merged.outQueueCapacity = settings.outQueueCapacity;
+		}
+		if (null != settings.overflowPolicy) {
+			merged.overflowPolicy = settings.overflowPolicy;
+		}
+		if (null != settings.waitStrategy) {
+			merged.waitStrategy = settings.waitStrategy;
+		}
+		defaults = merged;
+	}
+	
+	/**
+	 * resets the defaults to the built-in values.
+	 */
+	public static synchronized void reset() {
+		defaults = createDefaults();
+	}
+	
+	/**
+	 * creates the queue holding the incoming messages of a reader.
+	 * @param <E> the type of the messages.
+	 * @return the queue.
+	 */
+	public <E> MessageQueue<E> createInQueue() {
+		return createQueue(true);
+	}
+	
+	/**
+	 * creates the queue holding the outgoing messages of a reader.
+	 * @param <E> the type of the messages.
+	 * @return the queue.
+	 */
+	public <E> MessageQueue<E> createOutQueue() {
+		return createQueue(false);
+	}
+	
+	/**
+	 * creates a queue from these settings. the settings left null are taken 
+	 * from the defaults.
+	 * @param <E> the type of the messages.
+	 * @param in whether to create the in queue or the out queue.
+	 * @return the queue.
+	 */
+	private <E> MessageQueue<E> createQueue(boolean in) {
+		final ReaderQueueSettings fallback = defaults;
+		Integer capacity = in ? inQueueCapacity : outQueueCapacity;
+		if (null == capacity) {
+			capacity = in ? fallback.inQueueCapacity : fallback.outQueueCapacity;
+		}
+		OverflowPolicy policy = (null == overflowPolicy) ? fallback.overflowPolicy : overflowPolicy;
+		WaitStrategy strategy = (null == waitStrategy) ? fallback.waitStrategy : waitStrategy;
+		return new RingBufferQueue<E> (capacity, policy, strategy);
+	}
+}
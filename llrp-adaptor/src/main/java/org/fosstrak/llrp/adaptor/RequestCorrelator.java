@@ -0,0 +1,335 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.metrics.LatencyHistogram;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
+import org.fosstrak.llrp.client.MessageHandler;
+import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.UnsignedInteger;
+
+/**
+ * correlates requests sent to the readers with their responses. the 
+ * correlator assigns a message ID to every request, keeps the request in a 
+ * table of pending requests and completes the returned 
+ * {@link ResponseFuture} when the reader answers with the same message ID. 
+ * callers can therefore pipeline several commands instead of sending one 
+ * after the other and matching the responses in a {@link MessageHandler}.<br/>
+ * <br/>
+ * a request without response fails after its timeout. the number of 
+ * outstanding requests per reader is bounded, further requests fail 
+ * immediately. the round-trip times of the answered requests are recorded.
+ * <br/>
+ * <br/>
+ * the correlator only assigns message IDs with the highest bit set 
+ * ({@link #ID_TAG}) and ignores all the other messages, so answers to 
+ * messages sent through other channels (eg. the GUI or the message 
+ * templates, numbered from 1 on) cannot complete a pending request.
+ * <br/>
+ * <br/>
+ * <code>RequestCorrelator correlator = new RequestCorrelator(AdaptorManagement.getInstance());</code><br/>
+ * <code>correlator.start();</code><br/>
+ * <code>ResponseFuture response = correlator.request(adaptorName, readerName, new GET_READER_CAPABILITIES());</code><br/>
+ * <code>LLRPMessage answer = response.get();</code><br/>
+ * @author sawielan
+ *
+ */
+public class RequestCorrelator implements MessageHandler {
+	
+	/** the default time in ms to wait for a response. */
+	public static final long DEFAULT_TIMEOUT = 10000L;
+	
+	/** the default maximum number of outstanding requests per reader. */
+	public static final int DEFAULT_MAX_OUTSTANDING = 64;
+	
+	/** the bit set in all the message IDs assigned by the correlator. */
+	public static final long ID_TAG = 0x80000000L;
+	
+	/** the name of the LLRP error message (answers any request). */
+	static final String ERROR_MESSAGE = "ERROR_MESSAGE";
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(RequestCorrelator.class);
+	
+	/** the management sending the requests. */
+	private final AdaptorManagement management;
+	
+	/** the maximum number of outstanding requests per reader. */
+	private final int maxOutstanding;
+	
+	/** the time in ms to wait for a response. */
+	private final long timeout;
+	
+	/** the pending requests by adaptor and reader. */
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, ReaderRequests>> requests = 
+		new ConcurrentHashMap<String, ConcurrentHashMap<String, ReaderRequests>> ();
+	
+	/** the next message ID (without the tag). */
+	private final AtomicLong nextID = new AtomicLong(1);
+	
+	/** the number of outstanding requests over all the readers. */
+	private final AtomicInteger outstanding = new AtomicInteger(0);
+	
+	/** the round-trip times of the answered requests. */
+	private final LatencyHistogram roundTrips = new LatencyHistogram();
+	
+	/**
+	 * creates a correlator with the default limits.
+	 * @param management the management sending the requests.
+	 */
+	public RequestCorrelator(AdaptorManagement management) {
+		this(management, DEFAULT_MAX_OUTSTANDING, DEFAULT_TIMEOUT);
+	}
+	
+	/**
+	 * creates a correlator.
+	 * @param management the management sending the requests.
+	 * @param maxOutstanding the maximum number of outstanding requests per reader.
+	 * @param timeout the default time in ms to wait for a response.
+	 */
+	public RequestCorrelator(AdaptorManagement management, int maxOutstanding, long timeout) {
+		if ((maxOutstanding < 1) || (timeout < 1)) {
+			throw new IllegalArgumentException(String.format(
+					"illegal maximum %d or timeout %d", maxOutstanding, timeout));
+		}
+		this.management = management;
+		this.maxOutstanding = maxOutstanding;
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * registers the correlator for the messages of all the readers.
+	 */
+	public void start() {
+		management.registerFullHandler(this);
+	}
+	
+	/**
+	 * deregisters the correlator and fails all the outstanding requests.
+	 */
+	public void stop() {
+		management.deregisterFullHandler(this);
+		List<ResponseFuture> pending = new ArrayList<ResponseFuture> ();
+		for (ConcurrentHashMap<String, ReaderRequests> readers : requests.values()) {
+			for (ReaderRequests r : readers.values()) {
+				pending.addAll(r.pending.values());
+			}
+		}
+		for (ResponseFuture future : pending) {
+			future.fail(new LLRPRuntimeException("request correlator stopped"));
+		}
+	}
+	
+	/**
+	 * sends a request with the default timeout.
+	 * @param adaptorName the name of the adaptor holding the reader.
+	 * @param readerName the name of the reader.
+	 * @param request the request (its message ID gets overwritten).
+	 * @return the future of the response.
+	 */
+	public ResponseFuture request(String adaptorName, String readerName, LLRPMessage request) {
+		return request(adaptorName, readerName, request, timeout);
+	}
+	
+	/**
+	 * sends a request. the method does not block and does not throw, every 
+	 * failure is reported through the future.
+	 * @param adaptorName the name of the adaptor holding the reader.
+	 * @param readerName the name of the reader.
+	 * @param request the request (its message ID gets overwritten).
+	 * @param timeout the time in ms to wait for the response.
+	 * @return the future of the response.
+	 */
+	public ResponseFuture request(String adaptorName, final String readerName, LLRPMessage request, long timeout) {
+		final long messageID = ID_TAG | (nextID.getAndIncrement() & ~ID_TAG & 0xFFFFFFFFL);
+		final ReaderRequests r = readerRequests(adaptorName, readerName);
+		if (!r.permits.tryAcquire()) {
+			ResponseFuture rejected = new ResponseFuture(null, messageID, request.getResponseType());
+			rejected.fail(new LLRPRuntimeException(String.format(
+					"too many outstanding requests on reader %s (%d)", readerName, maxOutstanding)));
+			return rejected;
+		}
+		
+		final ResponseFuture future = new ResponseFuture(r, messageID, request.getResponseType());
+		request.setMessageID(new UnsignedInteger(messageID));
+		r.pending.put(messageID, future);
+		outstanding.incrementAndGet();
+		
+		future.setTimeoutTask(SharedExecutor.getScheduler().schedule(new Runnable() {
+			public void run() {
+				if (future.fail(new TimeoutException(String.format(
+						"no response to request %d on reader %s", messageID, readerName)))) {
+					log.debug(String.format("request %d on reader %s timed out", messageID, readerName));
+				}
+			}
+		}, timeout, TimeUnit.MILLISECONDS));
+		
+		final SendFuture sent = send(adaptorName, readerName, request);
+		sent.addListener(new Runnable() {
+			public void run() {
+				if (sent.isFailed()) {
+					future.fail(sent.getFailure());
+				}
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * hands a request to the management.
+	 * @param adaptorName the name of the adaptor holding the reader.
+	 * @param readerName the name of the reader.
+	 * @param request the request.
+	 * @return the future of the sending.
+	 */
+	protected SendFuture send(String adaptorName, String readerName, LLRPMessage request) {
+		return management.enqueueLLRPMessageAsync(adaptorName, readerName, request);
+	}
+	
+	/**
+	 * completes the pending request answered by the message (if any). 
+	 * returns immediately when there are no outstanding requests.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param message the message received from the reader.
+	 */
+	public void handle(String adaptorName, String readerName, LLRPMessage message) {
+		if ((outstanding.get() == 0) || (null == message)) {
+			return;
+		}
+		ConcurrentHashMap<String, ReaderRequests> readers = requests.get(adaptorName);
+		ReaderRequests r = (null == readers) ? null : readers.get(readerName);
+		if ((null == r) || r.pending.isEmpty() || (null == message.getMessageID())) {
+			return;
+		}
+		long messageID = message.getMessageID().toLong();
+		if ((messageID & ID_TAG) == 0) {
+			return;
+		}
+		ResponseFuture future = r.pending.get(messageID);
+		if ((null != future) && future.isResponse(message) && future.complete(message)) {
+			roundTrips.record(future.getRoundTripNanos());
+		}
+	}
+	
+	/**
+	 * returns the requests of a reader and creates the entry if needed.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the requests of the reader.
+	 */
+	private ReaderRequests readerRequests(String adaptorName, String readerName) {
+		ConcurrentHashMap<String, ReaderRequests> readers = requests.get(adaptorName);
+		if (null == readers) {
+			ConcurrentHashMap<String, ReaderRequests> created = new ConcurrentHashMap<String, ReaderRequests> ();
+			readers = requests.putIfAbsent(adaptorName, created);
+			if (null == readers) {
+				readers = created;
+			}
+		}
+		ReaderRequests r = readers.get(readerName);
+		if (null == r) {
+			ReaderRequests created = new ReaderRequests();
+			r = readers.putIfAbsent(readerName, created);
+			if (null == r) {
+				r = created;
+			}
+		}
+		return r;
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the number of outstanding requests on the reader.
+	 */
+	public int getOutstanding(String adaptorName, String readerName) {
+		ConcurrentHashMap<String, ReaderRequests> readers = requests.get(adaptorName);
+		ReaderRequests r = (null == readers) ? null : readers.get(readerName);
+		return (null == r) ? 0 : r.pending.size();
+	}
+	
+	/**
+	 * @return the number of outstanding requests over all the readers.
+	 */
+	public int getOutstanding() {
+		return outstanding.get();
+	}
+	
+	/**
+	 * @return the round-trip times (request to response) of the answered 
+	 * requests.
+	 */
+	public LatencyHistogram getRoundTripLatency() {
+		return roundTrips;
+	}
+	
+	/**
+	 * @return the maximum number of outstanding requests per reader.
+	 */
+	public int getMaxOutstanding() {
+		return maxOutstanding;
+	}
+	
+	/**
+	 * @return the default time in ms to wait for a response.
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+	
+	/**
+	 * the outstanding requests of one reader.
+	 */
+	final class ReaderRequests {
+		
+		/** bounds the number of outstanding requests. */
+		private final Semaphore permits = new Semaphore(maxOutstanding);
+		
+		/** the pending requests by message ID. */
+		private final ConcurrentHashMap<Long, ResponseFuture> pending = 
+			new ConcurrentHashMap<Long, ResponseFuture> ();
+		
+		/**
+		 * removes a request once its future is done.
+		 * @param future the future.
+		 */
+		void finished(ResponseFuture future) {
+			if (pending.remove(future.getMessageID(), future)) {
+				permits.release();
+				outstanding.decrementAndGet();
+			}
+		}
+	}
+}
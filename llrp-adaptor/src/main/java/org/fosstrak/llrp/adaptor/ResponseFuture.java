@@ -0,0 +1,226 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * the response to a request sent through the {@link RequestCorrelator}. the 
+ * future is completed with the response carrying the message ID of the 
+ * request (the expected response or an <code>ERROR_MESSAGE</code>). it fails 
+ * when the request could not be sent, when no response arrived in time or 
+ * when the correlator has been stopped.
+ * @author sawielan
+ *
+ */
+public class ResponseFuture implements Future<LLRPMessage> {
+	
+	/** the correlator holding the request (null if never registered). */
+	private final RequestCorrelator.ReaderRequests owner;
+	
+	/** the message ID of the request. */
+	private final long messageID;
+	
+	/** the name of the expected response. */
+	private final String responseType;
+	
+	/** when the request was issued (nanoseconds). */
+	private final long issued = System.nanoTime();
+	
+	/** released once the future is done. */
+	private final CountDownLatch done = new CountDownLatch(1);
+	
+	/** set by the first completion. */
+	private final AtomicBoolean completed = new AtomicBoolean(false);
+	
+	/** the response. */
+	private volatile LLRPMessage response = null;
+	
+	/** the cause of the failure (null if answered). */
+	private volatile Throwable failure = null;
+	
+	/** set if the future has been cancelled. */
+	private volatile boolean cancelled = false;
+	
+	/** the time in nanoseconds between request and response (-1 if not answered). */
+	private volatile long roundTrip = -1;
+	
+	/** fails the future when no response arrived in time. */
+	private volatile ScheduledFuture<?> timeoutTask = null;
+	
+	/**
+	 * creates a future.
+	 * @param owner the requests of the reader (null if never registered).
+	 * @param messageID the message ID of the request.
+	 * @param responseType the name of the expected response.
+	 */
+	ResponseFuture(RequestCorrelator.ReaderRequests owner, long messageID, String responseType) {
+		this.owner = owner;
+		this.messageID = messageID;
+		this.responseType = responseType;
+	}
+	
+	/**
+	 * @param timeoutTask the task failing the future upon timeout.
+	 */
+	void setTimeoutTask(ScheduledFuture<?> timeoutTask) {
+		this.timeoutTask = timeoutTask;
+		if (isDone()) {
+			timeoutTask.cancel(false);
+		}
+	}
+	
+	/**
+	 * @param message a message received from the reader.
+	 * @return true if the message answers this request.
+	 */
+	boolean isResponse(LLRPMessage message) {
+		final String name = message.getName();
+		return name.equals(responseType) || name.equals(RequestCorrelator.ERROR_MESSAGE);
+	}
+	
+	/**
+	 * completes the future with the response.
+	 * @param message the response.
+	 * @return false if the future was already done.
+	 */
+	boolean complete(LLRPMessage message) {
+		if (!completed.compareAndSet(false, true)) {
+			return false;
+		}
+		roundTrip = System.nanoTime() - issued;
+		response = message;
+		finish();
+		return true;
+	}
+	
+	/**
+	 * fails the future.
+	 * @param cause the cause of the failure.
+	 * @return false if the future was already done.
+	 */
+	boolean fail(Throwable cause) {
+		if (!completed.compareAndSet(false, true)) {
+			return false;
+		}
+		failure = cause;
+		finish();
+		return true;
+	}
+	
+	/**
+	 * releases the waiting threads and removes the request from the 
+	 * correlator.
+	 */
+	private void finish() {
+		ScheduledFuture<?> task = timeoutTask;
+		if (null != task) {
+			task.cancel(false);
+		}
+		if (null != owner) {
+			owner.finished(this);
+		}
+		// waiters see the request already removed from the correlator.
+		done.countDown();
+	}
+	
+	/**
+	 * @return the message ID assigned to the request.
+	 */
+	public long getMessageID() {
+		return messageID;
+	}
+	
+	/**
+	 * @return the time in nanoseconds between request and response or -1 if 
+	 * there is no response (yet).
+	 */
+	public long getRoundTripNanos() {
+		return roundTrip;
+	}
+	
+	/**
+	 * @return true if the request failed (or has been cancelled).
+	 */
+	public boolean isFailed() {
+		return isDone() && (null != failure);
+	}
+
+	/**
+	 * stops waiting for the response. the request itself might already be 
+	 * sent to the reader.
+	 * @param mayInterruptIfRunning ignored.
+	 * @return false if the future was already done.
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (!completed.compareAndSet(false, true)) {
+			return false;
+		}
+		cancelled = true;
+		failure = new CancellationException("request cancelled");
+		finish();
+		return true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	public LLRPMessage get() throws InterruptedException, ExecutionException {
+		done.await();
+		return result();
+	}
+
+	public LLRPMessage get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!done.await(timeout, unit)) {
+			throw new TimeoutException("no response yet");
+		}
+		return result();
+	}
+	
+	/**
+	 * @return the response.
+	 * @throws ExecutionException if the request failed.
+	 */
+	private LLRPMessage result() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException("request cancelled");
+		}
+		if (null != failure) {
+			throw new ExecutionException(failure);
+		}
+		return response;
+	}
+}
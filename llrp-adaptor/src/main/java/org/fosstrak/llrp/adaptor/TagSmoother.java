@@ -0,0 +1,606 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.fosstrak.llrp.adaptor.epc.EPC;
+import org.fosstrak.llrp.adaptor.metrics.StripedCounter;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.AntennaID;
+import org.llrp.ltk.generated.parameters.FirstSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.LastSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.LastSeenTimestampUptime;
+import org.llrp.ltk.generated.parameters.PeakRSSI;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.generated.parameters.TagSeenCount;
+import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.SignedByte;
+import org.llrp.ltk.types.UnsignedLong;
+import org.llrp.ltk.types.UnsignedLong_DATETIME;
+import org.llrp.ltk.types.UnsignedShort;
+
+/**
+ * collapses repeated sightings of a tag before the RO_ACCESS_REPORTs are 
+ * dispatched to the handlers. all the sightings of an EPC on the same 
+ * antenna of a reader within the smoothing window are merged into one 
+ * TagReportData holding the first seen and last seen time stamps (UTC), 
+ * the summed tag seen count and the peak RSSI. the merged TagReportData is 
+ * dispatched in an RO_ACCESS_REPORT of its reader once the window (counted 
+ * from the first sighting) has passed.<br/>
+ * <br/>
+ * the other messages, the TagReportData without EPC and the RF survey and 
+ * custom data of the reports are dispatched immediately. a window of 0 
+ * disables the smoothing. when the number of tags in the window reaches the 
+ * maximum, further tags are dispatched immediately as well.<br/>
+ * <br/>
+ * the open windows are kept in a concurrent map keyed by the binary 
+ * {@link EPC} (no hex strings are built). as all the windows have 
+ * the same length, they expire in the order they were opened and the 
+ * expired windows are taken from the head of a queue (no scan of the map). 
+ * the expired windows are dispatched on the {@link SharedExecutor}.
+ * @author sawielan
+ *
+ */
+public class TagSmoother {
+	
+	/** the default maximum number of tags in the smoothing window. */
+	public static final int DEFAULT_MAX_TAGS = 65536;
+	
+	/** the shortest interval in ms between two checks for expired windows. */
+	private static final long MIN_TICK = 10L;
+	
+	/** microseconds per millisecond. */
+	private static final long MICROS_PER_MILLI = 1000L;
+	
+	/** the largest tag seen count LLRP can report. */
+	private static final int MAX_TAG_COUNT = 0xFFFF;
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(TagSmoother.class);
+	
+	/** the handlers receiving the messages. */
+	private final HandlerRegistry handlers;
+	
+	/** the open windows by tag. */
+	private final ConcurrentHashMap<TagKey, Sighting> sightings = 
+		new ConcurrentHashMap<TagKey, Sighting> ();
+	
+	/** the number of open windows (the map counts all its segments). */
+	private final AtomicInteger size = new AtomicInteger(0);
+	
+	/** the open windows in the order they were opened. */
+	private final ConcurrentLinkedQueue<Sighting> expiry = 
+		new ConcurrentLinkedQueue<Sighting> ();
+	
+	/** the number of TagReportData merged into a window. */
+	private final StripedCounter merged = new StripedCounter();
+	
+	/** the number of merged TagReportData dispatched. */
+	private final StripedCounter emitted = new StripedCounter();
+	
+	/** dispatches the expired windows. */
+	private final Runnable flushExpired = new Runnable() {
+		public void run() {
+			flush(false);
+		}
+	};
+	
+	/** the smoothing window in ms (0 if disabled). */
+	private volatile long window = 0;
+	
+	/** the maximum number of tags in the smoothing window. */
+	private volatile int maxTags = DEFAULT_MAX_TAGS;
+	
+	/** the periodic check for expired windows (null if not scheduled). */
+	private volatile ScheduledFuture<?> tick = null;
+	
+	/**
+	 * creates a smoother (disabled until a window is set).
+	 * @param handlers the handlers receiving the messages.
+	 */
+	public TagSmoother(HandlerRegistry handlers) {
+		this.handlers = handlers;
+	}
+	
+	/**
+	 * sets the smoothing window. the windows already open keep their 
+	 * length.
+	 * @param window the window in ms (0 disables the smoothing and 
+	 * dispatches the open windows).
+	 */
+	public void setWindow(long window) {
+		if (window < 0) {
+			throw new IllegalArgumentException("window must not be negative: " + window);
+		}
+		synchronized (this) {
+			this.window = window;
+			cancelTick();
+		}
+		if (0 == window) {
+			flush(true);
+		}
+	}
+	
+	/**
+	 * @return the smoothing window in ms (0 if disabled).
+	 */
+	public long getWindow() {
+		return window;
+	}
+	
+	/**
+	 * @param maxTags the maximum number of tags in the smoothing window.
+	 */
+	public void setMaxTags(int maxTags) {
+		if (maxTags < 1) {
+			throw new IllegalArgumentException("maximum must be positive: " + maxTags);
+		}
+		this.maxTags = maxTags;
+	}
+	
+	/**
+	 * @return the maximum number of tags in the smoothing window.
+	 */
+	public int getMaxTags() {
+		return maxTags;
+	}
+	
+	/**
+	 * dispatches a message to the handlers. the TagReportData of 
+	 * RO_ACCESS_REPORTs are merged into the smoothing windows.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param message the message.
+	 */
+	public void dispatch(String adaptorName, String readerName, LLRPMessage message) {
+		final long window = this.window;
+		if ((0 == window) || !(message instanceof RO_ACCESS_REPORT)) {
+			handlers.dispatch(adaptorName, readerName, message);
+			return;
+		}
+		RO_ACCESS_REPORT report = (RO_ACCESS_REPORT) message;
+		List<TagReportData> tags = report.getTagReportDataList();
+		if ((null == tags) || tags.isEmpty()) {
+			handlers.dispatch(adaptorName, readerName, message);
+			return;
+		}
+		
+		ensureTick(window);
+		final long now = System.nanoTime();
+		final long deadline = now + TimeUnit.MILLISECONDS.toNanos(window);
+		final long arrival = System.currentTimeMillis() * MICROS_PER_MILLI;
+		List<TagReportData> unmerged = null;
+		for (TagReportData tag : tags) {
+			if (!merge(adaptorName, readerName, tag, arrival, deadline)) {
+				if (null == unmerged) {
+					unmerged = new ArrayList<TagReportData> ();
+				}
+				unmerged.add(tag);
+			}
+		}
+		
+		// dispatch what could not be merged (the message itself is left untouched).
+		if ((null != unmerged) || hasOtherData(report)) {
+			RO_ACCESS_REPORT rest = new RO_ACCESS_REPORT();
+			rest.setMessageID(report.getMessageID());
+			rest.setTagReportDataList((null == unmerged) ? new ArrayList<TagReportData> () : unmerged);
+			if (null != report.getRFSurveyReportDataList()) {
+				rest.setRFSurveyReportDataList(report.getRFSurveyReportDataList());
+			}
+			if (null != report.getCustomList()) {
+				rest.setCustomList(report.getCustomList());
+			}
+			handlers.dispatch(adaptorName, readerName, rest);
+		}
+	}
+	
+	/**
+	 * merges a TagReportData into its window (opens the window if needed).
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param tag the TagReportData.
+	 * @param arrival the arrival time in microseconds (UTC).
+	 * @param deadline the expiry of a new window (see {@link System#nanoTime()}).
+	 * @return false if the TagReportData could not be merged.
+	 */
+	private boolean merge(String adaptorName, String readerName, TagReportData tag, 
+			long arrival, long deadline) {
+		
+		final EPC epc = EPC.fromParameter(tag.getEPCParameter());
+		if (null == epc) {
+			return false;
+		}
+		final TagKey key = new TagKey(adaptorName, readerName, antenna(tag), epc);
+		for (;;) {
+			Sighting sighting = sightings.get(key);
+			if (null == sighting) {
+				// reserve the slot first, so concurrent merges cannot 
+				// exceed the limit.
+				if (size.incrementAndGet() > maxTags) {
+					size.decrementAndGet();
+					return false;
+				}
+				Sighting created = new Sighting(key, tag, arrival, deadline);
+				sighting = sightings.putIfAbsent(key, created);
+				if (null == sighting) {
+					expiry.add(created);
+					merged.increment();
+					return true;
+				}
+				size.decrementAndGet();
+			}
+			if (sighting.add(tag, arrival)) {
+				merged.increment();
+				return true;
+			}
+			// the window got closed meanwhile, open a new one.
+		}
+	}
+	
+	/**
+	 * dispatches the expired windows (or all the windows).
+	 * @param all whether to dispatch all the open windows.
+	 */
+	public void flush(boolean all) {
+		// one flush at a time keeps the order of the windows.
+		synchronized (expiry) {
+			final long now = System.nanoTime();
+			RO_ACCESS_REPORT report = null;
+			TagKey reportKey = null;
+			Sighting sighting;
+			while (null != (sighting = expiry.peek())) {
+				if (!all && (now - sighting.deadline < 0)) {
+					break;
+				}
+				expiry.poll();
+				if (sightings.remove(sighting.key, sighting)) {
+					size.decrementAndGet();
+				}
+				TagReportData tag = sighting.close();
+				
+				// consecutive windows of the same reader share a report.
+				if ((null == reportKey) || !reportKey.sameReader(sighting.key)) {
+					dispatch(reportKey, report);
+					report = new RO_ACCESS_REPORT();
+					reportKey = sighting.key;
+				}
+				report.addToTagReportDataList(tag);
+			}
+			dispatch(reportKey, report);
+		}
+	}
+	
+	/**
+	 * dispatches a report holding merged TagReportData.
+	 * @param key the key of a tag in the report (null if no report).
+	 * @param report the report.
+	 */
+	private void dispatch(TagKey key, RO_ACCESS_REPORT report) {
+		if (null == key) {
+			return;
+		}
+		emitted.add(report.getTagReportDataList().size());
+		try {
+			handlers.dispatch(key.adaptorName, key.readerName, report);
+		} catch (RuntimeException e) {
+			log.error("caught exception while dispatching merged tags.", e);
+		}
+	}
+	
+	/**
+	 * dispatches all the open windows and stops the periodic check. the 
+	 * check gets restarted upon the next report.
+	 */
+	public void stop() {
+		synchronized (this) {
+			cancelTick();
+		}
+		flush(true);
+	}
+	
+	/**
+	 * schedules the periodic check for expired windows unless scheduled.
+	 * @param window the window in ms.
+	 */
+	private void ensureTick(long window) {
+		if (null != tick) {
+			return;
+		}
+		synchronized (this) {
+			if ((null != tick) || (window != this.window)) {
+				return;
+			}
+			final long period = Math.max(MIN_TICK, window / 4);
+			tick = SharedExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					Sighting head = expiry.peek();
+					if ((null == head) || (System.nanoTime() - head.deadline < 0)) {
+						return;
+					}
+					try {
+						// do not block the scheduler with the handlers.
+						SharedExecutor.getExecutor().execute(flushExpired);
+					} catch (RejectedExecutionException e) {
+						log.debug("executor rejected the flush (shutting down?).");
+					}
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * cancels the periodic check (call with the lock held).
+	 */
+	private void cancelTick() {
+		if (null != tick) {
+			tick.cancel(false);
+			tick = null;
+		}
+	}
+	
+	/**
+	 * @return the number of tags in the open windows.
+	 */
+	public int getOpenWindows() {
+		return size.get();
+	}
+	
+	/**
+	 * @return the number of TagReportData merged into a window.
+	 */
+	public long getMergedCount() {
+		return merged.sum();
+	}
+	
+	/**
+	 * @return the number of merged TagReportData dispatched.
+	 */
+	public long getEmittedCount() {
+		return emitted.sum();
+	}
+	
+	/**
+	 * @param report the report.
+	 * @return true if the report holds RF survey or custom data.
+	 */
+	private static boolean hasOtherData(RO_ACCESS_REPORT report) {
+		return ((null != report.getRFSurveyReportDataList()) && !report.getRFSurveyReportDataList().isEmpty())
+			|| ((null != report.getCustomList()) && !report.getCustomList().isEmpty());
+	}
+	
+	/**
+	 * @param tag the TagReportData.
+	 * @return the antenna ID or -1 if none.
+	 */
+	private static int antenna(TagReportData tag) {
+		AntennaID antenna = tag.getAntennaID();
+		if ((null == antenna) || (null == antenna.getAntennaID())) {
+			return -1;
+		}
+		return antenna.getAntennaID().intValue();
+	}
+	
+	/**
+	 * @param value an unsigned microseconds value (might be null).
+	 * @return the microseconds or -1 if null or too large for a long.
+	 */
+	private static long micros(UnsignedLong value) {
+		if (null == value) {
+			return -1;
+		}
+		BigInteger big = value.toBigInteger();
+		if ((null == big) || (big.signum() < 0) || (big.bitLength() > 63)) {
+			return -1;
+		}
+		return big.longValue();
+	}
+	
+	/**
+	 * identifies the tag of a window: EPC on an antenna of a reader.
+	 */
+	private static final class TagKey {
+		
+		/** the name of the adaptor. */
+		private final String adaptorName;
+		
+		/** the name of the reader. */
+		private final String readerName;
+		
+		/** the antenna ID or -1. */
+		private final int antenna;
+		
+		/** the EPC. */
+		private final EPC epc;
+		
+		/** the hash code. */
+		private final int hash;
+		
+		private TagKey(String adaptorName, String readerName, int antenna, EPC epc) {
+			this.adaptorName = adaptorName;
+			this.readerName = readerName;
+			this.antenna = antenna;
+			this.epc = epc;
+			int h = epc.hashCode();
+			h = 31 * h + antenna;
+			h = 31 * h + readerName.hashCode();
+			hash = 31 * h + adaptorName.hashCode();
+		}
+		
+		/**
+		 * @param other another key.
+		 * @return true if both keys belong to the same reader.
+		 */
+		private boolean sameReader(TagKey other) {
+			return readerName.equals(other.readerName) && adaptorName.equals(other.adaptorName);
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof TagKey)) {
+				return false;
+			}
+			TagKey other = (TagKey) obj;
+			return (hash == other.hash) && (antenna == other.antenna) 
+				&& epc.equals(other.epc) && sameReader(other);
+		}
+	}
+	
+	/**
+	 * the merged sightings of a tag within one window.
+	 */
+	private static final class Sighting {
+		
+		/** the tag. */
+		private final TagKey key;
+		
+		/** the first TagReportData (provides the fields not merged). */
+		private final TagReportData first;
+		
+		/** the expiry of the window (see {@link System#nanoTime()}). */
+		private final long deadline;
+		
+		/** the first seen time stamp in microseconds (UTC). */
+		private long firstSeen;
+		
+		/** the last seen time stamp in microseconds (UTC). */
+		private long lastSeen;
+		
+		/** the last seen time stamp since uptime (null if none). */
+		private LastSeenTimestampUptime lastSeenUptime;
+		
+		/** the summed tag seen count. */
+		private int count = 0;
+		
+		/** the peak RSSI (Integer.MIN_VALUE if none). */
+		private int peakRSSI = Integer.MIN_VALUE;
+		
+		/** set once the window got dispatched. */
+		private boolean closed = false;
+		
+		private Sighting(TagKey key, TagReportData first, long arrival, long deadline) {
+			this.key = key;
+			this.first = first;
+			this.deadline = deadline;
+			firstSeen = Long.MAX_VALUE;
+			lastSeen = Long.MIN_VALUE;
+			add(first, arrival);
+		}
+		
+		/**
+		 * merges a TagReportData into the window.
+		 * @param tag the TagReportData.
+		 * @param arrival the arrival time in microseconds (UTC).
+		 * @return false if the window is already closed.
+		 */
+		private synchronized boolean add(TagReportData tag, long arrival) {
+			if (closed) {
+				return false;
+			}
+			long seen = (null == tag.getFirstSeenTimestampUTC()) ? -1 
+					: micros(tag.getFirstSeenTimestampUTC().getMicroseconds());
+			firstSeen = Math.min(firstSeen, (seen < 0) ? arrival : seen);
+			if (null != tag.getLastSeenTimestampUTC()) {
+				seen = Math.max(seen, micros(tag.getLastSeenTimestampUTC().getMicroseconds()));
+			}
+			lastSeen = Math.max(lastSeen, (seen < 0) ? arrival : seen);
+			if (null != tag.getLastSeenTimestampUptime()) {
+				lastSeenUptime = tag.getLastSeenTimestampUptime();
+			}
+			
+			TagSeenCount seenCount = tag.getTagSeenCount();
+			if ((null != seenCount) && (null != seenCount.getTagCount())) {
+				count += seenCount.getTagCount().intValue();
+			} else {
+				count++;
+			}
+			
+			PeakRSSI rssi = tag.getPeakRSSI();
+			if ((null != rssi) && (null != rssi.getPeakRSSI())) {
+				peakRSSI = Math.max(peakRSSI, rssi.getPeakRSSI().toByte());
+			}
+			return true;
+		}
+		
+		/**
+		 * closes the window.
+		 * @return a new TagReportData holding the merged sightings.
+		 */
+		private synchronized TagReportData close() {
+			closed = true;
+			
+			TagReportData tag = new TagReportData();
+			tag.setEPCParameter(first.getEPCParameter());
+			tag.setROSpecID(first.getROSpecID());
+			tag.setSpecIndex(first.getSpecIndex());
+			tag.setInventoryParameterSpecID(first.getInventoryParameterSpecID());
+			tag.setAntennaID(first.getAntennaID());
+			tag.setChannelIndex(first.getChannelIndex());
+			tag.setFirstSeenTimestampUptime(first.getFirstSeenTimestampUptime());
+			tag.setLastSeenTimestampUptime(lastSeenUptime);
+			tag.setAccessSpecID(first.getAccessSpecID());
+			if (null != first.getAirProtocolTagDataList()) {
+				tag.setAirProtocolTagDataList(first.getAirProtocolTagDataList());
+			}
+			if (null != first.getAccessCommandOpSpecResultList()) {
+				tag.setAccessCommandOpSpecResultList(first.getAccessCommandOpSpecResultList());
+			}
+			if (null != first.getCustomList()) {
+				tag.setCustomList(first.getCustomList());
+			}
+			
+			FirstSeenTimestampUTC firstSeenUTC = new FirstSeenTimestampUTC();
+			firstSeenUTC.setMicroseconds(new UnsignedLong_DATETIME(firstSeen));
+			tag.setFirstSeenTimestampUTC(firstSeenUTC);
+			LastSeenTimestampUTC lastSeenUTC = new LastSeenTimestampUTC();
+			lastSeenUTC.setMicroseconds(new UnsignedLong_DATETIME(lastSeen));
+			tag.setLastSeenTimestampUTC(lastSeenUTC);
+			TagSeenCount seenCount = new TagSeenCount();
+			seenCount.setTagCount(new UnsignedShort(Math.min(count, MAX_TAG_COUNT)));
+			tag.setTagSeenCount(seenCount);
+			if (Integer.MIN_VALUE != peakRSSI) {
+				PeakRSSI rssi = new PeakRSSI();
+				rssi.setPeakRSSI(new SignedByte(peakRSSI));
+				tag.setPeakRSSI(rssi);
+			}
+			return tag;
+		}
+	}
+}
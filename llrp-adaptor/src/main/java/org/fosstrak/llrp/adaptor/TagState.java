@@ -0,0 +1,162 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.io.Serializable;
+
+import org.fosstrak.llrp.adaptor.epc.EPC;
+
+/**
+ * the last known state of a tag in the {@link TagStateIndex}: where and 
+ * when the tag was seen last. the state is immutable, every sighting 
+ * replaces it.
+ * @author sawielan
+ *
+ */
+public final class TagState implements Serializable {
+	
+	/** serial id. */
+	private static final long serialVersionUID = 1L;
+	
+	/** the value of the antenna and the RSSI if not reported. */
+	public static final int UNKNOWN = Integer.MIN_VALUE;
+	
+	/** the EPC. */
+	private final EPC epc;
+	
+	/** the name of the adaptor. */
+	private final String adaptorName;
+	
+	/** the name of the reader. */
+	private final String readerName;
+	
+	/** the antenna ID. */
+	private final int antenna;
+	
+	/** the peak RSSI. */
+	private final int peakRSSI;
+	
+	/** the last seen time stamp in microseconds (UTC). */
+	private final long lastSeen;
+	
+	/** the local time in ms when the index got the sighting. */
+	private final long updated;
+	
+	/** the local time in ms when the state got queued for eviction. */
+	final long stamp;
+	
+	/**
+	 * creates a tag state.
+	 * @param epc the EPC.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param antenna the antenna ID (or {@link #UNKNOWN}).
+	 * @param peakRSSI the peak RSSI (or {@link #UNKNOWN}).
+	 * @param lastSeen the last seen time stamp in microseconds (UTC).
+	 * @param updated the local time in ms when the index got the sighting.
+	 * @param stamp the local time in ms when the state got queued for eviction.
+	 */
+	TagState(EPC epc, String adaptorName, String readerName, int antenna, 
+			int peakRSSI, long lastSeen, long updated, long stamp) {
+		
+		this.epc = epc;
+		this.adaptorName = adaptorName;
+		this.readerName = readerName;
+		this.antenna = antenna;
+		this.peakRSSI = peakRSSI;
+		this.lastSeen = lastSeen;
+		this.updated = updated;
+		this.stamp = stamp;
+	}
+	
+	/**
+	 * @param stamp the new eviction stamp.
+	 * @return a copy of this state with another eviction stamp.
+	 */
+	TagState restamp(long stamp) {
+		return new TagState(epc, adaptorName, readerName, antenna, peakRSSI, 
+				lastSeen, updated, stamp);
+	}
+	
+	/**
+	 * @param other another state.
+	 * @return true if both states belong to the same reader.
+	 */
+	boolean sameReader(TagState other) {
+		return readerName.equals(other.readerName) && adaptorName.equals(other.adaptorName);
+	}
+
+	/**
+	 * @return the EPC.
+	 */
+	public EPC getEPC() {
+		return epc;
+	}
+
+	/**
+	 * @return the name of the adaptor.
+	 */
+	public String getAdaptorName() {
+		return adaptorName;
+	}
+
+	/**
+	 * @return the name of the reader.
+	 */
+	public String getReaderName() {
+		return readerName;
+	}
+
+	/**
+	 * @return the antenna ID (or {@link #UNKNOWN}).
+	 */
+	public int getAntenna() {
+		return antenna;
+	}
+
+	/**
+	 * @return the peak RSSI (or {@link #UNKNOWN}).
+	 */
+	public int getPeakRSSI() {
+		return peakRSSI;
+	}
+
+	/**
+	 * @return the last seen time stamp in microseconds (UTC).
+	 */
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * @return the local time in ms when the index got the sighting.
+	 */
+	public long getUpdated() {
+		return updated;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s@%s/%s[antenna=%d, rssi=%d, lastSeen=%d]", 
+				epc, adaptorName, readerName, antenna, peakRSSI, lastSeen);
+	}
+}
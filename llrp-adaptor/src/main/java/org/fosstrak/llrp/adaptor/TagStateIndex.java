@@ -0,0 +1,552 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.fosstrak.llrp.adaptor.epc.EPC;
+import org.fosstrak.llrp.adaptor.epc.EPCHashSet;
+import org.fosstrak.llrp.adaptor.metrics.StripedCounter;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
+import org.fosstrak.llrp.client.MessageHandler;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.AntennaID;
+import org.llrp.ltk.generated.parameters.FirstSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.LastSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.PeakRSSI;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.UnsignedLong;
+
+/**
+ * keeps the last known {@link TagState} of every tag reported in the 
+ * RO_ACCESS_REPORTs: the reader, antenna, peak RSSI and time of the last 
+ * sighting. the index answers "where was EPC X last seen?", lists the tags 
+ * currently at a reader and finds the tags by EPC prefix without going to 
+ * the repository.<br/>
+ * <br/>
+ * the states are kept in a concurrent skip list ordered by EPC (point 
+ * lookups and prefix ranges), reads never lock. a state is immutable and 
+ * replaced upon every sighting. a sighting older than the known one is 
+ * ignored.<br/>
+ * <br/>
+ * the memory is bounded: tags not seen within the time to live are 
+ * removed, and when the index holds more than the maximum number of tags 
+ * the least recently seen tags are evicted. the eviction order is kept in 
+ * a queue; a tag is queued again at most every 1/16 of the time to live, 
+ * so the order is exact up to that granularity.<br/>
+ * <br/>
+ * <code>TagStateIndex index = new TagStateIndex(AdaptorManagement.getInstance());</code><br/>
+ * <code>index.start();</code><br/>
+ * <code>TagState state = index.get(EPC.parse("300833b2ddd9014000000001"));</code><br/>
+ * @author sawielan
+ *
+ */
+public class TagStateIndex implements MessageHandler {
+	
+	/** the default maximum number of tags. */
+	public static final int DEFAULT_MAX_TAGS = 100000;
+	
+	/** the default time to live of a tag in ms. */
+	public static final long DEFAULT_TTL = 3600000L;
+	
+	/** the shortest interval in ms between two sweeps. */
+	private static final long MIN_SWEEP = 10L;
+	
+	/** microseconds per millisecond. */
+	private static final long MICROS_PER_MILLI = 1000L;
+	
+	/** the management feeding the index (null if fed by hand). */
+	private final AdaptorManagement management;
+	
+	/** the maximum number of tags. */
+	private final int maxTags;
+	
+	/** the time to live of a tag in ms. */
+	private final long ttl;
+	
+	/** a tag is queued for eviction at most once per granularity (ms). */
+	private final long granularity;
+	
+	/** the states by EPC. */
+	private final ConcurrentSkipListMap<EPC, TagState> states = 
+		new ConcurrentSkipListMap<EPC, TagState> ();
+	
+	/** the number of states (the skip list counts in linear time). */
+	private final AtomicInteger size = new AtomicInteger(0);
+	
+	/** the tags last seen at a reader. */
+	private final ConcurrentHashMap<String, Set<EPC>> readerTags = 
+		new ConcurrentHashMap<String, Set<EPC>> ();
+	
+	/** the lengths of the EPCs in the index. */
+	private final Set<Integer> lengths = new CopyOnWriteArraySet<Integer> ();
+	
+	/** the eviction order. */
+	private final ConcurrentLinkedQueue<Stamp> order = new ConcurrentLinkedQueue<Stamp> ();
+	
+	/** only one thread evicts at a time. */
+	private final ReentrantLock evicting = new ReentrantLock();
+	
+	/** the number of sightings applied. */
+	private final StripedCounter updates = new StripedCounter();
+	
+	/** the number of evicted tags. */
+	private final StripedCounter evictions = new StripedCounter();
+	
+	/** the periodic removal of expired tags (null if not started). */
+	private ScheduledFuture<?> sweep = null;
+	
+	/**
+	 * creates an index with the default limits.
+	 * @param management the management feeding the index (null if fed by 
+	 * {@link #handle(String, String, LLRPMessage)} only).
+	 */
+	public TagStateIndex(AdaptorManagement management) {
+		this(management, DEFAULT_MAX_TAGS, DEFAULT_TTL);
+	}
+	
+	/**
+	 * creates an index.
+	 * @param management the management feeding the index (null if fed by 
+	 * {@link #handle(String, String, LLRPMessage)} only).
+	 * @param maxTags the maximum number of tags.
+	 * @param ttl the time to live of a tag in ms.
+	 */
+	public TagStateIndex(AdaptorManagement management, int maxTags, long ttl) {
+		if ((maxTags < 1) || (ttl < 1)) {
+			throw new IllegalArgumentException(String.format(
+					"illegal maximum %d or time to live %d", maxTags, ttl));
+		}
+		this.management = management;
+		this.maxTags = maxTags;
+		this.ttl = ttl;
+		this.granularity = Math.max(1, ttl / 16);
+	}
+	
+	/**
+	 * registers the index for the RO_ACCESS_REPORTs and starts the periodic 
+	 * removal of expired tags.
+	 */
+	public synchronized void start() {
+		if (null != management) {
+			management.registerPartialHandler(this, RO_ACCESS_REPORT.class);
+		}
+		if (null == sweep) {
+			final long period = Math.max(MIN_SWEEP, granularity);
+			sweep = SharedExecutor.getScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					evict(System.currentTimeMillis());
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * deregisters the index and stops the removal of expired tags. the 
+	 * states are kept.
+	 */
+	public synchronized void stop() {
+		if (null != management) {
+			management.deregisterPartialHandler(this, RO_ACCESS_REPORT.class);
+		}
+		if (null != sweep) {
+			sweep.cancel(false);
+			sweep = null;
+		}
+	}
+	
+	/**
+	 * applies the tags of an RO_ACCESS_REPORT.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param message the message (other messages are ignored).
+	 */
+	public void handle(String adaptorName, String readerName, LLRPMessage message) {
+		if (!(message instanceof RO_ACCESS_REPORT)) {
+			return;
+		}
+		List<TagReportData> tags = ((RO_ACCESS_REPORT) message).getTagReportDataList();
+		if ((null == tags) || tags.isEmpty()) {
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		for (TagReportData tag : tags) {
+			EPC epc = EPC.fromParameter(tag.getEPCParameter());
+			if (null != epc) {
+				update(epc, adaptorName, readerName, antenna(tag), peakRSSI(tag), 
+						lastSeen(tag, now), now);
+			}
+		}
+		if (size.get() > maxTags) {
+			evict(now);
+		}
+	}
+	
+	/**
+	 * applies a sighting.
+	 * @param epc the EPC.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param antenna the antenna ID.
+	 * @param peakRSSI the peak RSSI.
+	 * @param lastSeen the time of the sighting in microseconds (UTC).
+	 * @param now the local time in ms.
+	 */
+	private void update(EPC epc, String adaptorName, String readerName, 
+			int antenna, int peakRSSI, long lastSeen, long now) {
+		
+		for (;;) {
+			final TagState prev = states.get(epc);
+			if ((null != prev) && (lastSeen < prev.getLastSeen())) {
+				return;
+			}
+			final boolean queue = (null == prev) || (now - prev.stamp >= granularity);
+			final TagState next = new TagState(epc, adaptorName, readerName, 
+					antenna, peakRSSI, lastSeen, now, queue ? now : prev.stamp);
+			
+			final boolean applied = (null == prev) 
+				? (null == states.putIfAbsent(epc, next)) : states.replace(epc, prev, next);
+			if (!applied) {
+				continue;
+			}
+			updates.increment();
+			if (queue) {
+				order.add(new Stamp(epc, now));
+			}
+			if (null == prev) {
+				size.incrementAndGet();
+				lengths.add(epc.getLength());
+			}
+			if ((null == prev) || !prev.sameReader(next)) {
+				if (null != prev) {
+					leave(epc, prev);
+				}
+				tagsAt(next).add(epc);
+			}
+			return;
+		}
+	}
+	
+	/**
+	 * removes the expired tags and the least recently seen tags beyond the 
+	 * maximum. returns immediately if another thread is evicting.
+	 * @param now the local time in ms.
+	 */
+	void evict(long now) {
+		if (!evicting.tryLock()) {
+			return;
+		}
+		try {
+			Stamp head;
+			while (null != (head = order.peek())) {
+				final boolean full = size.get() > maxTags;
+				if (!full && (now - head.time < ttl)) {
+					break;
+				}
+				order.poll();
+				final TagState state = states.get(head.epc);
+				if ((null == state) || (state.stamp != head.time)) {
+					// the tag got queued again or removed meanwhile.
+					continue;
+				}
+				if (!full && (now - state.getUpdated() < ttl)) {
+					// seen since it got queued, queue it again.
+					if (states.replace(head.epc, state, state.restamp(now))) {
+						order.add(new Stamp(head.epc, now));
+					} else {
+						order.add(head);
+					}
+					continue;
+				}
+				if (states.remove(head.epc, state)) {
+					size.decrementAndGet();
+					leave(head.epc, state);
+					evictions.increment();
+				} else {
+					order.add(head);
+				}
+			}
+		} finally {
+			evicting.unlock();
+		}
+	}
+	
+	/**
+	 * @param epc the EPC.
+	 * @return the last known state of the tag or null if unknown or expired.
+	 */
+	public TagState get(EPC epc) {
+		return alive(states.get(epc), System.currentTimeMillis());
+	}
+	
+	/**
+	 * finds the tags whose EPC starts with a prefix.
+	 * @param prefix the hex prefix of the EPCs.
+	 * @param limit the maximum number of results.
+	 * @return the states of the tags ordered by EPC.
+	 * @throws IllegalArgumentException if the prefix is not a hex string.
+	 */
+	public List<TagState> findByPrefix(String prefix, int limit) {
+		final long now = System.currentTimeMillis();
+		List<TagState> result = new ArrayList<TagState> ();
+		for (Integer length : lengths) {
+			// the hex strings of EPCs of the same length sort like their values.
+			final int digits = ((length + 7) >>> 3) << 1;
+			if (prefix.length() > digits) {
+				continue;
+			}
+			StringBuilder from = new StringBuilder(prefix);
+			StringBuilder to = new StringBuilder(prefix);
+			for (int i=prefix.length(); i<digits; i++) {
+				from.append('0');
+				to.append('f');
+			}
+			for (TagState state : states.subMap(EPC.parse(from.toString(), length), true, 
+					EPC.parse(to.toString(), length), true).values()) {
+				
+				if ((null != alive(state, now)) && state.getEPC().startsWith(prefix)) {
+					if (result.size() >= limit) {
+						return result;
+					}
+					result.add(state);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the EPCs of the tags last seen at the reader.
+	 */
+	public Set<EPC> getTags(String adaptorName, String readerName) {
+		Set<EPC> tags = readerTags.get(key(adaptorName, readerName));
+		if (null == tags) {
+			return Collections.emptySet();
+		}
+		final long now = System.currentTimeMillis();
+		EPCHashSet result = new EPCHashSet(tags.size());
+		for (EPC epc : tags) {
+			final TagState state = states.get(epc);
+			if (isAt(state, adaptorName, readerName)) {
+				if (null != alive(state, now)) {
+					result.add(epc);
+				}
+			} else {
+				// left behind by a concurrent move of the tag.
+				tags.remove(epc);
+				if (isAt(states.get(epc), adaptorName, readerName)) {
+					// the tag just came back.
+					tags.add(epc);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * @param state a state (might be null).
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return true if the state belongs to the reader.
+	 */
+	private static boolean isAt(TagState state, String adaptorName, String readerName) {
+		return (null != state) && state.getReaderName().equals(readerName) 
+			&& state.getAdaptorName().equals(adaptorName);
+	}
+	
+	/**
+	 * removes a tag from the set of the reader of its previous state. a 
+	 * concurrent update might have brought the tag back to the same reader 
+	 * in between, the tag is then added again (as in 
+	 * {@link #getTags(String, String)}).
+	 * @param epc the EPC.
+	 * @param prev the previous state of the tag.
+	 */
+	private void leave(EPC epc, TagState prev) {
+		final Set<EPC> tags = tagsAt(prev);
+		tags.remove(epc);
+		if (isAt(states.get(epc), prev.getAdaptorName(), prev.getReaderName())) {
+			tags.add(epc);
+		}
+	}
+	
+	/**
+	 * @param state a state (might be null).
+	 * @param now the local time in ms.
+	 * @return the state or null if expired.
+	 */
+	private TagState alive(TagState state, long now) {
+		if ((null == state) || (now - state.getUpdated() >= ttl)) {
+			return null;
+		}
+		return state;
+	}
+	
+	/**
+	 * @param state a state.
+	 * @return the set of the tags at the reader of the state.
+	 */
+	private Set<EPC> tagsAt(TagState state) {
+		final String key = key(state.getAdaptorName(), state.getReaderName());
+		Set<EPC> tags = readerTags.get(key);
+		if (null == tags) {
+			Set<EPC> created = Collections.newSetFromMap(new ConcurrentHashMap<EPC, Boolean> ());
+			tags = readerTags.putIfAbsent(key, created);
+			if (null == tags) {
+				tags = created;
+			}
+		}
+		return tags;
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the key of the reader.
+	 */
+	private static String key(String adaptorName, String readerName) {
+		return adaptorName + '\u0000' + readerName;
+	}
+	
+	/**
+	 * @return the number of tags in the index (including expired tags not 
+	 * yet removed).
+	 */
+	public int size() {
+		return size.get();
+	}
+	
+	/**
+	 * @return the number of sightings applied.
+	 */
+	public long getUpdateCount() {
+		return updates.sum();
+	}
+	
+	/**
+	 * @return the number of evicted tags.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+	
+	/**
+	 * @return the maximum number of tags.
+	 */
+	public int getMaxTags() {
+		return maxTags;
+	}
+	
+	/**
+	 * @return the time to live of a tag in ms.
+	 */
+	public long getTTL() {
+		return ttl;
+	}
+	
+	/**
+	 * @param tag the TagReportData.
+	 * @return the antenna ID or {@link TagState#UNKNOWN}.
+	 */
+	private static int antenna(TagReportData tag) {
+		AntennaID antenna = tag.getAntennaID();
+		if ((null == antenna) || (null == antenna.getAntennaID())) {
+			return TagState.UNKNOWN;
+		}
+		return antenna.getAntennaID().intValue();
+	}
+	
+	/**
+	 * @param tag the TagReportData.
+	 * @return the peak RSSI or {@link TagState#UNKNOWN}.
+	 */
+	private static int peakRSSI(TagReportData tag) {
+		PeakRSSI rssi = tag.getPeakRSSI();
+		if ((null == rssi) || (null == rssi.getPeakRSSI())) {
+			return TagState.UNKNOWN;
+		}
+		return rssi.getPeakRSSI().toByte();
+	}
+	
+	/**
+	 * @param tag the TagReportData.
+	 * @param now the local time in ms.
+	 * @return the last (or first) seen time stamp of the tag in microseconds 
+	 * or the local time if the tag has none.
+	 */
+	private static long lastSeen(TagReportData tag, long now) {
+		LastSeenTimestampUTC last = tag.getLastSeenTimestampUTC();
+		if ((null != last) && (null != last.getMicroseconds())) {
+			return micros(last.getMicroseconds(), now);
+		}
+		FirstSeenTimestampUTC first = tag.getFirstSeenTimestampUTC();
+		if ((null != first) && (null != first.getMicroseconds())) {
+			return micros(first.getMicroseconds(), now);
+		}
+		return now * MICROS_PER_MILLI;
+	}
+	
+	/**
+	 * @param value an unsigned microseconds value.
+	 * @param now the local time in ms.
+	 * @return the microseconds or the local time if too large for a long.
+	 */
+	private static long micros(UnsignedLong value, long now) {
+		BigInteger big = value.toBigInteger();
+		if ((null == big) || (big.bitLength() > 63)) {
+			return now * MICROS_PER_MILLI;
+		}
+		return big.longValue();
+	}
+	
+	/**
+	 * an entry of the eviction order.
+	 */
+	private static final class Stamp {
+		
+		/** the EPC. */
+		private final EPC epc;
+		
+		/** the local time in ms when the tag got queued. */
+		private final long time;
+		
+		private Stamp(EPC epc, long time) {
+			this.epc = epc;
+			this.time = time;
+		}
+	}
+}
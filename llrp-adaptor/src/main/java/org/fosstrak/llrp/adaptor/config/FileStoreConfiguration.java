@@ -21,6 +21,7 @@
 
 package org.fosstrak.llrp.adaptor.config;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -32,9 +33,12 @@ import java.util.Properties;
 
 import org.apache.log4j.Logger;
 import org.fosstrak.llrp.adaptor.AdaptorManagement;
+import org.fosstrak.llrp.adaptor.ReaderQueueSettings;
 import org.fosstrak.llrp.adaptor.config.type.AdaptorConfiguration;
 import org.fosstrak.llrp.adaptor.config.type.ReaderConfiguration;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
 import org.fosstrak.llrp.adaptor.util.SortedProperties;
 
 /**
@@ -73,6 +77,13 @@ public class FileStoreConfiguration extends Configuration {
 	private static final String CFG_READER_PORT = "port";
 	private static final String CFG_READER_INITIATION = "clientInitiated";
 	private static final String CFG_READER_CONNECT_IMMEDIATELY = "connectImmediately";
+	private static final String CFG_READER_IN_QUEUE_CAPACITY = "inQueueCapacity";
+	private static final String CFG_READER_OUT_QUEUE_CAPACITY = "outQueueCapacity";
+	private static final String CFG_READER_OVERFLOW_POLICY = "queueOverflowPolicy";
+	private static final String CFG_READER_WAIT_STRATEGY = "queueWaitStrategy";
+	
+	/** suffix of the temporary file written before replacing the configuration. */
+	private static final String TEMP_SUFFIX = ".tmp";
 	
 	private List<AdaptorConfiguration> adaptorConfigurations = null;
 	
@@ -100,12 +111,16 @@ public class FileStoreConfiguration extends Configuration {
 	private List<AdaptorConfiguration> getConfiguration(String propertiesFile ) throws LLRPRuntimeException {
 		props = new Properties();
 		// try to load the properties file
+		FileInputStream in = null;
 		try {
-			props.load(new FileInputStream(new File(propertiesFile)));
+			in = new FileInputStream(new File(propertiesFile));
+			props.load(in);
 		} catch (IOException e) {
 			log.error("There has been an IO Exception when reading the configuration file " + propertiesFile, e);
 			throw new LLRPRuntimeException(e.getMessage(), e);
-		}	
+		} finally {
+			close(in);
+		}
 		
 		adaptorConfigurations = new LinkedList<AdaptorConfiguration>();
 		
@@ -150,7 +165,9 @@ public class FileStoreConfiguration extends Configuration {
 					boolean readerClientInitiated = Boolean.parseBoolean(props.getProperty(readerPrefix + CFG_READER_INITIATION));
 					boolean connectImmediately = Boolean.parseBoolean(props.getProperty(readerPrefix + CFG_READER_CONNECT_IMMEDIATELY));
 					
-					readerConfigurations.add(new ReaderConfiguration(readerName, readerIp, readerPort, readerClientInitiated, connectImmediately));
+					ReaderConfiguration readerConfiguration = new ReaderConfiguration(readerName, readerIp, readerPort, readerClientInitiated, connectImmediately);
+					readerConfiguration.setQueueSettings(getQueueSettings(readerPrefix));
+					readerConfigurations.add(readerConfiguration);
 					
 					log.debug(String.format("read reader values: (name:%s, ip:%s, port:%d, clientInitiatedConnection: %b, connectImmediately: %b)", 
 							readerName, readerIp, readerPort, readerClientInitiated, connectImmediately));
@@ -160,6 +177,38 @@ public class FileStoreConfiguration extends Configuration {
 			}
 		}
 	}
+	
+	/**
+	 * reads the (optional) settings of the queues of a reader. illegal 
+	 * values are ignored.
+	 * @param readerPrefix the prefix of the reader in the config file.
+	 * @return the settings of the queues or null if none are configured.
+	 */
+	private ReaderQueueSettings getQueueSettings(String readerPrefix) {
+		ReaderQueueSettings settings = new ReaderQueueSettings();
+		String key = null;
+		try {
+			key = readerPrefix + CFG_READER_IN_QUEUE_CAPACITY;
+			if (null != props.getProperty(key)) {
+				settings.setInQueueCapacity(Integer.parseInt(props.getProperty(key).trim()));
+			}
+			key = readerPrefix + CFG_READER_OUT_QUEUE_CAPACITY;
+			if (null != props.getProperty(key)) {
+				settings.setOutQueueCapacity(Integer.parseInt(props.getProperty(key).trim()));
+			}
+			key = readerPrefix + CFG_READER_OVERFLOW_POLICY;
+			if (null != props.getProperty(key)) {
+				settings.setOverflowPolicy(OverflowPolicy.valueOf(props.getProperty(key).trim()));
+			}
+			key = readerPrefix + CFG_READER_WAIT_STRATEGY;
+			if (null != props.getProperty(key)) {
+				settings.setWaitStrategy(WaitStrategy.valueOf(props.getProperty(key).trim()));
+			}
+		} catch (IllegalArgumentException e) {
+			log.error(String.format("illegal value for %s: %s", key, props.getProperty(key)));
+		}
+		return settings.isEmpty() ? null : settings;
+	}
 
 
 	@Override
@@ -208,13 +257,59 @@ public class FileStoreConfiguration extends Configuration {
 			i++;		
 		}
 		
+		// write to a temporary file next to the configuration file and 
+		// then replace the configuration file. a crash during the write 
+		// therefore never leaves a truncated configuration behind.
+		File target = new File(propertiesFile).getAbsoluteFile();
+		File temp = new File(target.getParentFile(), target.getName() + TEMP_SUFFIX);
+		FileOutputStream out = null;
 		try {
-			props.store(new FileOutputStream(new File(propertiesFile)), null);
+			out = new FileOutputStream(temp);
+			props.store(out, null);
+			out.getFD().sync();
+			out.close();
+			out = null;
+			replace(temp, target);
 		} catch (IOException e) {
 			log.error("There has been an IO Exception when writing the configuration file " + propertiesFile, e);
+			close(out);
+			temp.delete();
 			throw new LLRPRuntimeException(e.getMessage(), e);
 		}
 	}
+	
+	/**
+	 * replaces the target file by the source file. the rename is atomic on 
+	 * POSIX file systems. on platforms where a rename does not replace an 
+	 * existing file, the target is deleted first.
+	 * @param source the file to rename.
+	 * @param target the file to replace.
+	 * @throws IOException when the file could not be replaced.
+	 */
+	private void replace(File source, File target) throws IOException {
+		if (source.renameTo(target)) {
+			return;
+		}
+		if (!target.delete() || !source.renameTo(target)) {
+			throw new IOException(String.format("could not replace %s by %s", 
+					target.getPath(), source.getPath()));
+		}
+	}
+	
+	/**
+	 * closes a stream and ignores errors.
+	 * @param stream the stream to close (might be null).
+	 */
+	private void close(Closeable stream) {
+		if (null == stream) {
+			return;
+		}
+		try {
+			stream.close();
+		} catch (IOException e) {
+			log.debug("could not close stream: " + e.getMessage());
+		}
+	}
 
 	/**
 	 * writes the configuration of one adapter into the properties file.
@@ -264,7 +359,34 @@ public class FileStoreConfiguration extends Configuration {
 				
 				log.debug(String.format("writing property/value (%s,%b)", readerPrefix + CFG_READER_CONNECT_IMMEDIATELY, true));
 				props.setProperty(readerPrefix + CFG_READER_CONNECT_IMMEDIATELY, String.format("%b", reader.isConnectImmediately()));
+				
+				writeQueueSettings(reader.getQueueSettings(), props, readerPrefix);
 			}
 		}
 	}
+	
+	/**
+	 * writes the settings of the queues of a reader into the properties file. 
+	 * settings falling back to the defaults are not written.
+	 * @param settings the settings of the queues (might be null).
+	 * @param props the properties file.
+	 * @param readerPrefix the prefix of the reader.
+	 */
+	private void writeQueueSettings(ReaderQueueSettings settings, Properties props, String readerPrefix) {
+		if (null == settings) {
+			return;
+		}
+		if (null != settings.getInQueueCapacity()) {
+			props.setProperty(readerPrefix + CFG_READER_IN_QUEUE_CAPACITY, String.format("%d", settings.getInQueueCapacity()));
+		}
+		if (null != settings.getOutQueueCapacity()) {
+			props.setProperty(readerPrefix + CFG_READER_OUT_QUEUE_CAPACITY, String.format("%d", settings.getOutQueueCapacity()));
+		}
+		if (null != settings.getOverflowPolicy()) {
+			props.setProperty(readerPrefix + CFG_READER_OVERFLOW_POLICY, settings.getOverflowPolicy().name());
+		}
+		if (null != settings.getWaitStrategy()) {
+			props.setProperty(readerPrefix + CFG_READER_WAIT_STRATEGY, settings.getWaitStrategy().name());
+		}
+	}
 }
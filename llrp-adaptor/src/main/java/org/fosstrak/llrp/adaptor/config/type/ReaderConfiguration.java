@@ -21,6 +21,8 @@
 
 package org.fosstrak.llrp.adaptor.config.type;
 
+import org.fosstrak.llrp.adaptor.ReaderQueueSettings;
+
 /**
  * a prototype holding all the settings needed for a reader.
  * @author sawielan
@@ -42,6 +44,9 @@ public class ReaderConfiguration {
 	/** flags whether this reader connects immediately after setup. */
 	private boolean connectImmediately = false;
 	
+	/** the settings of the queues of the reader (null for the defaults). */
+	private ReaderQueueSettings queueSettings = null;
+	
 	/**
 	 * constructor for the prototype.
 	 * @param readerName the name of the reader.
@@ -99,4 +104,20 @@ public class ReaderConfiguration {
 	public boolean isConnectImmediately() {
 		return connectImmediately;
 	}
+	
+	/**
+	 * returns the settings of the queues of the reader.
+	 * @return the settings of the queues or null for the defaults.
+	 */
+	public ReaderQueueSettings getQueueSettings() {
+		return queueSettings;
+	}
+	
+	/**
+	 * sets the settings of the queues of the reader.
+	 * @param queueSettings the settings of the queues or null for the defaults.
+	 */
+	public void setQueueSettings(ReaderQueueSettings queueSettings) {
+		this.queueSettings = queueSettings;
+	}
 }
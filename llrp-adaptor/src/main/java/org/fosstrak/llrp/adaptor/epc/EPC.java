@@ -0,0 +1,364 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.epc;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.llrp.ltk.generated.interfaces.EPCParameter;
+import org.llrp.ltk.generated.parameters.EPCData;
+import org.llrp.ltk.generated.parameters.EPC_96;
+import org.llrp.ltk.types.BitArray_HEX;
+import org.llrp.ltk.types.Integer96_HEX;
+import org.llrp.ltk.types.LLRPBitList;
+
+/**
+ * an immutable EPC held as bits instead of a hex string. the bits are kept 
+ * as an unsigned number in two longs (the 64 least significant bits and 
+ * the next 64 bits), EPCs longer than 128 bits keep their more significant 
+ * bits in an additional array. an EPC-96 therefore needs no array at all. 
+ * the hash code is computed once, so the EPC is a cheap key for the 
+ * {@link EPCHashMap} and the {@link EPCHashSet}.<br/>
+ * <br/>
+ * {@link #toString()} returns the lower case hex digits padded to whole 
+ * bytes. this is the string LTK creates for an <code>EPCData</code> and for 
+ * every <code>EPC_96</code> not starting with a zero digit (the LTK omits 
+ * leading zeros of an EPC-96).
+ * @author sawielan
+ *
+ */
+public final class EPC implements Comparable<EPC>, Serializable {
+	
+	/** serial id. */
+	private static final long serialVersionUID = 1L;
+	
+	/** the number of bits of an EPC-96. */
+	public static final int EPC96_LENGTH = 96;
+	
+	/** the hex digits. */
+	private static final char [] DIGITS = "0123456789abcdef".toCharArray();
+	
+	/** no more significant words. */
+	private static final long [] NONE = new long[0];
+	
+	/** the number of bits. */
+	private final int length;
+	
+	/** the 64 least significant bits. */
+	private final long low;
+	
+	/** the bits 64 to 127. */
+	private final long high;
+	
+	/** the bits from 128 on in words of 64 bits (least significant first). */
+	private final long [] more;
+	
+	/** the hash code. */
+	private final int hash;
+	
+	/**
+	 * creates an EPC.
+	 * @param length the number of bits.
+	 * @param low the 64 least significant bits.
+	 * @param high the bits 64 to 127.
+	 * @param more the bits from 128 on (least significant word first).
+	 */
+	private EPC(int length, long low, long high, long [] more) {
+		this.length = length;
+		this.low = low;
+		this.high = high;
+		this.more = more;
+		long h = mix(low ^ (high * 0x9E3779B97F4A7C15L) ^ length);
+		for (long word : more) {
+			h = mix(h ^ word);
+		}
+		hash = (int) (h ^ (h >>> 32));
+	}
+	
+	/**
+	 * the finalizer of the 64-bit murmur hash.
+	 * @param h the value to mix.
+	 * @return the mixed value.
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+	
+	/**
+	 * creates an EPC-96.
+	 * @param high the 32 most significant bits (in the lower half).
+	 * @param low the 64 least significant bits.
+	 * @return the EPC.
+	 */
+	public static EPC epc96(long high, long low) {
+		return new EPC(EPC96_LENGTH, low, high & 0xFFFFFFFFL, NONE);
+	}
+	
+	/**
+	 * creates an EPC from the bits of an {@link LLRPBitList} (the first bit 
+	 * is the most significant one).
+	 * @param bits the bits.
+	 * @param offset the index of the first bit of the EPC.
+	 * @param length the number of bits.
+	 * @return the EPC.
+	 */
+	public static EPC fromBits(LLRPBitList bits, int offset, int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("negative length: " + length);
+		}
+		final long [] words = new long[words(length)];
+		for (int i=0; i<length; i++) {
+			if (bits.get(offset + i)) {
+				final int bit = length - 1 - i;
+				words[bit >>> 6] |= 1L << (bit & 63);
+			}
+		}
+		return create(length, words);
+	}
+	
+	/**
+	 * creates an EPC from the EPC parameter of a TagReportData.
+	 * @param epcParameter the EPC_96 or EPCData parameter.
+	 * @return the EPC or null if the parameter holds no EPC.
+	 */
+	public static EPC fromParameter(EPCParameter epcParameter) {
+		if (epcParameter instanceof EPC_96) {
+			Integer96_HEX epc = ((EPC_96) epcParameter).getEPC();
+			if (null == epc) {
+				return null;
+			}
+			return fromBits(epc.encodeBinary(), 0, EPC96_LENGTH);
+		} else if (epcParameter instanceof EPCData) {
+			BitArray_HEX epc = ((EPCData) epcParameter).getEPC();
+			if (null == epc) {
+				return null;
+			}
+			// the encoding starts with the number of bits (16 bits).
+			return fromBits(epc.encodeBinary(), 16, epc.size());
+		}
+		return null;
+	}
+	
+	/**
+	 * parses a hex string (every digit makes four bits).
+	 * @param hex the hex digits (upper or lower case).
+	 * @return the EPC.
+	 * @throws IllegalArgumentException if the string holds a non-hex character.
+	 */
+	public static EPC parse(String hex) {
+		final int digits = hex.length();
+		final long [] words = new long[words(4 * digits)];
+		for (int i=0; i<digits; i++) {
+			final int value = Character.digit(hex.charAt(i), 16);
+			if (value < 0) {
+				throw new IllegalArgumentException("illegal hex string: " + hex);
+			}
+			final int nibble = digits - 1 - i;
+			words[nibble >>> 4] |= ((long) value) << ((nibble & 15) << 2);
+		}
+		return create(4 * digits, words);
+	}
+	
+	/**
+	 * parses a hex string into an EPC of the given length. the digits are 
+	 * read as a number, the length is not checked against the digits.
+	 * @param hex the hex digits (upper or lower case).
+	 * @param length the number of bits.
+	 * @return the EPC.
+	 * @throws IllegalArgumentException if the string holds a non-hex character.
+	 */
+	public static EPC parse(String hex, int length) {
+		EPC epc = parse(hex);
+		return (epc.length == length) ? epc : new EPC(length, epc.low, epc.high, epc.more);
+	}
+	
+	/**
+	 * @param length the number of bits.
+	 * @return the number of words holding the bits (at least two).
+	 */
+	private static int words(int length) {
+		return Math.max(2, (length + 63) >>> 6);
+	}
+	
+	/**
+	 * creates an EPC from its words.
+	 * @param length the number of bits.
+	 * @param words the words (least significant first, at least two).
+	 * @return the EPC.
+	 */
+	private static EPC create(int length, long [] words) {
+		final long [] more = (words.length > 2) ? Arrays.copyOfRange(words, 2, words.length) : NONE;
+		return new EPC(length, words[0], words[1], more);
+	}
+	
+	/**
+	 * @return the number of bits.
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * @return the 64 least significant bits.
+	 */
+	public long getLow() {
+		return low;
+	}
+	
+	/**
+	 * @return the bits 64 to 127.
+	 */
+	public long getHigh() {
+		return high;
+	}
+	
+	/**
+	 * @param index the index of a word (0 holds the least significant bits).
+	 * @return the word (0 beyond the length).
+	 */
+	public long getWord(int index) {
+		switch (index) {
+		case 0:
+			return low;
+		case 1:
+			return high;
+		default:
+			return (index - 2 < more.length) ? more[index - 2] : 0;
+		}
+	}
+	
+	/**
+	 * @return the number of hex digits of {@link #toString()}.
+	 */
+	private int digits() {
+		return ((length + 7) >>> 3) << 1;
+	}
+	
+	/**
+	 * @param nibble the index of a nibble (0 is the least significant one).
+	 * @return the value of the nibble.
+	 */
+	private int nibble(int nibble) {
+		return (int) (getWord(nibble >>> 4) >>> ((nibble & 15) << 2)) & 0xF;
+	}
+	
+	/**
+	 * @return an LTK EPC parameter holding this EPC (an EPC_96 for 96 bits, 
+	 * an EPCData otherwise).
+	 */
+	public EPCParameter toParameter() {
+		if (EPC96_LENGTH == length) {
+			EPC_96 epc = new EPC_96();
+			epc.setEPC(new Integer96_HEX(toString()));
+			return epc;
+		}
+		BitArray_HEX bits = new BitArray_HEX(length);
+		for (int i=0; i<length; i++) {
+			final int bit = length - 1 - i;
+			if (0 != (getWord(bit >>> 6) & (1L << (bit & 63)))) {
+				bits.set(i);
+			}
+		}
+		EPCData epc = new EPCData();
+		epc.setEPC(bits);
+		return epc;
+	}
+	
+	/**
+	 * appends the hex digits to a string builder (see {@link #toString()}).
+	 * @param sb the string builder.
+	 * @return the string builder.
+	 */
+	public StringBuilder appendTo(StringBuilder sb) {
+		for (int i=digits()-1; i>=0; i--) {
+			sb.append(DIGITS[nibble(i)]);
+		}
+		return sb;
+	}
+	
+	/**
+	 * @param prefix a hex prefix.
+	 * @return true if the hex digits of this EPC start with the prefix 
+	 * (ignoring case).
+	 */
+	public boolean startsWith(String prefix) {
+		final int digits = digits();
+		if (prefix.length() > digits) {
+			return false;
+		}
+		for (int i=0; i<prefix.length(); i++) {
+			if (Character.digit(prefix.charAt(i), 16) != nibble(digits - 1 - i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the lower case hex digits padded to whole bytes.
+	 */
+	@Override
+	public String toString() {
+		return appendTo(new StringBuilder(digits())).toString();
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof EPC)) {
+			return false;
+		}
+		EPC other = (EPC) obj;
+		return (hash == other.hash) && (length == other.length) && (low == other.low) 
+			&& (high == other.high) && Arrays.equals(more, other.more);
+	}
+	
+	/**
+	 * orders the EPCs by length and then by value (unsigned).
+	 * @param other the other EPC.
+	 * @return the comparison.
+	 */
+	public int compareTo(EPC other) {
+		if (length != other.length) {
+			return (length < other.length) ? -1 : 1;
+		}
+		for (int i=more.length+1; i>=0; i--) {
+			final long a = getWord(i) + Long.MIN_VALUE;
+			final long b = other.getWord(i) + Long.MIN_VALUE;
+			if (a != b) {
+				return (a < b) ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+}
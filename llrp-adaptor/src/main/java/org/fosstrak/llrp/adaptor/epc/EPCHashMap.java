@@ -0,0 +1,395 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.epc;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * a hash map with {@link EPC} keys. the keys and values are stored in two 
+ * arrays (open addressing with linear probing), there are no entry objects 
+ * and the hash code of the EPC is computed once when the EPC is created. 
+ * removing a key moves the following keys of its probe sequence back, so 
+ * the map does not need tombstones.<br/>
+ * <br/>
+ * the map is not synchronized. the iterators support <code>remove</code>.
+ * @author sawielan
+ *
+ * @param <V> the type of the values.
+ */
+public class EPCHashMap<V> extends AbstractMap<EPC, V> {
+	
+	/** the default capacity. */
+	public static final int DEFAULT_CAPACITY = 16;
+	
+	/** the keys (null marks a free slot). */
+	private EPC [] keys;
+	
+	/** the values. */
+	private Object [] values;
+	
+	/** the number of keys. */
+	private int size = 0;
+	
+	/** the number of keys upon which the arrays get doubled. */
+	private int threshold;
+	
+	/** the number of structural changes (for the iterators). */
+	private int modifications = 0;
+	
+	/** the view of the entries. */
+	private Set<Entry<EPC, V>> entries = null;
+	
+	/**
+	 * creates a map with the default capacity.
+	 */
+	public EPCHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * creates a map.
+	 * @param expected the number of keys the map holds without resizing.
+	 */
+	public EPCHashMap(int expected) {
+		if (expected < 0) {
+			throw new IllegalArgumentException("negative capacity: " + expected);
+		}
+		int capacity = 2;
+		while (capacity * 3 / 4 < expected) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+	
+	/**
+	 * allocates empty arrays.
+	 * @param capacity the number of slots (a power of two).
+	 */
+	private void allocate(int capacity) {
+		keys = new EPC[capacity];
+		values = new Object[capacity];
+		threshold = capacity * 3 / 4;
+	}
+	
+	/**
+	 * @param key the key.
+	 * @return the first slot of the probe sequence of the key.
+	 */
+	private int slot(EPC key) {
+		final int h = key.hashCode();
+		return (h ^ (h >>> 16)) & (keys.length - 1);
+	}
+	
+	/**
+	 * @param key the key.
+	 * @return the slot of the key or -1 if not contained.
+	 */
+	private int indexOf(Object key) {
+		if (!(key instanceof EPC)) {
+			return -1;
+		}
+		final int mask = keys.length - 1;
+		for (int i=slot((EPC) key); ; i=(i + 1) & mask) {
+			final EPC k = keys[i];
+			if (null == k) {
+				return -1;
+			}
+			if (k.equals(key)) {
+				return i;
+			}
+		}
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		final int i = indexOf(key);
+		return (i < 0) ? null : (V) values[i];
+	}
+	
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(EPC key, V value) {
+		if (null == key) {
+			throw new NullPointerException("key must not be null");
+		}
+		final int mask = keys.length - 1;
+		int i = slot(key);
+		for (EPC k; null != (k = keys[i]); i=(i + 1) & mask) {
+			if (k.equals(key)) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		modifications++;
+		if (++size > threshold) {
+			resize();
+		}
+		return null;
+	}
+	
+	/**
+	 * doubles the arrays and reinserts the keys.
+	 */
+	private void resize() {
+		final EPC [] oldKeys = keys;
+		final Object [] oldValues = values;
+		allocate(oldKeys.length << 1);
+		final int mask = keys.length - 1;
+		for (int j=0; j<oldKeys.length; j++) {
+			final EPC k = oldKeys[j];
+			if (null != k) {
+				int i = slot(k);
+				while (null != keys[i]) {
+					i = (i + 1) & mask;
+				}
+				keys[i] = k;
+				values[i] = oldValues[j];
+			}
+		}
+	}
+	
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		final int i = indexOf(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V) values[i];
+		removeAt(i, null);
+		return old;
+	}
+	
+	/**
+	 * removes the key in a slot and moves the following keys of the probe 
+	 * sequence back.
+	 * @param slot the slot.
+	 * @param wrapped if not null, the keys moved from a slot before 
+	 * <code>slot</code> (the probe sequence wrapped around the end of the 
+	 * arrays) to a slot at or after <code>slot</code> are added to this list.
+	 */
+	private void removeAt(int slot, List<EPC> wrapped) {
+		final int mask = keys.length - 1;
+		int free = slot;
+		for (int i=(free + 1) & mask; null != keys[i]; i=(i + 1) & mask) {
+			final int home = slot(keys[i]);
+			// move the key unless its home lies cyclically in (free, i].
+			final boolean stays = (free <= i) ? ((free < home) && (home <= i)) 
+					: ((free < home) || (home <= i));
+			if (!stays) {
+				if ((null != wrapped) && (i < slot) && (free >= slot)) {
+					wrapped.add(keys[i]);
+				}
+				keys[free] = keys[i];
+				values[free] = values[i];
+				free = i;
+			}
+		}
+		keys[free] = null;
+		values[free] = null;
+		size--;
+		modifications++;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return 0 == size;
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		size = 0;
+		modifications++;
+	}
+	
+	@Override
+	public Set<Entry<EPC, V>> entrySet() {
+		if (null == entries) {
+			entries = new AbstractSet<Entry<EPC, V>>() {
+				@Override
+				public Iterator<Entry<EPC, V>> iterator() {
+					return new EntryIterator();
+				}
+				
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+		return entries;
+	}
+	
+	/**
+	 * iterates the slots holding a key. removing a key moves keys of its 
+	 * probe sequence back: a key not yet returned might move into the slot 
+	 * just returned, which is therefore looked at again. a key already 
+	 * returned might move from the start of the arrays (where its probe 
+	 * sequence wrapped around) to a slot not yet visited, such keys are 
+	 * remembered and skipped.
+	 */
+	private final class EntryIterator implements Iterator<Entry<EPC, V>> {
+		
+		/** the modifications expected (changed by the own removes only). */
+		private int expected = modifications;
+		
+		/** the next slot to look at. */
+		private int next = 0;
+		
+		/** the slot returned last (-1 if none or removed). */
+		private int last = -1;
+		
+		/** the keys already returned and moved to a slot not yet visited. */
+		private List<EPC> wrapped = null;
+		
+		public boolean hasNext() {
+			if (expected != modifications) {
+				throw new ConcurrentModificationException();
+			}
+			while ((next < keys.length) && ((null == keys[next]) || skip(keys[next]))) {
+				next++;
+			}
+			return next < keys.length;
+		}
+		
+		/**
+		 * @param key the key in the next slot.
+		 * @return true if the key has already been returned.
+		 */
+		private boolean skip(EPC key) {
+			if ((null == wrapped) || wrapped.isEmpty()) {
+				return false;
+			}
+			for (Iterator<EPC> it = wrapped.iterator(); it.hasNext(); ) {
+				if (it.next() == key) {
+					it.remove();
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		public Entry<EPC, V> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			return new SlotEntry(last);
+		}
+		
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if (expected != modifications) {
+				throw new ConcurrentModificationException();
+			}
+			if (null == wrapped) {
+				wrapped = new ArrayList<EPC> (2);
+			}
+			removeAt(last, wrapped);
+			// a key not yet returned might have moved into the slot.
+			next = last;
+			last = -1;
+			expected = modifications;
+		}
+	}
+	
+	/**
+	 * an entry writing through to its slot.
+	 */
+	private final class SlotEntry implements Entry<EPC, V> {
+		
+		/** the slot. */
+		private final int slot;
+		
+		/** the key. */
+		private final EPC key;
+		
+		private SlotEntry(int slot) {
+			this.slot = slot;
+			this.key = keys[slot];
+		}
+		
+		public EPC getKey() {
+			return key;
+		}
+		
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V) values[slot];
+		}
+		
+		@SuppressWarnings("unchecked")
+		public V setValue(V value) {
+			V old = (V) values[slot];
+			values[slot] = value;
+			return old;
+		}
+		
+		@Override
+		public int hashCode() {
+			Object value = values[slot];
+			return key.hashCode() ^ ((null == value) ? 0 : value.hashCode());
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> other = (Entry<?, ?>) obj;
+			Object value = values[slot];
+			return key.equals(other.getKey()) 
+				&& ((null == value) ? (null == other.getValue()) : value.equals(other.getValue()));
+		}
+		
+		@Override
+		public String toString() {
+			return key + "=" + values[slot];
+		}
+	}
+}
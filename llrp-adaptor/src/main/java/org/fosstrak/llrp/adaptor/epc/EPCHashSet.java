@@ -0,0 +1,82 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.epc;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+
+/**
+ * a hash set of {@link EPC}s backed by an {@link EPCHashMap}. the set is 
+ * not synchronized.
+ * @author sawielan
+ *
+ */
+public class EPCHashSet extends AbstractSet<EPC> {
+	
+	/** the map holding the EPCs as keys. */
+	private final EPCHashMap<Boolean> map;
+	
+	/**
+	 * creates a set with the default capacity.
+	 */
+	public EPCHashSet() {
+		this(EPCHashMap.DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * creates a set.
+	 * @param expected the number of EPCs the set holds without resizing.
+	 */
+	public EPCHashSet(int expected) {
+		map = new EPCHashMap<Boolean>(expected);
+	}
+	
+	@Override
+	public boolean add(EPC epc) {
+		return null == map.put(epc, Boolean.TRUE);
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		return map.containsKey(o);
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		return null != map.remove(o);
+	}
+	
+	@Override
+	public void clear() {
+		map.clear();
+	}
+	
+	@Override
+	public int size() {
+		return map.size();
+	}
+	
+	@Override
+	public Iterator<EPC> iterator() {
+		return map.keySet().iterator();
+	}
+}
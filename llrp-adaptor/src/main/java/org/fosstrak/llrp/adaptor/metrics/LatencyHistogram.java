@@ -0,0 +1,227 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.metrics;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * histogram of latencies in nanoseconds. the values are counted in buckets 
+ * of powers of two (bucket i holds the values from 2^(i-1) up to 2^i - 1), 
+ * thus a percentile is reported as the upper bound of its bucket (at most 
+ * twice the real value). recording is lock-free.
+ * @author sawielan
+ *
+ */
+public class LatencyHistogram {
+	
+	/** the number of buckets. */
+	public static final int BUCKETS = 64;
+	
+	/** the number of values per bucket. */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	
+	/** the number of recorded values. */
+	private final StripedCounter count = new StripedCounter();
+	
+	/** the sum of the recorded values. */
+	private final StripedCounter sum = new StripedCounter();
+	
+	/** the largest recorded value. */
+	private final AtomicLong max = new AtomicLong(0);
+	
+	/**
+	 * records a latency.
+	 * @param nanos the latency in nanoseconds (negative values count as 0).
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nanos));
+		count.increment();
+		sum.add(nanos);
+		long current = max.get();
+		while ((nanos > current) && !max.compareAndSet(current, nanos)) {
+			current = max.get();
+		}
+	}
+	
+	/**
+	 * @return the number of recorded values.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * @return the mean of the recorded values in nanoseconds (0 if none).
+	 */
+	public long getMean() {
+		final long n = count.sum();
+		return (n == 0) ? 0 : sum.sum() / n;
+	}
+	
+	/**
+	 * @return the largest recorded value in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * @param percentile the percentile (between 0 and 100).
+	 * @return the upper bound of the bucket holding the percentile in 
+	 * nanoseconds (0 if no values are recorded).
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		long [] values = new long[BUCKETS];
+		for (int i=0; i<BUCKETS; i++) {
+			values[i] = buckets.get(i);
+			total += values[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+		long seen = 0;
+		for (int i=0; i<BUCKETS; i++) {
+			seen += values[i];
+			if ((seen >= rank) && (seen > 0)) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	/**
+	 * @param bucket the bucket.
+	 * @return the largest value counted in the bucket.
+	 */
+	private static long upperBound(int bucket) {
+		return (bucket == 0) ? 0 : (bucket >= Long.SIZE - 1) ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+	
+	/**
+	 * drops all the recorded values.
+	 */
+	public void reset() {
+		for (int i=0; i<BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+	
+	/**
+	 * @return a serializable summary of the histogram.
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(getCount(), getMean(), getPercentile(50), 
+				getPercentile(99), getMax());
+	}
+	
+	/**
+	 * summary of a latency histogram (all the values in nanoseconds).
+	 */
+	public static class Snapshot implements Serializable {
+		
+		// serial version id.
+		private static final long serialVersionUID = 1L;
+		
+		// the number of recorded values.
+		private final long count;
+		
+		// the mean.
+		private final long mean;
+		
+		// the median.
+		private final long median;
+		
+		// the 99th percentile.
+		private final long percentile99;
+		
+		// the largest value.
+		private final long max;
+		
+		/**
+		 * @param count the number of recorded values.
+		 * @param mean the mean.
+		 * @param median the median.
+		 * @param percentile99 the 99th percentile.
+		 * @param max the largest value.
+		 */
+		public Snapshot(long count, long mean, long median, long percentile99, 
+				long max) {
+			
+			this.count = count;
+			this.mean = mean;
+			this.median = median;
+			this.percentile99 = percentile99;
+			this.max = max;
+		}
+
+		/**
+		 * @return the number of recorded values.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the mean.
+		 */
+		public long getMean() {
+			return mean;
+		}
+
+		/**
+		 * @return the median.
+		 */
+		public long getMedian() {
+			return median;
+		}
+
+		/**
+		 * @return the 99th percentile.
+		 */
+		public long getPercentile99() {
+			return percentile99;
+		}
+
+		/**
+		 * @return the largest value.
+		 */
+		public long getMax() {
+			return max;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("n=%d mean=%dns p50=%dns p99=%dns max=%dns", 
+					count, mean, median, percentile99, max);
+		}
+	}
+}
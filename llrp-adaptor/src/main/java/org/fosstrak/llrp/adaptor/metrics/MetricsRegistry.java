@@ -0,0 +1,188 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * registry holding the metrics of all the readers keyed by adaptor and 
+ * reader name. each entry is exported as an MXBean on the platform 
+ * MBean server so that the readers can be watched with any JMX console.
+ * @author sawielan
+ *
+ */
+public final class MetricsRegistry {
+	
+	/** the JMX domain of the exported metrics. */
+	public static final String JMX_DOMAIN = "org.fosstrak.llrp";
+	
+	/** the instance of the singleton. */
+	private static MetricsRegistry instance = new MetricsRegistry();
+	
+	/** the log4j logger. */
+	private static Logger log = Logger.getLogger(MetricsRegistry.class);
+	
+	/** the metrics by key (see {@link #key(String, String)}). */
+	private final ConcurrentMap<String, ReaderMetrics> metrics = 
+		new ConcurrentHashMap<String, ReaderMetrics> ();
+	
+	/**
+	 * singleton.
+	 */
+	private MetricsRegistry() {
+	}
+	
+	/**
+	 * @return the instance of the registry.
+	 */
+	public static MetricsRegistry getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * returns the metrics of the given reader. creates (and exports) them 
+	 * if not yet present.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the metrics of the reader.
+	 */
+	public ReaderMetrics getReaderMetrics(String adaptorName, String readerName) {
+		final String key = key(adaptorName, readerName);
+		ReaderMetrics existing = metrics.get(key);
+		if (null != existing) {
+			return existing;
+		}
+		ReaderMetrics created = new ReaderMetrics(adaptorName, readerName);
+		existing = metrics.putIfAbsent(key, created);
+		if (null != existing) {
+			return existing;
+		}
+		register(created);
+		return created;
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the metrics of the reader or null if not present.
+	 */
+	public ReaderMetrics get(String adaptorName, String readerName) {
+		return metrics.get(key(adaptorName, readerName));
+	}
+	
+	/**
+	 * removes (and unexports) the metrics of the given reader.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 */
+	public void remove(String adaptorName, String readerName) {
+		ReaderMetrics removed = metrics.remove(key(adaptorName, readerName));
+		if (null != removed) {
+			unregister(removed);
+		}
+	}
+	
+	/**
+	 * @return a snapshot of the metrics of all the readers.
+	 */
+	public List<ReaderMetricsSnapshot> getSnapshots() {
+		List<ReaderMetricsSnapshot> snapshots = new LinkedList<ReaderMetricsSnapshot> ();
+		for (ReaderMetrics m : metrics.values()) {
+			snapshots.add(m.snapshot());
+		}
+		return snapshots;
+	}
+	
+	/**
+	 * removes (and unexports) the metrics of all the readers.
+	 */
+	public void clear() {
+		for (ReaderMetrics m : metrics.values()) {
+			remove(m.getAdaptorName(), m.getReaderName());
+		}
+	}
+	
+	/**
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @return the key of a reader in the registry.
+	 */
+	private static String key(String adaptorName, String readerName) {
+		return adaptorName + "\u0000" + readerName;
+	}
+	
+	/**
+	 * @param m the metrics.
+	 * @return the JMX object name of the metrics.
+	 * @throws Exception when the name is not valid.
+	 */
+	public static ObjectName objectName(ReaderMetrics m) throws Exception {
+		return new ObjectName(String.format("%s:type=ReaderMetrics,adaptor=%s,reader=%s", 
+				JMX_DOMAIN, 
+				ObjectName.quote(String.valueOf(m.getAdaptorName())), 
+				ObjectName.quote(String.valueOf(m.getReaderName()))));
+	}
+	
+	/**
+	 * exports the metrics on the platform MBean server. failures are only 
+	 * logged as the metrics are still reachable through the adaptor.
+	 * @param m the metrics.
+	 */
+	private void register(ReaderMetrics m) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = objectName(m);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(m, name);
+			}
+		} catch (Exception e) {
+			log.debug("could not export metrics of reader " + m.getReaderName() + 
+					": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * removes the metrics from the platform MBean server.
+	 * @param m the metrics.
+	 */
+	private void unregister(ReaderMetrics m) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = objectName(m);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (Exception e) {
+			log.debug("could not unexport metrics of reader " + m.getReaderName() + 
+					": " + e.getMessage());
+		}
+	}
+}
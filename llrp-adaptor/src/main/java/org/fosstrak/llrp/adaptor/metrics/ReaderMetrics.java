@@ -0,0 +1,336 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.fosstrak.llrp.adaptor.queue.MessageQueue;
+import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.UnsignedInteger;
+
+/**
+ * the metrics of one reader. all the update methods are safe to be called 
+ * concurrently from the MINA threads and the queue workers. the counters 
+ * are striped so that hot readers do not contend on a single cache line.
+ * @author sawielan
+ *
+ */
+public class ReaderMetrics implements ReaderMetricsMXBean {
+	
+	/** the name of the adaptor. */
+	private final String adaptorName;
+	
+	/** the name of the reader. */
+	private final String readerName;
+	
+	/** the number of received messages in total. */
+	private final StripedCounter messagesIn = new StripedCounter();
+	
+	/** the number of sent messages in total. */
+	private final StripedCounter messagesOut = new StripedCounter();
+	
+	/** the number of received bytes in total. */
+	private final StripedCounter bytesIn = new StripedCounter();
+	
+	/** the number of sent bytes in total. */
+	private final StripedCounter bytesOut = new StripedCounter();
+	
+	/** the number of received messages in the current session. */
+	private final StripedCounter sessionMessagesIn = new StripedCounter();
+	
+	/** the number of sent messages in the current session. */
+	private final StripedCounter sessionMessagesOut = new StripedCounter();
+	
+	/** the number of messages dropped because a queue was full. */
+	private final StripedCounter messagesDropped = new StripedCounter();
+	
+	/** the number of received messages per message type. */
+	private final ConcurrentMap<String, StripedCounter> messagesByType = 
+		new ConcurrentHashMap<String, StripedCounter> ();
+	
+	/** the time from the raw bytes to the decoded message. */
+	private final LatencyHistogram decodeLatency = new LatencyHistogram();
+	
+	/** the time to hand a received message to its receivers. */
+	private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+	
+	/** the time from the missed keep-alive deadline to the detection. */
+	private final LatencyHistogram lostDetectionLatency = new LatencyHistogram();
+	
+	/** the in queue of the reader (used for the queue depth). */
+	private volatile MessageQueue<?> inQueue = null;
+	
+	/** the out queue of the reader (used for the queue depth). */
+	private volatile MessageQueue<?> outQueue = null;
+	
+	/**
+	 * creates the metrics for a reader.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 */
+	public ReaderMetrics(String adaptorName, String readerName) {
+		this.adaptorName = adaptorName;
+		this.readerName = readerName;
+	}
+	
+	/**
+	 * counts a message received from the physical reader.
+	 * @param message the received message.
+	 */
+	public void messageReceived(LLRPMessage message) {
+		messagesIn.increment();
+		sessionMessagesIn.increment();
+		if (null == message) {
+			return;
+		}
+		bytesIn.add(length(message));
+		final String type = message.getName();
+		StripedCounter counter = messagesByType.get(type);
+		if (null == counter) {
+			StripedCounter created = new StripedCounter();
+			counter = messagesByType.putIfAbsent(type, created);
+			if (null == counter) {
+				counter = created;
+			}
+		}
+		counter.increment();
+	}
+	
+	/**
+	 * counts a message sent to the physical reader.
+	 * @param message the sent message.
+	 */
+	public void messageSent(LLRPMessage message) {
+		messagesOut.increment();
+		sessionMessagesOut.increment();
+		if (null != message) {
+			bytesOut.add(length(message));
+		}
+	}
+	
+	/**
+	 * counts a message dropped because a queue was full.
+	 */
+	public void messageDropped() {
+		messagesDropped.increment();
+	}
+	
+	/**
+	 * starts a new session (resets the session counters).
+	 */
+	public void newSession() {
+		sessionMessagesIn.reset();
+		sessionMessagesOut.reset();
+	}
+	
+	/**
+	 * records the time needed to decode a message.
+	 * @param nanos the time in nanoseconds.
+	 */
+	public void decoded(long nanos) {
+		decodeLatency.record(nanos);
+	}
+	
+	/**
+	 * records the time needed to dispatch a message.
+	 * @param nanos the time in nanoseconds.
+	 */
+	public void dispatched(long nanos) {
+		dispatchLatency.record(nanos);
+	}
+	
+	/**
+	 * records the detection of a lost connection (missed keep-alives).
+	 * @param nanos the time in nanoseconds between the deadline and the 
+	 * detection.
+	 */
+	public void readerLost(long nanos) {
+		lostDetectionLatency.record(nanos);
+	}
+	
+	/**
+	 * @param message the message.
+	 * @return the length of the message on the wire. this is only known 
+	 * for decoded messages, 0 otherwise.
+	 */
+	private static long length(LLRPMessage message) {
+		final UnsignedInteger length = message.getMessageLength();
+		return (null == length) ? 0 : (length.intValue() & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * @param inQueue the in queue of the reader.
+	 */
+	public void setInQueue(MessageQueue<?> inQueue) {
+		this.inQueue = inQueue;
+	}
+	
+	/**
+	 * @param outQueue the out queue of the reader.
+	 */
+	public void setOutQueue(MessageQueue<?> outQueue) {
+		this.outQueue = outQueue;
+	}
+	
+	public String getAdaptorName() {
+		return adaptorName;
+	}
+
+	public String getReaderName() {
+		return readerName;
+	}
+
+	public long getMessagesIn() {
+		return messagesIn.sum();
+	}
+
+	public long getMessagesOut() {
+		return messagesOut.sum();
+	}
+
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+	
+	/**
+	 * @return the number of received messages in the current session.
+	 */
+	public long getSessionMessagesIn() {
+		return sessionMessagesIn.sum();
+	}
+	
+	/**
+	 * @return the number of sent messages in the current session.
+	 */
+	public long getSessionMessagesOut() {
+		return sessionMessagesOut.sum();
+	}
+
+	public long getMessagesDropped() {
+		return messagesDropped.sum();
+	}
+
+	public int getInQueueDepth() {
+		final MessageQueue<?> queue = inQueue;
+		return (null == queue) ? 0 : queue.size();
+	}
+
+	public int getOutQueueDepth() {
+		final MessageQueue<?> queue = outQueue;
+		return (null == queue) ? 0 : queue.size();
+	}
+
+	public Map<String, Long> getMessagesByType() {
+		Map<String, Long> types = new HashMap<String, Long> ();
+		for (Map.Entry<String, StripedCounter> entry : messagesByType.entrySet()) {
+			types.put(entry.getKey(), entry.getValue().sum());
+		}
+		return types;
+	}
+	
+	/**
+	 * @return the decode latency histogram.
+	 */
+	public LatencyHistogram getDecodeLatency() {
+		return decodeLatency;
+	}
+	
+	/**
+	 * @return the dispatch latency histogram.
+	 */
+	public LatencyHistogram getDispatchLatency() {
+		return dispatchLatency;
+	}
+	
+	/**
+	 * @return the histogram of the lost connection detection latency.
+	 */
+	public LatencyHistogram getLostDetectionLatency() {
+		return lostDetectionLatency;
+	}
+
+	public long getDecodeLatencyMean() {
+		return decodeLatency.getMean();
+	}
+
+	public long getDecodeLatency99() {
+		return decodeLatency.getPercentile(99);
+	}
+
+	public long getDispatchLatencyMean() {
+		return dispatchLatency.getMean();
+	}
+
+	public long getDispatchLatency99() {
+		return dispatchLatency.getPercentile(99);
+	}
+
+	public long getDispatchLatencyMax() {
+		return dispatchLatency.getMax();
+	}
+
+	public long getConnectionsLost() {
+		return lostDetectionLatency.getCount();
+	}
+
+	public long getLostDetectionLatencyMean() {
+		return lostDetectionLatency.getMean();
+	}
+
+	public long getLostDetectionLatencyMax() {
+		return lostDetectionLatency.getMax();
+	}
+	
+	/**
+	 * @return a serializable copy of the current values.
+	 */
+	public ReaderMetricsSnapshot snapshot() {
+		return new ReaderMetricsSnapshot(adaptorName, readerName, 
+				System.currentTimeMillis(), getMessagesIn(), getMessagesOut(), 
+				getBytesIn(), getBytesOut(), getSessionMessagesIn(), 
+				getSessionMessagesOut(), getMessagesDropped(), 
+				getInQueueDepth(), getOutQueueDepth(), getMessagesByType(), 
+				decodeLatency.snapshot(), dispatchLatency.snapshot(), 
+				lostDetectionLatency.snapshot());
+	}
+
+	public void reset() {
+		messagesIn.reset();
+		messagesOut.reset();
+		bytesIn.reset();
+		bytesOut.reset();
+		sessionMessagesIn.reset();
+		sessionMessagesOut.reset();
+		messagesDropped.reset();
+		messagesByType.clear();
+		decodeLatency.reset();
+		dispatchLatency.reset();
+		lostDetectionLatency.reset();
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view on the metrics of one reader. registered by the 
+ * {@link MetricsRegistry} under 
+ * <code>org.fosstrak.llrp:type=ReaderMetrics,adaptor=...,reader=...</code>.
+ * @author sawielan
+ *
+ */
+public interface ReaderMetricsMXBean {
+	
+	/**
+	 * @return the name of the adaptor.
+	 */
+	public String getAdaptorName();
+	
+	/**
+	 * @return the name of the reader.
+	 */
+	public String getReaderName();
+	
+	/**
+	 * @return the number of received messages in total.
+	 */
+	public long getMessagesIn();
+	
+	/**
+	 * @return the number of sent messages in total.
+	 */
+	public long getMessagesOut();
+	
+	/**
+	 * @return the number of received bytes in total.
+	 */
+	public long getBytesIn();
+	
+	/**
+	 * @return the number of sent bytes in total.
+	 */
+	public long getBytesOut();
+	
+	/**
+	 * @return the number of messages dropped because a queue was full.
+	 */
+	public long getMessagesDropped();
+	
+	/**
+	 * @return the number of messages waiting in the in queue.
+	 */
+	public int getInQueueDepth();
+	
+	/**
+	 * @return the number of messages waiting in the out queue.
+	 */
+	public int getOutQueueDepth();
+	
+	/**
+	 * @return the number of received messages per message type.
+	 */
+	public Map<String, Long> getMessagesByType();
+	
+	/**
+	 * @return the mean decode latency in nanoseconds.
+	 */
+	public long getDecodeLatencyMean();
+	
+	/**
+	 * @return the 99th percentile of the decode latency in nanoseconds.
+	 */
+	public long getDecodeLatency99();
+	
+	/**
+	 * @return the mean dispatch latency in nanoseconds.
+	 */
+	public long getDispatchLatencyMean();
+	
+	/**
+	 * @return the 99th percentile of the dispatch latency in nanoseconds.
+	 */
+	public long getDispatchLatency99();
+	
+	/**
+	 * @return the largest dispatch latency in nanoseconds.
+	 */
+	public long getDispatchLatencyMax();
+	
+	/**
+	 * @return the number of connections lost because of missed keep-alives.
+	 */
+	public long getConnectionsLost();
+	
+	/**
+	 * @return the mean time in nanoseconds between a missed keep-alive 
+	 * deadline and the detection of the lost connection.
+	 */
+	public long getLostDetectionLatencyMean();
+	
+	/**
+	 * @return the largest lost connection detection latency in nanoseconds.
+	 */
+	public long getLostDetectionLatencyMax();
+	
+	/**
+	 * sets all the counters and histograms to zero.
+	 */
+	public void reset();
+}
@@ -0,0 +1,263 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.metrics;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * serializable copy of the metrics of one reader at one point in time. 
+ * this is what gets handed out through the remote interfaces.
+ * @author sawielan
+ *
+ */
+public class ReaderMetricsSnapshot implements Serializable {
+	
+	// serial version id.
+	private static final long serialVersionUID = 1L;
+	
+	// the name of the adaptor.
+	private final String adaptorName;
+	
+	// the name of the reader.
+	private final String readerName;
+	
+	// when the snapshot was taken (milliseconds since the epoch).
+	private final long timestamp;
+	
+	// the number of received messages in total.
+	private final long messagesIn;
+	
+	// the number of sent messages in total.
+	private final long messagesOut;
+	
+	// the number of received bytes in total.
+	private final long bytesIn;
+	
+	// the number of sent bytes in total.
+	private final long bytesOut;
+	
+	// the number of received messages in the current session.
+	private final long sessionMessagesIn;
+	
+	// the number of sent messages in the current session.
+	private final long sessionMessagesOut;
+	
+	// the number of messages dropped because a queue was full.
+	private final long messagesDropped;
+	
+	// the number of messages waiting in the in queue.
+	private final int inQueueDepth;
+	
+	// the number of messages waiting in the out queue.
+	private final int outQueueDepth;
+	
+	// the number of received messages per message type.
+	private final Map<String, Long> messagesByType;
+	
+	// the decode latency.
+	private final LatencyHistogram.Snapshot decodeLatency;
+	
+	// the dispatch latency.
+	private final LatencyHistogram.Snapshot dispatchLatency;
+	
+	// the lost connection detection latency.
+	private final LatencyHistogram.Snapshot lostDetectionLatency;
+	
+	/**
+	 * creates a snapshot.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param timestamp when the snapshot was taken.
+	 * @param messagesIn the number of received messages in total.
+	 * @param messagesOut the number of sent messages in total.
+	 * @param bytesIn the number of received bytes in total.
+	 * @param bytesOut the number of sent bytes in total.
+	 * @param sessionMessagesIn the number of received messages in the current session.
+	 * @param sessionMessagesOut the number of sent messages in the current session.
+	 * @param messagesDropped the number of dropped messages.
+	 * @param inQueueDepth the number of messages waiting in the in queue.
+	 * @param outQueueDepth the number of messages waiting in the out queue.
+	 * @param messagesByType the number of received messages per message type.
+	 * @param decodeLatency the decode latency.
+	 * @param dispatchLatency the dispatch latency.
+	 * @param lostDetectionLatency the lost connection detection latency.
+	 */
+	public ReaderMetricsSnapshot(String adaptorName, String readerName, 
+			long timestamp, long messagesIn, long messagesOut, long bytesIn, 
+			long bytesOut, long sessionMessagesIn, long sessionMessagesOut, 
+			long messagesDropped, int inQueueDepth, int outQueueDepth,
+			Map<String, Long> messagesByType, 
+			LatencyHistogram.Snapshot decodeLatency, 
+			LatencyHistogram.Snapshot dispatchLatency, 
+			LatencyHistogram.Snapshot lostDetectionLatency) {
+		
+		this.adaptorName = adaptorName;
+		this.readerName = readerName;
+		this.timestamp = timestamp;
+		this.messagesIn = messagesIn;
+		this.messagesOut = messagesOut;
+		this.bytesIn = bytesIn;
+		this.bytesOut = bytesOut;
+		this.sessionMessagesIn = sessionMessagesIn;
+		this.sessionMessagesOut = sessionMessagesOut;
+		this.messagesDropped = messagesDropped;
+		this.inQueueDepth = inQueueDepth;
+		this.outQueueDepth = outQueueDepth;
+		this.messagesByType = Collections.unmodifiableMap(
+				new TreeMap<String, Long>(messagesByType));
+		this.decodeLatency = decodeLatency;
+		this.dispatchLatency = dispatchLatency;
+		this.lostDetectionLatency = lostDetectionLatency;
+	}
+
+	/**
+	 * @return the name of the adaptor.
+	 */
+	public String getAdaptorName() {
+		return adaptorName;
+	}
+
+	/**
+	 * @return the name of the reader.
+	 */
+	public String getReaderName() {
+		return readerName;
+	}
+
+	/**
+	 * @return when the snapshot was taken (milliseconds since the epoch).
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * @return the number of received messages in total.
+	 */
+	public long getMessagesIn() {
+		return messagesIn;
+	}
+
+	/**
+	 * @return the number of sent messages in total.
+	 */
+	public long getMessagesOut() {
+		return messagesOut;
+	}
+
+	/**
+	 * @return the number of received bytes in total.
+	 */
+	public long getBytesIn() {
+		return bytesIn;
+	}
+
+	/**
+	 * @return the number of sent bytes in total.
+	 */
+	public long getBytesOut() {
+		return bytesOut;
+	}
+
+	/**
+	 * @return the number of received messages in the current session.
+	 */
+	public long getSessionMessagesIn() {
+		return sessionMessagesIn;
+	}
+
+	/**
+	 * @return the number of sent messages in the current session.
+	 */
+	public long getSessionMessagesOut() {
+		return sessionMessagesOut;
+	}
+
+	/**
+	 * @return the number of messages dropped because a queue was full.
+	 */
+	public long getMessagesDropped() {
+		return messagesDropped;
+	}
+
+	/**
+	 * @return the number of messages waiting in the in queue.
+	 */
+	public int getInQueueDepth() {
+		return inQueueDepth;
+	}
+
+	/**
+	 * @return the number of messages waiting in the out queue.
+	 */
+	public int getOutQueueDepth() {
+		return outQueueDepth;
+	}
+
+	/**
+	 * @return the number of received messages per message type (sorted by 
+	 * the name of the message type).
+	 */
+	public Map<String, Long> getMessagesByType() {
+		return messagesByType;
+	}
+
+	/**
+	 * @return the time from the raw bytes to the decoded message.
+	 */
+	public LatencyHistogram.Snapshot getDecodeLatency() {
+		return decodeLatency;
+	}
+
+	/**
+	 * @return the time to hand a received message to the adaptor and 
+	 * the registered receivers.
+	 */
+	public LatencyHistogram.Snapshot getDispatchLatency() {
+		return dispatchLatency;
+	}
+	
+	/**
+	 * @return the time between a missed keep-alive deadline and the 
+	 * detection of the lost connection (one entry per lost connection).
+	 */
+	public LatencyHistogram.Snapshot getLostDetectionLatency() {
+		return lostDetectionLatency;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%s/%s: in=%d (%d bytes) out=%d (%d bytes) dropped=%d", 
+				adaptorName, readerName, messagesIn, bytesIn, messagesOut, 
+				bytesOut, messagesDropped));
+		sb.append(String.format(" queues=%d/%d", inQueueDepth, outQueueDepth));
+		sb.append(" decode[").append(decodeLatency).append("]");
+		sb.append(" dispatch[").append(dispatchLatency).append("]");
+		sb.append(" lost[").append(lostDetectionLatency).append("]");
+		sb.append(" types=").append(messagesByType);
+		return sb.toString();
+	}
+}
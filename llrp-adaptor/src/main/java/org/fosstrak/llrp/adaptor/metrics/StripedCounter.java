@@ -0,0 +1,104 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * counter for values updated by many threads. the counter is split into 
+ * several cells (each on its own cache line), a thread adds to the cell 
+ * selected by its thread id. reading sums up all the cells, thus the value 
+ * is not an atomic snapshot while the counter is updated concurrently.
+ * @author sawielan
+ *
+ */
+public class StripedCounter {
+	
+	/** the number of longs between two cells (one cache line). */
+	private static final int PADDING = 8;
+	
+	/** the number of cells (power of two). */
+	private static final int STRIPES = stripes();
+	
+	/** the cells. */
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+	
+	/**
+	 * @return the number of cells to use (twice the number of processors 
+	 * rounded to the next power of two, 64 at most).
+	 */
+	private static int stripes() {
+		final int wanted = Math.min(64, 2 * Runtime.getRuntime().availableProcessors());
+		int stripes = 1;
+		while (stripes < wanted) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+	
+	/**
+	 * @return the index of the cell of the current thread.
+	 */
+	private static int cell() {
+		return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+	}
+	
+	/**
+	 * adds the given value.
+	 * @param value the value to add.
+	 */
+	public void add(long value) {
+		cells.addAndGet(cell(), value);
+	}
+	
+	/**
+	 * adds one.
+	 */
+	public void increment() {
+		cells.incrementAndGet(cell());
+	}
+	
+	/**
+	 * @return the sum of all the cells.
+	 */
+	public long sum() {
+		long sum = 0;
+		for (int i=0; i<STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+		return sum;
+	}
+	
+	/**
+	 * sets the counter to zero. updates running concurrently might get lost.
+	 */
+	public void reset() {
+		for (int i=0; i<STRIPES; i++) {
+			cells.set(i * PADDING, 0);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+}
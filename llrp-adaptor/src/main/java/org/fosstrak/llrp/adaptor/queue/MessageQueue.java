@@ -0,0 +1,97 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.queue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a bounded queue used to hand over messages between the network layer and 
+ * the workers that process the messages. implementations must be thread 
+ * safe and must never block the calling thread in {@link #offer(Object)} 
+ * unless the overflow policy of the queue explicitly asks for it.
+ * @author sawielan
+ *
+ * @param <E> the type of the elements in the queue.
+ */
+public interface MessageQueue<E> {
+
+	/**
+	 * enqueues an element. when the queue is full, the overflow policy of 
+	 * the queue decides whether the element gets dropped, whether the oldest 
+	 * element gets dropped or whether the caller waits for free space.
+	 * @param element the element to enqueue (must not be null).
+	 * @return true if the element has been enqueued, false if it has been dropped.
+	 */
+	boolean offer(E element);
+	
+	/**
+	 * enqueues an element. when the queue is full, waits at most the given 
+	 * time for free space regardless of the overflow policy.
+	 * @param element the element to enqueue (must not be null).
+	 * @param timeout how long to wait at most.
+	 * @param unit the time unit of the timeout.
+	 * @return true if the element has been enqueued, false upon timeout.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException;
+	
+	/**
+	 * removes the head of the queue without waiting.
+	 * @return the head of the queue or null if the queue is empty.
+	 */
+	E poll();
+	
+	/**
+	 * removes the head of the queue. if the queue is empty, waits at most 
+	 * the given time for an element to arrive.
+	 * @param timeout how long to wait at most.
+	 * @param unit the time unit of the timeout.
+	 * @return the head of the queue or null upon timeout.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	E take(long timeout, TimeUnit unit) throws InterruptedException;
+	
+	/**
+	 * @return the number of elements currently in the queue.
+	 */
+	int size();
+	
+	/**
+	 * @return true if the queue is empty.
+	 */
+	boolean isEmpty();
+	
+	/**
+	 * @return the maximum number of elements the queue can hold.
+	 */
+	int capacity();
+	
+	/**
+	 * @return the number of elements dropped due to the overflow policy.
+	 */
+	long getDroppedCount();
+	
+	/**
+	 * removes all the elements from the queue.
+	 */
+	void clear();
+}
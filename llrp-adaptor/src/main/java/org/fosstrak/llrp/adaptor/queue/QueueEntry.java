@@ -39,6 +39,9 @@ public class QueueEntry {
 	/** the adaptor name that will receive or read the message. */
 	private String adaptorName;
 	
+	/** the future informed about the outcome of the sending (can be null). */
+	private SendFuture future;
+	
 	/**
 	 * creates a new queue item for an llrp message.
 	 * @param message the llrp message.
@@ -52,6 +55,18 @@ public class QueueEntry {
 		this.adaptorName = adaptorName;
 	}
 	
+	/**
+	 * creates a new queue item for an llrp message to be sent.
+	 * @param message the llrp message.
+	 * @param readerName the reader that will receive the message.
+	 * @param adaptorName the adaptor name that will receive the message.
+	 * @param future the future informed about the outcome of the sending.
+	 */
+	public QueueEntry(LLRPMessage message, String readerName, String adaptorName, SendFuture future) {
+		this(message, readerName, adaptorName);
+		this.future = future;
+	}
+	
 	/**
 	 * returns the stored message.
 	 * @return the stored message.
@@ -99,4 +114,20 @@ public class QueueEntry {
 	public void setAdaptorName(String adaptorName) {
 		this.adaptorName = adaptorName;
 	}
+	
+	/**
+	 * returns the future informed about the outcome of the sending.
+	 * @return the future or null if nobody waits for the outcome.
+	 */
+	public SendFuture getFuture() {
+		return future;
+	}
+	
+	/**
+	 * sets the future informed about the outcome of the sending.
+	 * @param future the future.
+	 */
+	public void setFuture(SendFuture future) {
+		this.future = future;
+	}
 }
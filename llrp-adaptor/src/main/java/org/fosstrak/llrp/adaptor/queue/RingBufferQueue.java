@@ -0,0 +1,369 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * bounded lock-free ring buffer implementing the {@link MessageQueue}. every 
+ * slot of the ring carries a sequence number that tells producers and 
+ * consumers whether the slot is free or filled, so neither side ever takes 
+ * a lock (the algorithm is safe for multiple producers and consumers, the 
+ * single producer/single consumer case is just the cheapest one).<br/>
+ * <br/>
+ * the capacity is rounded up to the next power of two (at least two, as 
+ * with a single slot a filled and a released slot could not be told 
+ * apart by their sequence numbers). when the ring is 
+ * full the {@link OverflowPolicy} is applied, when it is empty a consumer 
+ * waits according to the {@link WaitStrategy}.
+ * @author sawielan
+ *
+ * @param <E> the type of the elements in the queue.
+ */
+public class RingBufferQueue<E> implements MessageQueue<E> {
+	
+	/** what to do when the queue is full. */
+	public enum OverflowPolicy {
+		/** drop the element to be enqueued. */
+		DROP_NEWEST,
+		/** drop the head of the queue to make space for the new element. */
+		DROP_OLDEST,
+		/** let the producer wait until there is free space. */
+		BLOCK
+	};
+	
+	/** how to wait for elements (or free space). */
+	public enum WaitStrategy {
+		/** spin on the cpu. lowest latency, burns one core per waiting thread. */
+		BUSY_SPIN,
+		/** spin but yield the cpu in between. */
+		YIELD,
+		/** park the thread. the producer unparks a waiting consumer. */
+		PARK
+	};
+	
+	/** the default capacity. */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/** how long a blocked producer parks before checking for free space again. */
+	private static final long PRODUCER_PARK_NANOS = 100000L;
+	
+	/** the slots of the ring. */
+	private final Object[] buffer;
+	
+	/** the sequence number of each slot. */
+	private final AtomicLongArray sequences;
+	
+	/** mask to map a position to a slot. */
+	private final int mask;
+	
+	/** the next position to be read. */
+	private final AtomicLong head = new AtomicLong(0);
+	
+	/** the next position to be written. */
+	private final AtomicLong tail = new AtomicLong(0);
+	
+	/** the number of dropped elements. */
+	private final AtomicLong dropped = new AtomicLong(0);
+	
+	/** the overflow policy. */
+	private final OverflowPolicy overflowPolicy;
+	
+	/** the wait strategy. */
+	private final WaitStrategy waitStrategy;
+	
+	/** a consumer that is parked and waits for new elements. */
+	private volatile Thread parkedConsumer = null;
+	
+	/**
+	 * creates a ring buffer with the default capacity, dropping new elements 
+	 * when full and parking waiting consumers.
+	 */
+	public RingBufferQueue() {
+		this(DEFAULT_CAPACITY, OverflowPolicy.DROP_NEWEST, WaitStrategy.PARK);
+	}
+	
+	/**
+	 * creates a ring buffer.
+	 * @param capacity the capacity (rounded up to the next power of two, at least two).
+	 * @param overflowPolicy what to do when the queue is full.
+	 * @param waitStrategy how to wait for elements.
+	 */
+	public RingBufferQueue(int capacity, OverflowPolicy overflowPolicy, WaitStrategy waitStrategy) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive: " + capacity);
+		}
+		if ((null == overflowPolicy) || (null == waitStrategy)) {
+			throw new IllegalArgumentException("overflow policy and wait strategy must not be null");
+		}
+		int size = 2;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		buffer = new Object[size];
+		sequences = new AtomicLongArray(size);
+		for (int i=0; i<size; i++) {
+			sequences.set(i, i);
+		}
+		mask = size - 1;
+		this.overflowPolicy = overflowPolicy;
+		this.waitStrategy = waitStrategy;
+	}
+	
+	/**
+	 * tries to write an element into the ring.
+	 * @param element the element.
+	 * @return false if the ring is full.
+	 */
+	private boolean tryOffer(E element) {
+		long pos = tail.get();
+		while (true) {
+			final int index = (int) (pos & mask);
+			final long diff = sequences.get(index) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					buffer[index] = element;
+					sequences.set(index, pos + 1);
+					return true;
+				}
+				pos = tail.get();
+			} else if (diff < 0) {
+				// the slot still holds an element from the previous round.
+				return false;
+			} else {
+				// another producer was faster.
+				pos = tail.get();
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#poll()
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long pos = head.get();
+		while (true) {
+			final int index = (int) (pos & mask);
+			final long diff = sequences.get(index) - (pos + 1);
+			if (diff == 0) {
+				if (head.compareAndSet(pos, pos + 1)) {
+					E element = (E) buffer[index];
+					buffer[index] = null;
+					// release the slot for the next round.
+					sequences.set(index, pos + mask + 1);
+					return element;
+				}
+				pos = head.get();
+			} else if (diff < 0) {
+				// empty.
+				return null;
+			} else {
+				// another consumer was faster.
+				pos = head.get();
+			}
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#offer(java.lang.Object)
+	 */
+	public boolean offer(E element) {
+		if (null == element) {
+			throw new NullPointerException("null elements are not allowed");
+		}
+		switch (overflowPolicy) {
+		case DROP_OLDEST:
+			while (!tryOffer(element)) {
+				if (null != poll()) {
+					dropped.incrementAndGet();
+				}
+			}
+			break;
+		case BLOCK:
+			while (!tryOffer(element)) {
+				if (Thread.currentThread().isInterrupted()) {
+					dropped.incrementAndGet();
+					return false;
+				}
+				idleProducer();
+			}
+			break;
+		default:
+			if (!tryOffer(element)) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		}
+		signalConsumer();
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#offer(java.lang.Object, long, java.util.concurrent.TimeUnit)
+	 */
+	public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+		if (null == element) {
+			throw new NullPointerException("null elements are not allowed");
+		}
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!tryOffer(element)) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (deadline - System.nanoTime() <= 0) {
+				return false;
+			}
+			idleProducer();
+		}
+		signalConsumer();
+		return true;
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#take(long, java.util.concurrent.TimeUnit)
+	 */
+	public E take(long timeout, TimeUnit unit) throws InterruptedException {
+		E element = poll();
+		if (null != element) {
+			return element;
+		}
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			element = poll();
+			if (null != element) {
+				return element;
+			}
+			final long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return null;
+			}
+			switch (waitStrategy) {
+			case YIELD:
+				Thread.yield();
+				break;
+			case PARK:
+				parkedConsumer = Thread.currentThread();
+				// re-check after publishing the parked thread, otherwise we 
+				// might miss the signal of a producer.
+				if (isEmpty()) {
+					LockSupport.parkNanos(this, remaining);
+				}
+				parkedConsumer = null;
+				break;
+			default:
+				// busy spin.
+			}
+		}
+	}
+	
+	/**
+	 * wakes up a parked consumer (if any).
+	 */
+	private void signalConsumer() {
+		if (waitStrategy == WaitStrategy.PARK) {
+			Thread consumer = parkedConsumer;
+			if (null != consumer) {
+				LockSupport.unpark(consumer);
+			}
+		}
+	}
+	
+	/**
+	 * lets a producer wait for free space according to the wait strategy.
+	 */
+	private void idleProducer() {
+		switch (waitStrategy) {
+		case YIELD:
+			Thread.yield();
+			break;
+		case PARK:
+			LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+			break;
+		default:
+			// busy spin.
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#size()
+	 */
+	public int size() {
+		// read head first, so the size never gets negative.
+		final long h = head.get();
+		final long size = tail.get() - h;
+		if (size < 0) {
+			return 0;
+		}
+		return (int) Math.min(size, buffer.length);
+	}
+
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#isEmpty()
+	 */
+	public boolean isEmpty() {
+		return head.get() >= tail.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#capacity()
+	 */
+	public int capacity() {
+		return buffer.length;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#getDroppedCount()
+	 */
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.fosstrak.llrp.adaptor.queue.MessageQueue#clear()
+	 */
+	public void clear() {
+		while (null != poll()) {
+			// just drain the queue.
+		}
+	}
+	
+	/**
+	 * @return the overflow policy of this queue.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+	
+	/**
+	 * @return the wait strategy of this queue.
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.queue;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * the outcome of sending an enqueued LLRP message. the future is completed 
+ * when the message has been written to the connection of the reader (or, for 
+ * a remote adaptor, when the remote adaptor accepted the message), and it 
+ * fails when the message could not be sent.<br/>
+ * <br/>
+ * an enqueued message can not be taken back, so the future can not be 
+ * cancelled.
+ * @author sawielan
+ *
+ */
+public class SendFuture implements Future<Void> {
+	
+	/** released once the future is done. */
+	private final CountDownLatch done = new CountDownLatch(1);
+	
+	/** set by the first completion. */
+	private final AtomicBoolean completed = new AtomicBoolean(false);
+	
+	/** the cause of the failure (null if sent). */
+	private volatile Throwable failure = null;
+	
+	/** invoked once the future is done. */
+	private final ConcurrentLinkedQueue<Runnable> listeners = new ConcurrentLinkedQueue<Runnable> ();
+	
+	/**
+	 * creates a future that already failed.
+	 * @param cause the cause of the failure.
+	 * @return the failed future.
+	 */
+	public static SendFuture failed(Throwable cause) {
+		SendFuture future = new SendFuture();
+		future.fail(cause);
+		return future;
+	}
+	
+	/**
+	 * marks the message as sent.
+	 * @return false if the future was already done.
+	 */
+	public boolean complete() {
+		if (!completed.compareAndSet(false, true)) {
+			return false;
+		}
+		done.countDown();
+		notifyListeners();
+		return true;
+	}
+	
+	/**
+	 * marks the message as failed.
+	 * @param cause the cause of the failure.
+	 * @return false if the future was already done.
+	 */
+	public boolean fail(Throwable cause) {
+		if (!completed.compareAndSet(false, true)) {
+			return false;
+		}
+		failure = cause;
+		done.countDown();
+		notifyListeners();
+		return true;
+	}
+	
+	/**
+	 * registers a listener invoked once the future is done (immediately if 
+	 * already done). the listener runs on the thread completing the future 
+	 * and must therefore be short.
+	 * @param listener the listener.
+	 */
+	public void addListener(Runnable listener) {
+		listeners.add(listener);
+		if (isDone()) {
+			notifyListeners();
+		}
+	}
+	
+	/**
+	 * runs every registered listener once.
+	 */
+	private void notifyListeners() {
+		Runnable listener;
+		while (null != (listener = listeners.poll())) {
+			listener.run();
+		}
+	}
+	
+	/**
+	 * @return true if the message could not be sent.
+	 */
+	public boolean isFailed() {
+		return isDone() && (null != failure);
+	}
+	
+	/**
+	 * @return the cause of the failure or null.
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * the future can not be cancelled.
+	 * @param mayInterruptIfRunning ignored.
+	 * @return always false.
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return false;
+	}
+
+	public boolean isCancelled() {
+		return false;
+	}
+
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	public Void get() throws InterruptedException, ExecutionException {
+		done.await();
+		return result();
+	}
+
+	public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!done.await(timeout, unit)) {
+			throw new TimeoutException("message not yet sent");
+		}
+		return result();
+	}
+	
+	/**
+	 * @return null if sent.
+	 * @throws ExecutionException if the message could not be sent.
+	 */
+	private Void result() throws ExecutionException {
+		if (null != failure) {
+			throw new ExecutionException(failure);
+		}
+		return null;
+	}
+}
@@ -23,13 +23,17 @@ package org.fosstrak.llrp.adaptor.util;
 
 import java.rmi.RemoteException;
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.apache.log4j.Logger;
 import org.fosstrak.llrp.adaptor.AsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.BatchAsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.LocalAsynchronousNotifiable;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
 import org.fosstrak.llrp.adaptor.util.type.NotifiableFailureCounter;
+import org.llrp.ltk.exceptions.InvalidLLRPMessageException;
+import org.llrp.ltk.types.LLRPMessage;
 
 /**
  * helper class to maintain a list of asynchronous message receivers. the 
@@ -38,26 +42,67 @@ import org.fosstrak.llrp.adaptor.util.type.NotifiableFailureCounter;
  * transmissions.
  * <br/>
  * <br/>
+ * receivers implementing {@link LocalAsynchronousNotifiable} are notified 
+ * directly. every other (remote) receiver gets its own {@link ReceiverLane} 
+ * with a bounded queue, so a slow receiver does not delay the others nor 
+ * the caller. remote receivers implementing 
+ * {@link BatchAsynchronousNotifiable} get the messages in batches. a remote 
+ * receiver lagging behind by more than the maximum lag is dropped as well.
+ * <br/>
+ * <br/>
  * the implementation is thread safe.
  * @author swieland
  *
  */
-public class AsynchronousNotifiableList implements AsynchronousNotifiable {
+public class AsynchronousNotifiableList implements AsynchronousNotifiable, LocalAsynchronousNotifiable {
 	
 	/**
 	 * SID.
 	 */
 	private static final long serialVersionUID = 1L;
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(AsynchronousNotifiableList.class);
 
 	/** a list with all the receivers of asynchronous messages. */
 	private ConcurrentLinkedQueue<NotifiableFailureCounter> receivers = new ConcurrentLinkedQueue<NotifiableFailureCounter>();
 	
+	/** the default maximum number of messages in a batch. */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+	
+	/** the default time in ms a message waits at most in a batch. */
+	public static final long DEFAULT_LINGER = 10L;
+	
+	/** the default maximum lag in ms of a remote receiver before it is dropped. */
+	public static final long DEFAULT_MAX_LAG = 30000L;
+	
+	/** the delivery lanes of the remote receivers. */
+	private transient ConcurrentHashMap<NotifiableFailureCounter, ReceiverLane> lanes = 
+		new ConcurrentHashMap<NotifiableFailureCounter, ReceiverLane> ();
+	
+	/** the maximum number of messages in a batch (1 disables batching). */
+	private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+	
+	/** the time in ms a message waits at most in a batch. */
+	private volatile long linger = DEFAULT_LINGER;
+	
+	/** the number of entries the queue of a lane can hold. */
+	private volatile int laneCapacity = ReceiverLane.DEFAULT_CAPACITY;
+	
+	/** the maximum lag in ms of a remote receiver before it is dropped. */
+	private volatile long maxLag = DEFAULT_MAX_LAG;
+	
 	/**
-	 * add a new receiver to the list.
+	 * add a new receiver to the list. a remote receiver gets its delivery 
+	 * lane right away.
 	 * @param entry the new receiver to be stored in the list.
 	 */
 	public void add(AsynchronousNotifiable entry) {
-		receivers.add(new NotifiableFailureCounter(entry));
+		NotifiableFailureCounter counter = new NotifiableFailureCounter(entry);
+		if (!(entry instanceof LocalAsynchronousNotifiable)) {
+			lanes.put(counter, new ReceiverLane(this, counter, laneCapacity, maxBatchSize, linger));
+		}
+		receivers.add(counter);
 	}
 	
 	/**
@@ -68,23 +113,158 @@ public class AsynchronousNotifiableList implements AsynchronousNotifiable {
 		for (NotifiableFailureCounter r : receivers) {
 			if (r.getReceiver().equals(entry)) {
 				receivers.remove(r);
+				discardLane(r);
 			}
 		}
 	}
 	
 	/**
-	 * removes all the erroneous receivers from the list.
+	 * configures the batched delivery. the batches already collected are 
+	 * handed to the delivery.
+	 * @param maxBatchSize the maximum number of messages in a batch (1 to 
+	 * deliver every message with its own call).
+	 * @param linger the time in ms a message waits at most in a batch.
 	 */
-	private synchronized void cleanup() {
-		List<NotifiableFailureCounter> aboveThreshold = new LinkedList<NotifiableFailureCounter> ();
-		for (NotifiableFailureCounter counter : receivers) {
-			if (counter.isAboveThreshold()) {
-				aboveThreshold.add(counter);
+	public void setBatching(int maxBatchSize, long linger) {
+		if ((maxBatchSize < 1) || (linger < 0)) {
+			throw new IllegalArgumentException(String.format(
+					"illegal batch size %d or linger %d", maxBatchSize, linger));
+		}
+		this.maxBatchSize = maxBatchSize;
+		this.linger = linger;
+		for (ReceiverLane lane : lanes.values()) {
+			lane.setBatching(maxBatchSize, linger);
+		}
+	}
+	
+	/**
+	 * hands the messages collected for all the batch receivers to the 
+	 * delivery.
+	 */
+	public void flush() {
+		for (ReceiverLane lane : lanes.values()) {
+			lane.flush();
+		}
+	}
+	
+	/**
+	 * @return the maximum number of messages in a batch.
+	 */
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+	
+	/**
+	 * @return the time in ms a message waits at most in a batch.
+	 */
+	public long getLinger() {
+		return linger;
+	}
+	
+	/**
+	 * sets the number of entries the queue of a lane can hold. applies to 
+	 * the receivers added afterwards.
+	 * @param laneCapacity the capacity.
+	 */
+	public void setLaneCapacity(int laneCapacity) {
+		if (laneCapacity < 1) {
+			throw new IllegalArgumentException("illegal lane capacity " + laneCapacity);
+		}
+		this.laneCapacity = laneCapacity;
+	}
+	
+	/**
+	 * @return the number of entries the queue of a lane can hold.
+	 */
+	public int getLaneCapacity() {
+		return laneCapacity;
+	}
+	
+	/**
+	 * sets the maximum lag of a remote receiver. a receiver lagging behind 
+	 * by more is dropped.
+	 * @param maxLag the maximum lag in ms.
+	 */
+	public void setMaxLag(long maxLag) {
+		if (maxLag < 1) {
+			throw new IllegalArgumentException("illegal maximum lag " + maxLag);
+		}
+		this.maxLag = maxLag;
+	}
+	
+	/**
+	 * @return the maximum lag in ms of a remote receiver.
+	 */
+	public long getMaxLag() {
+		return maxLag;
+	}
+	
+	/**
+	 * returns the delivery lane of a remote receiver (with the lag, the 
+	 * number of delivered and dropped messages).
+	 * @param entry the receiver.
+	 * @return the lane or null if the receiver is unknown or local.
+	 */
+	public ReceiverLane getLane(AsynchronousNotifiable entry) {
+		for (NotifiableFailureCounter r : receivers) {
+			if (r.getReceiver().equals(entry)) {
+				return lanes.get(r);
 			}
 		}
-		
-		for (NotifiableFailureCounter counter : aboveThreshold) {
-			receivers.remove(counter);
+		return null;
+	}
+	
+	/**
+	 * waits until all the lanes have delivered their messages.
+	 * @param timeout the maximum time to wait in ms.
+	 * @return true if all the lanes are idle, false upon timeout.
+	 * @throws InterruptedException when interrupted while waiting.
+	 */
+	public boolean awaitIdle(long timeout) throws InterruptedException {
+		flush();
+		final long deadline = System.currentTimeMillis() + timeout;
+		while (true) {
+			boolean idle = true;
+			for (ReceiverLane lane : lanes.values()) {
+				idle &= lane.isIdle();
+			}
+			if (idle) {
+				return true;
+			}
+			if (System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			Thread.sleep(5);
+		}
+	}
+	
+	
+	/**
+	 * drops the messages not yet delivered to a receiver.
+	 * @param receiver the receiver.
+	 */
+	private void discardLane(NotifiableFailureCounter receiver) {
+		ReceiverLane lane = lanes.remove(receiver);
+		if (null != lane) {
+			lane.discard();
+		}
+	}
+	
+	/**
+	 * removes all the erroneous and all the lagging receivers from the list.
+	 */
+	void cleanup() {
+		for (NotifiableFailureCounter counter : receivers) {
+			boolean evict = counter.isAboveThreshold();
+			ReceiverLane lane = lanes.get(counter);
+			if (!evict && (null != lane) && (lane.getLag() > maxLag)) {
+				log.warn(String.format("dropping receiver %s lagging behind by %d ms.", 
+						counter.getReceiver(), lane.getLag()));
+				evict = true;
+			}
+			if (evict && receivers.remove(counter)) {
+				discardLane(counter);
+			}
 		}
 	}
 
@@ -97,12 +277,63 @@ public class AsynchronousNotifiableList implements AsynchronousNotifiable {
 	public void notify(byte[] message, String readerName) throws RemoteException {
 		
 		for (NotifiableFailureCounter receiver : receivers) {
-			try {
-				receiver.getReceiver().notify(message, readerName);
-				// if notified successfully, clean the error counter.
-				receiver.clean();
-			} catch (RemoteException e) {
-				receiver.error();
+			if (receiver.getReceiver() instanceof LocalAsynchronousNotifiable) {
+				try {
+					receiver.getReceiver().notify(message, readerName);
+					// if notified successfully, clean the error counter.
+					receiver.clean();
+				} catch (RemoteException e) {
+					receiver.error();
+				}
+			} else {
+				// the outcome of the delivery is recorded by the lane. no 
+				// lane if the receiver has been removed concurrently.
+				ReceiverLane lane = lanes.get(receiver);
+				if (null != lane) {
+					lane.add(message, readerName);
+				}
+			}
+		}
+		// run the cleanup routine.
+		cleanup();
+	}
+	
+	/**
+	 * notify all the receivers with a new message. receivers implementing 
+	 * {@link LocalAsynchronousNotifiable} get the decoded message directly. 
+	 * for all the other receivers the message is binary encoded once (and 
+	 * only if there is such a receiver at all).
+	 * @param message the decoded LLRP message.
+	 * @param readerName the reader that delivered the message.
+	 * @throws RemoteException when there is an RMI exception.
+	 */
+	public void notify(LLRPMessage message, String readerName) throws RemoteException {
+		byte[] binaryEncoded = null;
+		boolean encodingFailed = false;
+		
+		for (NotifiableFailureCounter receiver : receivers) {
+			AsynchronousNotifiable r = receiver.getReceiver();
+			if (r instanceof LocalAsynchronousNotifiable) {
+				try {
+					((LocalAsynchronousNotifiable) r).notify(message, readerName);
+					// if notified successfully, clean the error counter.
+					receiver.clean();
+				} catch (RemoteException e) {
+					receiver.error();
+				}
+				continue;
+			}
+			if ((binaryEncoded == null) && !encodingFailed) {
+				try {
+					binaryEncoded = message.encodeBinary();
+				} catch (InvalidLLRPMessageException e) {
+					log.error("could not encode message for remote receivers of reader " + readerName, e);
+					encodingFailed = true;
+				}
+			}
+			ReceiverLane lane = lanes.get(receiver);
+			if (!encodingFailed && (null != lane)) {
+				lane.add(binaryEncoded, readerName);
 			}
 		}
 		// run the cleanup routine.
@@ -117,12 +348,20 @@ public class AsynchronousNotifiableList implements AsynchronousNotifiable {
 	 */
 	public void notifyError(LLRPRuntimeException e, String readerName) throws RemoteException {
 		for (NotifiableFailureCounter receiver : receivers) {
-			try {
-				receiver.getReceiver().notifyError(e, readerName);
-				// if notified successfully, clean the error counter.
-				receiver.clean();
-			} catch (RemoteException ex) {
-				receiver.error();
+			if (receiver.getReceiver() instanceof LocalAsynchronousNotifiable) {
+				try {
+					receiver.getReceiver().notifyError(e, readerName);
+					// if notified successfully, clean the error counter.
+					receiver.clean();
+				} catch (RemoteException ex) {
+					receiver.error();
+				}
+			} else {
+				// delivered after the messages received before the error.
+				ReceiverLane lane = lanes.get(receiver);
+				if (null != lane) {
+					lane.addError(e, readerName);
+				}
 			}
 		}
 		// run the cleanup routine.
@@ -0,0 +1,228 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.util;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+/**
+ * merges bursts of commit requests into a single store. the first request 
+ * schedules the store after the configured delay, further requests within 
+ * the delay are merged into that store. a delay of 0 stores upon every 
+ * request. the delayed store is timed on the shared scheduler but runs on 
+ * the shared worker pool, as a store may block (file I/O, locks).<br/>
+ * <br/>
+ * while a bulk change is open (see {@link #begin()} and {@link #end()}) the 
+ * requests are only recorded, the store runs once when the outermost bulk 
+ * change ends.<br/>
+ * <br/>
+ * the store never runs while holding the lock of the committer, so the 
+ * store may take other locks without risking a dead lock with threads 
+ * requesting a commit.
+ * @author sawielan
+ *
+ */
+public class CoalescingCommitter {
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(CoalescingCommitter.class);
+	
+	/** the store to run. */
+	private final Runnable store;
+	
+	/** the delay in ms between the first request and the store. */
+	private long delay;
+	
+	/** whether there are requests not yet stored. */
+	private boolean dirty = false;
+	
+	/** the number of open bulk changes. */
+	private int bulkDepth = 0;
+	
+	/** the scheduled store (null if none). */
+	private ScheduledFuture<?> scheduled = null;
+	
+	/** the number of stores run so far. */
+	private long stores = 0;
+	
+	/**
+	 * creates a committer.
+	 * @param store the store to run.
+	 * @param delay the delay in ms (0 to store upon every request).
+	 */
+	public CoalescingCommitter(Runnable store, long delay) {
+		if (null == store) {
+			throw new IllegalArgumentException("store must not be null");
+		}
+		this.store = store;
+		setDelay(delay);
+	}
+	
+	/**
+	 * requests a store. 
+	 */
+	public void request() {
+		synchronized (this) {
+			dirty = true;
+			if ((bulkDepth > 0) || (null != scheduled)) {
+				return;
+			}
+			if (delay > 0) {
+				scheduled = SharedExecutor.getScheduler().schedule(new Runnable() {
+					public void run() {
+						synchronized (CoalescingCommitter.this) {
+							scheduled = null;
+						}
+						runStoreOnWorker();
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+				return;
+			}
+		}
+		runStore();
+	}
+	
+	/**
+	 * opens a bulk change. bulk changes can be nested.
+	 */
+	public synchronized void begin() {
+		bulkDepth++;
+	}
+	
+	/**
+	 * closes a bulk change. when the outermost bulk change is closed, the 
+	 * requests recorded meanwhile are stored immediately.
+	 */
+	public void end() {
+		synchronized (this) {
+			if (bulkDepth == 0) {
+				throw new IllegalStateException("no bulk change open");
+			}
+			bulkDepth--;
+			if (bulkDepth > 0) {
+				return;
+			}
+		}
+		flush();
+	}
+	
+	/**
+	 * runs the pending store now (if there is one) and cancels the 
+	 * scheduled store.
+	 */
+	public void flush() {
+		synchronized (this) {
+			if (null != scheduled) {
+				scheduled.cancel(false);
+				scheduled = null;
+			}
+		}
+		runStore();
+	}
+	
+	/**
+	 * drops the pending requests without storing.
+	 */
+	public synchronized void discard() {
+		if (null != scheduled) {
+			scheduled.cancel(false);
+			scheduled = null;
+		}
+		dirty = false;
+	}
+	
+	/**
+	 * hands the store to the shared worker pool. if the pool is shut down, 
+	 * the store runs on the calling thread.
+	 */
+	private void runStoreOnWorker() {
+		try {
+			SharedExecutor.getExecutor().execute(new Runnable() {
+				public void run() {
+					runStore();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			runStore();
+		}
+	}
+	
+	/**
+	 * runs the store if there are requests not yet stored.
+	 */
+	private void runStore() {
+		synchronized (this) {
+			if (!dirty || (bulkDepth > 0)) {
+				return;
+			}
+			dirty = false;
+			stores++;
+		}
+		try {
+			store.run();
+		} catch (RuntimeException e) {
+			log.error("could not run the store: " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * @return whether there are requests not yet stored.
+	 */
+	public synchronized boolean isDirty() {
+		return dirty;
+	}
+	
+	/**
+	 * @return whether a bulk change is open.
+	 */
+	public synchronized boolean isInBulk() {
+		return bulkDepth > 0;
+	}
+	
+	/**
+	 * @return the number of stores run so far.
+	 */
+	public synchronized long getStoreCount() {
+		return stores;
+	}
+	
+	/**
+	 * @return the delay in ms between the first request and the store.
+	 */
+	public synchronized long getDelay() {
+		return delay;
+	}
+	
+	/**
+	 * @param delay the delay in ms between the first request and the store 
+	 * (0 to store upon every request).
+	 */
+	public synchronized void setDelay(long delay) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("delay must not be negative: " + delay);
+		}
+		this.delay = delay;
+	}
+}
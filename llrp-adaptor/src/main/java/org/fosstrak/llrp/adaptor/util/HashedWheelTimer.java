@@ -0,0 +1,342 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.util;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * a timer for a large number of timeouts that do not need to fire more 
+ * accurately than one tick. the timeouts are hashed into the buckets of a 
+ * wheel by their deadline. a single thread advances the wheel by one bucket 
+ * per tick and fires the timeouts of that bucket whose deadline has passed. 
+ * scheduling and cancelling a timeout is O(1) and does not involve the 
+ * timer thread.<br/>
+ * <br/>
+ * the tasks are executed on the timer thread unless an executor is given, 
+ * so they must be short. the timer thread is started with the first 
+ * timeout and can be stopped with {@link #stop()} (it is restarted upon the 
+ * next timeout).
+ * @author sawielan
+ *
+ */
+public class HashedWheelTimer {
+	
+	/**
+	 * handle to a scheduled task.
+	 */
+	public interface Timeout {
+		
+		/**
+		 * cancels the timeout.
+		 * @return false if the timeout already expired or has been cancelled.
+		 */
+		boolean cancel();
+		
+		/**
+		 * @return true if the timeout has been cancelled.
+		 */
+		boolean isCancelled();
+		
+		/**
+		 * @return true if the timeout expired (the task has been run).
+		 */
+		boolean isExpired();
+	}
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(HashedWheelTimer.class);
+	
+	/** the name of the timer thread. */
+	private final String name;
+	
+	/** the duration of one tick in nanoseconds. */
+	private final long tickNanos;
+	
+	/** the buckets of the wheel. only accessed by the timer thread. */
+	private final LinkedList<TimeoutImpl>[] wheel;
+	
+	/** mask to map a tick to a bucket. */
+	private final int mask;
+	
+	/** new timeouts not yet hashed into the wheel. */
+	private final ConcurrentLinkedQueue<TimeoutImpl> pending = new ConcurrentLinkedQueue<TimeoutImpl>();
+	
+	/** the executor for the tasks (null to run them on the timer thread). */
+	private final Executor taskExecutor;
+	
+	/** the timer thread. */
+	private volatile Thread workerThread = null;
+	
+	/** as long as this value is set to true the timer thread runs. */
+	private volatile boolean running = false;
+	
+	/** the time when the timer thread has been started. */
+	private volatile long startTime = 0;
+	
+	/**
+	 * creates a new timer.
+	 * @param name the name of the timer thread.
+	 * @param tickDuration the duration of one tick.
+	 * @param unit the time unit of the tick duration.
+	 * @param ticksPerWheel the number of buckets (rounded up to a power of two).
+	 * @param taskExecutor the executor for the tasks (null to run them on the timer thread).
+	 */
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel, Executor taskExecutor) {
+		if (tickDuration <= 0) {
+			throw new IllegalArgumentException("tick duration must be positive: " + tickDuration);
+		}
+		if (ticksPerWheel <= 0) {
+			throw new IllegalArgumentException("ticks per wheel must be positive: " + ticksPerWheel);
+		}
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		// generic arrays can not be created, the buckets only ever hold 
+		// timeouts of this timer.
+		@SuppressWarnings("unchecked")
+		LinkedList<TimeoutImpl>[] buckets = (LinkedList<TimeoutImpl>[]) new LinkedList<?>[size];
+		wheel = buckets;
+		for (int i=0; i<size; i++) {
+			wheel[i] = new LinkedList<TimeoutImpl>();
+		}
+		mask = size - 1;
+		this.name = name;
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.taskExecutor = taskExecutor;
+	}
+	
+	/**
+	 * schedules a task to be run once after the given delay.
+	 * @param task the task.
+	 * @param delay the delay.
+	 * @param unit the time unit of the delay.
+	 * @return a handle to cancel the task.
+	 */
+	public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+		if (null == task) {
+			throw new IllegalArgumentException("task must not be null");
+		}
+		if (null == workerThread) {
+			start();
+		}
+		TimeoutImpl timeout = new TimeoutImpl(task, System.nanoTime() + unit.toNanos(delay));
+		pending.add(timeout);
+		return timeout;
+	}
+	
+	/**
+	 * starts the timer thread (if not yet running).
+	 */
+	public synchronized void start() {
+		if (null != workerThread) {
+			return;
+		}
+		running = true;
+		startTime = System.nanoTime();
+		Thread t = new Thread(new Worker(), name);
+		t.setDaemon(true);
+		workerThread = t;
+		t.start();
+	}
+	
+	/**
+	 * stops the timer thread. all the timeouts not yet expired are dropped.
+	 */
+	public synchronized void stop() {
+		Thread t = workerThread;
+		if (null == t) {
+			return;
+		}
+		running = false;
+		t.interrupt();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		pending.clear();
+		for (LinkedList<TimeoutImpl> bucket : wheel) {
+			bucket.clear();
+		}
+		workerThread = null;
+	}
+	
+	/**
+	 * @return the duration of one tick in milliseconds.
+	 */
+	public long getTickDuration() {
+		return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+	}
+	
+	/**
+	 * the timer thread.
+	 */
+	private final class Worker implements Runnable {
+		
+		/** the current tick. */
+		private long tick = 0;
+		
+		public void run() {
+			log.debug("timer " + name + " started.");
+			while (running) {
+				if (!waitForNextTick()) {
+					break;
+				}
+				transferPending();
+				expire(wheel[(int) (tick & mask)]);
+				tick++;
+			}
+			log.debug("timer " + name + " stopped.");
+		}
+		
+		/**
+		 * sleeps until the end of the current tick.
+		 * @return false if the timer has been stopped meanwhile.
+		 */
+		private boolean waitForNextTick() {
+			final long target = startTime + (tick + 1) * tickNanos;
+			while (true) {
+				final long sleep = target - System.nanoTime();
+				if (sleep <= 0) {
+					return true;
+				}
+				try {
+					Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleep) + 1);
+				} catch (InterruptedException e) {
+					if (!running) {
+						return false;
+					}
+				}
+			}
+		}
+		
+		/**
+		 * hashes the newly scheduled timeouts into the wheel.
+		 */
+		private void transferPending() {
+			TimeoutImpl timeout;
+			while (null != (timeout = pending.poll())) {
+				if (timeout.isCancelled()) {
+					continue;
+				}
+				final long calculated = (timeout.deadline - startTime) / tickNanos;
+				timeout.remainingRounds = (calculated - tick) / wheel.length;
+				// deadlines in the past go into the current bucket.
+				final long ticks = Math.max(calculated, tick);
+				wheel[(int) (ticks & mask)].add(timeout);
+			}
+		}
+		
+		/**
+		 * fires the timeouts of the bucket that are due in this round.
+		 * @param bucket the bucket of the current tick.
+		 */
+		private void expire(LinkedList<TimeoutImpl> bucket) {
+			Iterator<TimeoutImpl> it = bucket.iterator();
+			while (it.hasNext()) {
+				TimeoutImpl timeout = it.next();
+				if (timeout.isCancelled()) {
+					it.remove();
+				} else if (timeout.remainingRounds <= 0) {
+					it.remove();
+					timeout.expire();
+				} else {
+					timeout.remainingRounds--;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * a scheduled task.
+	 */
+	private final class TimeoutImpl implements Timeout {
+		
+		/** state of a scheduled timeout. */
+		private static final int ST_INIT = 0;
+		
+		/** state of a cancelled timeout. */
+		private static final int ST_CANCELLED = 1;
+		
+		/** state of an expired timeout. */
+		private static final int ST_EXPIRED = 2;
+		
+		/** the task. */
+		private final Runnable task;
+		
+		/** the deadline (System.nanoTime()). */
+		private final long deadline;
+		
+		/** the state. */
+		private final AtomicInteger state = new AtomicInteger(ST_INIT);
+		
+		/** the number of wheel rounds until the timeout expires. only accessed by the timer thread. */
+		private long remainingRounds;
+		
+		/**
+		 * @param task the task.
+		 * @param deadline the deadline (System.nanoTime()).
+		 */
+		private TimeoutImpl(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+		
+		public boolean cancel() {
+			return state.compareAndSet(ST_INIT, ST_CANCELLED);
+		}
+
+		public boolean isCancelled() {
+			return state.get() == ST_CANCELLED;
+		}
+
+		public boolean isExpired() {
+			return state.get() == ST_EXPIRED;
+		}
+		
+		/**
+		 * runs the task (unless cancelled concurrently).
+		 */
+		private void expire() {
+			if (!state.compareAndSet(ST_INIT, ST_EXPIRED)) {
+				return;
+			}
+			try {
+				if (null == taskExecutor) {
+					task.run();
+				} else {
+					taskExecutor.execute(task);
+				}
+			} catch (Throwable t) {
+				log.error("timer task threw an exception.", t);
+			}
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.util;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.fosstrak.llrp.adaptor.AsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.BatchAsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.MessageBatch;
+import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
+import org.fosstrak.llrp.adaptor.util.type.NotifiableFailureCounter;
+
+/**
+ * the delivery lane of one remote receiver of asynchronous messages. each 
+ * receiver has its own bounded queue drained by its own task on the 
+ * delivery pool of the {@link SharedExecutor}, so a slow or dead receiver 
+ * only delays itself and never the readers. 
+ * when the queue is full, new messages for this receiver are dropped (and 
+ * counted), the thread adding the message never waits.<br/>
+ * <br/>
+ * receivers implementing {@link BatchAsynchronousNotifiable} get the 
+ * messages in batches. a batch is handed to the queue when it holds 
+ * <code>maxBatchSize</code> messages or when its first message is older 
+ * than the linger time.<br/>
+ * <br/>
+ * messages and errors are delivered in the order they were added.
+ * @author sawielan
+ *
+ */
+public class ReceiverLane {
+	
+	/** the default number of entries waiting in the queue of a lane. */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(ReceiverLane.class);
+	
+	/** the list holding the receiver (informed about failed deliveries). */
+	private final AsynchronousNotifiableList owner;
+	
+	/** the receiver with its error counter. */
+	private final NotifiableFailureCounter counter;
+	
+	/** whether the receiver accepts batches. */
+	private final boolean batchable;
+	
+	/** the maximum number of messages in a batch (1 if not batching). */
+	private volatile int maxBatchSize;
+	
+	/** the maximum time in ms a message waits in a batch. */
+	private volatile long linger;
+	
+	/** set once the lane has been discarded. */
+	private volatile boolean discarded = false;
+	
+	/** the batch currently filled (null if empty). */
+	private MessageBatch current = null;
+	
+	/** when the first message of the current batch was added. */
+	private long currentSince = 0;
+	
+	/** hands the current batch to the queue when the linger time is over. */
+	private ScheduledFuture<?> lingerTask = null;
+	
+	/** the queue of the lane. */
+	private final RingBufferQueue<Entry> queue;
+	
+	/** delivers the queued entries. */
+	private final SerialQueueWorker<Entry> worker;
+	
+	/** the number of entries enqueued and not yet delivered. */
+	private final AtomicInteger pending = new AtomicInteger(0);
+	
+	/** when the lane last made progress (nanoseconds). */
+	private volatile long lastProgress = System.nanoTime();
+	
+	/** how long the last delivered entry waited in the lane (nanoseconds). */
+	private volatile long lastDeliveryLag = 0;
+	
+	/** the number of messages delivered. */
+	private final AtomicLong delivered = new AtomicLong(0);
+	
+	/** the number of messages dropped because the queue was full. */
+	private final AtomicLong dropped = new AtomicLong(0);
+	
+	/**
+	 * creates a lane for the given receiver.
+	 * @param owner the list holding the receiver.
+	 * @param counter the receiver with its error counter.
+	 * @param capacity the number of entries the queue can hold.
+	 * @param maxBatchSize the maximum number of messages in a batch (only 
+	 * used if the receiver accepts batches).
+	 * @param linger the maximum time in ms a message waits in a batch.
+	 */
+	public ReceiverLane(AsynchronousNotifiableList owner, NotifiableFailureCounter counter, 
+			int capacity, int maxBatchSize, long linger) {
+		
+		this.owner = owner;
+		this.counter = counter;
+		batchable = (counter.getReceiver() instanceof BatchAsynchronousNotifiable);
+		setBatching(maxBatchSize, linger);
+		queue = new RingBufferQueue<Entry>(capacity, OverflowPolicy.DROP_NEWEST, WaitStrategy.PARK);
+		worker = new SerialQueueWorker<Entry>(queue) {
+			@Override
+			protected void process(Entry entry) {
+				deliver(entry);
+			}
+			
+			@Override
+			protected Executor executor() {
+				return SharedExecutor.getDeliveryExecutor();
+			}
+		};
+	}
+	
+	/**
+	 * configures the batched delivery (ignored if the receiver does not 
+	 * accept batches). the current batch is handed to the queue.
+	 * @param maxBatchSize the maximum number of messages in a batch.
+	 * @param linger the maximum time in ms a message waits in a batch.
+	 */
+	public void setBatching(int maxBatchSize, long linger) {
+		flush();
+		this.maxBatchSize = batchable ? Math.max(1, maxBatchSize) : 1;
+		this.linger = Math.max(0, linger);
+	}
+	
+	/**
+	 * adds a message to the lane.
+	 * @param message the binary encoded message.
+	 * @param readerName the name of the reader the message was received from.
+	 */
+	public void add(byte[] message, String readerName) {
+		if (maxBatchSize <= 1) {
+			offer(new Entry(message, readerName, null, null, System.nanoTime()));
+			return;
+		}
+		synchronized (this) {
+			if (null == current) {
+				current = new MessageBatch(maxBatchSize);
+				currentSince = System.nanoTime();
+				if (linger > 0) {
+					lingerTask = SharedExecutor.getScheduler().schedule(new Runnable() {
+						public void run() {
+							flush();
+						}
+					}, linger, TimeUnit.MILLISECONDS);
+				}
+			}
+			current.add(readerName, message);
+			if ((current.size() < maxBatchSize) && (null != lingerTask)) {
+				return;
+			}
+		}
+		flush();
+	}
+	
+	/**
+	 * adds an error to the lane. the messages added before are delivered 
+	 * first.
+	 * @param e the exception.
+	 * @param readerName the name of the reader that triggered the error.
+	 */
+	public void addError(LLRPRuntimeException e, String readerName) {
+		flush();
+		offer(new Entry(null, readerName, null, e, System.nanoTime()));
+	}
+	
+	/**
+	 * hands the current batch to the queue (if there is one). the batch is 
+	 * enqueued while holding the lock, so concurrent flushes (linger and 
+	 * size triggered) keep the batches in order.
+	 */
+	public synchronized void flush() {
+		if (null != lingerTask) {
+			lingerTask.cancel(false);
+			lingerTask = null;
+		}
+		if ((null == current) || current.isEmpty()) {
+			return;
+		}
+		Entry entry = new Entry(null, null, current, null, currentSince);
+		current = null;
+		offer(entry);
+	}
+	
+	/**
+	 * enqueues an entry and counts it as dropped if the queue is full.
+	 * @param entry the entry.
+	 */
+	private void offer(Entry entry) {
+		if (isIdle()) {
+			lastProgress = System.nanoTime();
+		}
+		pending.incrementAndGet();
+		if (!worker.offer(entry)) {
+			pending.decrementAndGet();
+			long total = dropped.addAndGet(entry.size());
+			// do not flood the log, report the first drop and then every 
+			// power of two.
+			if ((total & (total - 1)) == 0) {
+				log.warn(String.format("queue of receiver %s is full, dropped %d messages so far.", 
+						counter.getReceiver(), total));
+			}
+		}
+	}
+	
+	/**
+	 * delivers an entry to the receiver and records the outcome.
+	 * @param entry the entry.
+	 */
+	private void deliver(Entry entry) {
+		final AsynchronousNotifiable receiver = counter.getReceiver();
+		try {
+			if (null != entry.batch) {
+				((BatchAsynchronousNotifiable) receiver).notify(entry.batch);
+			} else if (null != entry.error) {
+				receiver.notifyError(entry.error, entry.readerName);
+			} else {
+				receiver.notify(entry.message, entry.readerName);
+			}
+			// if notified successfully, clean the error counter.
+			counter.clean();
+			delivered.addAndGet(entry.size());
+		} catch (RemoteException e) {
+			log.debug(String.format("could not deliver to receiver %s: %s", receiver, e.getMessage()));
+			counter.error();
+			owner.cleanup();
+		} finally {
+			final long now = System.nanoTime();
+			lastDeliveryLag = now - entry.enqueued;
+			lastProgress = now;
+			pending.decrementAndGet();
+		}
+	}
+	
+	/**
+	 * drops all the messages not yet delivered and stops the lane.
+	 */
+	public void discard() {
+		discarded = true;
+		synchronized (this) {
+			if (null != lingerTask) {
+				lingerTask.cancel(false);
+				lingerTask = null;
+			}
+			current = null;
+		}
+		worker.stop();
+		queue.clear();
+	}
+	
+	/**
+	 * @return true if there is nothing to deliver.
+	 */
+	public boolean isIdle() {
+		return discarded || (pending.get() == 0);
+	}
+	
+	/**
+	 * the lag tells how far the receiver is behind: while there are entries 
+	 * to deliver, the time since the lane last made progress or the time the 
+	 * last delivered entry waited (whichever is larger). 0 if idle.
+	 * @return the lag in ms.
+	 */
+	public long getLag() {
+		if (isIdle()) {
+			return 0;
+		}
+		final long stalled = System.nanoTime() - lastProgress;
+		return TimeUnit.NANOSECONDS.toMillis(Math.max(stalled, lastDeliveryLag));
+	}
+	
+	/**
+	 * @return the number of entries waiting in the queue.
+	 */
+	public int getQueued() {
+		return pending.get();
+	}
+	
+	/**
+	 * @return the number of messages delivered.
+	 */
+	public long getDelivered() {
+		return delivered.get();
+	}
+	
+	/**
+	 * @return the number of messages dropped because the queue was full.
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * @return the receiver with its error counter.
+	 */
+	public NotifiableFailureCounter getCounter() {
+		return counter;
+	}
+	
+	/**
+	 * an entry in the queue: a single message, a batch of messages or an 
+	 * error.
+	 */
+	private static final class Entry {
+		
+		/** the binary encoded message (single message). */
+		private final byte[] message;
+		
+		/** the name of the reader (single message or error). */
+		private final String readerName;
+		
+		/** the batch of messages. */
+		private final MessageBatch batch;
+		
+		/** the error. */
+		private final LLRPRuntimeException error;
+		
+		/** when the (first) message was added to the lane (nanoseconds). */
+		private final long enqueued;
+		
+		private Entry(byte[] message, String readerName, MessageBatch batch, 
+				LLRPRuntimeException error, long enqueued) {
+			this.message = message;
+			this.readerName = readerName;
+			this.batch = batch;
+			this.error = error;
+			this.enqueued = enqueued;
+		}
+		
+		/**
+		 * @return the number of messages in this entry.
+		 */
+		private int size() {
+			return (null != batch) ? batch.size() : 1;
+		}
+	}
+}
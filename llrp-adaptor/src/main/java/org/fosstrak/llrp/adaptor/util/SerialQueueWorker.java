@@ -0,0 +1,188 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+import org.fosstrak.llrp.adaptor.queue.MessageQueue;
+
+/**
+ * drains a {@link MessageQueue} on a (shared) executor instead of on a 
+ * dedicated thread. at most one task per worker is scheduled at any time, 
+ * so the elements of one queue are processed strictly in order, while many 
+ * workers share the threads of the pool. a task processes at most 
+ * <code>batchSize</code> elements and then re-schedules itself, so a busy 
+ * queue cannot starve the other workers in the pool.
+ * @author sawielan
+ *
+ * @param <E> the type of the queued elements.
+ */
+public abstract class SerialQueueWorker<E> implements Runnable {
+	
+	/** the default number of elements processed per task. */
+	public static final int DEFAULT_BATCH_SIZE = 64;
+
+	/** the logger. */
+	private static Logger log = Logger.getLogger(SerialQueueWorker.class);
+	
+	/** the queue to drain. */
+	private final MessageQueue<E> queue;
+	
+	/** the executor or null to use the {@link SharedExecutor}. */
+	private final Executor executor;
+	
+	/** the maximum number of elements processed per task. */
+	private final int batchSize;
+	
+	/** set while a task of this worker is scheduled or running. */
+	private final AtomicBoolean scheduled = new AtomicBoolean(false);
+	
+	/** as long as this value is set to true the worker processes elements. */
+	private volatile boolean running = true;
+	
+	/**
+	 * creates a worker running on the {@link SharedExecutor}.
+	 * @param queue the queue to drain.
+	 */
+	public SerialQueueWorker(MessageQueue<E> queue) {
+		this(queue, null, DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * creates a worker.
+	 * @param queue the queue to drain.
+	 * @param executor the executor to run on (null for the {@link SharedExecutor}).
+	 * @param batchSize the maximum number of elements processed per task.
+	 */
+	public SerialQueueWorker(MessageQueue<E> queue, Executor executor, int batchSize) {
+		if (null == queue) {
+			throw new IllegalArgumentException("queue must not be null");
+		}
+		this.queue = queue;
+		this.executor = executor;
+		this.batchSize = Math.max(1, batchSize);
+	}
+	
+	/**
+	 * processes one element of the queue. invoked by at most one thread at 
+	 * a time.
+	 * @param element the element to process.
+	 */
+	protected abstract void process(E element);
+	
+	/**
+	 * enqueues an element and schedules the worker.
+	 * @param element the element.
+	 * @return false if the element has been dropped by the queue.
+	 */
+	public boolean offer(E element) {
+		boolean accepted = queue.offer(element);
+		schedule();
+		return accepted;
+	}
+	
+	/**
+	 * schedules a task on the executor unless there is already one scheduled 
+	 * or the queue is empty.
+	 */
+	public void schedule() {
+		if (!running || queue.isEmpty()) {
+			return;
+		}
+		if (scheduled.compareAndSet(false, true)) {
+			try {
+				executor().execute(this);
+			} catch (RejectedExecutionException e) {
+				scheduled.set(false);
+				log.debug("executor rejected the worker (shutting down?).");
+			}
+		}
+	}
+
+	/**
+	 * @return the executor to run the next task on. subclasses may choose 
+	 * another pool, the executor is looked up upon every schedule so a 
+	 * restarted {@link SharedExecutor} is picked up.
+	 */
+	protected Executor executor() {
+		if (null == executor) {
+			return SharedExecutor.getExecutor();
+		}
+		return executor;
+	}
+
+	/**
+	 * processes up to <code>batchSize</code> elements. do not invoke directly, 
+	 * use {@link #schedule()}.
+	 */
+	public void run() {
+		try {
+			for (int i=0; running && (i<batchSize); i++) {
+				E element = queue.poll();
+				if (null == element) {
+					break;
+				}
+				try {
+					process(element);
+				} catch (RuntimeException e) {
+					log.error("caught exception while processing queued element.", e);
+				}
+			}
+		} finally {
+			scheduled.set(false);
+		}
+		// elements might have arrived after the last poll.
+		schedule();
+	}
+	
+	/**
+	 * starts the worker (processes the elements already in the queue).
+	 */
+	public void start() {
+		running = true;
+		schedule();
+	}
+	
+	/**
+	 * stops the worker. the elements remaining in the queue are kept.
+	 */
+	public void stop() {
+		running = false;
+	}
+	
+	/**
+	 * @return true if the worker is running.
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * @return the queue drained by this worker.
+	 */
+	public MessageQueue<E> getQueue() {
+		return queue;
+	}
+}
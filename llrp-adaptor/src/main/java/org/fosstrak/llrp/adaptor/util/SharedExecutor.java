@@ -0,0 +1,272 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.util;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * holds the thread pool shared by all the readers and adaptors in the 
+ * virtual machine. instead of starting dedicated threads per reader, the 
+ * readers submit short tasks (see {@link SerialQueueWorker}) to this pool. 
+ * delayed and periodic work runs on a shared scheduler. the delivery to 
+ * remote receivers (blocking RMI calls) runs on a separate delivery pool, 
+ * so slow receivers cannot stall the readers.<br/>
+ * <br/>
+ * the pool is created lazily upon first use. {@link #shutdown()} stops the 
+ * pool and waits for the running tasks, afterwards a new pool gets created 
+ * upon the next use.
+ * @author sawielan
+ *
+ */
+public final class SharedExecutor {
+	
+	/** key in the read parameters of the configuration for the pool size. */
+	public static final String KEY_POOL_SIZE = "executorPoolSize";
+	
+	/** the default number of threads in the pool. */
+	public static final int DEFAULT_POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors());
+	
+	/** key in the read parameters of the configuration for the delivery pool size. */
+	public static final String KEY_DELIVERY_POOL_SIZE = "deliveryPoolSize";
+	
+	/** the default number of threads in the delivery pool. */
+	public static final int DEFAULT_DELIVERY_POOL_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+	
+	/** how long to wait for running tasks upon shutdown. */
+	public static final long SHUTDOWN_TIMEOUT = 5000L;
+	
+	/** the logger. */
+	private static Logger log = Logger.getLogger(SharedExecutor.class);
+	
+	/** the number of threads in the pool. */
+	private static int poolSize = DEFAULT_POOL_SIZE;
+	
+	/** the number of threads in the delivery pool. */
+	private static int deliveryPoolSize = DEFAULT_DELIVERY_POOL_SIZE;
+	
+	/** the shared pool. */
+	private static ThreadPoolExecutor executor = null;
+	
+	/** the pool delivering to the remote receivers. */
+	private static ThreadPoolExecutor deliveryExecutor = null;
+	
+	/** the shared scheduler. */
+	private static ScheduledExecutorService scheduler = null;
+	
+	/** no instances. */
+	private SharedExecutor() {
+	}
+	
+	/**
+	 * @return the shared thread pool.
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (null == executor) {
+			log.debug(String.format("creating shared executor with %d threads.", poolSize));
+			executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(poolSize, 
+					new NamedThreadFactory("llrp-worker"));
+		}
+		return executor;
+	}
+	
+	/**
+	 * @return the pool delivering asynchronous messages to the remote 
+	 * receivers. kept apart from {@link #getExecutor()} as the deliveries 
+	 * block on the network.
+	 */
+	public static synchronized ExecutorService getDeliveryExecutor() {
+		if (null == deliveryExecutor) {
+			log.debug(String.format("creating delivery executor with %d threads.", deliveryPoolSize));
+			deliveryExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(deliveryPoolSize, 
+					new NamedThreadFactory("llrp-delivery"));
+		}
+		return deliveryExecutor;
+	}
+	
+	/**
+	 * @return the shared scheduler for periodic and delayed tasks.
+	 */
+	public static synchronized ScheduledExecutorService getScheduler() {
+		if (null == scheduler) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(
+					new NamedThreadFactory("llrp-timer"));
+		}
+		return scheduler;
+	}
+	
+	/**
+	 * @return the number of threads in the pool.
+	 */
+	public static synchronized int getPoolSize() {
+		return poolSize;
+	}
+	
+	/**
+	 * sets the number of threads in the pool. an already running pool gets 
+	 * resized.
+	 * @param size the number of threads (must be positive).
+	 */
+	public static synchronized void setPoolSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("pool size must be positive: " + size);
+		}
+		poolSize = size;
+		resize(executor, size);
+	}
+	
+	/**
+	 * @return the number of threads in the delivery pool.
+	 */
+	public static synchronized int getDeliveryPoolSize() {
+		return deliveryPoolSize;
+	}
+	
+	/**
+	 * sets the number of threads in the delivery pool. an already running 
+	 * pool gets resized.
+	 * @param size the number of threads (must be positive).
+	 */
+	public static synchronized void setDeliveryPoolSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("delivery pool size must be positive: " + size);
+		}
+		deliveryPoolSize = size;
+		resize(deliveryExecutor, size);
+	}
+	
+	/**
+	 * resizes a running pool.
+	 * @param pool the pool (might be null).
+	 * @param size the new number of threads.
+	 */
+	private static void resize(ThreadPoolExecutor pool, int size) {
+		if (null == pool) {
+			return;
+		}
+		if (size > pool.getMaximumPoolSize()) {
+			pool.setMaximumPoolSize(size);
+			pool.setCorePoolSize(size);
+		} else {
+			pool.setCorePoolSize(size);
+			pool.setMaximumPoolSize(size);
+		}
+	}
+	
+	/**
+	 * configures the pools from the given parameters (see {@link #KEY_POOL_SIZE} 
+	 * and {@link #KEY_DELIVERY_POOL_SIZE}). missing or illegal values are 
+	 * ignored.
+	 * @param parameters the parameters (might be null).
+	 */
+	public static void configure(Map<String, Object> parameters) {
+		if (null == parameters) {
+			return;
+		}
+		Object value = parameters.get(KEY_POOL_SIZE);
+		if (null != value) {
+			try {
+				setPoolSize(Integer.parseInt(value.toString().trim()));
+			} catch (IllegalArgumentException e) {
+				log.error(String.format("illegal value for %s: %s", KEY_POOL_SIZE, value));
+			}
+		}
+		value = parameters.get(KEY_DELIVERY_POOL_SIZE);
+		if (null != value) {
+			try {
+				setDeliveryPoolSize(Integer.parseInt(value.toString().trim()));
+			} catch (IllegalArgumentException e) {
+				log.error(String.format("illegal value for %s: %s", KEY_DELIVERY_POOL_SIZE, value));
+			}
+		}
+	}
+	
+	/**
+	 * stops the pools and the scheduler and waits for the running tasks to 
+	 * complete. tasks still queued are discarded. deliveries blocked on a 
+	 * remote receiver are interrupted.
+	 */
+	public static synchronized void shutdown() {
+		log.debug("shutting down the shared executor.");
+		if (null != scheduler) {
+			scheduler.shutdownNow();
+		}
+		if (null != executor) {
+			executor.shutdown();
+		}
+		if (null != deliveryExecutor) {
+			deliveryExecutor.shutdownNow();
+		}
+		try {
+			if ((null != executor) && !executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				log.warn("shared executor did not terminate in time, interrupting the tasks.");
+				executor.shutdownNow();
+			}
+			if (null != scheduler) {
+				scheduler.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+			if (null != deliveryExecutor) {
+				deliveryExecutor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			log.debug("interrupted while waiting for the shared executor to terminate.");
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		deliveryExecutor = null;
+		scheduler = null;
+	}
+	
+	/**
+	 * creates named daemon threads, so the pool never prevents the virtual 
+	 * machine from exiting.
+	 */
+	private static final class NamedThreadFactory implements ThreadFactory {
+		
+		/** the prefix of the thread names. */
+		private final String prefix;
+		
+		/** counter for the thread names. */
+		private final AtomicInteger counter = new AtomicInteger(0);
+		
+		/**
+		 * @param prefix the prefix of the thread names.
+		 */
+		private NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+		
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + "-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -41,7 +41,7 @@ public class NotifiableFailureCounter implements Serializable, Comparable<Notifi
 	private static final long serialVersionUID = 1L;
 
 	// the number of errors occurred.
-	private int errors = 0;
+	private volatile int errors = 0;
 	
 	// the receiver.
 	private final AsynchronousNotifiable receiver;
@@ -25,6 +25,8 @@ import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This wrapper class for LLRP Message. Some extended attributes added for
@@ -40,7 +42,20 @@ public class LLRPMessageItem {
 	private final static String EMPTY_READER_ID = "Unknown Reader";
 	private final static String EMPTY_MESSAGE_TYPE = "Unknown Type";
 	
-	private static final DateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MMM-dd-HH-mm-ss-SSS");
+	// the month names are always english, so the id fits into the key 
+	// column of the repository (see MAX_ID_LENGTH).
+	private static final DateFormat DATE_FORMATTER = new SimpleDateFormat("yyyy-MMM-dd-HH-mm-ss-SSS", Locale.US);
+	
+	// the bound of the sequence number appended to the message id.
+	private static final int SEQUENCE_BOUND = 1000000;
+	
+	// the sequence number that keeps message ids of the same millisecond apart.
+	private static final AtomicInteger sequence = new AtomicInteger();
+	
+	/**
+	 * the maximum length of a message id (the size of the key column).
+	 */
+	public final static int MAX_ID_LENGTH = 32;
 	
 	/**
 	 * Static DB field value for Imcoming Message.
@@ -66,7 +81,7 @@ public class LLRPMessageItem {
 	 * Default Constructor
 	 */
 	public LLRPMessageItem() {
-		setId(DATE_FORMATTER.format(new Date()));
+		setId(nextId());
 		setMessageType(EMPTY_MESSAGE_TYPE);
 		setStatusCode("");
 		setTime(new Timestamp(System.currentTimeMillis()));
@@ -77,6 +92,22 @@ public class LLRPMessageItem {
 		setAdapter(Reader.LOCAL_ADAPTER_NAME);
 	}
 	
+	/**
+	 * creates a new message id. the id is the creation time followed by a 
+	 * sequence number, so that two messages created within the same 
+	 * millisecond do not share the same id (the repository uses the id as 
+	 * key).
+	 * @return a new message id.
+	 */
+	private static String nextId() {
+		String time;
+		synchronized (DATE_FORMATTER) {
+			time = DATE_FORMATTER.format(new Date());
+		}
+		int seq = (sequence.getAndIncrement() & Integer.MAX_VALUE) % SEQUENCE_BOUND;
+		return String.format("%s-%06d", time, seq);
+	}
+	
 	/**
 	 * Get the unique reader name (Adapter Name + Reader Name).
 	 * 
@@ -26,6 +26,8 @@ import java.util.List;
 import org.fosstrak.llrp.adaptor.AdaptorManagement;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
 import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItem;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItemVisitor;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessQuery;
 
 /**
  * Common interface for all the implementations providing access to the 
@@ -64,9 +66,26 @@ public interface ROAccessReportsRepository extends MessageHandler {
 	 * @return a list of all the entries in the database stored into 
 	 * {@link ROAccessItem}.
 	 * @throws Exception when there is an error of any kind.
+	 * @deprecated the list holds the whole table in memory. use 
+	 * {@link #visit(ROAccessQuery, ROAccessItemVisitor)} instead.
 	 */
+	@Deprecated
 	List<ROAccessItem> getAll() throws Exception;
 	
+	/**
+	 * streams the RO_ACCESS_REPORTS elements matching the query to the 
+	 * visitor. the rows are fetched from the database in chunks of the fetch 
+	 * size of the query and handed to the visitor one by one, so the memory 
+	 * used does not depend on the number of rows. the order of the rows is 
+	 * not defined.
+	 * @param query the criteria selecting the rows.
+	 * @param visitor the visitor receiving the rows.
+	 * @return the number of rows handed to the visitor.
+	 * @throws Exception when there is an error of any kind (including the 
+	 * exceptions thrown by the visitor).
+	 */
+	int visit(ROAccessQuery query, ROAccessItemVisitor visitor) throws Exception;
+	
 	/**
 	 * drop all the messages in the repository.
 	 * @throws Exception when there is an error of any kind.
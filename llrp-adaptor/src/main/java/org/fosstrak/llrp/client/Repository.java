@@ -91,6 +91,28 @@ public interface Repository {
 	 */
 	ArrayList<LLRPMessageItem> get(String adaptorName, String readerName, int num, boolean content);
 	
+	/**
+	 * returns one page of messages from the specified adaptor and reader, 
+	 * starting right after the given cursor item (keyset pagination). the 
+	 * messages are ordered by their time-stamp (ties broken by the message 
+	 * id), the page is always returned newest message first. if you set 
+	 * readerName to null, the messages of all the readers with adaptor 
+	 * adaptorName will be returned. if you set adaptorName to null, all the 
+	 * messages will be returned.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param cursor the message the page starts after (usually the last or 
+	 * the first message of the previous page). if null, the page starts at the 
+	 * newest (older == true) or at the oldest (older == false) message.
+	 * @param older if true retrieve the messages older than the cursor, 
+	 * otherwise the messages newer than the cursor.
+	 * @param pageSize the maximum number of messages in the page.
+	 * @param content if true retrieve the message content, false no content.
+	 * @return a list of messages.
+	 */
+	ArrayList<LLRPMessageItem> get(String adaptorName, String readerName, 
+			LLRPMessageItem cursor, boolean older, int pageSize, boolean content);
+	
 	/**
 	 * returns the number of messages in the repository to a given filter.
 	 * @param adaptor the name of the adaptor to filter. if null all the 
@@ -27,6 +27,7 @@ import java.util.Properties;
 
 import org.apache.log4j.Logger;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.client.repository.WriteBehindRepository;
 
 /**
  * helper class to instantiate the repository.
@@ -56,6 +57,33 @@ public class RepositoryFactory {
 	/** class name in the arguments table. */
 	public static final String ARG_DB_CLASSNAME = "dbClassName";
 	
+	/** 
+	 * number of RO_ACCESS_REPORT rows collected across reports before they 
+	 * are written in one batch (0 or missing: one batch per report).
+	 */
+	public static final String ARG_RO_ACCESS_BATCH_SIZE = "roAccessBatchSize";
+	
+	/** time in ms a collected RO_ACCESS_REPORT row waits at most before it is written. */
+	public static final String ARG_RO_ACCESS_BATCH_LINGER = "roAccessBatchLinger";
+	
+	/** if set to true, the RO_ACCESS_REPORT rows are written into daily tables. */
+	public static final String ARG_RO_ACCESS_PARTITIONED = "roAccessPartitioned";
+	
+	/** number of days RO_ACCESS_REPORT rows are kept (0 or missing: keep all). */
+	public static final String ARG_RO_ACCESS_RETENTION_DAYS = "roAccessRetentionDays";
+	
+	/** if set to true, the repository writes through an asynchronous write-behind stage. */
+	public static final String ARG_WRITE_BEHIND = "writeBehind";
+	
+	/** capacity of the queue of the write-behind stage. */
+	public static final String ARG_WRITE_BEHIND_CAPACITY = "writeBehindCapacity";
+	
+	/** what to do when the write-behind queue is full (DROP_NEWEST, DROP_OLDEST, BLOCK). */
+	public static final String ARG_WRITE_BEHIND_POLICY = "writeBehindPolicy";
+	
+	/** maximum number of writes the write-behind stage commits in one transaction. */
+	public static final String ARG_WRITE_BEHIND_GROUP_SIZE = "writeBehindGroupSize";
+	
 	// the log4j logger.
 	private static Logger log = Logger.getLogger(RepositoryFactory.class);
 	
@@ -111,6 +139,21 @@ public class RepositoryFactory {
 		args.put(ARG_WIPE_RO_ACCESS_REPORTS_DB, 
 				properties.getProperty(ARG_WIPE_RO_ACCESS_REPORTS_DB));
 		args.put(ARG_DB_CLASSNAME, properties.getProperty(ARG_DB_CLASSNAME));
+		args.put(ARG_RO_ACCESS_BATCH_SIZE, 
+				properties.getProperty(ARG_RO_ACCESS_BATCH_SIZE));
+		args.put(ARG_RO_ACCESS_BATCH_LINGER, 
+				properties.getProperty(ARG_RO_ACCESS_BATCH_LINGER));
+		args.put(ARG_RO_ACCESS_PARTITIONED, 
+				properties.getProperty(ARG_RO_ACCESS_PARTITIONED));
+		args.put(ARG_RO_ACCESS_RETENTION_DAYS, 
+				properties.getProperty(ARG_RO_ACCESS_RETENTION_DAYS));
+		args.put(ARG_WRITE_BEHIND, properties.getProperty(ARG_WRITE_BEHIND));
+		args.put(ARG_WRITE_BEHIND_CAPACITY, 
+				properties.getProperty(ARG_WRITE_BEHIND_CAPACITY));
+		args.put(ARG_WRITE_BEHIND_POLICY, 
+				properties.getProperty(ARG_WRITE_BEHIND_POLICY));
+		args.put(ARG_WRITE_BEHIND_GROUP_SIZE, 
+				properties.getProperty(ARG_WRITE_BEHIND_GROUP_SIZE));
 		
 		return create(args);
 	}
@@ -159,6 +202,12 @@ public class RepositoryFactory {
 					"Illegal implementing class: '%s'", 
 					args.get(RepositoryFactory.ARG_DB_CLASSNAME)));
 		}
+		
+		String writeBehind = args.get(ARG_WRITE_BEHIND);
+		if ((null != writeBehind) && (Boolean.parseBoolean(writeBehind))) {
+			log.debug("enabling the write-behind stage.");
+			repository = WriteBehindRepository.create(repository, args);
+		}
 		return repository;
 	}
 }
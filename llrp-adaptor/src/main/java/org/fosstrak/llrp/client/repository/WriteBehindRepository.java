@@ -0,0 +1,558 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.client.repository;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
+import org.fosstrak.llrp.client.LLRPMessageItem;
+import org.fosstrak.llrp.client.ROAccessReportsRepository;
+import org.fosstrak.llrp.client.Repository;
+import org.fosstrak.llrp.client.RepositoryFactory;
+import org.fosstrak.llrp.client.repository.sql.AbstractSQLRepository;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItem;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItemVisitor;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessQuery;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * decorates a {@link Repository} with an asynchronous write-behind stage. 
+ * the messages to be stored (and the RO_ACCESS_REPORTS handled by the 
+ * {@link ROAccessReportsRepository} of this repository) are put into a 
+ * bounded queue and written by a dedicated writer thread. the writer takes 
+ * all the queued writes (up to the group size) and commits them in one 
+ * transaction, so a slow disk does no longer backpressure into the threads 
+ * dispatching the LLRP messages. the RO_ACCESS_REPORTS are written after 
+ * the commit of the group, as the RO_ACCESS_REPORTS repository runs its 
+ * own transactions (and rolls them back upon erroneous rows).<br/>
+ * <br/>
+ * when the queue is full, the {@link OverflowPolicy} decides whether the 
+ * write is dropped or whether the caller waits. the number of queued, written 
+ * and dropped items is counted.<br/>
+ * <br/>
+ * read operations go directly to the decorated repository and therefore 
+ * might not yet see the queued writes. clear operations and 
+ * {@link #close()} wait until the queued writes are written.
+ * @author sawielan
+ *
+ */
+public class WriteBehindRepository implements Repository {
+	
+	/** the default capacity of the queue. */
+	public static final int DEFAULT_CAPACITY = 8192;
+	
+	/** the default maximum number of writes committed in one transaction. */
+	public static final int DEFAULT_GROUP_SIZE = 256;
+	
+	/** how long to wait at most for the queued writes upon clear or close. */
+	public static final long FLUSH_TIMEOUT = 10000L;
+	
+	/** how long the writer waits for new writes before checking its state. */
+	private static final long IDLE_WAIT = 500L;
+
+	/** the logger. */
+	private static Logger log = Logger.getLogger(WriteBehindRepository.class);
+	
+	/** the decorated repository. */
+	private final Repository delegate;
+	
+	/** the queued writes. */
+	private final RingBufferQueue<WriteTask> queue;
+	
+	/** the maximum number of writes committed in one transaction. */
+	private final int groupSize;
+	
+	/** the number of queued writes. */
+	private final AtomicLong queued = new AtomicLong(0);
+	
+	/** the number of written items. */
+	private final AtomicLong written = new AtomicLong(0);
+	
+	/** the number of writes lost due to errors in the database. */
+	private final AtomicLong failed = new AtomicLong(0);
+	
+	/** the write-behind handle to the RO_ACCESS_REPORTS repository. */
+	private WriteBehindROAccessReportsRepository roAccess = null;
+	
+	/** the writer thread. */
+	private final Thread writer;
+	
+	/** as long as this value is set to true the writer accepts writes. */
+	private volatile boolean running = true;
+	
+	/**
+	 * creates a write-behind stage with the default settings that blocks 
+	 * the callers when the queue is full.
+	 * @param delegate the (initialized) repository to decorate.
+	 */
+	public WriteBehindRepository(Repository delegate) {
+		this(delegate, DEFAULT_CAPACITY, OverflowPolicy.BLOCK, DEFAULT_GROUP_SIZE);
+	}
+	
+	/**
+	 * creates a write-behind stage.
+	 * @param delegate the (initialized) repository to decorate.
+	 * @param capacity the capacity of the queue.
+	 * @param policy what to do when the queue is full.
+	 * @param groupSize the maximum number of writes committed in one transaction.
+	 */
+	public WriteBehindRepository(Repository delegate, int capacity, 
+			OverflowPolicy policy, int groupSize) {
+		
+		if (null == delegate) {
+			throw new IllegalArgumentException("delegate must not be null");
+		}
+		this.delegate = delegate;
+		this.queue = new RingBufferQueue<WriteTask>(capacity, policy, WaitStrategy.PARK);
+		this.groupSize = Math.max(1, groupSize);
+		
+		writer = new Thread(new Runnable() {
+			public void run() {
+				runWriter();
+			}
+		}, "llrp-write-behind");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * creates a write-behind stage configured from the arguments table (see 
+	 * {@link RepositoryFactory#ARG_WRITE_BEHIND_CAPACITY}, 
+	 * {@link RepositoryFactory#ARG_WRITE_BEHIND_POLICY} and 
+	 * {@link RepositoryFactory#ARG_WRITE_BEHIND_GROUP_SIZE}).
+	 * @param delegate the (initialized) repository to decorate.
+	 * @param args the arguments table.
+	 * @return the write-behind stage.
+	 */
+	public static WriteBehindRepository create(Repository delegate, 
+			Map<String, String> args) {
+		
+		int capacity = DEFAULT_CAPACITY;
+		int groupSize = DEFAULT_GROUP_SIZE;
+		OverflowPolicy policy = OverflowPolicy.BLOCK;
+		try {
+			String value = args.get(RepositoryFactory.ARG_WRITE_BEHIND_CAPACITY);
+			if (null != value) {
+				capacity = Integer.parseInt(value.trim());
+			}
+			value = args.get(RepositoryFactory.ARG_WRITE_BEHIND_GROUP_SIZE);
+			if (null != value) {
+				groupSize = Integer.parseInt(value.trim());
+			}
+			value = args.get(RepositoryFactory.ARG_WRITE_BEHIND_POLICY);
+			if (null != value) {
+				policy = OverflowPolicy.valueOf(value.trim().toUpperCase());
+			}
+		} catch (IllegalArgumentException e) {
+			log.error("wrong value in args table for the write-behind stage " + 
+					"- using defaults.");
+			capacity = DEFAULT_CAPACITY;
+			groupSize = DEFAULT_GROUP_SIZE;
+			policy = OverflowPolicy.BLOCK;
+		}
+		log.debug(String.format("write-behind stage: capacity %d, policy %s, group size %d", 
+				capacity, policy, groupSize));
+		return new WriteBehindRepository(delegate, capacity, policy, groupSize);
+	}
+	
+	/**
+	 * enqueues a write.
+	 * @param task the write.
+	 */
+	private void enqueue(WriteTask task) {
+		if (!running) {
+			log.debug("write-behind stage closed, dropping the write.");
+			failed.incrementAndGet();
+			return;
+		}
+		if (queue.offer(task)) {
+			queued.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * the loop of the writer thread.
+	 */
+	private void runWriter() {
+		log.debug("write-behind writer started.");
+		List<WriteTask> group = new ArrayList<WriteTask> (groupSize);
+		while (running || !queue.isEmpty()) {
+			try {
+				WriteTask task = queue.take(IDLE_WAIT, TimeUnit.MILLISECONDS);
+				if (null == task) {
+					continue;
+				}
+				group.add(task);
+				while ((group.size() < groupSize) && (null != (task = queue.poll()))) {
+					group.add(task);
+				}
+				writeGroup(group);
+			} catch (InterruptedException e) {
+				log.debug("write-behind writer interrupted.");
+			} finally {
+				group.clear();
+			}
+		}
+		log.debug("write-behind writer stopped.");
+	}
+	
+	/**
+	 * writes a group of writes in one transaction. the writes running their 
+	 * own transactions are run afterwards (in the order of the queue).
+	 * @param group the writes.
+	 */
+	private void writeGroup(List<WriteTask> group) {
+		Connection conn = delegate.getDBConnection();
+		if (null == conn) {
+			int n = 0;
+			for (WriteTask task : group) {
+				n += runTask(task);
+			}
+			written.addAndGet(n);
+			return;
+		}
+		List<WriteTask> outside = new ArrayList<WriteTask> ();
+		synchronized (conn) {
+			boolean autoCommit = true;
+			int n = 0;
+			try {
+				autoCommit = conn.getAutoCommit();
+				conn.setAutoCommit(false);
+				for (WriteTask task : group) {
+					if (task.isTransactional()) {
+						n += runTask(task);
+					} else {
+						outside.add(task);
+					}
+				}
+				conn.commit();
+				written.addAndGet(n);
+			} catch (SQLException e) {
+				log.error(String.format("could not commit %d write(s).", n), e);
+				failed.addAndGet(n);
+				try {
+					conn.rollback();
+				} catch (SQLException ex) {
+					log.error("could not roll back the transaction.", ex);
+				}
+				// the counts include the messages just rolled back.
+				if (delegate instanceof AbstractSQLRepository) {
+					((AbstractSQLRepository) delegate).rebuildCounts();
+				}
+			} finally {
+				try {
+					conn.setAutoCommit(autoCommit);
+				} catch (SQLException e) {
+					log.error("could not restore the auto-commit mode.", e);
+				}
+			}
+		}
+		for (WriteTask task : outside) {
+			written.addAndGet(runTask(task));
+		}
+	}
+	
+	/**
+	 * runs a write. errors are logged and counted.
+	 * @param task the write.
+	 * @return the number of items written (0 upon error).
+	 */
+	private int runTask(WriteTask task) {
+		try {
+			task.write();
+			return task.size();
+		} catch (RuntimeException e) {
+			log.error("could not write item.", e);
+			failed.incrementAndGet();
+		}
+		return 0;
+	}
+	
+	/**
+	 * waits until all the writes queued so far are written.
+	 * @param timeout how long to wait at most in milliseconds.
+	 * @return true if all the writes are written, false upon timeout.
+	 */
+	public boolean flush(long timeout) {
+		if (Thread.currentThread() == writer) {
+			return true;
+		}
+		FlushMarker marker = new FlushMarker();
+		try {
+			// the marker must not be dropped, so ignore the overflow policy.
+			if (!queue.offer(marker, timeout, TimeUnit.MILLISECONDS)) {
+				return false;
+			}
+			return marker.latch.await(timeout, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * @return the number of writes queued so far.
+	 */
+	public long getQueuedCount() {
+		return queued.get();
+	}
+	
+	/**
+	 * @return the number of items written so far.
+	 */
+	public long getWrittenCount() {
+		return written.get();
+	}
+	
+	/**
+	 * @return the number of writes dropped so far (either due to the 
+	 * overflow policy or due to errors in the database).
+	 */
+	public long getDroppedCount() {
+		return queue.getDroppedCount() + failed.get();
+	}
+	
+	/**
+	 * @return the number of writes currently waiting in the queue.
+	 */
+	public int getQueueSize() {
+		return queue.size();
+	}
+	
+	/**
+	 * @return the decorated repository.
+	 */
+	public Repository getDelegate() {
+		return delegate;
+	}
+
+	public void initialize(Map<String, String> args) throws LLRPRuntimeException {
+		delegate.initialize(args);
+	}
+
+	public Map<String, String> getArgs() {
+		return delegate.getArgs();
+	}
+
+	/**
+	 * writes the queued items, stops the writer thread and closes the 
+	 * decorated repository.
+	 */
+	public void close() {
+		flush(FLUSH_TIMEOUT);
+		running = false;
+		try {
+			writer.join(FLUSH_TIMEOUT);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		delegate.close();
+	}
+
+	public boolean isHealth() {
+		return delegate.isHealth();
+	}
+
+	public LLRPMessageItem get(String aMsgSysId) {
+		return delegate.get(aMsgSysId);
+	}
+
+	public void put(final LLRPMessageItem aMessage) {
+		enqueue(new WriteTask() {
+			@Override
+			void write() {
+				delegate.put(aMessage);
+			}
+		});
+	}
+
+	public ArrayList<LLRPMessageItem> get(String adaptorName,
+			String readerName, int num, boolean content) {
+		return delegate.get(adaptorName, readerName, num, content);
+	}
+
+	public ArrayList<LLRPMessageItem> get(String adaptorName,
+			String readerName, LLRPMessageItem cursor, boolean older, 
+			int pageSize, boolean content) {
+		return delegate.get(
+				adaptorName, readerName, cursor, older, pageSize, content);
+	}
+
+	public int count(String adaptor, String reader) {
+		return delegate.count(adaptor, reader);
+	}
+
+	public void clearAll() {
+		flush(FLUSH_TIMEOUT);
+		delegate.clearAll();
+	}
+
+	public void clearAdapter(String adapter) {
+		flush(FLUSH_TIMEOUT);
+		delegate.clearAdapter(adapter);
+	}
+
+	public void clearReader(String adapter, String reader) {
+		flush(FLUSH_TIMEOUT);
+		delegate.clearReader(adapter, reader);
+	}
+
+	public Connection getDBConnection() {
+		return delegate.getDBConnection();
+	}
+
+	/**
+	 * @return a write-behind handle to the RO_ACCESS_REPORTS repository of the 
+	 * decorated repository (null if not available).
+	 */
+	public synchronized ROAccessReportsRepository getROAccessRepository() {
+		if (null == roAccess) {
+			ROAccessReportsRepository target = delegate.getROAccessRepository();
+			if (null == target) {
+				return null;
+			}
+			roAccess = new WriteBehindROAccessReportsRepository(target);
+		}
+		return roAccess;
+	}
+	
+	/**
+	 * a queued write.
+	 */
+	private abstract static class WriteTask {
+		
+		/**
+		 * performs the write.
+		 */
+		abstract void write();
+		
+		/**
+		 * @return the number of items written by this write.
+		 */
+		int size() {
+			return 1;
+		}
+		
+		/**
+		 * @return true if the write joins the transaction of the group, 
+		 * false if it has to run after the commit of the group.
+		 */
+		boolean isTransactional() {
+			return true;
+		}
+	}
+	
+	/**
+	 * marker in the queue. the writer releases the latch when it reaches 
+	 * the marker, thus all the writes queued before are written.
+	 */
+	private static final class FlushMarker extends WriteTask {
+		
+		/** released when the marker is reached. */
+		private final CountDownLatch latch = new CountDownLatch(1);
+
+		@Override
+		void write() {
+			latch.countDown();
+		}
+		
+		@Override
+		int size() {
+			return 0;
+		}
+		
+		@Override
+		boolean isTransactional() {
+			// the writes before the marker might run after the commit.
+			return false;
+		}
+	}
+	
+	/**
+	 * handles the RO_ACCESS_REPORTS in the write-behind stage.
+	 */
+	private final class WriteBehindROAccessReportsRepository 
+		implements ROAccessReportsRepository {
+		
+		/** the decorated RO_ACCESS_REPORTS repository. */
+		private final ROAccessReportsRepository target;
+		
+		/**
+		 * @param target the decorated RO_ACCESS_REPORTS repository.
+		 */
+		private WriteBehindROAccessReportsRepository(ROAccessReportsRepository target) {
+			this.target = target;
+		}
+		
+		public void handle(final String adaptorName, final String readerName,
+				final LLRPMessage message) {
+			enqueue(new WriteTask() {
+				@Override
+				void write() {
+					target.handle(adaptorName, readerName, message);
+				}
+				
+				@Override
+				boolean isTransactional() {
+					// the repository commits (or rolls back) by itself.
+					return false;
+				}
+			});
+		}
+
+		public void setRepository(Repository repository) {
+			target.setRepository(repository);
+		}
+
+		public void initialize(Repository repository) throws LLRPRuntimeException {
+			target.initialize(repository);
+		}
+
+		@SuppressWarnings("deprecation")
+		public List<ROAccessItem> getAll() throws Exception {
+			flush(FLUSH_TIMEOUT);
+			return target.getAll();
+		}
+
+		public int visit(ROAccessQuery query, ROAccessItemVisitor visitor)
+				throws Exception {
+			flush(FLUSH_TIMEOUT);
+			return target.visit(query, visitor);
+		}
+
+		public void clear() throws Exception {
+			flush(FLUSH_TIMEOUT);
+			target.clear();
+		}
+	}
+}
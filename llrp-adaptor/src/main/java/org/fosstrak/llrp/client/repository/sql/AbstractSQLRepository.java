@@ -28,6 +28,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -35,8 +36,10 @@ import org.fosstrak.llrp.adaptor.AdaptorManagement;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
 import org.fosstrak.llrp.client.Constants;
 import org.fosstrak.llrp.client.LLRPMessageItem;
+import org.fosstrak.llrp.client.ROAccessReportsRepository;
 import org.fosstrak.llrp.client.Repository;
 import org.fosstrak.llrp.client.RepositoryFactory;
+import org.fosstrak.llrp.client.repository.sql.roaccess.AbstractSQLROAccessReportsRepository;
 
 /**
  * The {@link AbstractSQLRepository} represents a common super class for all 
@@ -73,7 +76,19 @@ import org.fosstrak.llrp.client.RepositoryFactory;
  * By default, the {@link AbstractSQLRepository} uses the SQL commands tailored 
  * to the Derby database (as this is the default internal database). So, if 
  * you do not override certain SQL "queries-getter", please be aware that this 
- * might cause trouble with a database differing from Derby.
+ * might cause trouble with a database differing from Derby.<br/>
+ * <h3>SCHEMA VERSION:</h3>
+ * The version of the LLRP message table is recorded in the table 
+ * {@link #TABLE_SCHEMA_VERSION}. Tables of an older version (the tables 
+ * without key and without indexes are version 1) are migrated at startup 
+ * instead of being dropped (see <code>migrateTable()</code>).<br/>
+ * <h3>COUNTS:</h3>
+ * The number of messages per adapter and per reader is counted at startup 
+ * and then kept up to date by <code>put</code> and the <code>clear</code> 
+ * methods, so <code>count(adaptor, reader)</code> does not query the 
+ * database. If the counts could not be established, the count is queried 
+ * instead. Messages written directly to the database connection are not 
+ * counted.
  * @author sawielan
  *
  */
@@ -112,6 +127,21 @@ public abstract class AbstractSQLRepository implements Repository {
 	/** the name of the LLRP message repository table. */
 	public static final String TABLE_LLRP_REPOSITORY = "llrp_msg";
 	
+	/** the name of the table holding the schema version of the LLRP message table. */
+	public static final String TABLE_SCHEMA_VERSION = "llrp_msg_schema";
+	
+	/** the current schema version of the LLRP message table. */
+	public static final int SCHEMA_VERSION = 2;
+	
+	/** the name of the index on the message id (for migrated tables). */
+	public static final String INDEX_MSG_ID = "llrp_msg_id";
+	
+	/** the name of the index on the adapter, the reader and the time-stamp. */
+	public static final String INDEX_READER_TIME = "llrp_msg_reader_time";
+	
+	/** the name of the index on the time-stamp. */
+	public static final String INDEX_TIME = "llrp_msg_time";
+	
 	// the log4j logger.
 	private static Logger log = Logger.getLogger(AbstractSQLRepository.class);
 	
@@ -149,6 +179,12 @@ public abstract class AbstractSQLRepository implements Repository {
 	/** map with additional arguments to be passed to the initializer. */
 	protected Map<String, String> args = null;
 	
+	// the number of messages per adapter and per reader.
+	private final MessageCounts counts = new MessageCounts();
+	
+	// whether the counts reflect the table.
+	private volatile boolean countsValid = false;
+	
 	// ------------------------- SQL STATEMENTS -------------------------------
 	/**
 	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!.
@@ -156,7 +192,7 @@ public abstract class AbstractSQLRepository implements Repository {
 	 */
 	protected String sqlCreateTable(){
 		return "CREATE TABLE " + TABLE_LLRP_REPOSITORY + " "
-    	+ "(MSG_ID CHAR(32),"
+    	+ "(MSG_ID CHAR(32) NOT NULL PRIMARY KEY,"
     	+ "MSG_TYPE CHAR(32),"
     	+ "READER CHAR(64),"
     	+ "ADAPTER CHAR(64),"
@@ -289,7 +325,156 @@ public abstract class AbstractSQLRepository implements Repository {
 			"from " + TABLE_LLRP_REPOSITORY + " where ADAPTER=? and READER=? " +
 			"order by MSG_TIME DESC";
 	}
-
+	
+	// ------ counts ------
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that counts all the messages.
+	 */
+	protected String sqlCountMessages() {
+		return "select count(*) from " + TABLE_LLRP_REPOSITORY;
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that counts the messages of a given adapter.
+	 */
+	protected String sqlCountAdapterMessages() {
+		return "select count(*) from " + TABLE_LLRP_REPOSITORY + " where ADAPTER=?";
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that counts the messages of a given reader.
+	 */
+	protected String sqlCountReaderMessages() {
+		return "select count(*) from " + TABLE_LLRP_REPOSITORY + 
+			" where ADAPTER=? and READER=?";
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that counts the messages per adapter and reader.
+	 */
+	protected String sqlCountMessagesPerReader() {
+		return "select ADAPTER, READER, count(*) from " + TABLE_LLRP_REPOSITORY + 
+			" group by ADAPTER, READER";
+	}
+	
+	// ------ keyset pagination ------
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.<br/>
+	 * the parameters are bound in the order adapter, reader and then the 
+	 * cursor (time-stamp, time-stamp, message id).
+	 * @param adapter whether to restrict the page to a given adapter.
+	 * @param reader whether to restrict the page to a given reader.
+	 * @param cursor whether the page starts after a cursor message.
+	 * @param older if true the page runs towards older messages, otherwise 
+	 * towards newer messages.
+	 * @param content whether to select the content or not.
+	 * @return a SQL command that selects one page of messages.
+	 */
+	protected String sqlSelectPage(boolean adapter, boolean reader, 
+			boolean cursor, boolean older, boolean content) {
+		
+		StringBuilder sql = new StringBuilder("select ");
+		if (content) {
+			sql.append("*");
+		} else {
+			sql.append("MSG_ID,MSG_TYPE,READER,ADAPTER,MSG_TIME,STATUS,COMMENT,MARK");
+		}
+		sql.append(" from ").append(TABLE_LLRP_REPOSITORY);
+		
+		String glue = " where ";
+		if (adapter) {
+			sql.append(glue).append("ADAPTER=?");
+			glue = " and ";
+		}
+		if (reader) {
+			sql.append(glue).append("READER=?");
+			glue = " and ";
+		}
+		String op = older ? "<" : ">";
+		if (cursor) {
+			// the redundant range on the time-stamp lets the database scan 
+			// the index instead of evaluating the disjunction on every row.
+			sql.append(glue).append("MSG_TIME").append(op).append("=? ")
+				.append("and (MSG_TIME").append(op).append("? ")
+				.append("or MSG_ID").append(op).append("?)");
+		}
+		String order = older ? "DESC" : "ASC";
+		sql.append(" order by MSG_TIME ").append(order)
+			.append(", MSG_ID ").append(order);
+		return sql.toString();
+	}
+	
+	// ------ schema ------
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return the SQL commands that create the indexes on the LLRP message 
+	 * table.
+	 */
+	protected String[] sqlCreateIndexes() {
+		return new String[] {
+				"CREATE INDEX " + INDEX_READER_TIME + " ON " + 
+					TABLE_LLRP_REPOSITORY + " (ADAPTER, READER, MSG_TIME)",
+				"CREATE INDEX " + INDEX_TIME + " ON " + 
+					TABLE_LLRP_REPOSITORY + " (MSG_TIME)"
+		};
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @param unique whether the index shall be unique.
+	 * @return a SQL command that indexes the message id of a migrated table.
+	 */
+	protected String sqlCreateKeyIndex(boolean unique) {
+		return "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + INDEX_MSG_ID + 
+			" ON " + TABLE_LLRP_REPOSITORY + " (MSG_ID)";
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that creates the schema version table.
+	 */
+	protected String sqlCreateSchemaTable() {
+		return "CREATE TABLE " + TABLE_SCHEMA_VERSION + " (SCHEMA_VERSION INT)";
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that selects the schema version.
+	 */
+	protected String sqlSelectSchemaVersion() {
+		return "select max(SCHEMA_VERSION) from " + TABLE_SCHEMA_VERSION;
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that removes the schema version.
+	 */
+	protected String sqlRemoveSchemaVersion() {
+		return "delete from " + TABLE_SCHEMA_VERSION;
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> this SQL command corresponds to derby SQL!. So 
+	 * override, if your database uses different SQL instructions.
+	 * @return a SQL command that inserts the schema version.
+	 */
+	protected String sqlInsertSchemaVersion() {
+		return "insert into " + TABLE_SCHEMA_VERSION + " values (?)";
+	}
 	
     /**
      * Loads the appropriate JDBC driver for this environment/framework. 
@@ -378,7 +563,11 @@ public abstract class AbstractSQLRepository implements Repository {
 		if (!existsTable() || wipe) {
 			dropTable();
 			createTable();
+		} else {
+			migrateTable();
 		}
+		
+		rebuildCounts();
 	}
 	
 	public Map<String, String> getArgs() {
@@ -393,8 +582,15 @@ public abstract class AbstractSQLRepository implements Repository {
 		// we try to make a SQL query. if it fails, we assume the table to be dead...
 		try {
 			DatabaseMetaData dbMeta = conn.getMetaData();
-			ResultSet resultSet = dbMeta.getColumns(
-					null, null, TABLE_LLRP_REPOSITORY, null);
+			// the meta data lookup is case sensitive, so use the case the 
+			// database stores unquoted identifiers in (derby: upper case).
+			String table = TABLE_LLRP_REPOSITORY;
+			if (dbMeta.storesUpperCaseIdentifiers()) {
+				table = table.toUpperCase();
+			} else if (dbMeta.storesLowerCaseIdentifiers()) {
+				table = table.toLowerCase();
+			}
+			ResultSet resultSet = dbMeta.getColumns(null, null, table, null);
 			int n = 0;
 			while (resultSet.next()) {
 				n++;
@@ -443,6 +639,134 @@ public abstract class AbstractSQLRepository implements Repository {
 			log.info("New Table Created.");
 		} catch (Exception e) {
 			log.info("Table exists. " + e.getMessage());
+			return;
+		}
+		createIndexes();
+		storeSchemaVersion(SCHEMA_VERSION);
+	}
+	
+	/**
+	 * migrates an existing table to the current schema version. tables from 
+	 * before the schema version (version 1) get the message id key and the 
+	 * indexes added, the stored messages are kept.
+	 */
+	protected void migrateTable() {
+		int version = getSchemaVersion();
+		if (version >= SCHEMA_VERSION) {
+			return;
+		}
+		log.info(String.format("Migrating table %s from schema version %d to %d.", 
+				TABLE_LLRP_REPOSITORY, version, SCHEMA_VERSION));
+		
+		// older tables may hold duplicate message ids. then the key can not 
+		// be enforced, but the cursor queries still need the index.
+		if (!execute(sqlCreateKeyIndex(true))) {
+			log.warn("Duplicate message ids - the message id index is not unique.");
+			execute(sqlCreateKeyIndex(false));
+		}
+		createIndexes();
+		storeSchemaVersion(SCHEMA_VERSION);
+	}
+	
+	/**
+	 * counts the messages per adapter and per reader in the table. if the 
+	 * table can not be counted, <code>count</code> queries the database. 
+	 * the counts are updated as soon as a message has been inserted, so 
+	 * whoever rolls back a transaction on the connection of the repository 
+	 * has to rebuild the counts.
+	 */
+	public void rebuildCounts() {
+		synchronized (conn) {
+			counts.clear();
+			try {
+				Statement stmt = conn.createStatement();
+				ResultSet resultSet = stmt.executeQuery(
+						sqlCountMessagesPerReader());
+				while (resultSet.next()) {
+					counts.add(resultSet.getString(1), resultSet.getString(2), 
+							resultSet.getInt(3));
+				}
+				resultSet.close();
+				stmt.close();
+				countsValid = true;
+			} catch (SQLException e) {
+				log.error("could not count the messages - counts are queried: " + 
+						e.getMessage());
+				counts.clear();
+				countsValid = false;
+			}
+		}
+	}
+	
+	/**
+	 * creates the indexes on the LLRP message table.
+	 */
+	protected void createIndexes() {
+		for (String sql : sqlCreateIndexes()) {
+			execute(sql);
+		}
+	}
+	
+	/**
+	 * @return the schema version of the LLRP message table. 1 if the version 
+	 * has never been recorded.
+	 */
+	protected int getSchemaVersion() {
+		int version = 1;
+		try {
+			Statement stmt = conn.createStatement();
+			ResultSet resultSet = stmt.executeQuery(sqlSelectSchemaVersion());
+			if (resultSet.next() && (resultSet.getInt(1) > 0)) {
+				version = resultSet.getInt(1);
+			}
+			resultSet.close();
+			stmt.close();
+		} catch (SQLException e) {
+			log.debug("No schema version recorded. " + e.getMessage());
+		}
+		return version;
+	}
+	
+	/**
+	 * records the schema version of the LLRP message table.
+	 * @param version the schema version.
+	 */
+	protected void storeSchemaVersion(int version) {
+		if (getSchemaVersion() == 1) {
+			// the table might be missing, therefore try to create it.
+			execute(sqlCreateSchemaTable());
+		}
+		try {
+			PreparedStatement psRemove = conn.prepareStatement(
+					sqlRemoveSchemaVersion());
+			psRemove.executeUpdate();
+			psRemove.close();
+			
+			PreparedStatement psInsert = conn.prepareStatement(
+					sqlInsertSchemaVersion());
+			psInsert.setInt(1, version);
+			psInsert.executeUpdate();
+			psInsert.close();
+		} catch (SQLException sqle) {
+			log.error("could not store the schema version", sqle);
+		}
+	}
+	
+	/**
+	 * executes a schema statement.
+	 * @param sql the statement to execute.
+	 * @return true if the statement succeeded, false otherwise.
+	 */
+	private boolean execute(String sql) {
+		try {
+			Statement stmt = conn.createStatement();
+			stmt.execute(sql);
+			stmt.close();
+			return true;
+		} catch (SQLException e) {
+			log.info(String.format("Could not execute '%s': %s", 
+					sql, e.getMessage()));
+			return false;
 		}
 	}
 	
@@ -451,6 +775,18 @@ public abstract class AbstractSQLRepository implements Repository {
 	 * @param aMessage the message to be stored.
 	 */
 	public void put(LLRPMessageItem aMessage) {
+		// the connection is shared with the RO_ACCESS_REPORTS repository, 
+		// which writes its batches in explicit transactions.
+		synchronized (conn) {
+			putItem(aMessage);
+		}
+	}
+	
+	/**
+	 * store an LLRP message into the repository.
+	 * @param aMessage the message to be stored.
+	 */
+	private void putItem(LLRPMessageItem aMessage) {
 		try {
 			PreparedStatement psInsert = conn.prepareStatement(sqlInsertMessage());
 
@@ -472,6 +808,7 @@ public abstract class AbstractSQLRepository implements Repository {
 			
 			psInsert.executeUpdate();
 			psInsert.close();
+			counts.add(adaptor, aMessage.getReader(), 1);
 		
 			log.debug("Put Message (ID=" + aMessage.getId() + ") into database.");
 		} catch (SQLException sqle) {
@@ -483,13 +820,16 @@ public abstract class AbstractSQLRepository implements Repository {
 	 * remove all the messages from the repository.
 	 */
 	public void clearAll() {
-		try {
-			PreparedStatement psRemoveAll = 
-				conn.prepareStatement(sqlRemoveAllMessages());
-			psRemoveAll.executeUpdate();
-			psRemoveAll.close();
-		} catch (SQLException sqle) {
-			log.error("could not truncate database", sqle);
+		synchronized (conn) {
+			try {
+				PreparedStatement psRemoveAll = 
+					conn.prepareStatement(sqlRemoveAllMessages());
+				psRemoveAll.executeUpdate();
+				psRemoveAll.close();
+				counts.clear();
+			} catch (SQLException sqle) {
+				log.error("could not truncate database", sqle);
+			}
 		}
 	}
 	
@@ -510,35 +850,41 @@ public abstract class AbstractSQLRepository implements Repository {
 	 *  <li>(adaptor != null) && (reader != null) then compute all the messages 
 	 *  for the adapter where the reader name is equal to reader.</li> 
 	 * </ol>
+	 * the counts are served from memory. only if they could not be 
+	 * established at startup, the database is queried.
 	 * @param adaptor the name of the adapter.
 	 * @param reader the name of the reader.
 	 * @return the number of messages stored in the repository.
 	 */
 	public int count(String adaptor, String reader) {
-				
+		if (countsValid) {
+			return counts.count(adaptor, reader);
+		}
+		
 		int rowcount = 0;
 		try {
-			Statement stmt = conn.createStatement();
-			String query = "";
+			PreparedStatement stmt = null;
 			if (null == adaptor) {
 				// all OK
-				query = "SELECT COUNT(*) FROM LLRP_MSG";
+				stmt = conn.prepareStatement(sqlCountMessages());
 			} else if (null == reader) {
 				// restrict to adaptor
-				query = String.format("%s WHERE ADAPTER='%s'", query, adaptor);
+				stmt = conn.prepareStatement(sqlCountAdapterMessages());
+				stmt.setString(1, adaptor);
 			} else {
-				query = String.format("%s WHERE ADAPTER='%s' AND READER='%s'", 
-						query, adaptor, reader);
+				stmt = conn.prepareStatement(sqlCountReaderMessages());
+				stmt.setString(1, adaptor);
+				stmt.setString(2, reader);
 			}
-			ResultSet resultSet = stmt.executeQuery(query);
+			ResultSet resultSet = stmt.executeQuery();
 
 			// Get the number of rows from the result set
 			if (resultSet.next()) {
 				rowcount = resultSet.getInt(1);
 			}
 
-			stmt.close();
 			resultSet.close();
+			stmt.close();
 		} catch (SQLException e) {
 			log.error("Could not retrieve the number of messages: " + 
 					e.getMessage());
@@ -552,15 +898,18 @@ public abstract class AbstractSQLRepository implements Repository {
 	 * @param adapter the name of the adapter to clean out.
 	 */
 	public void clearAdapter(String adapter) {
-		try {
-			PreparedStatement psRemove = conn.prepareStatement(
-					sqlRemoveAllAdapterMessages());
-			psRemove.setString(1, adapter);
-			psRemove.executeUpdate();
-			psRemove.close();
-		} catch (SQLException sqle) {
-			log.error("could not clear adapter", sqle);
-		}		
+		synchronized (conn) {
+			try {
+				PreparedStatement psRemove = conn.prepareStatement(
+						sqlRemoveAllAdapterMessages());
+				psRemove.setString(1, adapter);
+				psRemove.executeUpdate();
+				psRemove.close();
+				counts.clear(adapter);
+			} catch (SQLException sqle) {
+				log.error("could not clear adapter", sqle);
+			}
+		}
 	}
 
 	/**
@@ -569,22 +918,32 @@ public abstract class AbstractSQLRepository implements Repository {
 	 * @param reader the name of the reader.
 	 */
 	public void clearReader(String adapter, String reader) {
-		try {
-			PreparedStatement psRemove = conn.prepareStatement(
-					sqlRemoveAllReaderMessages());
-			psRemove.setString(1, adapter);
-			psRemove.setString(2, reader);
-			psRemove.executeUpdate();
-			psRemove.close();
-		} catch (SQLException sqle) {
-			log.error("could not clear the reader", sqle);
-		}	
+		synchronized (conn) {
+			try {
+				PreparedStatement psRemove = conn.prepareStatement(
+						sqlRemoveAllReaderMessages());
+				psRemove.setString(1, adapter);
+				psRemove.setString(2, reader);
+				psRemove.executeUpdate();
+				psRemove.close();
+				counts.clear(adapter, reader);
+			} catch (SQLException sqle) {
+				log.error("could not clear the reader", sqle);
+			}
+		}
 	}
 	
 	/**
 	 * Close the database connection.
 	 */
 	public void close() {
+		// write the pending RO_ACCESS_REPORT rows.
+		if (logROAccess && (null != conn)) {
+			ROAccessReportsRepository roAccess = getROAccessRepository();
+			if (roAccess instanceof AbstractSQLROAccessReportsRepository) {
+				((AbstractSQLROAccessReportsRepository) roAccess).flush();
+			}
+		}
 		try {
             if (conn != null) {
                 conn.close();
@@ -646,19 +1005,7 @@ public abstract class AbstractSQLRepository implements Repository {
 			}
 			results = st.executeQuery();
 			while (results.next()) {
-				LLRPMessageItem item = new LLRPMessageItem();
-				item.setAdapter(results.getString(SELECTOR_ADAPTOR));
-				item.setComment(results.getString(SELECTOR_COMMENT));
-				item.setId(results.getString(SELECTOR_ID));
-				item.setMark(results.getInt(SELECTOR_MARK));
-				item.setMessageType(results.getString(SELECTOR_MESSAGE_TYPE));
-				item.setReader(results.getString(SELECTOR_READER));
-				item.setStatusCode(results.getString(SELECTOR_STATUS));
-				item.setTime(results.getTimestamp(SELECTOR_TIMESTAMP));
-				if (content) {
-					item.setContent(results.getString(SELECTOR_CONTENT));
-				}
-				msgs.add(item);
+				msgs.add(toItem(results, content));
 			}
 			
 		} catch (Exception e) {
@@ -672,6 +1019,96 @@ public abstract class AbstractSQLRepository implements Repository {
 		return msgs;
 	}
 	
+	/**
+	 * returns one page of messages from the specified adaptor and reader, 
+	 * starting right after the given cursor item. the page is read through 
+	 * the index on adapter, reader and time-stamp, so the cost of a page does 
+	 * not depend on the size of the table. the page is always returned newest 
+	 * message first.
+	 * @param adaptorName the name of the adaptor.
+	 * @param readerName the name of the reader.
+	 * @param cursor the message the page starts after. if null, the page 
+	 * starts at the newest (older == true) or at the oldest (older == false) 
+	 * message.
+	 * @param older if true retrieve the messages older than the cursor, 
+	 * otherwise the messages newer than the cursor.
+	 * @param pageSize the maximum number of messages in the page.
+	 * @param content if true retrieve the message content, false no content.
+	 * @return a list of messages.
+	 */
+	public ArrayList<LLRPMessageItem> get(String adaptorName, 
+			String readerName, LLRPMessageItem cursor, boolean older, 
+			int pageSize, boolean content) {
+		
+		ArrayList<LLRPMessageItem> msgs = new ArrayList<LLRPMessageItem> ();
+		if (pageSize <= 0) {
+			return msgs;
+		}
+		boolean byAdapter = (null != adaptorName) && 
+			(!Constants.ROOT_NAME.equals(adaptorName));
+		boolean byReader = byAdapter && (null != readerName);
+		boolean byCursor = (null != cursor) && (null != cursor.getTime());
+		
+		try {
+			PreparedStatement st = conn.prepareStatement(sqlSelectPage(
+					byAdapter, byReader, byCursor, older, content));
+			int i = 1;
+			if (byAdapter) {
+				st.setString(i++, adaptorName.trim());
+			}
+			if (byReader) {
+				st.setString(i++, readerName.trim());
+			}
+			if (byCursor) {
+				st.setTimestamp(i++, cursor.getTime());
+				st.setTimestamp(i++, cursor.getTime());
+				st.setString(i++, (null == cursor.getId()) ? "" : cursor.getId().trim());
+			}
+			st.setMaxRows(pageSize);
+			
+			ResultSet results = st.executeQuery();
+			while (results.next()) {
+				msgs.add(toItem(results, content));
+			}
+			results.close();
+			st.close();
+		} catch (SQLException e) {
+			log.error(String.format("could not retrieve page from database: %s", 
+					e.getMessage()));
+		}
+		
+		if (!older) {
+			// newer pages are read oldest first.
+			Collections.reverse(msgs);
+		}
+		return msgs;
+	}
+	
+	/**
+	 * creates a message item from the current row of a result set.
+	 * @param results the result set.
+	 * @param content whether the result set holds the content.
+	 * @return the message item.
+	 * @throws SQLException when a column could not be read.
+	 */
+	protected LLRPMessageItem toItem(ResultSet results, boolean content) 
+		throws SQLException {
+		
+		LLRPMessageItem item = new LLRPMessageItem();
+		item.setAdapter(results.getString(SELECTOR_ADAPTOR));
+		item.setComment(results.getString(SELECTOR_COMMENT));
+		item.setId(results.getString(SELECTOR_ID));
+		item.setMark(results.getInt(SELECTOR_MARK));
+		item.setMessageType(results.getString(SELECTOR_MESSAGE_TYPE));
+		item.setReader(results.getString(SELECTOR_READER));
+		item.setStatusCode(results.getString(SELECTOR_STATUS));
+		item.setTime(results.getTimestamp(SELECTOR_TIMESTAMP));
+		if (content) {
+			item.setContent(results.getString(SELECTOR_CONTENT));
+		}
+		return item;
+	}
+	
 	/**
 	 * @param aMsgSysId the message id of the item to be retrieved.
 	 * @return the LLRP message to the given message id.
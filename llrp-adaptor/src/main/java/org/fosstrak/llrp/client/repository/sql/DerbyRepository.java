@@ -70,8 +70,7 @@ public class DerbyRepository extends AbstractSQLRepository {
 	public void initialize(Map<String, String> args) 
 		throws LLRPRuntimeException {
 		
-		super.initialize(args);
-		
+		// the location is needed when the super class opens the connection.
 		String argRepoLoc = null;
 		if ((null == args) || (null == args.get(ARG_REPO_LOCATION))) {
 			argRepoLoc = DB_NAME;
@@ -79,6 +78,8 @@ public class DerbyRepository extends AbstractSQLRepository {
 			argRepoLoc = args.get(ARG_REPO_LOCATION);
 		}
 		repoLocation = argRepoLoc + DB_NAME;
+		
+		super.initialize(args);
 	}
 
 	@Override
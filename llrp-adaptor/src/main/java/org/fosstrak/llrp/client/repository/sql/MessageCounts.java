@@ -0,0 +1,166 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.client.repository.sql;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the {@link MessageCounts} keep the number of LLRP messages in the 
+ * repository per adapter and per reader, so that the repository can answer 
+ * <code>count(adapter, reader)</code> without querying the database. the 
+ * counts are changed by the repository only (under the connection lock), 
+ * reading them does not block.
+ * @author sawielan
+ *
+ */
+class MessageCounts {
+	
+	/**
+	 * the counts of one adapter.
+	 */
+	private static class AdapterCounts {
+		
+		// the number of messages of the adapter.
+		private final AtomicInteger total = new AtomicInteger();
+		
+		// the number of messages per reader.
+		private final ConcurrentHashMap<String, AtomicInteger> readers = 
+			new ConcurrentHashMap<String, AtomicInteger> ();
+	}
+	
+	// the number of messages in the repository.
+	private final AtomicInteger total = new AtomicInteger();
+	
+	// the counts per adapter.
+	private final ConcurrentHashMap<String, AdapterCounts> adapters = 
+		new ConcurrentHashMap<String, AdapterCounts> ();
+	
+	/**
+	 * the database pads the names to the column width, so the names are 
+	 * compared without the trailing blanks.
+	 * @param name the name of the adapter or the reader.
+	 * @return the key to the name.
+	 */
+	private static String key(String name) {
+		int end = name.length();
+		while ((end > 0) && (name.charAt(end - 1) == ' ')) {
+			end--;
+		}
+		return name.substring(0, end);
+	}
+	
+	/**
+	 * adds messages to the counts.
+	 * @param adapter the name of the adapter.
+	 * @param reader the name of the reader (might be null).
+	 * @param n the number of messages to add.
+	 */
+	void add(String adapter, String reader, int n) {
+		total.addAndGet(n);
+		if (null == adapter) {
+			return;
+		}
+		String adapterKey = key(adapter);
+		AdapterCounts counts = adapters.get(adapterKey);
+		if (null == counts) {
+			counts = new AdapterCounts();
+			AdapterCounts other = adapters.putIfAbsent(adapterKey, counts);
+			if (null != other) {
+				counts = other;
+			}
+		}
+		counts.total.addAndGet(n);
+		if (null == reader) {
+			return;
+		}
+		String readerKey = key(reader);
+		AtomicInteger count = counts.readers.get(readerKey);
+		if (null == count) {
+			count = new AtomicInteger();
+			AtomicInteger other = counts.readers.putIfAbsent(readerKey, count);
+			if (null != other) {
+				count = other;
+			}
+		}
+		count.addAndGet(n);
+	}
+	
+	/**
+	 * @param adapter the name of the adapter. if null, all the messages are 
+	 * counted.
+	 * @param reader the name of the reader. if null, all the messages of the 
+	 * adapter are counted.
+	 * @return the number of messages.
+	 */
+	int count(String adapter, String reader) {
+		if (null == adapter) {
+			return total.get();
+		}
+		AdapterCounts counts = adapters.get(key(adapter));
+		if (null == counts) {
+			return 0;
+		}
+		if (null == reader) {
+			return counts.total.get();
+		}
+		AtomicInteger count = counts.readers.get(key(reader));
+		return (null == count) ? 0 : count.get();
+	}
+	
+	/**
+	 * removes all the counts.
+	 */
+	void clear() {
+		adapters.clear();
+		total.set(0);
+	}
+	
+	/**
+	 * removes the counts of an adapter.
+	 * @param adapter the name of the adapter.
+	 */
+	void clear(String adapter) {
+		AdapterCounts counts = adapters.remove(key(adapter));
+		if (null != counts) {
+			total.addAndGet(-counts.total.get());
+		}
+	}
+	
+	/**
+	 * removes the count of a reader.
+	 * @param adapter the name of the adapter.
+	 * @param reader the name of the reader.
+	 */
+	void clear(String adapter, String reader) {
+		AdapterCounts counts = adapters.get(key(adapter));
+		if (null == counts) {
+			return;
+		}
+		AtomicInteger count = counts.readers.remove(key(reader));
+		if (null != count) {
+			counts.total.addAndGet(-count.get());
+			total.addAndGet(-count.get());
+		}
+	}
+}
@@ -75,7 +75,7 @@ public class PostgreSQLRepository extends AbstractSQLRepository {
 	@Override
 	protected String sqlCreateTable() {
 		return "CREATE TABLE " + TABLE_LLRP_REPOSITORY + " "
-	    	+ "(MSG_ID CHAR(32),"
+	    	+ "(MSG_ID CHAR(32) NOT NULL PRIMARY KEY,"
 	    	+ "MSG_TYPE CHAR(32),"
 	    	+ "READER CHAR(64),"
 	    	+ "ADAPTER CHAR(64),"
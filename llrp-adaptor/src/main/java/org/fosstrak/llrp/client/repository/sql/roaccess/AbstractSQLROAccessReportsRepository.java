@@ -30,11 +30,25 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
 import org.fosstrak.llrp.client.ROAccessReportsRepository;
 import org.fosstrak.llrp.client.Repository;
 import org.fosstrak.llrp.client.RepositoryFactory;
@@ -48,7 +62,30 @@ import org.llrp.ltk.types.UnsignedLong;
  * several constants helping you to simplify your SQL code. If your database 
  * does not support the datatypes used in {@link DerbyROAccessReportsRepository} 
  * you should subclass from this class and invoke the respective class from 
- * your repository implementation {@link Repository}.
+ * your repository implementation {@link Repository}.<br/>
+ * <br/>
+ * the rows are written with one prepared statement that is reused for all 
+ * the inserts. the rows of a report are sent as one JDBC batch within one 
+ * transaction. optionally, the rows of several reports can be collected 
+ * into one batch (see {@link RepositoryFactory#ARG_RO_ACCESS_BATCH_SIZE} and 
+ * {@link RepositoryFactory#ARG_RO_ACCESS_BATCH_LINGER}): the batch is then 
+ * written when either the given number of rows is reached or when the 
+ * oldest row waited for the given time.<br/>
+ * <br/>
+ * the rows are read with {@link #visit(ROAccessQuery, ROAccessItemVisitor)}, 
+ * which streams the rows matching a query from the database. the criteria of 
+ * the query are evaluated by the database.<br/>
+ * <br/>
+ * optionally (see {@link RepositoryFactory#ARG_RO_ACCESS_PARTITIONED}), the 
+ * rows are written into one table per day (UTC) of their log time, named 
+ * after the main table and the day (eg. 
+ * <code>table_ro_access_reports_20081231</code>). a scan then only reads the 
+ * tables of the days within the time range of the query, and old rows are 
+ * removed by dropping whole tables. rows written before the partitioning was 
+ * switched on stay in the main table, which is scanned as well. with a 
+ * retention (see {@link RepositoryFactory#ARG_RO_ACCESS_RETENTION_DAYS}) the 
+ * tables of the days older than the retention are dropped at startup and 
+ * whenever the table of a new day is created.
  * @author sawielan
  *
  */
@@ -128,6 +165,49 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 	/** the number of columns in the table. */
 	public static final int NUM_COLUMNS = 18;
 	
+	/** the time in ms covered by one partition (one day). */
+	public static final long PARTITION_LENGTH = 24L * 60L * 60L * 1000L;
+	
+	/** the date format of the day in the name of a partition (UTC). */
+	public static final String PARTITION_DATE_FORMAT = "yyyyMMdd";
+	
+	/** 
+	 * default number of rows collected across reports before writing them 
+	 * (0 writes every report in its own transaction immediately).
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 0;
+	
+	/** default time in ms a collected row waits at most before it is written. */
+	public static final long DEFAULT_BATCH_LINGER = 1000L;
+	
+	/** the number of rows collected across reports before writing them. */
+	protected int batchSize = DEFAULT_BATCH_SIZE;
+	
+	/** the time in ms a collected row waits at most before it is written. */
+	protected long batchLinger = DEFAULT_BATCH_LINGER;
+	
+	/** the prepared insert statements per table (reused for all the inserts). */
+	private final Map<String, PreparedStatement> inserts = 
+		new HashMap<String, PreparedStatement> ();
+	
+	/** whether the rows are written into daily partitions. */
+	protected boolean partitioned = false;
+	
+	/** the number of days the rows are kept (0 keeps all the rows). */
+	protected int retentionDays = 0;
+	
+	/** the days (since the epoch) having a partition. guarded by the connection. */
+	private final TreeSet<Long> partitions = new TreeSet<Long> ();
+	
+	/** the reports not yet written to the database. guarded by the connection. */
+	private final List<ROAccessReportBatch> pending = new ArrayList<ROAccessReportBatch> ();
+	
+	/** the number of rows in the pending reports. guarded by the connection. */
+	private int pendingRows = 0;
+	
+	/** the scheduled flush of the pending rows (if any). guarded by the connection. */
+	private ScheduledFuture<?> lingerFlush = null;
+	
 	/** the repository "owning" this item. */
 	protected Repository repository;
 	
@@ -161,6 +241,103 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 	 */
 	protected abstract String sqlInsert();
 	
+	/**
+	 * <strong>NOTICE:</strong> the default implementation renames the table 
+	 * in the SQL of {@link #sqlCreateTable()}.
+	 * @param table the name of the table (the main table or a partition).
+	 * @return a SQL creating the given table.
+	 */
+	protected String sqlCreateTable(String table) {
+		return sqlCreateTable().replace(TABLE_RO_ACCESS_REPORTS, table);
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> the default implementation renames the table 
+	 * in the SQL of {@link #sqlDropTable()}.
+	 * @param table the name of the table (the main table or a partition).
+	 * @return a SQL dropping the given table.
+	 */
+	protected String sqlDropTable(String table) {
+		return sqlDropTable().replace(TABLE_RO_ACCESS_REPORTS, table);
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> the default implementation renames the table 
+	 * in the SQL of {@link #sqlInsert()}.
+	 * @param table the name of the table (the main table or a partition).
+	 * @return a SQL allowing to insert a new log item into the given table.
+	 */
+	protected String sqlInsert(String table) {
+		return sqlInsert().replace(TABLE_RO_ACCESS_REPORTS, table);
+	}
+	
+	/**
+	 * @param table the name of the table.
+	 * @return a SQL deleting the rows logged before a given time.
+	 */
+	protected String sqlDeleteBefore(String table) {
+		return String.format("DELETE FROM %s WHERE %s<?", 
+				table, sqlColumnName(CINDEX_LOGTIME));
+	}
+	
+	/**
+	 * <strong>NOTICE:</strong> the default implementation returns the column 
+	 * names of the {@link DerbyROAccessReportsRepository}. override, if your 
+	 * table uses different column names.
+	 * @param column the column index (see the CINDEX constants).
+	 * @return the name of the column.
+	 */
+	protected String sqlColumnName(int column) {
+		return DerbyROAccessReportsRepository.COLUMN_NAMES_AND_TYPES[column - 1][0];
+	}
+	
+	/**
+	 * the parameters of the query are bound by 
+	 * {@link #bind(PreparedStatement, ROAccessQuery)}.
+	 * @param query the criteria selecting the rows.
+	 * @return a SQL selecting the rows matching the query.
+	 */
+	protected String sqlSelect(ROAccessQuery query) {
+		return sqlSelect(query, TABLE_RO_ACCESS_REPORTS);
+	}
+	
+	/**
+	 * the parameters of the query are bound by 
+	 * {@link #bind(PreparedStatement, ROAccessQuery)}.
+	 * @param query the criteria selecting the rows.
+	 * @param table the name of the table (the main table or a partition).
+	 * @return a SQL selecting the rows of the given table matching the query.
+	 */
+	protected String sqlSelect(ROAccessQuery query, String table) {
+		StringBuilder sql = new StringBuilder("SELECT * FROM ");
+		sql.append(table);
+		String glue = " WHERE ";
+		if (null != query.getFrom()) {
+			sql.append(glue).append(sqlColumnName(CINDEX_LOGTIME)).append(">=?");
+			glue = " AND ";
+		}
+		if (null != query.getTo()) {
+			sql.append(glue).append(sqlColumnName(CINDEX_LOGTIME)).append("<?");
+			glue = " AND ";
+		}
+		if (null != query.getAdapterName()) {
+			sql.append(glue).append(sqlColumnName(CINDEX_ADAPTER)).append("=?");
+			glue = " AND ";
+		}
+		if (null != query.getReaderName()) {
+			sql.append(glue).append(sqlColumnName(CINDEX_READER)).append("=?");
+			glue = " AND ";
+		}
+		if (null != query.getEpc()) {
+			sql.append(glue).append(sqlColumnName(CINDEX_EPC)).append("=?");
+			glue = " AND ";
+		}
+		if (null != query.getAntennaID()) {
+			sql.append(glue).append(sqlColumnName(CINDEX_AntennaID)).append("=?");
+		}
+		return sql.toString();
+	}
+	
 	/** flag, whether this repository is initialized or not. */
 	protected boolean initialized = false;
 	
@@ -171,6 +348,31 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 		
 		wipe = Boolean.parseBoolean(repository.getArgs().get(
 				RepositoryFactory.ARG_WIPE_RO_ACCESS_REPORTS_DB));
+		try {
+			String value = repository.getArgs().get(
+					RepositoryFactory.ARG_RO_ACCESS_BATCH_SIZE);
+			if (null != value) {
+				batchSize = Integer.parseInt(value.trim());
+			}
+			value = repository.getArgs().get(
+					RepositoryFactory.ARG_RO_ACCESS_BATCH_LINGER);
+			if (null != value) {
+				batchLinger = Long.parseLong(value.trim());
+			}
+			partitioned = Boolean.parseBoolean(repository.getArgs().get(
+					RepositoryFactory.ARG_RO_ACCESS_PARTITIONED));
+			value = repository.getArgs().get(
+					RepositoryFactory.ARG_RO_ACCESS_RETENTION_DAYS);
+			if (null != value) {
+				retentionDays = Integer.parseInt(value.trim());
+			}
+		} catch (NumberFormatException e) {
+			batchSize = DEFAULT_BATCH_SIZE;
+			batchLinger = DEFAULT_BATCH_LINGER;
+			retentionDays = 0;
+			log.error("wrong value in args table for the RO_ACCESS_REPORT " + 
+					"batch size|linger|retention - using defaults.");
+		}
 		this.repository = repository;
 		
 		conn = repository.getDBConnection();
@@ -202,22 +404,244 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 			createTable();
 		}
 		
+		synchronized (conn) {
+			findPartitions();
+			if (wipe) {
+				for (Long day : new ArrayList<Long> (partitions)) {
+					dropPartition(day);
+				}
+			}
+			applyRetention(currentTime());
+		}
+		
 		tableOk = true;
 	}
+	
+	/**
+	 * the meta data lookups are case sensitive, so the names have to be 
+	 * given in the case the database stores unquoted identifiers in.
+	 * @param dbMeta the meta data of the database.
+	 * @param name the name of a table.
+	 * @return the name as stored by the database.
+	 * @throws SQLException when the meta data could not be read.
+	 */
+	private static String identifier(DatabaseMetaData dbMeta, String name) 
+		throws SQLException {
+		
+		if (dbMeta.storesUpperCaseIdentifiers()) {
+			return name.toUpperCase();
+		} else if (dbMeta.storesLowerCaseIdentifiers()) {
+			return name.toLowerCase();
+		}
+		return name;
+	}
+	
+	/**
+	 * @return the current time in ms (the log time of the reports handled).
+	 */
+	protected long currentTime() {
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * @return a date format for the day in the name of a partition.
+	 */
+	private static DateFormat partitionDateFormat() {
+		DateFormat format = new SimpleDateFormat(PARTITION_DATE_FORMAT);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format;
+	}
+	
+	/**
+	 * @param day the day since the epoch.
+	 * @return the name of the partition of the given day.
+	 */
+	protected String partitionName(long day) {
+		return String.format("%s_%s", TABLE_RO_ACCESS_REPORTS, 
+				partitionDateFormat().format(new Date(day * PARTITION_LENGTH)));
+	}
+	
+	/**
+	 * @param time a log time in ms.
+	 * @return the day since the epoch holding the given time.
+	 */
+	private static long day(long time) {
+		long day = time / PARTITION_LENGTH;
+		return ((time < 0) && (time % PARTITION_LENGTH != 0)) ? day - 1 : day;
+	}
+	
+	/**
+	 * reads the partitions present in the database.
+	 * @throws SQLException when the meta data could not be read.
+	 */
+	private void findPartitions() throws SQLException {
+		partitions.clear();
+		DatabaseMetaData dbMeta = conn.getMetaData();
+		ResultSet resultSet = dbMeta.getTables(null, null, 
+				identifier(dbMeta, TABLE_RO_ACCESS_REPORTS) + "%", 
+				new String[] { "TABLE" });
+		final String prefix = TABLE_RO_ACCESS_REPORTS + "_";
+		DateFormat format = partitionDateFormat();
+		while (resultSet.next()) {
+			String name = resultSet.getString("TABLE_NAME");
+			if ((null == name) || 
+					(name.length() != prefix.length() + PARTITION_DATE_FORMAT.length()) ||
+					!name.toLowerCase().startsWith(prefix)) {
+				continue;
+			}
+			try {
+				Date date = format.parse(name.substring(prefix.length()));
+				partitions.add(day(date.getTime()));
+			} catch (ParseException e) {
+				log.debug(String.format("table '%s' is not a partition.", name));
+			}
+		}
+		resultSet.close();
+		log.debug(String.format("found %d partition(s).", partitions.size()));
+	}
+	
+	/**
+	 * returns the table the rows with the given log time are written into. 
+	 * the partition of a new day is created (and the retention is applied).
+	 * must be called with the connection lock held.
+	 * @param logTime the log time in ms.
+	 * @return the name of the table.
+	 */
+	private String tableFor(long logTime) {
+		if (!partitioned) {
+			return TABLE_RO_ACCESS_REPORTS;
+		}
+		final long day = day(logTime);
+		final String table = partitionName(day);
+		if (!partitions.contains(day)) {
+			createTable(table);
+			partitions.add(day);
+			applyRetention(currentTime());
+		}
+		return table;
+	}
+	
+	/**
+	 * drops the partition of a day.
+	 * @param day the day since the epoch.
+	 */
+	private void dropPartition(long day) {
+		String table = partitionName(day);
+		PreparedStatement insert = inserts.remove(table);
+		if (null != insert) {
+			try {
+				insert.close();
+			} catch (SQLException e) {
+				log.debug("could not close the insert statement.");
+			}
+		}
+		dropTable(table);
+		partitions.remove(day);
+	}
+	
+	/**
+	 * removes the rows older than the retention (if any).
+	 * @param now the current time in ms.
+	 */
+	private void applyRetention(long now) {
+		if (retentionDays > 0) {
+			dropBefore(new Timestamp(now - retentionDays * PARTITION_LENGTH));
+		}
+	}
+	
+	/**
+	 * removes the rows logged before the given time. the partitions of the 
+	 * days entirely before the time are dropped, rows in the main table are 
+	 * deleted. the partition containing the time itself is kept completely.
+	 * @param time the time (exclusive) before which the rows are removed.
+	 * @return the number of dropped partitions.
+	 */
+	public int dropBefore(Timestamp time) {
+		if (null == conn) {
+			return 0;
+		}
+		synchronized (conn) {
+			final long first = day(time.getTime());
+			List<Long> old = new ArrayList<Long> (partitions.headSet(first));
+			for (Long day : old) {
+				log.info(String.format("dropping partition '%s'.", 
+						partitionName(day)));
+				dropPartition(day);
+			}
+			try {
+				PreparedStatement delete = conn.prepareStatement(
+						sqlDeleteBefore(TABLE_RO_ACCESS_REPORTS));
+				delete.setTimestamp(1, time);
+				delete.executeUpdate();
+				delete.close();
+			} catch (SQLException e) {
+				log.error("could not delete the old rows: " + e.getMessage());
+			}
+			return old.size();
+		}
+	}
+	
+	/**
+	 * @return the names of the partitions present (oldest first).
+	 */
+	public List<String> getPartitions() {
+		List<String> names = new ArrayList<String> ();
+		if (null == conn) {
+			return names;
+		}
+		synchronized (conn) {
+			for (Long day : partitions) {
+				names.add(partitionName(day));
+			}
+		}
+		return names;
+	}
+	
+	/**
+	 * returns the tables a scan has to read: the main table and the 
+	 * partitions of the days within the time range of the query. must be 
+	 * called with the connection lock held.
+	 * @param query the criteria selecting the rows.
+	 * @return the names of the tables.
+	 */
+	private List<String> tablesFor(ROAccessQuery query) {
+		List<String> tables = new ArrayList<String> ();
+		tables.add(TABLE_RO_ACCESS_REPORTS);
+		for (Long day : partitions) {
+			if ((null != query.getFrom()) && 
+					((day + 1) * PARTITION_LENGTH <= query.getFrom().getTime())) {
+				continue;
+			}
+			if ((null != query.getTo()) && 
+					(day * PARTITION_LENGTH >= query.getTo().getTime())) {
+				break;
+			}
+			tables.add(partitionName(day));
+		}
+		return tables;
+	}
 
 	/**
 	 * drop the log table.
 	 */
 	protected boolean dropTable() {
+		return dropTable(TABLE_RO_ACCESS_REPORTS);
+	}
+	
+	/**
+	 * drop a log table.
+	 * @param table the name of the table (the main table or a partition).
+	 */
+	protected boolean dropTable(String table) {
 		try {
 			Statement drop = conn.createStatement();
-			drop.execute(sqlDropTable());
+			drop.execute(sqlDropTable(table));
+			drop.close();
 			
-			log.info(String.format("Removed table '%s'", 
-					TABLE_RO_ACCESS_REPORTS));			
+			log.info(String.format("Removed table '%s'", table));
 		} catch (Exception e) {
 			log.error(String.format("Could not remove table '%s': %s", 
-					TABLE_RO_ACCESS_REPORTS, e.getMessage()));
+					table, e.getMessage()));
 			return false;
 		}
 		return true;
@@ -227,18 +651,25 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 	 * create a new log table.
 	 */
 	protected boolean createTable() {
+		return createTable(TABLE_RO_ACCESS_REPORTS);
+	}
+	
+	/**
+	 * create a new log table.
+	 * @param table the name of the table (the main table or a partition).
+	 */
+	protected boolean createTable(String table) {
 		try {
-			String sqlCreate = sqlCreateTable();
+			String sqlCreate = sqlCreateTable(table);
 			log.debug(String.format("creating table with SQL %s", sqlCreate));			
 			Statement create = conn.createStatement();	
 			create.execute(sqlCreate);
 			create.close();
 			
-			log.info(String.format("Created table '%s'", 
-					TABLE_RO_ACCESS_REPORTS));
+			log.info(String.format("Created table '%s'", table));
 		} catch (Exception e) {
 			log.info(String.format("Could not create table '%s': %s",
-					TABLE_RO_ACCESS_REPORTS, e.getMessage()));
+					table, e.getMessage()));
 			return false;
 		}	
 		return true;
@@ -252,8 +683,8 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 		// we try to make a SQL query. if it fails, we assume the table to be dead...
 		try {
 			DatabaseMetaData dbMeta = conn.getMetaData();
-			ResultSet resultSet = dbMeta.getColumns(
-					null, null, TABLE_RO_ACCESS_REPORTS, null);
+			ResultSet resultSet = dbMeta.getColumns(null, null, 
+					identifier(dbMeta, TABLE_RO_ACCESS_REPORTS), null);
 			int n = 0;
 			while (resultSet.next()) {
 				n++;
@@ -307,189 +738,487 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 		
 		log.debug("logging RO_ACCESS_REPORT to database.");
 		
-		List<ROAccessItem> items = ROAccessItem.parse(
-				message, adapterName, readerName, System.currentTimeMillis());
-		int successfullyHandled = 0;
-		for (ROAccessItem item : items) {
-			try {
-				
-				String sqlInsert = sqlInsert();
-				
-				PreparedStatement insert = conn.prepareStatement(sqlInsert);
-	
-				// log time.
-				insert.setTimestamp(CINDEX_LOGTIME, item.getLogTime());
-				
-				// adapter name.
-				insert.setString(CINDEX_ADAPTER, item.getAdapterName());
-				
-				// reader name.
-				insert.setString(CINDEX_READER, item.getReaderName());
-				
-				// store the EPC as EPC96 or EPCData
-				if (null != item.getEpc()) {
-					insert.setString(CINDEX_EPC, item.getEpc());
-				} else {
-					insert.setNull(CINDEX_EPC, Types.VARCHAR);
-				}
-				
-				// RO Spec ID.
-				if (null != item.getRoSpecID()) {
-					insert.setLong(CINDEX_ROSpecID, item.getRoSpecID());
-				} else {
-					insert.setNull(CINDEX_ROSpecID, Types.BIGINT);
-				}
-				
-				// spec index.
-				if (null != item.getSpecIndex()) {
-					insert.setInt(CINDEX_SpecIndex, item.getSpecIndex());
-				} else {
-					insert.setNull(CINDEX_SpecIndex, Types.INTEGER);
-				}
-				
-				// inventory parameter spec ID.
-				if (null != item.getInventoryPrmSpecID()) {
-					insert.setInt(CINDEX_InventoryParameterSpecID, 
-							item.getInventoryPrmSpecID());	
-				} else {
-					insert.setNull(CINDEX_InventoryParameterSpecID, Types.INTEGER);
-				}
-				
-				// antenna ID.
-				if (null != item.getAntennaID()) {
-					insert.setInt(CINDEX_AntennaID, item.getAntennaID());
-				} else {
-					insert.setNull(CINDEX_AntennaID, Types.INTEGER);
-				}
-				
-				// peak RSSI.
-				if (null != item.getPeakRSSI()) {
-					insert.setShort(CINDEX_PeakRSSI, item.getPeakRSSI());
-				} else {
-					insert.setNull(CINDEX_PeakRSSI, Types.SMALLINT);
-				}
-				
-				// channel index.
-				if (null != item.getChannelIndex()) {
-					insert.setInt(CINDEX_ChannelIndex, item.getChannelIndex());
-				} else {
-					insert.setNull(CINDEX_ChannelIndex, Types.INTEGER);
+		ROAccessReportBatch batch = ROAccessReportBatch.parse(
+				message, adapterName, readerName, currentTime());
+		if (0 == batch.size()) {
+			return;
+		}
+		synchronized (conn) {
+			pending.add(batch);
+			pendingRows += batch.size();
+			if ((batchSize <= 0) || (pendingRows >= batchSize)) {
+				flush();
+			} else if ((null == lingerFlush) && (batchLinger > 0)) {
+				try {
+					// the timer only hands the flush to a worker, the 
+					// database work must not block the shared scheduler.
+					lingerFlush = SharedExecutor.getScheduler().schedule(
+							new Runnable() {
+								public void run() {
+									flushOnWorker();
+								}
+							}, batchLinger, TimeUnit.MILLISECONDS);
+				} catch (RejectedExecutionException e) {
+					flush();
 				}
-				
-				// extract the first seen UTC time stamp.
-				if (null != item.getFirstSeenUTC()) {
-					insert.setTimestamp(CINDEX_FirstSeenTimestampUTC, 
-							item.getFirstSeenUTC());
-				} else {
-					insert.setNull(CINDEX_FirstSeenTimestampUTC, Types.TIMESTAMP);
+			}
+		}
+	}
+	
+	/**
+	 * submits a flush of the pending rows to the shared worker pool. if the 
+	 * pool is shut down, the rows are written by the calling thread.
+	 */
+	private void flushOnWorker() {
+		try {
+			SharedExecutor.getExecutor().execute(new Runnable() {
+				public void run() {
+					flush();
 				}
-				
-				// extract the first seen since uptime time stamp.
-				if (null != item.getFirstSeenUptime()) {
-					insert.setTimestamp(CINDEX_FirstSeenTimestampUptime, 
-							item.getFirstSeenUptime());
-				} else {
-					insert.setNull(CINDEX_FirstSeenTimestampUptime, Types.TIMESTAMP);
+			});
+		} catch (RejectedExecutionException e) {
+			flush();
+		}
+	}
+	
+	/**
+	 * writes all the pending rows to the database in one transaction. if the 
+	 * batch fails, the rows are written one by one and erroneous rows are 
+	 * ignored.
+	 */
+	public void flush() {
+		if (null == conn) {
+			return;
+		}
+		synchronized (conn) {
+			if (null != lingerFlush) {
+				lingerFlush.cancel(false);
+				lingerFlush = null;
+			}
+			if (pending.isEmpty()) {
+				return;
+			}
+			List<ROAccessReportBatch> batches = 
+				new ArrayList<ROAccessReportBatch> (pending);
+			final int rows = pendingRows;
+			pending.clear();
+			pendingRows = 0;
+			
+			// the tables (partitions) are resolved before the transaction, 
+			// as creating a table commits on some databases.
+			Map<String, List<ROAccessReportBatch>> byTable = byTable(batches);
+			
+			boolean autoCommit = true;
+			try {
+				autoCommit = conn.getAutoCommit();
+				conn.setAutoCommit(false);
+				for (Map.Entry<String, List<ROAccessReportBatch>> entry : 
+						byTable.entrySet()) {
+					PreparedStatement insert = insert(entry.getKey());
+					for (ROAccessReportBatch batch : entry.getValue()) {
+						final int len = batch.size();
+						for (int row=0; row<len; row++) {
+							bind(insert, batch, row);
+							insert.addBatch();
+						}
+					}
+					insert.executeBatch();
 				}
-				
-				// extract the last seen time stamp UTC.
-				if (null != item.getLastSeenUTC()) {
-					insert.setTimestamp(CINDEX_LastSeenTimestampUTC, 
-							item.getLastSeenUTC());
-				}else {
-					insert.setNull(CINDEX_LastSeenTimestampUTC, Types.TIMESTAMP);
+				conn.commit();
+				log.debug(
+						String.format("Successfully stored %s row(s) into database.",
+								rows));
+			} catch (SQLException e) {
+				log.debug("Could not store the batch of RO_ACCESS_REPORT " + 
+						"entries - falling back to single inserts.");
+				rollback();
+				flushSingle(byTable);
+			} finally {
+				try {
+					conn.setAutoCommit(autoCommit);
+				} catch (SQLException e) {
+					log.error("could not restore the auto-commit mode.", e);
 				}
-				
-				// extract the last seen time stamp since uptime.
-				if (null != item.getLastSeenUptime()) {
-					insert.setTimestamp(CINDEX_LastSeenTimestampUptime, 
-							item.getLastSeenUptime());
-				}else {
-					insert.setNull(CINDEX_LastSeenTimestampUptime, Types.TIMESTAMP);
+			}
+		}
+	}
+	
+	/**
+	 * groups the reports by the table they are written into.
+	 * @param batches the reports to write.
+	 * @return the reports per table.
+	 */
+	private Map<String, List<ROAccessReportBatch>> byTable(
+			List<ROAccessReportBatch> batches) {
+		
+		Map<String, List<ROAccessReportBatch>> byTable = 
+			new LinkedHashMap<String, List<ROAccessReportBatch>> ();
+		for (ROAccessReportBatch batch : batches) {
+			String table = tableFor(batch.getLogTime());
+			List<ROAccessReportBatch> list = byTable.get(table);
+			if (null == list) {
+				list = new ArrayList<ROAccessReportBatch> ();
+				byTable.put(table, list);
+			}
+			list.add(batch);
+		}
+		return byTable;
+	}
+	
+	/**
+	 * @param table the name of the table.
+	 * @return the prepared insert statement for the table.
+	 * @throws SQLException when the statement could not be prepared.
+	 */
+	private PreparedStatement insert(String table) throws SQLException {
+		PreparedStatement insert = inserts.get(table);
+		if (null == insert) {
+			insert = conn.prepareStatement(sqlInsert(table));
+			inserts.put(table, insert);
+		}
+		return insert;
+	}
+	
+	/**
+	 * rolls back the current transaction and drops the statements.
+	 */
+	private void rollback() {
+		try {
+			conn.rollback();
+		} catch (SQLException ex) {
+			log.error("could not roll back the transaction.", ex);
+		}
+		for (PreparedStatement insert : inserts.values()) {
+			try {
+				insert.close();
+			} catch (SQLException ex) {
+				log.debug("could not close the insert statement.");
+			}
+		}
+		inserts.clear();
+	}
+	
+	/**
+	 * writes the rows one by one in one transaction. erroneous rows are ignored.
+	 * @param byTable the reports to write per table.
+	 */
+	private void flushSingle(Map<String, List<ROAccessReportBatch>> byTable) {
+		int successfullyHandled = 0;
+		try {
+			for (Map.Entry<String, List<ROAccessReportBatch>> entry : 
+					byTable.entrySet()) {
+				PreparedStatement insert = insert(entry.getKey());
+				for (ROAccessReportBatch batch : entry.getValue()) {
+					final int len = batch.size();
+					for (int row=0; row<len; row++) {
+						try {
+							bind(insert, batch, row);
+							insert.executeUpdate();
+							successfullyHandled++;
+						} catch (SQLException e) {
+							log.debug("Could not log entry of RO_ACCESS_REPORT to the " +
+									"database - ignoring the entry.");
+						}
+					}
 				}
-				
-				// extract the tag count.
-				if (null != item.getTagSeenCount()) {
-					insert.setInt(CINDEX_TagSeenCount, item.getTagSeenCount());
-				} else {
-					insert.setNull(CINDEX_TagSeenCount, Types.INTEGER);
+			}
+			conn.commit();
+		} catch (SQLException e) {
+			log.error("could not store the RO_ACCESS_REPORT entries.", e);
+			rollback();
+			successfullyHandled = 0;
+		}
+		log.debug(
+				String.format("Successfully stored %s row(s) into database.",
+						successfullyHandled));
+	}
+	
+	/**
+	 * binds the values of a row of a report to the parameters of the insert 
+	 * statement.
+	 * @param insert the insert statement.
+	 * @param batch the report.
+	 * @param row the row within the report.
+	 * @throws SQLException when a value could not be bound.
+	 */
+	protected void bind(PreparedStatement insert, ROAccessReportBatch batch, 
+			int row) throws SQLException {
+		
+		// log time.
+		insert.setTimestamp(CINDEX_LOGTIME, 
+				batch.getTimestamp(row, CINDEX_LOGTIME));
+		
+		// adapter name.
+		insert.setString(CINDEX_ADAPTER, batch.getAdapterName());
+		
+		// reader name.
+		insert.setString(CINDEX_READER, batch.getReaderName());
+		
+		// store the EPC as EPC96 or EPCData
+		if (!batch.isNull(row, CINDEX_EPC)) {
+			insert.setString(CINDEX_EPC, batch.getEpc(row));
+		} else {
+			insert.setNull(CINDEX_EPC, Types.VARCHAR);
+		}
+		
+		bindLong(insert, batch, row, CINDEX_ROSpecID);
+		bindInt(insert, batch, row, CINDEX_SpecIndex);
+		bindInt(insert, batch, row, CINDEX_InventoryParameterSpecID);
+		bindInt(insert, batch, row, CINDEX_AntennaID);
+		
+		// peak RSSI.
+		if (!batch.isNull(row, CINDEX_PeakRSSI)) {
+			insert.setShort(CINDEX_PeakRSSI, 
+					(short) batch.getLong(row, CINDEX_PeakRSSI));
+		} else {
+			insert.setNull(CINDEX_PeakRSSI, Types.SMALLINT);
+		}
+		
+		bindInt(insert, batch, row, CINDEX_ChannelIndex);
+		bindTimestamp(insert, batch, row, CINDEX_FirstSeenTimestampUTC);
+		bindTimestamp(insert, batch, row, CINDEX_FirstSeenTimestampUptime);
+		bindTimestamp(insert, batch, row, CINDEX_LastSeenTimestampUTC);
+		bindTimestamp(insert, batch, row, CINDEX_LastSeenTimestampUptime);
+		bindInt(insert, batch, row, CINDEX_TagSeenCount);
+		bindInt(insert, batch, row, CINDEX_C1G2_CRC);
+		bindInt(insert, batch, row, CINDEX_C1G2_PC);
+		bindLong(insert, batch, row, CINDEX_AccessSpecID);
+	}
+	
+	/**
+	 * binds an integer column (or null if not present).
+	 */
+	private void bindInt(PreparedStatement insert, ROAccessReportBatch batch, 
+			int row, int column) throws SQLException {
+		
+		if (!batch.isNull(row, column)) {
+			insert.setInt(column, (int) batch.getLong(row, column));
+		} else {
+			insert.setNull(column, Types.INTEGER);
+		}
+	}
+	
+	/**
+	 * binds a big integer column (or null if not present).
+	 */
+	private void bindLong(PreparedStatement insert, ROAccessReportBatch batch, 
+			int row, int column) throws SQLException {
+		
+		if (!batch.isNull(row, column)) {
+			insert.setLong(column, batch.getLong(row, column));
+		} else {
+			insert.setNull(column, Types.BIGINT);
+		}
+	}
+	
+	/**
+	 * binds a time stamp column (or null if not present).
+	 */
+	private void bindTimestamp(PreparedStatement insert, 
+			ROAccessReportBatch batch, int row, int column) 
+		throws SQLException {
+		
+		if (!batch.isNull(row, column)) {
+			insert.setTimestamp(column, batch.getTimestamp(row, column));
+		} else {
+			insert.setNull(column, Types.TIMESTAMP);
+		}
+	}
+	
+	/**
+	 * binds the criteria of a query to the parameters of the statement 
+	 * created from {@link #sqlSelect(ROAccessQuery)}.
+	 * @param select the select statement.
+	 * @param query the criteria selecting the rows.
+	 * @throws SQLException when a value could not be bound.
+	 */
+	protected void bind(PreparedStatement select, ROAccessQuery query) 
+		throws SQLException {
+		
+		int i = 1;
+		if (null != query.getFrom()) {
+			select.setTimestamp(i++, query.getFrom());
+		}
+		if (null != query.getTo()) {
+			select.setTimestamp(i++, query.getTo());
+		}
+		if (null != query.getAdapterName()) {
+			select.setString(i++, query.getAdapterName());
+		}
+		if (null != query.getReaderName()) {
+			select.setString(i++, query.getReaderName());
+		}
+		if (null != query.getEpc()) {
+			select.setString(i++, query.getEpc());
+		}
+		if (null != query.getAntennaID()) {
+			select.setInt(i++, query.getAntennaID());
+		}
+	}
+	
+	/**
+	 * sets the number of rows the statement fetches at once. MySQL only 
+	 * streams the rows when the fetch size is Integer.MIN_VALUE, all the 
+	 * other drivers take the fetch size as it is.
+	 * @param select the select statement.
+	 * @param fetchSize the number of rows to fetch at once.
+	 * @throws SQLException when the fetch size could not be set.
+	 */
+	protected void setFetchSize(Statement select, int fetchSize) 
+		throws SQLException {
+		
+		if (fetchSize <= 0) {
+			return;
+		}
+		String product = select.getConnection().getMetaData().getDatabaseProductName();
+		if ("MySQL".equalsIgnoreCase(product)) {
+			select.setFetchSize(Integer.MIN_VALUE);
+		} else {
+			select.setFetchSize(fetchSize);
+		}
+	}
+	
+	/**
+	 * streams the rows matching the query to the visitor. the scan holds the 
+	 * connection for its whole duration (some drivers do not allow other 
+	 * statements while a result is streamed), so new reports are written 
+	 * once the scan has finished. the visitor must not use the repository 
+	 * connection.<br/>
+	 * the main table is read first, then the partitions of the days within 
+	 * the time range of the query (oldest first).
+	 * @param query the criteria selecting the rows.
+	 * @param visitor the visitor receiving the rows.
+	 * @return the number of rows handed to the visitor.
+	 * @throws Exception when there is an error of any kind (including the 
+	 * exceptions thrown by the visitor).
+	 */
+	public int visit(ROAccessQuery query, ROAccessItemVisitor visitor) 
+		throws Exception {
+		
+		if (null == conn) {
+			return 0;
+		}
+		// make sure the pending rows are visible.
+		flush();
+		final Connection c = conn;
+		int visited = 0;
+		synchronized (c) {
+			// only the partitions within the time range are read.
+			List<String> tables = tablesFor(query);
+			boolean autoCommit = c.getAutoCommit();
+			PreparedStatement select = null;
+			ResultSet res = null;
+			try {
+				// PostgreSQL only streams the rows within a transaction.
+				c.setAutoCommit(false);
+				boolean proceed = true;
+				for (int i=0; proceed && (i<tables.size()); i++) {
+					select = c.prepareStatement(sqlSelect(query, tables.get(i)), 
+							ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+					setFetchSize(select, query.getFetchSize());
+					bind(select, query);
+					res = select.executeQuery();
+					while (proceed && res.next()) {
+						visited++;
+						proceed = visitor.visit(toItem(res));
+					}
+					res.close();
+					res = null;
+					select.close();
+					select = null;
 				}
-				
-				// crc
-				if (null != item.getC1g2_CRC()) {
-					insert.setInt(CINDEX_C1G2_CRC, item.getC1g2_CRC());
-				} else {
-					insert.setNull(CINDEX_C1G2_CRC, Types.INTEGER);
+			} finally {
+				if (null != res) {
+					res.close();
 				}
-				if (null != item.getC1g2_CRC()) {
-					insert.setInt(CINDEX_C1G2_PC, item.getC1g2_PC());
-				} else {
-					insert.setNull(CINDEX_C1G2_PC, Types.INTEGER);
+				if (null != select) {
+					select.close();
 				}
-				
-				// extract the access spec ID.
-				if (null != item.getAccessSpecID()) {
-					insert.setLong(CINDEX_AccessSpecID, item.getAccessSpecID());
-				} else {
-					insert.setNull(CINDEX_AccessSpecID, Types.BIGINT);
+				try {
+					c.commit();
+					c.setAutoCommit(autoCommit);
+				} catch (SQLException e) {
+					log.error("could not end the scan transaction.", e);
 				}
-				
-				insert.executeUpdate();
-				insert.close();
-				
-				successfullyHandled++;
-			} catch (Exception e) {
-				log.debug("Could not log entry of RO_ACCESS_REPORT to the " +
-						"database - ignoring the entry.");
 			}
-			log.debug(
-					String.format("Successfully stored %s row(s) into database.",
-							successfullyHandled));
 		}
+		return visited;
 	}
 	
+	/**
+	 * @deprecated the list holds the whole table in memory. use 
+	 * {@link #visit(ROAccessQuery, ROAccessItemVisitor)} instead.
+	 */
+	@Deprecated
 	public List<ROAccessItem> getAll() throws Exception {
-		List<ROAccessItem> items = new LinkedList<ROAccessItem> ();
-		Statement s = repository.getDBConnection().createStatement();
-		String sql = String.format("SELECT * FROM %s", TABLE_RO_ACCESS_REPORTS);
-		ResultSet res = s.executeQuery(sql);
-		
-		while (res.next()) {
-			ROAccessItem item = new ROAccessItem();
-			
-			item.setLogTime(res.getTimestamp(CINDEX_LOGTIME));
-			item.setAdapterName(res.getString(CINDEX_ADAPTER));
-			item.setReaderName(res.getString(CINDEX_READER));
-			item.setEpc(res.getString(CINDEX_EPC));
-			item.setRoSpecID(res.getLong(CINDEX_ROSpecID));
-			item.setSpecIndex(res.getInt(CINDEX_SpecIndex));
-			item.setInventoryPrmSpecID(
-					res.getInt(CINDEX_InventoryParameterSpecID));	
-			item.setAntennaID(res.getInt(CINDEX_AntennaID));
-			item.setPeakRSSI(res.getShort(CINDEX_PeakRSSI));
-			item.setChannelIndex(res.getInt(CINDEX_ChannelIndex));
-			item.setFirstSeenUTC(res.getTimestamp(
-					CINDEX_FirstSeenTimestampUTC));
-			item.setFirstSeenUptime(
-					res.getTimestamp(CINDEX_FirstSeenTimestampUptime));
-			item.setLastSeenUTC(
-					res.getTimestamp(CINDEX_LastSeenTimestampUTC));
-			item.setLastSeenUptime(
-					res.getTimestamp(CINDEX_LastSeenTimestampUptime));
-			item.setTagSeenCount(res.getInt(CINDEX_TagSeenCount));
-			item.setC1g2_CRC(res.getInt(CINDEX_C1G2_CRC));
-			item.setC1g2_PC(res.getInt(CINDEX_C1G2_PC));
-			item.setAccessSpecID(res.getLong(CINDEX_AccessSpecID));
-			items.add(item);
-		}
-		res.close();
+		final List<ROAccessItem> items = new LinkedList<ROAccessItem> ();
+		visit(new ROAccessQuery(), new ROAccessItemVisitor() {
+			public boolean visit(ROAccessItem item) {
+				items.add(item);
+				return true;
+			}
+		});
 		return items;
 	}
 	
+	/**
+	 * creates an item from the current row of a result set.
+	 * @param res the result set.
+	 * @return the item.
+	 * @throws SQLException when a column could not be read.
+	 */
+	protected ROAccessItem toItem(ResultSet res) throws SQLException {
+		ROAccessItem item = new ROAccessItem();
+		
+		item.setLogTime(res.getTimestamp(CINDEX_LOGTIME));
+		item.setAdapterName(res.getString(CINDEX_ADAPTER));
+		item.setReaderName(res.getString(CINDEX_READER));
+		item.setEpc(res.getString(CINDEX_EPC));
+		item.setRoSpecID(res.getLong(CINDEX_ROSpecID));
+		item.setSpecIndex(res.getInt(CINDEX_SpecIndex));
+		item.setInventoryPrmSpecID(
+				res.getInt(CINDEX_InventoryParameterSpecID));	
+		item.setAntennaID(res.getInt(CINDEX_AntennaID));
+		item.setPeakRSSI(res.getShort(CINDEX_PeakRSSI));
+		item.setChannelIndex(res.getInt(CINDEX_ChannelIndex));
+		item.setFirstSeenUTC(res.getTimestamp(
+				CINDEX_FirstSeenTimestampUTC));
+		item.setFirstSeenUptime(
+				res.getTimestamp(CINDEX_FirstSeenTimestampUptime));
+		item.setLastSeenUTC(
+				res.getTimestamp(CINDEX_LastSeenTimestampUTC));
+		item.setLastSeenUptime(
+				res.getTimestamp(CINDEX_LastSeenTimestampUptime));
+		item.setTagSeenCount(res.getInt(CINDEX_TagSeenCount));
+		item.setC1g2_CRC(res.getInt(CINDEX_C1G2_CRC));
+		item.setC1g2_PC(res.getInt(CINDEX_C1G2_PC));
+		item.setAccessSpecID(res.getLong(CINDEX_AccessSpecID));
+		return item;
+	}
+	
 	public void clear() throws Exception {
-		Statement s = repository.getDBConnection().createStatement();
-		String sql = String.format("DELETE FROM %s", TABLE_RO_ACCESS_REPORTS);
-		s.execute(sql);
+		if (null == conn) {
+			return;
+		}
+		synchronized (conn) {
+			// drop the pending rows as well. they are discarded under the 
+			// lock, so rows arriving meanwhile cannot survive the clear.
+			if (null != lingerFlush) {
+				lingerFlush.cancel(false);
+				lingerFlush = null;
+			}
+			pending.clear();
+			pendingRows = 0;
+			
+			// dropping the partitions is cheaper than deleting their rows.
+			for (Long day : new ArrayList<Long> (partitions)) {
+				dropPartition(day);
+			}
+			Statement s = conn.createStatement();
+			String sql = String.format("DELETE FROM %s", TABLE_RO_ACCESS_REPORTS);
+			s.execute(sql);
+			s.close();
+		}
 	}
 
 	/**
@@ -499,24 +1228,11 @@ public abstract class AbstractSQLROAccessReportsRepository implements ROAccessRe
 	 */
 	public static Timestamp extractTimestamp(UnsignedLong ulong) {
 		try {
-//			log.debug(String.format("Extracting timestamp '%s'", ulong.toString()));
 			BigInteger value = ulong.toBigInteger();
-			final long tsMillis = value.divide(new BigInteger("1000")).longValue();
-//			log.debug(String.format("Timestamp in Milliseconds: %d", tsMillis));
-			
-			final int l = value.toString().length();
-			// we need the milliseconds and the microseconds to assemble the 
-			// fractional seconds part.
-			String fractSeconds = value.toString().substring(l-6, l);
-			final int nanoseconds = Integer.parseInt(fractSeconds) * 1000;
-//			log.debug(String.format(
-//					"Fractional Seconds Part: %s ms, Nanoseconds: %d ns",
-//					fractSeconds, nanoseconds));
-			
-			Timestamp ts = new Timestamp(tsMillis);
-			ts.setNanos(nanoseconds);
-//			log.debug(String.format("Generated Timestamp: %s", ts.toString()));
-			return ts;
+			if (value.bitLength() < 64) {
+				return ROAccessReportBatch.toTimestamp(value.longValue());
+			}
+			return ROAccessReportBatch.toTimestamp(value);
 		} catch (Exception e) {
 			log.error("could not extract a valid timestamp", e);
 		}
@@ -72,6 +72,11 @@ public class DerbyROAccessReportsRepository extends AbstractSQLROAccessReportsRe
 
 	@Override
 	protected String sqlCreateTable() {
+		return sqlCreateTable(TABLE_RO_ACCESS_REPORTS);
+	}
+	
+	@Override
+	protected String sqlCreateTable(String table) {
 		String fields = "";
 		final int len = COLUMN_NAMES_AND_TYPES.length;
 		final int lenm = len - 1;
@@ -82,14 +87,17 @@ public class DerbyROAccessReportsRepository extends AbstractSQLROAccessReportsRe
 			// append a comma, if not last entry
 			if (i < lenm) fields += ",";
 		}
-		return String.format(
-				"create table %s (%s)", TABLE_RO_ACCESS_REPORTS, fields);
+		return String.format("create table %s (%s)", table, fields);
 	}
 
 	@Override
 	protected String sqlInsert() {
-		return String.format("insert into %s values ", 
-				TABLE_RO_ACCESS_REPORTS) +
+		return sqlInsert(TABLE_RO_ACCESS_REPORTS);
+	}
+	
+	@Override
+	protected String sqlInsert(String table) {
+		return String.format("insert into %s values ", table) +
 				"(?, ?, ?, ?, ?, ?, ?, ?, " +
 				"?, ?, ?, ?, ?, ?, ?, ?, " +
 				"?, ?)";
@@ -97,7 +105,12 @@ public class DerbyROAccessReportsRepository extends AbstractSQLROAccessReportsRe
 
 	@Override
 	protected String sqlDropTable() {
-		return String.format("DROP TABLE %s", TABLE_RO_ACCESS_REPORTS);
+		return sqlDropTable(TABLE_RO_ACCESS_REPORTS);
+	}
+	
+	@Override
+	protected String sqlDropTable(String table) {
+		return String.format("DROP TABLE %s", table);
 	}
 	
 	public DerbyROAccessReportsRepository() {
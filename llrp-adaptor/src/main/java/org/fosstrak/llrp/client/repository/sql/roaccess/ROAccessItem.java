@@ -22,32 +22,9 @@
 package org.fosstrak.llrp.client.repository.sql.roaccess;
 
 import java.sql.Timestamp;
-import java.util.LinkedList;
 import java.util.List;
 
-import org.apache.log4j.Logger;
-import org.llrp.ltk.generated.interfaces.AirProtocolTagData;
-import org.llrp.ltk.generated.interfaces.EPCParameter;
 import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
-import org.llrp.ltk.generated.parameters.AccessSpecID;
-import org.llrp.ltk.generated.parameters.AntennaID;
-import org.llrp.ltk.generated.parameters.C1G2_CRC;
-import org.llrp.ltk.generated.parameters.C1G2_PC;
-import org.llrp.ltk.generated.parameters.ChannelIndex;
-import org.llrp.ltk.generated.parameters.EPCData;
-import org.llrp.ltk.generated.parameters.EPC_96;
-import org.llrp.ltk.generated.parameters.FirstSeenTimestampUTC;
-import org.llrp.ltk.generated.parameters.FirstSeenTimestampUptime;
-import org.llrp.ltk.generated.parameters.InventoryParameterSpecID;
-import org.llrp.ltk.generated.parameters.LastSeenTimestampUTC;
-import org.llrp.ltk.generated.parameters.LastSeenTimestampUptime;
-import org.llrp.ltk.generated.parameters.PeakRSSI;
-import org.llrp.ltk.generated.parameters.ROSpecID;
-import org.llrp.ltk.generated.parameters.SpecIndex;
-import org.llrp.ltk.generated.parameters.TagReportData;
-import org.llrp.ltk.generated.parameters.TagSeenCount;
-import org.llrp.ltk.types.BitArray_HEX;
-import org.llrp.ltk.types.Integer96_HEX;
 
 /**
  * Helper class to access and maintain the content of RO_ACCESS_REPORTS.
@@ -56,9 +33,6 @@ import org.llrp.ltk.types.Integer96_HEX;
  */
 public class ROAccessItem {
 	
-	// the log4j logger.
-	private static Logger log = Logger.getLogger(ROAccessItem.class);
-	
 	// the log time.
 	private Timestamp logTime;
 	
@@ -114,138 +88,19 @@ public class ROAccessItem {
 	private Long accessSpecID;
 	
 	/**
-	 * parses the entries of an RO_ACCESS_REPORTS into a list of ROAccessItems.
+	 * parses the entries of an RO_ACCESS_REPORTS into a list of ROAccessItems. 
+	 * if you do not need the items as objects, use 
+	 * {@link ROAccessReportBatch#parse(RO_ACCESS_REPORT, String, String, long)} 
+	 * instead.
 	 * @param report the RO_ACCESS_REPORTS message.
 	 * @param adapterName the name of the adapter.
 	 * @param readerName the name of the reader.
+	 * @param currentTime the log time in milliseconds.
 	 * @return a list of ROAccessItem.
 	 */
 	public static List<ROAccessItem> parse(RO_ACCESS_REPORT report, String adapterName, String readerName, long currentTime) {
-		List<ROAccessItem> items = new LinkedList<ROAccessItem> ();
-		List<TagReportData> tagDataList = report.getTagReportDataList();
-		
-		for (TagReportData tagData : tagDataList) {
-			ROAccessItem item = new ROAccessItem();
-			
-			// log time.
-			item.setLogTime(new Timestamp(currentTime));
-			
-			// adapter name.
-			item.setAdapterName(adapterName);
-			
-			// reader name.
-			item.setReaderName(readerName);
-			
-			// store the EPC as EPC96 or EPCData
-			EPCParameter epcParameter = tagData.getEPCParameter();
-			String epc = null;
-			if (epcParameter instanceof EPC_96) {
-				EPC_96 epc96 = (EPC_96) epcParameter;
-				Integer96_HEX hex = epc96.getEPC();
-				String hx = hex.toString();
-				epc = hx;
-			} else if (epcParameter instanceof EPCData){
-				EPCData epcData = (EPCData) epcParameter;
-				BitArray_HEX hex = epcData.getEPC();
-				String hx = hex.toString();
-				epc = hx;
-			} else {
-				log.error("Unknown EPCParameter encountered - ignoring.");
-			}
-			item.setEpc(epc);
-			
-			// RO Spec ID.
-			ROSpecID roSpecID = tagData.getROSpecID();
-			if ((null != roSpecID) && (null != roSpecID.getROSpecID())) {
-				item.setRoSpecID(roSpecID.getROSpecID().toLong());
-			}
-			
-			// spec index.
-			SpecIndex specIndex = tagData.getSpecIndex();
-			if ((null != specIndex) && (null != specIndex.getSpecIndex())) {
-				item.setSpecIndex(specIndex.getSpecIndex().toInteger());
-			}
-			
-			// inventory parameter spec ID.
-			InventoryParameterSpecID inventoryPrmSpecID = tagData.getInventoryParameterSpecID();
-			if ((null != inventoryPrmSpecID) && (null != inventoryPrmSpecID.getInventoryParameterSpecID())) {
-				item.setInventoryPrmSpecID(inventoryPrmSpecID.getInventoryParameterSpecID().toInteger());	
-			}
-			
-			// antenna ID.
-			AntennaID antennaID = tagData.getAntennaID();
-			if ((null != antennaID) && (null != antennaID.getAntennaID())) {
-				item.setAntennaID(antennaID.getAntennaID().toInteger());
-			}
-			
-			// peak RSSI.
-			PeakRSSI peakRSSI = tagData.getPeakRSSI();
-			if ((null != peakRSSI) && (null != peakRSSI.getPeakRSSI())) {
-				item.setPeakRSSI(new Short(peakRSSI.getPeakRSSI().toByte()));
-			}
-			
-			// channel index.
-			ChannelIndex channelIndex = tagData.getChannelIndex();
-			if ((null != channelIndex) && (null != channelIndex.getChannelIndex())) {
-				item.setChannelIndex(channelIndex.getChannelIndex().toInteger());
-			}
-			
-			// extract the first seen UTC time stamp.
-			FirstSeenTimestampUTC frstSnUTC = tagData.getFirstSeenTimestampUTC();
-			if ((null != frstSnUTC) && (null != frstSnUTC.getMicroseconds())) {
-				item.setFirstSeenUTC(AbstractSQLROAccessReportsRepository.extractTimestamp(frstSnUTC.getMicroseconds()));
-			}
-			
-			// extract the first seen since uptime time stamp.
-			FirstSeenTimestampUptime frstSnUptime = tagData.getFirstSeenTimestampUptime();
-			if ((null != frstSnUptime) && (null != frstSnUptime.getMicroseconds())) {
-				item.setFirstSeenUptime(AbstractSQLROAccessReportsRepository.extractTimestamp(frstSnUptime.getMicroseconds()));
-			} 
-			
-			// extract the last seen time stamp UTC.
-			LastSeenTimestampUTC lstSnUTC = tagData.getLastSeenTimestampUTC();
-			if ((null != lstSnUTC) && (null != lstSnUTC.getMicroseconds())) {
-				item.setLastSeenUTC(AbstractSQLROAccessReportsRepository.extractTimestamp(lstSnUTC.getMicroseconds()));
-			}
-			
-			// extract the last seen time stamp since uptime.
-			LastSeenTimestampUptime lstSnUptime = tagData.getLastSeenTimestampUptime();
-			if ((null != lstSnUptime) && (null != lstSnUptime.getMicroseconds())) {
-				item.setLastSeenUptime(AbstractSQLROAccessReportsRepository.extractTimestamp(lstSnUptime.getMicroseconds()));
-			}
-			
-			// extract the tag count.
-			TagSeenCount tagSeenCount = tagData.getTagSeenCount();
-			if ((null != tagSeenCount) && (null != tagSeenCount.getTagCount())) {
-				item.setTagSeenCount(tagSeenCount.getTagCount().toInteger());
-			}
-			
-			List<AirProtocolTagData> airProtoTagData = tagData.getAirProtocolTagDataList();
-			for (AirProtocolTagData aptd : airProtoTagData) {
-				if (aptd instanceof C1G2_CRC) {
-					C1G2_CRC c1g2_crc = (C1G2_CRC) aptd;
-					if ((null != c1g2_crc) && (null != c1g2_crc.getCRC())) {
-						item.setC1g2_CRC(c1g2_crc.getCRC().toInteger());
-					}
-				} else if (aptd instanceof C1G2_PC) {
-					C1G2_PC c1g2_pc = (C1G2_PC) aptd;
-					if ((null != c1g2_pc) && (null != c1g2_pc.getPC_Bits())) {
-						item.setC1g2_PC(c1g2_pc.getPC_Bits().toInteger());
-					}
-				} else {
-					log.error("Unknown AirProtocolTagData item encountered.");
-				}						
-			}
-			
-			// extract the access spec ID.
-			AccessSpecID accessSpecID = tagData.getAccessSpecID();
-			if ((null != accessSpecID) && (null != accessSpecID.getAccessSpecID())) {
-				item.setAccessSpecID(accessSpecID.getAccessSpecID().toLong());
-			}
-			
-			items.add(item);
-		}
-		return items;
+		return ROAccessReportBatch.parse(
+				report, adapterName, readerName, currentTime).toItems();
 	}
 
 	/**
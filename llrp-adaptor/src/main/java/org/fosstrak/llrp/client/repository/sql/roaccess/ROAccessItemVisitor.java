@@ -0,0 +1,44 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.client.repository.sql.roaccess;
+
+/**
+ * receives the {@link ROAccessItem}s of a scan over the RO_ACCESS_REPORTS 
+ * repository one by one (see 
+ * {@link org.fosstrak.llrp.client.ROAccessReportsRepository#visit(ROAccessQuery, ROAccessItemVisitor)}). 
+ * the items are not kept by the repository, so a visitor that does not keep 
+ * them either processes the table in constant memory.
+ * @author sawielan
+ *
+ */
+public interface ROAccessItemVisitor {
+
+	/**
+	 * receives the next item of the scan.
+	 * @param item the item.
+	 * @return true to continue the scan, false to stop it.
+	 * @throws Exception when the item could not be processed. the scan is 
+	 * aborted and the exception is passed on to the caller of the scan.
+	 */
+	boolean visit(ROAccessItem item) throws Exception;
+}
@@ -0,0 +1,159 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.client.repository.sql.roaccess;
+
+import java.sql.Timestamp;
+
+/**
+ * selects the rows of a scan over the RO_ACCESS_REPORTS repository. every 
+ * criterion that is set restricts the scan, criteria not set (null) match all 
+ * the rows. the criteria are evaluated by the database, so rows not matching 
+ * are never transferred.
+ * @author sawielan
+ *
+ */
+public class ROAccessQuery {
+	
+	/** the default number of rows fetched from the database at once. */
+	public static final int DEFAULT_FETCH_SIZE = 1000;
+	
+	// the earliest log time (inclusive).
+	private Timestamp from;
+	
+	// the latest log time (exclusive).
+	private Timestamp to;
+	
+	// the name of the adapter.
+	private String adapterName;
+	
+	// the name of the reader.
+	private String readerName;
+	
+	// the EPC.
+	private String epc;
+	
+	// the antenna ID.
+	private Integer antennaID;
+	
+	// the number of rows fetched from the database at once.
+	private int fetchSize = DEFAULT_FETCH_SIZE;
+
+	/**
+	 * @param from the earliest log time (inclusive) to set.
+	 */
+	public void setFrom(Timestamp from) {
+		this.from = from;
+	}
+
+	/**
+	 * @return the earliest log time (inclusive).
+	 */
+	public Timestamp getFrom() {
+		return from;
+	}
+
+	/**
+	 * @param to the latest log time (exclusive) to set.
+	 */
+	public void setTo(Timestamp to) {
+		this.to = to;
+	}
+
+	/**
+	 * @return the latest log time (exclusive).
+	 */
+	public Timestamp getTo() {
+		return to;
+	}
+
+	/**
+	 * @param adapterName the adapterName to set
+	 */
+	public void setAdapterName(String adapterName) {
+		this.adapterName = adapterName;
+	}
+
+	/**
+	 * @return the adapterName
+	 */
+	public String getAdapterName() {
+		return adapterName;
+	}
+
+	/**
+	 * @param readerName the readerName to set
+	 */
+	public void setReaderName(String readerName) {
+		this.readerName = readerName;
+	}
+
+	/**
+	 * @return the readerName
+	 */
+	public String getReaderName() {
+		return readerName;
+	}
+
+	/**
+	 * @param epc the EPC (as stored, lower case hex) to set.
+	 */
+	public void setEpc(String epc) {
+		this.epc = epc;
+	}
+
+	/**
+	 * @return the epc
+	 */
+	public String getEpc() {
+		return epc;
+	}
+
+	/**
+	 * @param antennaID the antennaID to set
+	 */
+	public void setAntennaID(Integer antennaID) {
+		this.antennaID = antennaID;
+	}
+
+	/**
+	 * @return the antennaID
+	 */
+	public Integer getAntennaID() {
+		return antennaID;
+	}
+
+	/**
+	 * @param fetchSize the number of rows fetched from the database at once. 
+	 * values smaller than 1 leave the choice to the JDBC driver.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * @return the number of rows fetched from the database at once.
+	 */
+	public int getFetchSize() {
+		return fetchSize;
+	}
+}
@@ -0,0 +1,634 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.client.repository.sql.roaccess;
+
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.llrp.ltk.generated.interfaces.AirProtocolTagData;
+import org.llrp.ltk.generated.interfaces.EPCParameter;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.AccessSpecID;
+import org.llrp.ltk.generated.parameters.AntennaID;
+import org.llrp.ltk.generated.parameters.C1G2_CRC;
+import org.llrp.ltk.generated.parameters.C1G2_PC;
+import org.llrp.ltk.generated.parameters.ChannelIndex;
+import org.llrp.ltk.generated.parameters.EPCData;
+import org.llrp.ltk.generated.parameters.EPC_96;
+import org.llrp.ltk.generated.parameters.FirstSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.FirstSeenTimestampUptime;
+import org.llrp.ltk.generated.parameters.InventoryParameterSpecID;
+import org.llrp.ltk.generated.parameters.LastSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.LastSeenTimestampUptime;
+import org.llrp.ltk.generated.parameters.PeakRSSI;
+import org.llrp.ltk.generated.parameters.ROSpecID;
+import org.llrp.ltk.generated.parameters.SpecIndex;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.generated.parameters.TagSeenCount;
+import org.llrp.ltk.types.UnsignedLong;
+
+/**
+ * holds the entries of one RO_ACCESS_REPORT in columns of primitive arrays 
+ * (one array per column of the RO_ACCESS_REPORTS table, one row per 
+ * TagReportData). whether a value is present is stored in a bitmap per row 
+ * (bit <code>1 &lt;&lt; column</code> is set if the column holds a value). the 
+ * time stamps are kept as microseconds and only converted into a 
+ * {@link Timestamp} when requested. this way parsing a report does not 
+ * create any objects per tag apart from the EPC string.<br/>
+ * <br/>
+ * the columns are addressed with the column indices defined in 
+ * {@link AbstractSQLROAccessReportsRepository}.
+ * @author sawielan
+ *
+ */
+public class ROAccessReportBatch {
+	
+	// the log4j logger.
+	private static Logger log = Logger.getLogger(ROAccessReportBatch.class);
+	
+	/** microseconds per millisecond. */
+	private static final long MICROS_PER_MILLI = 1000L;
+	
+	/** microseconds per second. */
+	private static final long MICROS_PER_SECOND = 1000000L;
+	
+	/** one million as big integer. */
+	private static final BigInteger BIG_MICROS_PER_SECOND = 
+		BigInteger.valueOf(MICROS_PER_SECOND);
+	
+	// the log time in milliseconds.
+	private final long logTime;
+	
+	// the name of the adapter.
+	private final String adapterName;
+	
+	// the name of the reader.
+	private final String readerName;
+	
+	// the number of rows.
+	private int size = 0;
+	
+	// the bitmap of the present values per row.
+	private final int [] present;
+	
+	// the EPC.
+	private final String [] epc;
+	
+	// the ROSpecID
+	private final long [] roSpecID;
+	
+	// spec index.
+	private final int [] specIndex;
+	
+	// inventory parameter spec ID.
+	private final int [] inventoryPrmSpecID;
+	
+	// antenna ID.
+	private final int [] antennaID;
+	
+	// peak RSSI.
+	private final short [] peakRSSI;
+	
+	// channel index.
+	private final int [] channelIndex;
+	
+	// the first seen UTC time stamp in microseconds.
+	private final long [] firstSeenUTC;
+	
+	// the first seen since uptime time stamp in microseconds.
+	private final long [] firstSeenUptime;
+	
+	// the last seen time stamp UTC in microseconds.
+	private final long [] lastSeenUTC;
+	
+	// the last seen time stamp since uptime in microseconds.
+	private final long [] lastSeenUptime;
+	
+	// the tag count.
+	private final int [] tagSeenCount;
+	
+	// c1g2_crc
+	private final int [] c1g2_CRC;
+	
+	// c1g2_pc
+	private final int [] c1g2_PC;
+	
+	// the access spec ID.
+	private final long [] accessSpecID;
+	
+	/**
+	 * creates an empty batch.
+	 * @param adapterName the name of the adapter.
+	 * @param readerName the name of the reader.
+	 * @param logTime the log time in milliseconds.
+	 * @param capacity the maximum number of rows.
+	 */
+	public ROAccessReportBatch(String adapterName, String readerName, 
+			long logTime, int capacity) {
+		
+		this.adapterName = adapterName;
+		this.readerName = readerName;
+		this.logTime = logTime;
+		
+		present = new int[capacity];
+		epc = new String[capacity];
+		roSpecID = new long[capacity];
+		specIndex = new int[capacity];
+		inventoryPrmSpecID = new int[capacity];
+		antennaID = new int[capacity];
+		peakRSSI = new short[capacity];
+		channelIndex = new int[capacity];
+		firstSeenUTC = new long[capacity];
+		firstSeenUptime = new long[capacity];
+		lastSeenUTC = new long[capacity];
+		lastSeenUptime = new long[capacity];
+		tagSeenCount = new int[capacity];
+		c1g2_CRC = new int[capacity];
+		c1g2_PC = new int[capacity];
+		accessSpecID = new long[capacity];
+	}
+	
+	/**
+	 * parses the entries of an RO_ACCESS_REPORTS into a batch.
+	 * @param report the RO_ACCESS_REPORTS message.
+	 * @param adapterName the name of the adapter.
+	 * @param readerName the name of the reader.
+	 * @param currentTime the log time in milliseconds.
+	 * @return the batch holding one row per TagReportData.
+	 */
+	public static ROAccessReportBatch parse(RO_ACCESS_REPORT report, 
+			String adapterName, String readerName, long currentTime) {
+		
+		List<TagReportData> tagDataList = report.getTagReportDataList();
+		ROAccessReportBatch batch = new ROAccessReportBatch(adapterName, 
+				readerName, currentTime, tagDataList.size());
+		for (TagReportData tagData : tagDataList) {
+			batch.add(tagData);
+		}
+		return batch;
+	}
+	
+	/**
+	 * adds a TagReportData as a new row.
+	 * @param tagData the TagReportData.
+	 */
+	private void add(TagReportData tagData) {
+		final int row = size++;
+		int mask = 0;
+		
+		// store the EPC as EPC96 or EPCData
+		EPCParameter epcParameter = tagData.getEPCParameter();
+		if (epcParameter instanceof EPC_96) {
+			epc[row] = ((EPC_96) epcParameter).getEPC().toString();
+		} else if (epcParameter instanceof EPCData){
+			epc[row] = ((EPCData) epcParameter).getEPC().toString();
+		} else {
+			log.error("Unknown EPCParameter encountered - ignoring.");
+		}
+		if (null != epc[row]) {
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_EPC);
+		}
+		
+		// RO Spec ID.
+		ROSpecID roSpec = tagData.getROSpecID();
+		if ((null != roSpec) && (null != roSpec.getROSpecID())) {
+			roSpecID[row] = roSpec.getROSpecID().intValue() & 0xFFFFFFFFL;
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_ROSpecID);
+		}
+		
+		// spec index.
+		SpecIndex spec = tagData.getSpecIndex();
+		if ((null != spec) && (null != spec.getSpecIndex())) {
+			specIndex[row] = spec.getSpecIndex().intValue();
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_SpecIndex);
+		}
+		
+		// inventory parameter spec ID.
+		InventoryParameterSpecID inventoryPrmSpec = tagData.getInventoryParameterSpecID();
+		if ((null != inventoryPrmSpec) && (null != inventoryPrmSpec.getInventoryParameterSpecID())) {
+			inventoryPrmSpecID[row] = inventoryPrmSpec.getInventoryParameterSpecID().intValue();
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_InventoryParameterSpecID);
+		}
+		
+		// antenna ID.
+		AntennaID antenna = tagData.getAntennaID();
+		if ((null != antenna) && (null != antenna.getAntennaID())) {
+			antennaID[row] = antenna.getAntennaID().intValue();
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_AntennaID);
+		}
+		
+		// peak RSSI.
+		PeakRSSI rssi = tagData.getPeakRSSI();
+		if ((null != rssi) && (null != rssi.getPeakRSSI())) {
+			peakRSSI[row] = rssi.getPeakRSSI().toByte();
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_PeakRSSI);
+		}
+		
+		// channel index.
+		ChannelIndex channel = tagData.getChannelIndex();
+		if ((null != channel) && (null != channel.getChannelIndex())) {
+			channelIndex[row] = channel.getChannelIndex().intValue();
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_ChannelIndex);
+		}
+		
+		// the first seen UTC time stamp.
+		FirstSeenTimestampUTC frstSnUTC = tagData.getFirstSeenTimestampUTC();
+		if (null != frstSnUTC) {
+			mask |= setMicroseconds(firstSeenUTC, row, frstSnUTC.getMicroseconds(), 
+					AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUTC);
+		}
+		
+		// the first seen since uptime time stamp.
+		FirstSeenTimestampUptime frstSnUptime = tagData.getFirstSeenTimestampUptime();
+		if (null != frstSnUptime) {
+			mask |= setMicroseconds(firstSeenUptime, row, frstSnUptime.getMicroseconds(), 
+					AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUptime);
+		}
+		
+		// the last seen time stamp UTC.
+		LastSeenTimestampUTC lstSnUTC = tagData.getLastSeenTimestampUTC();
+		if (null != lstSnUTC) {
+			mask |= setMicroseconds(lastSeenUTC, row, lstSnUTC.getMicroseconds(), 
+					AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUTC);
+		}
+		
+		// the last seen time stamp since uptime.
+		LastSeenTimestampUptime lstSnUptime = tagData.getLastSeenTimestampUptime();
+		if (null != lstSnUptime) {
+			mask |= setMicroseconds(lastSeenUptime, row, lstSnUptime.getMicroseconds(), 
+					AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUptime);
+		}
+		
+		// the tag count.
+		TagSeenCount seenCount = tagData.getTagSeenCount();
+		if ((null != seenCount) && (null != seenCount.getTagCount())) {
+			tagSeenCount[row] = seenCount.getTagCount().intValue();
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_TagSeenCount);
+		}
+		
+		List<AirProtocolTagData> airProtoTagData = tagData.getAirProtocolTagDataList();
+		for (AirProtocolTagData aptd : airProtoTagData) {
+			if (aptd instanceof C1G2_CRC) {
+				C1G2_CRC c1g2_crc = (C1G2_CRC) aptd;
+				if (null != c1g2_crc.getCRC()) {
+					c1g2_CRC[row] = c1g2_crc.getCRC().intValue();
+					mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_C1G2_CRC);
+				}
+			} else if (aptd instanceof C1G2_PC) {
+				C1G2_PC c1g2_pc = (C1G2_PC) aptd;
+				if (null != c1g2_pc.getPC_Bits()) {
+					c1g2_PC[row] = c1g2_pc.getPC_Bits().intValue();
+					mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_C1G2_PC);
+				}
+			} else {
+				log.error("Unknown AirProtocolTagData item encountered.");
+			}
+		}
+		
+		// the access spec ID.
+		AccessSpecID accessSpec = tagData.getAccessSpecID();
+		if ((null != accessSpec) && (null != accessSpec.getAccessSpecID())) {
+			accessSpecID[row] = accessSpec.getAccessSpecID().intValue() & 0xFFFFFFFFL;
+			mask |= bit(AbstractSQLROAccessReportsRepository.CINDEX_AccessSpecID);
+		}
+		
+		present[row] = mask;
+	}
+	
+	/**
+	 * @param column the column index.
+	 * @return the bit of the column in the bitmap.
+	 */
+	private static int bit(int column) {
+		return 1 << column;
+	}
+	
+	/**
+	 * stores a time stamp in microseconds.
+	 * @param column the array of the column.
+	 * @param row the row.
+	 * @param value the time stamp (might be null).
+	 * @param index the column index.
+	 * @return the bit of the column if the value could be stored, 0 otherwise.
+	 */
+	private static int setMicroseconds(long [] column, int row, 
+			UnsignedLong value, int index) {
+		
+		final long micros = toMicroseconds(value);
+		if (micros < 0) {
+			return 0;
+		}
+		column[row] = micros;
+		return bit(index);
+	}
+	
+	/**
+	 * converts an unsigned microseconds value into a long.
+	 * @param value the unsigned value (might be null).
+	 * @return the microseconds or -1 if null or too large for a long.
+	 */
+	public static long toMicroseconds(UnsignedLong value) {
+		if (null == value) {
+			return -1;
+		}
+		BigInteger big = value.toBigInteger();
+		if ((null == big) || (big.signum() < 0) || (big.bitLength() > 63)) {
+			log.error("could not extract a valid timestamp");
+			return -1;
+		}
+		return big.longValue();
+	}
+	
+	/**
+	 * creates a {@link Timestamp} from a time stamp in microseconds.
+	 * @param micros the time stamp in microseconds.
+	 * @return the time stamp with microseconds precision.
+	 */
+	public static Timestamp toTimestamp(long micros) {
+		Timestamp ts = new Timestamp(micros / MICROS_PER_MILLI);
+		ts.setNanos((int) (micros % MICROS_PER_SECOND) * 1000);
+		return ts;
+	}
+	
+	/**
+	 * creates a {@link Timestamp} from a time stamp in microseconds that does 
+	 * not fit into a long.
+	 * @param micros the time stamp in microseconds.
+	 * @return the time stamp with microseconds precision.
+	 */
+	static Timestamp toTimestamp(BigInteger micros) {
+		BigInteger [] secs = micros.divideAndRemainder(BIG_MICROS_PER_SECOND);
+		Timestamp ts = new Timestamp(secs[0].longValue() * 1000L);
+		ts.setNanos(secs[1].intValue() * 1000);
+		return ts;
+	}
+	
+	/**
+	 * @return the number of rows.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return the log time in milliseconds.
+	 */
+	public long getLogTime() {
+		return logTime;
+	}
+	
+	/**
+	 * @return the name of the adapter.
+	 */
+	public String getAdapterName() {
+		return adapterName;
+	}
+	
+	/**
+	 * @return the name of the reader.
+	 */
+	public String getReaderName() {
+		return readerName;
+	}
+	
+	/**
+	 * @param row the row.
+	 * @param column the column index.
+	 * @return true if the column in the given row does not hold a value.
+	 */
+	public boolean isNull(int row, int column) {
+		switch (column) {
+		case AbstractSQLROAccessReportsRepository.CINDEX_LOGTIME:
+			return false;
+		case AbstractSQLROAccessReportsRepository.CINDEX_ADAPTER:
+			return null == adapterName;
+		case AbstractSQLROAccessReportsRepository.CINDEX_READER:
+			return null == readerName;
+		}
+		if ((column < 0) || (column > AbstractSQLROAccessReportsRepository.NUM_COLUMNS)) {
+			return true;
+		}
+		return 0 == (present[row] & bit(column));
+	}
+	
+	/**
+	 * @param row the row.
+	 * @return the EPC of the given row (null if not present).
+	 */
+	public String getEpc(int row) {
+		return epc[row];
+	}
+	
+	/**
+	 * returns the value of a numeric column. time stamps are returned in 
+	 * microseconds, the log time in milliseconds. check with 
+	 * {@link #isNull(int, int)} whether the value is present.
+	 * @param row the row.
+	 * @param column the column index.
+	 * @return the value or 0 if not present.
+	 */
+	public long getLong(int row, int column) {
+		if (isNull(row, column)) {
+			return 0;
+		}
+		switch (column) {
+		case AbstractSQLROAccessReportsRepository.CINDEX_LOGTIME:
+			return logTime;
+		case AbstractSQLROAccessReportsRepository.CINDEX_ROSpecID:
+			return roSpecID[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_SpecIndex:
+			return specIndex[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_InventoryParameterSpecID:
+			return inventoryPrmSpecID[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_AntennaID:
+			return antennaID[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_PeakRSSI:
+			return peakRSSI[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_ChannelIndex:
+			return channelIndex[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUTC:
+			return firstSeenUTC[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUptime:
+			return firstSeenUptime[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUTC:
+			return lastSeenUTC[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUptime:
+			return lastSeenUptime[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_TagSeenCount:
+			return tagSeenCount[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_C1G2_CRC:
+			return c1g2_CRC[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_C1G2_PC:
+			return c1g2_PC[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_AccessSpecID:
+			return accessSpecID[row];
+		}
+		return 0;
+	}
+	
+	/**
+	 * @param column the column index.
+	 * @return true if the column holds a time stamp.
+	 */
+	public static boolean isTimestamp(int column) {
+		switch (column) {
+		case AbstractSQLROAccessReportsRepository.CINDEX_LOGTIME:
+		case AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUTC:
+		case AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUptime:
+		case AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUTC:
+		case AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUptime:
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * returns the value of a time stamp column as a {@link Timestamp}.
+	 * @param row the row.
+	 * @param column the column index.
+	 * @return the time stamp or null if not present (or not a time stamp).
+	 */
+	public Timestamp getTimestamp(int row, int column) {
+		if (!isTimestamp(column) || isNull(row, column)) {
+			return null;
+		}
+		if (AbstractSQLROAccessReportsRepository.CINDEX_LOGTIME == column) {
+			return new Timestamp(logTime);
+		}
+		return toTimestamp(getLong(row, column));
+	}
+	
+	/**
+	 * returns the item requested by the column index as an object (as 
+	 * returned by {@link ROAccessItem#get(int)}).
+	 * @param row the row.
+	 * @param column the column index.
+	 * @return the object requested or null if not present.
+	 */
+	public Object get(int row, int column) {
+		if (isNull(row, column)) {
+			return null;
+		}
+		switch (column) {
+		case AbstractSQLROAccessReportsRepository.CINDEX_ADAPTER:
+			return adapterName;
+		case AbstractSQLROAccessReportsRepository.CINDEX_READER:
+			return readerName;
+		case AbstractSQLROAccessReportsRepository.CINDEX_EPC:
+			return epc[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_ROSpecID:
+			return roSpecID[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_AccessSpecID:
+			return accessSpecID[row];
+		case AbstractSQLROAccessReportsRepository.CINDEX_PeakRSSI:
+			return peakRSSI[row];
+		}
+		if (isTimestamp(column)) {
+			return getTimestamp(row, column);
+		}
+		return (int) getLong(row, column);
+	}
+	
+	/**
+	 * appends the comma-separated-values representation of a row (as 
+	 * generated by {@link ROAccessItem#getAsCSV()}).
+	 * @param row the row.
+	 * @param str where to append the row.
+	 * @return the given string builder.
+	 */
+	public StringBuilder appendCSV(int row, StringBuilder str) {
+		final int len = AbstractSQLROAccessReportsRepository.NUM_COLUMNS + 1;
+		for (int i=1; i<len; i++) {
+			if (!isNull(row, i)) {
+				if (isTimestamp(i)) {
+					str.append(getTimestamp(row, i));
+				} else if (AbstractSQLROAccessReportsRepository.CINDEX_ADAPTER == i) {
+					str.append(adapterName);
+				} else if (AbstractSQLROAccessReportsRepository.CINDEX_READER == i) {
+					str.append(readerName);
+				} else if (AbstractSQLROAccessReportsRepository.CINDEX_EPC == i) {
+					str.append(epc[row]);
+				} else {
+					str.append(getLong(row, i));
+				}
+			}
+			str.append(",");
+		}
+		return str;
+	}
+	
+	/**
+	 * converts a row into a {@link ROAccessItem}.
+	 * @param row the row.
+	 * @return the item.
+	 */
+	public ROAccessItem toItem(int row) {
+		ROAccessItem item = new ROAccessItem();
+		item.setLogTime(new Timestamp(logTime));
+		item.setAdapterName(adapterName);
+		item.setReaderName(readerName);
+		item.setEpc(epc[row]);
+		item.setRoSpecID((Long) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_ROSpecID));
+		item.setSpecIndex((Integer) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_SpecIndex));
+		item.setInventoryPrmSpecID((Integer) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_InventoryParameterSpecID));
+		item.setAntennaID((Integer) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_AntennaID));
+		item.setPeakRSSI((Short) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_PeakRSSI));
+		item.setChannelIndex((Integer) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_ChannelIndex));
+		item.setFirstSeenUTC(getTimestamp(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUTC));
+		item.setFirstSeenUptime(getTimestamp(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUptime));
+		item.setLastSeenUTC(getTimestamp(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUTC));
+		item.setLastSeenUptime(getTimestamp(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUptime));
+		item.setTagSeenCount((Integer) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_TagSeenCount));
+		item.setC1g2_CRC((Integer) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_C1G2_CRC));
+		item.setC1g2_PC((Integer) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_C1G2_PC));
+		item.setAccessSpecID((Long) get(row, 
+				AbstractSQLROAccessReportsRepository.CINDEX_AccessSpecID));
+		return item;
+	}
+	
+	/**
+	 * @return all the rows as {@link ROAccessItem}.
+	 */
+	public List<ROAccessItem> toItems() {
+		List<ROAccessItem> items = new ArrayList<ROAccessItem> (size);
+		for (int i=0; i<size; i++) {
+			items.add(toItem(i));
+		}
+		return items;
+	}
+}
@@ -31,10 +31,12 @@ import java.util.Map;
 import junit.framework.Assert;
 
 import org.fosstrak.llrp.adaptor.AdaptorManagement;
+import org.fosstrak.llrp.adaptor.ReaderQueueSettings;
 import org.fosstrak.llrp.adaptor.config.FileStoreConfiguration;
 import org.fosstrak.llrp.adaptor.config.type.AdaptorConfiguration;
 import org.fosstrak.llrp.adaptor.config.type.ReaderConfiguration;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -120,6 +122,61 @@ public class FileStoreConfigurationTest {
 		Assert.assertNotNull(result);
 	}
 	
+	@Test
+	public void testWriteReplacesFile() throws LLRPRuntimeException, IOException {
+		AdaptorConfiguration defaultAdaptor = new AdaptorConfiguration(AdaptorManagement.DEFAULT_ADAPTOR_NAME, null, true, null);
+		defaultAdaptor.setReaderConfigurations(Arrays.asList(new ReaderConfiguration[] {
+				new ReaderConfiguration("reader1", "1.2.3.4", 1234, true, true) }) );
+		
+		tempFolder.create();
+		File storePath = tempFolder.newFile("replaceFile");
+		Map<String, Object> parameters = new HashMap<String, Object> ();
+		parameters.put(FileStoreConfiguration.KEY_LOADFILEPATH, storePath.getAbsolutePath());
+		parameters.put(FileStoreConfiguration.KEY_STOREFILEPATH, storePath.getAbsolutePath());
+		FileStoreConfiguration config = new FileStoreConfiguration(parameters, parameters);
+		
+		// write twice, the second write replaces the first file.
+		config.writeConfiguration(Arrays.asList(new AdaptorConfiguration[] {defaultAdaptor} ));
+		defaultAdaptor.setReaderConfigurations(Arrays.asList(new ReaderConfiguration[] {
+				new ReaderConfiguration("reader2", "1.2.3.4", 1234, true, true) }) );
+		config.writeConfiguration(Arrays.asList(new AdaptorConfiguration[] {defaultAdaptor} ));
+		
+		// no temporary file is left behind.
+		Assert.assertFalse(new File(storePath.getAbsolutePath() + ".tmp").exists());
+		List<AdaptorConfiguration> result = config.getConfiguration();
+		Assert.assertEquals(1, result.size());
+		Assert.assertEquals("reader2", result.get(0).getReaderPrototypes().get(0).getReaderName());
+	}
+	
+	@Test
+	public void testReadWriteQueueSettings() throws LLRPRuntimeException, IOException {
+		AdaptorConfiguration defaultAdaptor = new AdaptorConfiguration(AdaptorManagement.DEFAULT_ADAPTOR_NAME, null, true, null);
+		ReaderConfiguration reader1 = new ReaderConfiguration("reader1", "1.2.3.4", 1234, true, true);
+		ReaderQueueSettings settings = new ReaderQueueSettings();
+		settings.setInQueueCapacity(64);
+		settings.setOverflowPolicy(OverflowPolicy.BLOCK);
+		reader1.setQueueSettings(settings);
+		ReaderConfiguration reader2 = new ReaderConfiguration("reader2", "2.3.4.5", 1234, false, false);
+		defaultAdaptor.setReaderConfigurations(Arrays.asList(new ReaderConfiguration[] {reader1, reader2}) );
+		
+		tempFolder.create();
+		File storePath = tempFolder.newFile("queueFile");
+		Map<String, Object> parameters = new HashMap<String, Object> ();
+		parameters.put(FileStoreConfiguration.KEY_LOADFILEPATH, storePath.getAbsolutePath());
+		parameters.put(FileStoreConfiguration.KEY_STOREFILEPATH, storePath.getAbsolutePath());
+		FileStoreConfiguration config = new FileStoreConfiguration(parameters, parameters);
+		config.writeConfiguration(Arrays.asList(new AdaptorConfiguration[] {defaultAdaptor} ));
+		
+		List<ReaderConfiguration> readers = config.getConfiguration().get(0).getReaderPrototypes();
+		ReaderQueueSettings read = readers.get(0).getQueueSettings();
+		Assert.assertEquals(Integer.valueOf(64), read.getInQueueCapacity());
+		Assert.assertNull(read.getOutQueueCapacity());
+		Assert.assertEquals(OverflowPolicy.BLOCK, read.getOverflowPolicy());
+		Assert.assertNull(read.getWaitStrategy());
+		// readers without settings use the defaults.
+		Assert.assertNull(readers.get(1).getQueueSettings());
+	}
+	
 	@Test(expected = LLRPRuntimeException.class)
 	public void testWriteToNonExistingFile() throws LLRPRuntimeException, IOException {
 
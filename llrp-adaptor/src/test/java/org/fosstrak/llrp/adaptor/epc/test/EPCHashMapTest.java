@@ -0,0 +1,167 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.epc.test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.epc.EPC;
+import org.fosstrak.llrp.adaptor.epc.EPCHashMap;
+import org.fosstrak.llrp.adaptor.epc.EPCHashSet;
+import org.junit.Test;
+
+/**
+ * tests the {@link EPCHashMap} and the {@link EPCHashSet}.
+ * @author sawielan
+ *
+ */
+public class EPCHashMapTest {
+	
+	/**
+	 * random puts and removes give the same result as a {@link HashMap}.
+	 */
+	@Test
+	public void testAgainstHashMap() {
+		Random random = new Random(4711);
+		EPCHashMap<Integer> map = new EPCHashMap<Integer> ();
+		Map<EPC, Integer> expected = new HashMap<EPC, Integer> ();
+		for (int i=0; i<20000; i++) {
+			// few distinct EPCs make many collisions and removes.
+			EPC epc = EPC.epc96(0x30000000L, random.nextInt(512));
+			if (random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(epc), map.remove(epc));
+			} else {
+				Assert.assertEquals(expected.put(epc, i), map.put(epc, i));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+		Assert.assertEquals(expected, map);
+		for (Map.Entry<EPC, Integer> entry : expected.entrySet()) {
+			Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		Assert.assertNull(map.get("not an epc"));
+		
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertFalse(map.containsKey(EPC.epc96(0x30000000L, 1)));
+	}
+	
+	/**
+	 * the set view of the map.
+	 */
+	@Test
+	public void testSet() {
+		EPCHashSet set = new EPCHashSet(4);
+		for (int i=0; i<100; i++) {
+			Assert.assertTrue(set.add(EPC.parse(String.format("3008%020x", i))));
+		}
+		Assert.assertFalse(set.add(EPC.parse("300800000000000000000005")));
+		Assert.assertEquals(100, set.size());
+		Assert.assertTrue(set.remove(EPC.parse("300800000000000000000005")));
+		Assert.assertFalse(set.contains(EPC.parse("300800000000000000000005")));
+		int n = 0;
+		for (EPC epc : set) {
+			Assert.assertTrue(epc.startsWith("3008"));
+			n++;
+		}
+		Assert.assertEquals(99, n);
+		
+		Assert.assertTrue(set.retainAll(Collections.singleton(EPC.parse("300800000000000000000007"))));
+		Assert.assertEquals(1, set.size());
+		Assert.assertTrue(set.contains(EPC.parse("300800000000000000000007")));
+	}
+	
+	/**
+	 * removing through the views (and thus the iterators).
+	 */
+	@Test
+	public void testRemoveThroughViews() {
+		EPCHashMap<Integer> map = new EPCHashMap<Integer> ();
+		for (int i=0; i<100; i++) {
+			map.put(EPC.epc96(0x30000000L, i), i);
+		}
+		Assert.assertTrue(map.keySet().remove(EPC.epc96(0x30000000L, 5)));
+		Assert.assertFalse(map.keySet().remove(EPC.epc96(0x30000000L, 5)));
+		Assert.assertFalse(map.containsKey(EPC.epc96(0x30000000L, 5)));
+		Assert.assertTrue(map.values().remove(6));
+		Assert.assertFalse(map.containsKey(EPC.epc96(0x30000000L, 6)));
+		Assert.assertEquals(98, map.size());
+		
+		Set<EPC> keep = new HashSet<EPC> ();
+		for (int i=1; i<100; i+=3) {
+			keep.add(EPC.epc96(0x30000000L, i));
+		}
+		Assert.assertTrue(map.keySet().retainAll(keep));
+		Assert.assertEquals(keep, map.keySet());
+		for (EPC epc : keep) {
+			Assert.assertEquals(Integer.valueOf((int) epc.getLow()), map.get(epc));
+		}
+	}
+	
+	/**
+	 * removing every other key while iterating full tables, where the probe 
+	 * sequences wrap around the end of the arrays, returns every key once.
+	 */
+	@Test
+	public void testIteratorRemove() {
+		Random random = new Random(4711);
+		for (int round=0; round<2000; round++) {
+			EPCHashMap<Integer> map = new EPCHashMap<Integer> (12);
+			Map<EPC, Integer> expected = new HashMap<EPC, Integer> ();
+			for (int i=0; i<12; i++) {
+				EPC epc = EPC.epc96(0x30000000L, random.nextInt(1 << 20));
+				map.put(epc, i);
+				expected.put(epc, i);
+			}
+			final int size = map.size();
+			Set<EPC> seen = new HashSet<EPC> ();
+			for (Iterator<Map.Entry<EPC, Integer>> it = map.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<EPC, Integer> entry = it.next();
+				Assert.assertTrue(seen.add(entry.getKey()));
+				Assert.assertEquals(expected.get(entry.getKey()), entry.getValue());
+				if (random.nextBoolean()) {
+					it.remove();
+					expected.remove(entry.getKey());
+				}
+			}
+			Assert.assertEquals(size, seen.size());
+			Assert.assertEquals(expected, map);
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testIteratorRemoveTwice() {
+		EPCHashMap<Integer> map = new EPCHashMap<Integer> ();
+		map.put(EPC.epc96(0x30000000L, 1), 1);
+		Iterator<EPC> it = map.keySet().iterator();
+		it.next();
+		it.remove();
+		it.remove();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.epc.test;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.epc.EPC;
+import org.junit.Test;
+import org.llrp.ltk.generated.interfaces.EPCParameter;
+import org.llrp.ltk.generated.parameters.EPCData;
+import org.llrp.ltk.generated.parameters.EPC_96;
+import org.llrp.ltk.types.BitArray_HEX;
+import org.llrp.ltk.types.Integer96_HEX;
+
+/**
+ * tests the binary {@link EPC}.
+ * @author sawielan
+ *
+ */
+public class EPCTest {
+	
+	/**
+	 * the EPCs read from the LTK parameters format like the LTK.
+	 */
+	@Test
+	public void testParameters() {
+		final String hex = "300833b2ddd9014000000001";
+		EPC_96 epc96 = new EPC_96();
+		epc96.setEPC(new Integer96_HEX(hex));
+		EPC epc = EPC.fromParameter(epc96);
+		Assert.assertEquals(96, epc.getLength());
+		Assert.assertEquals(hex, epc.toString());
+		Assert.assertEquals(epc96.getEPC().toString(), epc.toString());
+		Assert.assertEquals(0x300833b2L, epc.getHigh());
+		Assert.assertEquals(0xddd9014000000001L, epc.getLow());
+		Assert.assertEquals(EPC.epc96(0x300833b2L, 0xddd9014000000001L), epc);
+		Assert.assertEquals(EPC.parse(hex.toUpperCase()), epc);
+		Assert.assertEquals(hex, ((EPC_96) epc.toParameter()).getEPC().toString());
+		
+		// longer than 128 bits and not a multiple of 8 bits.
+		final String longHex = "300833B2DDD9014000000001300833B2DDD90140000000010AB";
+		EPCData data = new EPCData();
+		data.setEPC(new BitArray_HEX(longHex));
+		EPC epcData = EPC.fromParameter(data);
+		Assert.assertEquals(4 * longHex.length(), epcData.getLength());
+		Assert.assertEquals(data.getEPC().toString(), epcData.toString());
+		EPCParameter back = epcData.toParameter();
+		Assert.assertEquals(data.getEPC().toString(), ((EPCData) back).getEPC().toString());
+		Assert.assertEquals(epcData, EPC.fromParameter(back));
+		Assert.assertNull(EPC.fromParameter(null));
+	}
+	
+	/**
+	 * equality, order and prefixes.
+	 */
+	@Test
+	public void testCompare() {
+		EPC a = EPC.parse("300833b2ddd9014000000001");
+		EPC b = EPC.parse("300833b2ddd9014000000002");
+		EPC c = EPC.parse("f00833b2ddd9014000000001");
+		Assert.assertFalse(a.equals(b));
+		Assert.assertTrue(a.compareTo(b) < 0);
+		Assert.assertTrue(b.compareTo(c) < 0);
+		Assert.assertEquals(0, a.compareTo(EPC.parse("300833B2DDD9014000000001")));
+		Assert.assertEquals(a.hashCode(), EPC.parse("300833B2DDD9014000000001").hashCode());
+		// same value, different length.
+		Assert.assertFalse(EPC.parse("00ab").equals(EPC.parse("ab")));
+		
+		Assert.assertTrue(a.startsWith("300833"));
+		Assert.assertTrue(a.startsWith("300833B2"));
+		Assert.assertFalse(a.startsWith("300834"));
+		Assert.assertFalse(EPC.parse("ab").startsWith("abc"));
+		
+		try {
+			EPC.parse("30x8");
+			Assert.fail("illegal hex string parsed");
+		} catch (IllegalArgumentException e) {
+			// expected.
+		}
+	}
+}
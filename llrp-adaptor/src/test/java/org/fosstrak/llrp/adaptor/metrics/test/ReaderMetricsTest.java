@@ -0,0 +1,128 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.metrics.test;
+
+import java.lang.management.ManagementFactory;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.metrics.LatencyHistogram;
+import org.fosstrak.llrp.adaptor.metrics.MetricsRegistry;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetrics;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetricsSnapshot;
+import org.fosstrak.llrp.adaptor.metrics.StripedCounter;
+import org.junit.Test;
+import org.llrp.ltk.generated.LLRPMessageFactory;
+import org.llrp.ltk.generated.messages.KEEPALIVE;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * tests the reader metrics.
+ * 
+ * @author sawielan
+ *
+ */
+public class ReaderMetricsTest {
+	
+	@Test
+	public void testStripedCounterConcurrent() throws Exception {
+		final StripedCounter counter = new StripedCounter();
+		Thread[] threads = new Thread[8];
+		for (int i=0; i<threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					for (int j=0; j<100000; j++) {
+						counter.increment();
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		Assert.assertEquals(800000, counter.sum());
+		counter.reset();
+		Assert.assertEquals(0, counter.sum());
+	}
+	
+	@Test
+	public void testHistogram() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getPercentile(99));
+		for (int i=1; i<=100; i++) {
+			histogram.record(i * 1000);
+		}
+		Assert.assertEquals(100, histogram.getCount());
+		Assert.assertEquals(50500, histogram.getMean());
+		Assert.assertEquals(100000, histogram.getMax());
+		
+		// the percentiles are reported as the upper bound of the bucket.
+		long median = histogram.getPercentile(50);
+		Assert.assertTrue(median >= 50000 && median < 2 * 50000);
+		Assert.assertEquals(100000, histogram.getPercentile(100));
+		
+		histogram.reset();
+		Assert.assertEquals(0, histogram.getCount());
+		Assert.assertEquals(0, histogram.getMax());
+	}
+	
+	@Test
+	public void testReaderMetrics() throws Exception {
+		ReaderMetrics metrics = new ReaderMetrics("adaptor", "reader");
+		
+		// a decoded message knows its length on the wire.
+		LLRPMessage message = LLRPMessageFactory.createLLRPMessage(
+				new KEEPALIVE().encodeBinary());
+		metrics.messageReceived(message);
+		metrics.messageReceived(message);
+		metrics.messageSent(new KEEPALIVE());
+		metrics.messageDropped();
+		metrics.dispatched(1000);
+		
+		ReaderMetricsSnapshot snapshot = metrics.snapshot();
+		Assert.assertEquals(2, snapshot.getMessagesIn());
+		Assert.assertEquals(2 * 10, snapshot.getBytesIn());
+		Assert.assertEquals(1, snapshot.getMessagesOut());
+		Assert.assertEquals(1, snapshot.getMessagesDropped());
+		Assert.assertEquals(Long.valueOf(2), snapshot.getMessagesByType().get(message.getName()));
+		Assert.assertEquals(1, snapshot.getDispatchLatency().getCount());
+		
+		metrics.newSession();
+		Assert.assertEquals(0, metrics.getSessionMessagesIn());
+		Assert.assertEquals(2, metrics.getMessagesIn());
+	}
+	
+	@Test
+	public void testRegistry() throws Exception {
+		MetricsRegistry registry = MetricsRegistry.getInstance();
+		ReaderMetrics metrics = registry.getReaderMetrics("adaptor,1", "reader=1");
+		Assert.assertSame(metrics, registry.getReaderMetrics("adaptor,1", "reader=1"));
+		Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+				MetricsRegistry.objectName(metrics)));
+		
+		registry.remove("adaptor,1", "reader=1");
+		Assert.assertNull(registry.get("adaptor,1", "reader=1"));
+		Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+				MetricsRegistry.objectName(metrics)));
+	}
+}
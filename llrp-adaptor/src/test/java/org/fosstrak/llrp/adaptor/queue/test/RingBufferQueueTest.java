@@ -0,0 +1,145 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.queue.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
+import org.junit.Test;
+
+/**
+ * tests the {@link RingBufferQueue}.
+ * 
+ * @author sawielan
+ *
+ */
+public class RingBufferQueueTest {
+	
+	@Test
+	public void testFifoAndCapacity() throws Exception {
+		RingBufferQueue<Integer> q = new RingBufferQueue<Integer>(5, OverflowPolicy.DROP_NEWEST, WaitStrategy.PARK);
+		Assert.assertEquals(8, q.capacity());
+		Assert.assertTrue(q.isEmpty());
+		Assert.assertNull(q.poll());
+		Assert.assertNull(q.take(1, TimeUnit.MILLISECONDS));
+		
+		// wrap around the ring several times.
+		for (int round=0; round<3; round++) {
+			for (int i=0; i<8; i++) {
+				Assert.assertTrue(q.offer(i));
+			}
+			Assert.assertEquals(8, q.size());
+			for (int i=0; i<8; i++) {
+				Assert.assertEquals(Integer.valueOf(i), q.poll());
+			}
+			Assert.assertTrue(q.isEmpty());
+		}
+		Assert.assertEquals(0, q.getDroppedCount());
+	}
+	
+	@Test
+	public void testOverflowPolicies() throws Exception {
+		RingBufferQueue<Integer> newest = new RingBufferQueue<Integer>(2, OverflowPolicy.DROP_NEWEST, WaitStrategy.YIELD);
+		Assert.assertTrue(newest.offer(1));
+		Assert.assertTrue(newest.offer(2));
+		Assert.assertFalse(newest.offer(3));
+		Assert.assertEquals(1, newest.getDroppedCount());
+		Assert.assertEquals(Integer.valueOf(1), newest.poll());
+		Assert.assertEquals(Integer.valueOf(2), newest.poll());
+		
+		RingBufferQueue<Integer> oldest = new RingBufferQueue<Integer>(2, OverflowPolicy.DROP_OLDEST, WaitStrategy.YIELD);
+		Assert.assertTrue(oldest.offer(1));
+		Assert.assertTrue(oldest.offer(2));
+		Assert.assertTrue(oldest.offer(3));
+		Assert.assertEquals(1, oldest.getDroppedCount());
+		Assert.assertEquals(Integer.valueOf(2), oldest.poll());
+		Assert.assertEquals(Integer.valueOf(3), oldest.poll());
+		
+		final RingBufferQueue<Integer> block = new RingBufferQueue<Integer>(1, OverflowPolicy.BLOCK, WaitStrategy.PARK);
+		Assert.assertEquals(2, block.capacity());
+		Assert.assertTrue(block.offer(0));
+		Assert.assertTrue(block.offer(1));
+		Assert.assertFalse(block.offer(2, 10, TimeUnit.MILLISECONDS));
+		Thread consumer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					// ignore.
+				}
+				block.poll();
+			}
+		});
+		consumer.start();
+		// waits until the consumer made space.
+		Assert.assertTrue(block.offer(2));
+		consumer.join();
+		Assert.assertEquals(Integer.valueOf(1), block.poll());
+		Assert.assertEquals(Integer.valueOf(2), block.poll());
+		Assert.assertEquals(0, block.getDroppedCount());
+	}
+	
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final int producers = 4;
+		final int perProducer = 10000;
+		final RingBufferQueue<Integer> q = new RingBufferQueue<Integer>(64, OverflowPolicy.BLOCK, WaitStrategy.PARK);
+		final CountDownLatch start = new CountDownLatch(1);
+		
+		for (int p=0; p<producers; p++) {
+			final int offset = p * perProducer;
+			new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i=0; i<perProducer; i++) {
+						q.offer(offset + i);
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		
+		// every element must arrive exactly once and in order per producer.
+		int[] last = new int[producers];
+		for (int p=0; p<producers; p++) {
+			last[p] = -1;
+		}
+		for (int n=0; n<producers * perProducer; n++) {
+			Integer value = q.take(5, TimeUnit.SECONDS);
+			Assert.assertNotNull(value);
+			int producer = value / perProducer;
+			Assert.assertTrue(value % perProducer > last[producer]);
+			last[producer] = value % perProducer;
+		}
+		Assert.assertTrue(q.isEmpty());
+		Assert.assertEquals(0, q.getDroppedCount());
+	}
+}
@@ -125,7 +125,7 @@ public class AdaptorTest {
 	 */
 	@Test
 	public void testLocalAdaptor() throws Exception {		
-		Adaptor adaptor = new AdaptorImpl(adaptorName);
+		AdaptorImpl adaptor = new AdaptorImpl(adaptorName);
 		// test if getAdaptorName works.
 		assertAdaptorName(adaptorName, adaptor);
 		
@@ -137,7 +137,7 @@ public class AdaptorTest {
 		assertGetReaderNames(new LinkedList<String>(), adaptor);
 		
 		// test if notification mechanism works.
-		assertAsyncNotificationCallback(adaptor, false);
+		assertAsyncNotificationCallback(adaptor, adaptor, false);
 	}
 	
 	/**
@@ -166,7 +166,7 @@ public class AdaptorTest {
 		assertGetReaderNames(new LinkedList<String>(), adaptor);
 		
 		// test if notification mechanism works.
-		assertAsyncNotificationCallback(adaptor, true);
+		assertAsyncNotificationCallback(adaptor, serverAdaptor, true);
 		
 		// kill the thread.
 		thread.interrupt();
@@ -213,10 +213,11 @@ public class AdaptorTest {
 	/**
 	 * create a asynchronous notification listener and test the message callback.
 	 * @param adaptor the adaptor to test.
+	 * @param server the adaptor behind <code>adaptor</code> (to wait for the delivery).
 	 * @param remote if set to true the notification listener exports itself as a rmi stub (needed when testing remote adaptor).
 	 * @throws Exception whenever there is any type of error.
 	 */
-	protected void assertAsyncNotificationCallback(Adaptor adaptor, boolean remote) throws Exception {
+	protected void assertAsyncNotificationCallback(Adaptor adaptor, AdaptorImpl server, boolean remote) throws Exception {
 		AsyncNotif notif = new AsyncNotif(remote);
 		
 		// register
@@ -234,6 +235,8 @@ public class AdaptorTest {
 		notif.asyncNotifMessage = null;
 		notif.asyncNotifReaderName = null;
 		adaptor.messageReceivedCallback(binaryEncodedMessage, readerName);
+		// remote receivers are notified asynchronously.
+		Assert.assertTrue(server.awaitNotified(5000));
 		Assert.assertNotNull(notif.asyncNotifMessage);
 		Assert.assertTrue(notif.asyncNotifMessage instanceof LLRPMessage);
 		
@@ -245,6 +248,8 @@ public class AdaptorTest {
 		notif.asyncNotifMessage = null;
 		notif.asyncNotifReaderName = null;
 		adaptor.messageReceivedCallback(binaryEncodedMessage, readerName);
+		// a receiver still registered would have been served by now.
+		Assert.assertTrue(server.awaitNotified(5000));
 		Assert.assertNull(notif.asyncNotifMessage);
 		Assert.assertNull(notif.asyncNotifReaderName);
 	}
@@ -0,0 +1,303 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.fosstrak.llrp.adaptor.Adaptor;
+import org.fosstrak.llrp.adaptor.AdaptorCallback;
+import org.fosstrak.llrp.adaptor.AdaptorWorker;
+import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
+import org.fosstrak.llrp.adaptor.queue.QueueEntry;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.junit.Test;
+import org.llrp.ltk.generated.messages.KEEPALIVE;
+import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.UnsignedInteger;
+
+/**
+ * tests the queue of the {@link AdaptorWorker}.
+ * @author sawielan
+ *
+ */
+public class AdaptorWorkerTest {
+	
+	/**
+	 * creates a remote adaptor whose sending waits for the given latch.
+	 * @param release the latch to wait for.
+	 * @param fail whether the sending fails.
+	 * @return the adaptor.
+	 * @throws Exception upon error...
+	 */
+	private Adaptor adaptor(final CountDownLatch release, final boolean fail) throws Exception {
+		Adaptor adaptor = EasyMock.createNiceMock(Adaptor.class);
+		EasyMock.expect(adaptor.getAdaptorName()).andReturn("adaptor").anyTimes();
+		EasyMock.expect(adaptor.containsReader("reader")).andReturn(true).anyTimes();
+		adaptor.sendLLRPMessage(EasyMock.eq("reader"), EasyMock.aryEq(new KEEPALIVE().encodeBinary()));
+		EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+			public Object answer() throws Throwable {
+				release.await();
+				if (fail) {
+					throw new LLRPRuntimeException("MOCK EXCEPTION");
+				}
+				return null;
+			}
+		}).anyTimes();
+		EasyMock.replay(adaptor);
+		return adaptor;
+	}
+	
+	private QueueEntry entry(SendFuture future) {
+		return new QueueEntry(new KEEPALIVE(), "reader", "adaptor", future);
+	}
+	
+	/**
+	 * a full queue rejects messages, a timed offer waits for free space.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testBackPressure() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		AdaptorWorker worker = new AdaptorWorker(new AdaptorCallback(false), adaptor(release, false), 2);
+		worker.start();
+		Assert.assertEquals(2, worker.getQueueCapacity());
+		
+		// the first message blocks in the adaptor, two more fill the queue.
+		worker.enqueue(entry(null));
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((worker.getQueueDepth() > 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(5);
+		}
+		worker.enqueue(entry(null));
+		worker.enqueue(entry(null));
+		Assert.assertFalse(worker.isReady());
+		try {
+			worker.enqueue(entry(null));
+			Assert.fail("queue accepted more than its capacity");
+		} catch (LLRPRuntimeException e) {
+			// expected.
+		}
+		Assert.assertFalse(worker.offer(entry(null), 50, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(2, worker.getRejectedCount());
+		
+		// free space while waiting.
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					// ignore.
+				}
+				release.countDown();
+			}
+		}).start();
+		Assert.assertTrue(worker.offer(entry(null), 5000, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(4, worker.getEnqueuedCount());
+		worker.tearDown();
+	}
+	
+	/**
+	 * concurrent producers do not exceed the capacity, even when the ring 
+	 * buffer behind the queue is larger.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testCapacityUnderContention() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final AdaptorWorker worker = new AdaptorWorker(new AdaptorCallback(false), adaptor(release, false), 3);
+		worker.start();
+		
+		// the first message blocks in the adaptor.
+		worker.enqueue(entry(null));
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((worker.getQueueDepth() > 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(5);
+		}
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger accepted = new AtomicInteger(0);
+		Thread[] producers = new Thread[8];
+		for (int i=0; i<producers.length; i++) {
+			producers[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						for (int j=0; j<100; j++) {
+							if (worker.offer(entry(null), 0, TimeUnit.MILLISECONDS)) {
+								accepted.incrementAndGet();
+							}
+						}
+					} catch (InterruptedException e) {
+						// ignore.
+					}
+				}
+			});
+			producers[i].start();
+		}
+		start.countDown();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		Assert.assertEquals(3, accepted.get());
+		Assert.assertEquals(3, worker.getQueueDepth());
+		Assert.assertFalse(worker.isReady("reader"));
+		
+		release.countDown();
+		worker.tearDown();
+	}
+	
+	/**
+	 * the future is completed when the adaptor accepted the message and 
+	 * failed when the sending failed.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testSendFuture() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		AdaptorWorker worker = new AdaptorWorker(new AdaptorCallback(false), adaptor(release, false), 10);
+		worker.start();
+		SendFuture future = new SendFuture();
+		worker.enqueue(entry(future));
+		Assert.assertFalse(future.isDone());
+		release.countDown();
+		Assert.assertNull(future.get(5000, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(future.isFailed());
+		worker.tearDown();
+		
+		worker = new AdaptorWorker(new AdaptorCallback(false), adaptor(release, true), 10);
+		worker.start();
+		future = new SendFuture();
+		worker.enqueue(entry(future));
+		try {
+			future.get(5000, TimeUnit.MILLISECONDS);
+			Assert.fail("sending did not fail");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof LLRPRuntimeException);
+		}
+		Assert.assertTrue(future.isFailed());
+		worker.tearDown();
+	}
+	
+	/**
+	 * a reader blocking in the adaptor does not hold back the other readers, 
+	 * the messages to one reader keep their order.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testReaderQueues() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<Long> sent = new CopyOnWriteArrayList<Long> ();
+		Adaptor adaptor = EasyMock.createNiceMock(Adaptor.class);
+		EasyMock.expect(adaptor.getAdaptorName()).andReturn("adaptor").anyTimes();
+		EasyMock.expect(adaptor.containsReader((String) EasyMock.anyObject())).andReturn(true).anyTimes();
+		adaptor.sendLLRPMessage(EasyMock.eq("slow"), EasyMock.aryEq(new KEEPALIVE().encodeBinary()));
+		EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+			public Object answer() throws Throwable {
+				release.await();
+				return null;
+			}
+		}).anyTimes();
+		adaptor.sendLLRPMessage(EasyMock.eq("fast"), (byte[]) EasyMock.anyObject());
+		EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+			public Object answer() throws Throwable {
+				byte[] message = (byte[]) EasyMock.getCurrentArguments()[1];
+				// the message ID follows type and length in the header.
+				sent.add(((message[6] & 0xFFL) << 24) | ((message[7] & 0xFFL) << 16) 
+						| ((message[8] & 0xFFL) << 8) | (message[9] & 0xFFL));
+				return null;
+			}
+		}).anyTimes();
+		// the mock must not serialise the calls itself.
+		EasyMock.makeThreadSafe(adaptor, false);
+		EasyMock.replay(adaptor);
+		
+		AdaptorWorker worker = new AdaptorWorker(new AdaptorCallback(false), adaptor, 10);
+		worker.start();
+		worker.enqueue(new QueueEntry(new KEEPALIVE(), "slow", "adaptor"));
+		worker.enqueue(new QueueEntry(new KEEPALIVE(), "slow", "adaptor"));
+		final int n = 10;
+		SendFuture last = null;
+		for (int i=1; i<=n; i++) {
+			LLRPMessage message = new KEEPALIVE();
+			message.setMessageID(new UnsignedInteger(i));
+			last = new SendFuture();
+			worker.enqueue(new QueueEntry(message, "fast", "adaptor", last));
+		}
+		last.get(5000, TimeUnit.MILLISECONDS);
+		Assert.assertEquals(n, sent.size());
+		for (int i=0; i<n; i++) {
+			Assert.assertEquals(i + 1, sent.get(i).longValue());
+		}
+		Assert.assertEquals(0, worker.getQueueDepth("fast"));
+		Assert.assertEquals(1, worker.getQueueDepth("slow"));
+		Assert.assertTrue(worker.isReady("fast"));
+		
+		release.countDown();
+		worker.tearDown();
+	}
+	
+	/**
+	 * messages to unknown readers are rejected, the queue of an undefined 
+	 * reader is dropped and its pending messages are failed.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testUndefinedReader() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		AdaptorWorker worker = new AdaptorWorker(new AdaptorCallback(false), adaptor(release, false), 10);
+		worker.start();
+		try {
+			worker.enqueue(new QueueEntry(new KEEPALIVE(), "unknown", "adaptor"));
+			Assert.fail("accepted a message to an unknown reader");
+		} catch (LLRPRuntimeException e) {
+			// expected.
+		}
+		Assert.assertFalse(worker.offer(new QueueEntry(new KEEPALIVE(), "unknown", "adaptor"), 
+				10, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(2, worker.getRejectedCount());
+		
+		// the first message blocks in the adaptor, the second one waits.
+		worker.enqueue(entry(null));
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((worker.getQueueDepth() > 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(5);
+		}
+		SendFuture pending = new SendFuture();
+		worker.enqueue(entry(pending));
+		Assert.assertEquals(1, worker.getQueueDepth("reader"));
+		
+		worker.removeReader("reader");
+		Assert.assertEquals(0, worker.getQueueDepth());
+		Assert.assertTrue(pending.isFailed());
+		release.countDown();
+		worker.tearDown();
+	}
+}
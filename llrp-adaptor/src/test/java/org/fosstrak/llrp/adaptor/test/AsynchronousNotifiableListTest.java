@@ -23,13 +23,23 @@ package org.fosstrak.llrp.adaptor.test;
 
 import java.io.FileReader;
 import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
 import org.easymock.EasyMock;
 import org.fosstrak.llrp.adaptor.AsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.BatchAsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.LocalAsynchronousNotifiable;
+import org.fosstrak.llrp.adaptor.MessageBatch;
 import org.fosstrak.llrp.adaptor.exception.LLRPRuntimeException;
 import org.fosstrak.llrp.adaptor.util.AsynchronousNotifiableList;
+import org.fosstrak.llrp.adaptor.util.SharedExecutor;
 import org.fosstrak.llrp.adaptor.util.type.NotifiableFailureCounter;
 import org.jdom.Document;
 import org.jdom.input.SAXBuilder;
@@ -45,6 +55,15 @@ import org.llrp.ltk.types.LLRPMessage;
  */
 public class AsynchronousNotifiableListTest {	
 	
+	/** the time in ms to wait for the delivery to the remote receivers. */
+	private static final long TIMEOUT = 5000;
+	
+	/**
+	 * helper interface to mock a receiver living in the same virtual machine.
+	 */
+	public interface LocalReceiver extends AsynchronousNotifiable, LocalAsynchronousNotifiable {
+	}
+	
 	/**
 	 * tests if registration and deregistration works as expected.
 	 * @throws Exception upon error...
@@ -113,6 +132,7 @@ public class AsynchronousNotifiableListTest {
 		
 		an.notify(messageEncodedBinary, readerName);
 		an.notifyError(ex, readerName);
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
 		
 		EasyMock.verify(a1);
 		EasyMock.verify(a2);
@@ -129,10 +149,45 @@ public class AsynchronousNotifiableListTest {
 		
 		an.notify(messageEncodedBinary, readerName);
 		an.notifyError(ex, readerName);
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
 		
 		EasyMock.verify(a1);
 	}
 	
+	/**
+	 * tests that local receivers get the decoded message whereas remote 
+	 * receivers get the binary encoded message.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testNotifyLocal() throws Exception {
+		// just use some dummy method for test of the callback.
+		Document document = new SAXBuilder().build(new FileReader("src/test/config/getCapabilities.xml"));
+
+		final LLRPMessage message = LLRPMessageFactory.createLLRPMessage(document);
+		byte[] messageEncodedBinary = message.encodeBinary();
+		final String readerName = "reader";
+		AsynchronousNotifiableList an = new AsynchronousNotifiableList();
+		
+		LocalReceiver local = EasyMock.createMock(LocalReceiver.class);
+		local.notify(message, readerName);
+		EasyMock.expectLastCall();
+		AsynchronousNotifiable remote = EasyMock.createMock(AsynchronousNotifiable.class);
+		remote.notify(EasyMock.aryEq(messageEncodedBinary), EasyMock.eq(readerName));
+		EasyMock.expectLastCall();
+		
+		EasyMock.replay(local);
+		EasyMock.replay(remote);
+		an.add(local);
+		an.add(remote);
+		
+		an.notify(message, readerName);
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
+		
+		EasyMock.verify(local);
+		EasyMock.verify(remote);
+	}
+	
 	@Test
 	public void testNotifyWithException() throws Exception {
 		// just use some dummy method for test of the callback.
@@ -156,12 +211,14 @@ public class AsynchronousNotifiableListTest {
 		Assert.assertFalse(an.getAll().toArray(new NotifiableFailureCounter[0])[0].hasError());
 		
 		an.notify(messageEncodedBinary, readerName);
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
 		Assert.assertTrue(an.getAll().toArray(new NotifiableFailureCounter[0])[0].hasError());
 		
 		an.getAll().toArray(new NotifiableFailureCounter[0])[0].clean();
 		Assert.assertFalse(an.getAll().toArray(new NotifiableFailureCounter[0])[0].hasError());
 		
 		an.notifyError(ex, readerName);
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
 		Assert.assertTrue(an.getAll().toArray(new NotifiableFailureCounter[0])[0].hasError());
 		
 		EasyMock.verify(a1);
@@ -183,8 +240,218 @@ public class AsynchronousNotifiableListTest {
 		for (int i = 0; i<NotifiableFailureCounter.NUM_NON_RECHABLE_ALLOWED + 1; i++) {
 			an.notifyError(ex, readerName);
 		}
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
 		Assert.assertEquals(0, an.getAll().size());
 		
 		EasyMock.verify(a1);
 	}
+	
+	/**
+	 * receiver accepting batches, records the frames in their order.
+	 */
+	private static class BatchReceiver implements BatchAsynchronousNotifiable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		final List<String> frames = Collections.synchronizedList(new LinkedList<String> ());
+		
+		final AtomicInteger batches = new AtomicInteger(0);
+		
+		final AtomicInteger singles = new AtomicInteger(0);
+		
+		public void notify(MessageBatch batch) throws RemoteException {
+			batches.incrementAndGet();
+			for (int i=0; i<batch.size(); i++) {
+				frames.add(batch.getReaderName(i) + ":" + batch.getMessage(i)[0]);
+			}
+		}
+
+		public void notify(byte[] message, String readerName) throws RemoteException {
+			singles.incrementAndGet();
+		}
+
+		public void notifyError(LLRPRuntimeException e, String readerName) throws RemoteException {
+		}
+	}
+	
+	/**
+	 * receivers accepting batches get the messages in batches and in order.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testBatchDelivery() throws Exception {
+		AsynchronousNotifiableList an = new AsynchronousNotifiableList();
+		an.setBatching(10, 50);
+		BatchReceiver receiver = new BatchReceiver();
+		an.add(receiver);
+		
+		// 25 messages -> two full batches, the rest after the linger time.
+		for (int i=0; i<25; i++) {
+			an.notify(new byte[] { (byte) i }, "r" + (i % 2));
+		}
+		Thread.sleep(500);
+		Assert.assertEquals(0, receiver.singles.get());
+		Assert.assertEquals(3, receiver.batches.get());
+		Assert.assertEquals(25, receiver.frames.size());
+		for (int i=0; i<25; i++) {
+			Assert.assertEquals("r" + (i % 2) + ":" + i, receiver.frames.get(i));
+		}
+		
+		// batching disabled -> one call per message.
+		an.setBatching(1, 0);
+		an.notify(new byte[] { 1 }, "r0");
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
+		Assert.assertEquals(1, receiver.singles.get());
+	}
+	
+	/**
+	 * receiver blocking in every call until released.
+	 */
+	private static class SlowReceiver implements AsynchronousNotifiable {
+		
+		private static final long serialVersionUID = 1L;
+		
+		final CountDownLatch entered = new CountDownLatch(1);
+		
+		final CountDownLatch release = new CountDownLatch(1);
+		
+		final AtomicInteger received = new AtomicInteger(0);
+		
+		public void notify(byte[] message, String readerName) throws RemoteException {
+			entered.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			received.incrementAndGet();
+		}
+
+		public void notifyError(LLRPRuntimeException e, String readerName) throws RemoteException {
+		}
+	}
+	
+	/**
+	 * a blocked receiver neither delays the other receivers nor the caller. 
+	 * the messages exceeding its queue are dropped, and it is removed when 
+	 * lagging behind too much.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testSlowReceiver() throws Exception {
+		AsynchronousNotifiableList an = new AsynchronousNotifiableList();
+		an.setLaneCapacity(4);
+		SlowReceiver slow = new SlowReceiver();
+		BatchReceiver fast = new BatchReceiver();
+		an.add(slow);
+		an.add(fast);
+		
+		an.notify(new byte[] { 0 }, "r");
+		Assert.assertTrue(slow.entered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		// one message in delivery, four queued, five dropped.
+		for (int i=1; i<10; i++) {
+			an.notify(new byte[] { (byte) i }, "r");
+		}
+		an.flush();
+		
+		// the fast receiver got everything while the slow one is blocked.
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+		while ((fast.frames.size() < 10) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(5);
+		}
+		Assert.assertEquals(10, fast.frames.size());
+		Assert.assertEquals(0, slow.received.get());
+		Assert.assertEquals(5, an.getLane(slow).getDropped());
+		Assert.assertEquals(5, an.getLane(slow).getQueued());
+		Assert.assertEquals(10, an.getLane(fast).getDelivered());
+		
+		// the slow receiver is removed once lagging behind too much.
+		an.setMaxLag(50);
+		Thread.sleep(100);
+		Assert.assertTrue(an.getLane(slow).getLag() > 50);
+		an.notify(new byte[] { 10 }, "r");
+		Assert.assertEquals(1, an.getAll().size());
+		Assert.assertNull(an.getLane(slow));
+		Assert.assertEquals(fast, an.getAll().iterator().next().getReceiver());
+		slow.release.countDown();
+	}
+	
+	/**
+	 * a remote receiver removed while a notification is in progress does 
+	 * not get a new lane (and thus no messages).
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testRemoveDuringNotify() throws Exception {
+		final AsynchronousNotifiableList an = new AsynchronousNotifiableList();
+		final BatchReceiver remote = new BatchReceiver();
+		an.add(new LocalReceiver() {
+			private static final long serialVersionUID = 1L;
+			
+			public void notify(byte[] message, String readerName) throws RemoteException {
+				an.remove(remote);
+			}
+
+			public void notify(LLRPMessage message, String readerName) throws RemoteException {
+				an.remove(remote);
+			}
+			
+			public void notifyError(LLRPRuntimeException e, String readerName) throws RemoteException {
+			}
+		});
+		an.add(remote);
+		Assert.assertNotNull(an.getLane(remote));
+		
+		an.notify(new byte[] { 0 }, "r");
+		an.notifyError(new LLRPRuntimeException("MOCK EXCEPTION"), "r");
+		Assert.assertTrue(an.awaitIdle(TIMEOUT));
+		Thread.sleep(50);
+		
+		Assert.assertEquals(1, an.getAll().size());
+		Assert.assertNull(an.getLane(remote));
+		Assert.assertEquals(0, remote.frames.size());
+		Assert.assertEquals(0, remote.singles.get());
+	}
+	
+	/**
+	 * remote receivers blocking in their delivery outnumber the threads of 
+	 * the shared pool, yet the work of the readers on the shared pool still 
+	 * makes progress.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testBlockingReceiversDoNotStallReaders() throws Exception {
+		AsynchronousNotifiableList an = new AsynchronousNotifiableList();
+		final int blocked = SharedExecutor.getPoolSize() + 2;
+		List<SlowReceiver> receivers = new LinkedList<SlowReceiver>();
+		for (int i=0; i<blocked; i++) {
+			SlowReceiver slow = new SlowReceiver();
+			receivers.add(slow);
+			an.add(slow);
+		}
+		try {
+			an.notify(new byte[] { 0 }, "r");
+			// at least as many deliveries are blocked as the shared pool has threads.
+			int entered = 0;
+			for (SlowReceiver slow : receivers) {
+				if (slow.entered.await(TIMEOUT, TimeUnit.MILLISECONDS)) {
+					entered++;
+				}
+			}
+			Assert.assertTrue(entered >= Math.min(blocked, SharedExecutor.getDeliveryPoolSize()));
+			
+			// the reader work still runs.
+			final CountDownLatch done = new CountDownLatch(1);
+			SharedExecutor.getExecutor().execute(new Runnable() {
+				public void run() {
+					done.countDown();
+				}
+			});
+			Assert.assertTrue(done.await(TIMEOUT, TimeUnit.MILLISECONDS));
+		} finally {
+			for (SlowReceiver slow : receivers) {
+				slow.release.countDown();
+			}
+		}
+	}
 }
@@ -0,0 +1,136 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.util.CoalescingCommitter;
+import org.junit.Test;
+
+/**
+ * tests {@link CoalescingCommitter}.
+ * @author sawielan
+ *
+ */
+public class CoalescingCommitterTest {
+	
+	/**
+	 * @param counter the counter to increment upon each store.
+	 * @return a store incrementing the counter.
+	 */
+	private Runnable store(final AtomicInteger counter) {
+		return new Runnable() {
+			public void run() {
+				counter.incrementAndGet();
+			}
+		};
+	}
+	
+	@Test
+	public void testBurstIsMerged() throws Exception {
+		AtomicInteger stores = new AtomicInteger(0);
+		CoalescingCommitter committer = new CoalescingCommitter(store(stores), 100);
+		for (int i=0; i<1000; i++) {
+			committer.request();
+		}
+		Assert.assertEquals(0, stores.get());
+		Assert.assertTrue(committer.isDirty());
+		
+		Thread.sleep(500);
+		Assert.assertEquals(1, stores.get());
+		Assert.assertFalse(committer.isDirty());
+	}
+	
+	/**
+	 * the delayed store must not run on (and block) the shared scheduler.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testStoreRunsOffTheScheduler() throws Exception {
+		final AtomicReference<String> thread = new AtomicReference<String>();
+		final CountDownLatch stored = new CountDownLatch(1);
+		CoalescingCommitter committer = new CoalescingCommitter(new Runnable() {
+			public void run() {
+				thread.set(Thread.currentThread().getName());
+				stored.countDown();
+			}
+		}, 10);
+		committer.request();
+		Assert.assertTrue(stored.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(thread.get(), thread.get().startsWith("llrp-worker"));
+	}
+	
+	@Test
+	public void testNoDelay() throws Exception {
+		AtomicInteger stores = new AtomicInteger(0);
+		CoalescingCommitter committer = new CoalescingCommitter(store(stores), 0);
+		committer.request();
+		committer.request();
+		Assert.assertEquals(2, stores.get());
+	}
+	
+	@Test
+	public void testBulkChange() throws Exception {
+		AtomicInteger stores = new AtomicInteger(0);
+		CoalescingCommitter committer = new CoalescingCommitter(store(stores), 0);
+		committer.begin();
+		committer.begin();
+		for (int i=0; i<100; i++) {
+			committer.request();
+		}
+		committer.end();
+		Assert.assertEquals(0, stores.get());
+		Assert.assertTrue(committer.isInBulk());
+		
+		committer.end();
+		Assert.assertEquals(1, stores.get());
+		Assert.assertFalse(committer.isInBulk());
+		
+		// nothing pending, nothing to store.
+		committer.flush();
+		Assert.assertEquals(1, stores.get());
+	}
+	
+	@Test
+	public void testFlush() throws Exception {
+		AtomicInteger stores = new AtomicInteger(0);
+		CoalescingCommitter committer = new CoalescingCommitter(store(stores), 60000);
+		committer.request();
+		committer.flush();
+		Assert.assertEquals(1, stores.get());
+		
+		committer.request();
+		committer.discard();
+		committer.flush();
+		Assert.assertEquals(1, stores.get());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testUnbalancedEnd() {
+		new CoalescingCommitter(store(new AtomicInteger()), 0).end();
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.HandlerRegistry;
+import org.fosstrak.llrp.client.MessageHandler;
+import org.junit.Test;
+import org.llrp.ltk.generated.messages.KEEPALIVE;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * test the copy-on-write handler registry.
+ * @author sawielan
+ *
+ */
+public class HandlerRegistryTest {
+	
+	@Test
+	public void testDispatch() {
+		HandlerRegistry registry = new HandlerRegistry();
+		RecordingHandler full = new RecordingHandler();
+		RecordingHandler report = new RecordingHandler();
+		RecordingHandler all = new RecordingHandler();
+		
+		registry.registerFullHandler(full);
+		registry.registerPartialHandler(report, RO_ACCESS_REPORT.class);
+		registry.registerPartialHandler(all, LLRPMessage.class);
+		// registered twice in the hierarchy, receives the message only once.
+		registry.registerPartialHandler(all, RO_ACCESS_REPORT.class);
+		
+		registry.dispatch("adaptor", "reader", new RO_ACCESS_REPORT());
+		registry.dispatch("adaptor", "reader", new KEEPALIVE());
+		
+		Assert.assertEquals(2, full.messages.size());
+		Assert.assertEquals(1, report.messages.size());
+		Assert.assertEquals(2, all.messages.size());
+		
+		// the resolved handlers are rebuilt upon changes.
+		Assert.assertTrue(registry.deregisterPartialHandler(all, LLRPMessage.class));
+		Assert.assertFalse(registry.deregisterPartialHandler(all, LLRPMessage.class));
+		registry.dispatch("adaptor", "reader", new KEEPALIVE());
+		registry.dispatch("adaptor", "reader", new RO_ACCESS_REPORT());
+		Assert.assertEquals(3, all.messages.size());
+		Assert.assertTrue(registry.hasPartialHandler(all, RO_ACCESS_REPORT.class));
+		Assert.assertFalse(registry.hasPartialHandler(all, LLRPMessage.class));
+		
+		registry.clear();
+		Assert.assertFalse(registry.hasFullHandler(full));
+		Assert.assertEquals(0, registry.getPartialHandlers(RO_ACCESS_REPORT.class).length);
+	}
+	
+	@Test
+	public void testInterfaces() {
+		HandlerRegistry registry = new HandlerRegistry();
+		RecordingHandler number = new RecordingHandler();
+		RecordingHandler comparable = new RecordingHandler();
+		registry.registerPartialHandler(number, Number.class);
+		registry.registerPartialHandler(comparable, Comparable.class);
+		
+		Assert.assertEquals(2, registry.getPartialHandlers(Integer.class).length);
+		Assert.assertEquals(1, registry.getPartialHandlers(String.class).length);
+		Assert.assertSame(comparable, registry.getPartialHandlers(String.class)[0]);
+		Assert.assertEquals(0, registry.getPartialHandlers(Object.class).length);
+	}
+	
+	@Test
+	public void testDeregisterWhileDispatching() {
+		final HandlerRegistry registry = new HandlerRegistry();
+		final RecordingHandler second = new RecordingHandler();
+		MessageHandler first = new MessageHandler() {
+			public void handle(String adaptorName, String readerName,
+					LLRPMessage message) {
+				// the running dispatch still sees the old snapshot.
+				registry.deregisterFullHandler(this);
+				registry.deregisterFullHandler(second);
+			}
+		};
+		registry.registerFullHandler(first);
+		registry.registerFullHandler(second);
+		
+		registry.dispatch("adaptor", "reader", new KEEPALIVE());
+		Assert.assertEquals(1, second.messages.size());
+		Assert.assertEquals(0, registry.getFullHandlers().length);
+	}
+	
+	/**
+	 * handler recording the received messages.
+	 */
+	private static class RecordingHandler implements MessageHandler {
+		
+		private final List<LLRPMessage> messages = new ArrayList<LLRPMessage> ();
+		
+		public void handle(String adaptorName, String readerName,
+				LLRPMessage message) {
+			messages.add(message);
+		}
+	}
+}
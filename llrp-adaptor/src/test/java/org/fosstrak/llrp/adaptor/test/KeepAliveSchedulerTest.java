@@ -0,0 +1,155 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.KeepAliveScheduler;
+import org.fosstrak.llrp.adaptor.metrics.MetricsRegistry;
+import org.fosstrak.llrp.adaptor.metrics.ReaderMetrics;
+import org.fosstrak.llrp.adaptor.util.HashedWheelTimer;
+import org.junit.Test;
+
+/**
+ * tests the {@link KeepAliveScheduler} and the underlying {@link HashedWheelTimer}.
+ * @author sawielan
+ *
+ */
+public class KeepAliveSchedulerTest {
+	
+	@Test
+	public void testTimer() throws Exception {
+		HashedWheelTimer timer = new HashedWheelTimer("test-timer", 10, TimeUnit.MILLISECONDS, 4, null);
+		final CountDownLatch fired = new CountDownLatch(1);
+		Runnable task = new Runnable() {
+			public void run() {
+				fired.countDown();
+			}
+		};
+		
+		// spans several rounds of the (small) wheel.
+		long start = System.nanoTime();
+		HashedWheelTimer.Timeout timeout = timer.newTimeout(task, 100, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(fired.await(2, TimeUnit.SECONDS));
+		Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+		Assert.assertTrue(timeout.isExpired());
+		
+		// a cancelled timeout never fires.
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		HashedWheelTimer.Timeout t2 = timer.newTimeout(new Runnable() {
+			public void run() {
+				cancelled.countDown();
+			}
+		}, 30, TimeUnit.MILLISECONDS);
+		Assert.assertTrue(t2.cancel());
+		Assert.assertFalse(cancelled.await(200, TimeUnit.MILLISECONDS));
+		Assert.assertFalse(t2.isExpired());
+		
+		timer.stop();
+	}
+	
+	@Test
+	public void testKeepAlive() throws Exception {
+		KeepAliveScheduler scheduler = KeepAliveScheduler.getInstance();
+		final CountDownLatch lost = new CountDownLatch(1);
+		long detections = scheduler.getNumDetections();
+		ReaderMetrics metrics = MetricsRegistry.getInstance().getReaderMetrics("keepalive", "reader");
+		
+		KeepAliveScheduler.Watch watch = scheduler.watch("reader", 300, new Runnable() {
+			public void run() {
+				lost.countDown();
+			}
+		}, metrics);
+		Assert.assertTrue(watch.isActive());
+		
+		// keep the reader alive for a while.
+		for (int i=0; i<6; i++) {
+			Thread.sleep(100);
+			watch.touch();
+		}
+		Assert.assertEquals(1, lost.getCount());
+		
+		// now stop the keep-alives.
+		Assert.assertTrue(lost.await(2, TimeUnit.SECONDS));
+		Assert.assertFalse(watch.isActive());
+		Assert.assertEquals(detections + 1, scheduler.getNumDetections());
+		Assert.assertTrue(scheduler.getLastDetectionLatency() <= 2 * KeepAliveScheduler.TICK_DURATION + 50);
+		
+		// the latency is published with the metrics of the reader.
+		Assert.assertEquals(1, metrics.getConnectionsLost());
+		Assert.assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(
+				MetricsRegistry.objectName(metrics), "ConnectionsLost"));
+		Assert.assertEquals(1, metrics.snapshot().getLostDetectionLatency().getCount());
+		MetricsRegistry.getInstance().remove("keepalive", "reader");
+		
+		// a cancelled watch does not report.
+		final CountDownLatch notLost = new CountDownLatch(1);
+		KeepAliveScheduler.Watch w2 = scheduler.watch("reader2", 100, new Runnable() {
+			public void run() {
+				notLost.countDown();
+			}
+		});
+		w2.cancel();
+		Assert.assertFalse(notLost.await(400, TimeUnit.MILLISECONDS));
+	}
+	
+	/**
+	 * cancelling watches while they expire counts every watch once.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testCancelWhileExpiring() throws Exception {
+		KeepAliveScheduler scheduler = KeepAliveScheduler.getInstance();
+		final int watches = scheduler.getNumWatches();
+		final AtomicInteger reported = new AtomicInteger(0);
+		Runnable onTimeout = new Runnable() {
+			public void run() {
+				reported.incrementAndGet();
+			}
+		};
+		List<KeepAliveScheduler.Watch> list = new ArrayList<KeepAliveScheduler.Watch> ();
+		for (int i=0; i<500; i++) {
+			list.add(scheduler.watch("reader" + i, 1, onTimeout));
+		}
+		Assert.assertEquals(watches + 500, scheduler.getNumWatches());
+		
+		// cancel (twice) around the first tick of the timer.
+		Thread.sleep(KeepAliveScheduler.TICK_DURATION - 10);
+		for (KeepAliveScheduler.Watch watch : list) {
+			watch.cancel();
+			watch.cancel();
+		}
+		Thread.sleep(3 * KeepAliveScheduler.TICK_DURATION);
+		Assert.assertEquals(watches, scheduler.getNumWatches());
+		for (KeepAliveScheduler.Watch watch : list) {
+			Assert.assertFalse(watch.isActive());
+		}
+		Assert.assertTrue(reported.get() <= 500);
+	}
+}
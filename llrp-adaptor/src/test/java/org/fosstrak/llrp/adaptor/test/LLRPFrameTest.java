@@ -0,0 +1,92 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.io.FileReader;
+import java.util.Arrays;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.LLRPFrame;
+import org.jdom.Document;
+import org.jdom.input.SAXBuilder;
+import org.junit.Test;
+import org.llrp.ltk.exceptions.InvalidLLRPMessageException;
+import org.llrp.ltk.generated.LLRPMessageFactory;
+import org.llrp.ltk.types.LLRPMessage;
+
+/**
+ * tests {@link LLRPFrame}.
+ * @author sawielan
+ *
+ */
+public class LLRPFrameTest {
+	
+	/**
+	 * the header fields are read from the frame, and the frame encodes to 
+	 * exactly the same bytes.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testHeader() throws Exception {
+		Document document = new SAXBuilder().build(new FileReader("src/test/config/getCapabilities.xml"));
+		LLRPMessage message = LLRPMessageFactory.createLLRPMessage(document);
+		byte[] binary = message.encodeBinary();
+		
+		LLRPFrame frame = new LLRPFrame(binary);
+		Assert.assertSame(binary, frame.getFrame());
+		Assert.assertEquals(message.getTypeNum().intValue(), frame.getTypeNum().intValue());
+		Assert.assertEquals(message.getMessageID().intValue(), frame.getMessageID().intValue());
+		Assert.assertEquals(binary.length, frame.getMessageLength().intValue());
+		Assert.assertEquals(message.getVersion().toString(), frame.getVersion().toString());
+		Assert.assertTrue(Arrays.equals(binary, frame.encodeBinary()));
+		
+		// the body is only decoded upon request.
+		Assert.assertEquals(message.getName(), frame.getName());
+		Assert.assertEquals(message.getClass(), frame.decode().getClass());
+	}
+	
+	/**
+	 * malformed headers are rejected.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testInvalidHeader() throws Exception {
+		assertInvalid(null);
+		assertInvalid(new byte[5]);
+		
+		// the length in the header is larger than the frame.
+		byte[] binary = new byte[] { 4, 1, 0, 0, 0, 12, 0, 0, 0, 1, 0 };
+		assertInvalid(binary);
+		binary[5] = 11;
+		Assert.assertEquals(11, new LLRPFrame(binary).getMessageLength().intValue());
+	}
+	
+	private void assertInvalid(byte[] binary) {
+		try {
+			new LLRPFrame(binary);
+			Assert.fail("frame accepted");
+		} catch (InvalidLLRPMessageException e) {
+			// expected.
+		}
+	}
+}
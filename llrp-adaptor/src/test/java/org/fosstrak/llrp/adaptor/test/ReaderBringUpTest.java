@@ -0,0 +1,139 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.fosstrak.llrp.adaptor.Reader;
+import org.fosstrak.llrp.adaptor.ReaderBringUp;
+import org.junit.Test;
+
+/**
+ * tests {@link ReaderBringUp}.
+ * @author sawielan
+ *
+ */
+public class ReaderBringUpTest {
+	
+	/**
+	 * creates a reader whose connect takes the given time.
+	 * @param name the name of the reader.
+	 * @param delay the duration of the connect in ms.
+	 * @param reachable whether the connect succeeds.
+	 * @param running counts the connects running concurrently.
+	 * @param maxRunning the largest number of concurrent connects.
+	 * @return the reader.
+	 * @throws Exception upon error...
+	 */
+	private Reader reader(String name, final long delay, boolean reachable, 
+			final AtomicInteger running, final AtomicInteger maxRunning) throws Exception {
+		
+		Reader reader = EasyMock.createNiceMock(Reader.class);
+		EasyMock.expect(reader.getReaderName()).andReturn(name).anyTimes();
+		reader.connect(true);
+		EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+			public Object answer() throws Throwable {
+				int now = running.incrementAndGet();
+				int max = maxRunning.get();
+				while ((now > max) && !maxRunning.compareAndSet(max, now)) {
+					max = maxRunning.get();
+				}
+				Thread.sleep(delay);
+				running.decrementAndGet();
+				return null;
+			}
+		});
+		EasyMock.expect(reader.isConnected()).andReturn(reachable).anyTimes();
+		EasyMock.replay(reader);
+		return reader;
+	}
+	
+	/**
+	 * the connects run concurrently, bounded by the parallelism.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testBoundedConcurrentBringUp() throws Exception {
+		AtomicInteger running = new AtomicInteger(0);
+		AtomicInteger maxRunning = new AtomicInteger(0);
+		ReaderBringUp bringUp = new ReaderBringUp(4, 1000);
+		for (int i=0; i<8; i++) {
+			bringUp.submit(reader("r" + i, 200, (i != 3), running, maxRunning), true);
+		}
+		Assert.assertEquals(8, bringUp.getTotal());
+		Assert.assertEquals(2000, bringUp.getWorstCaseDuration());
+		
+		long start = System.currentTimeMillis();
+		bringUp.start();
+		Assert.assertTrue(bringUp.await(5000));
+		long duration = System.currentTimeMillis() - start;
+		
+		// two rounds of four connects, not eight connects one after another.
+		Assert.assertTrue("took " + duration, duration < 8 * 200);
+		Assert.assertEquals(4, maxRunning.get());
+		Assert.assertEquals(7, bringUp.getConnected());
+		Assert.assertEquals(1, bringUp.getFailed());
+		Assert.assertEquals(0, bringUp.getPending());
+	}
+	
+	/**
+	 * a slow reader does not hold up the wait beyond the given timeout.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testAwaitTimeout() throws Exception {
+		AtomicInteger running = new AtomicInteger(0);
+		AtomicInteger maxRunning = new AtomicInteger(0);
+		ReaderBringUp bringUp = new ReaderBringUp(2, 1000);
+		bringUp.submit(reader("fast", 10, true, running, maxRunning), true);
+		bringUp.submit(reader("slow", 1000, true, running, maxRunning), true);
+		bringUp.start();
+		
+		Assert.assertFalse(bringUp.await(300));
+		Assert.assertEquals(1, bringUp.getConnected());
+		Assert.assertEquals(1, bringUp.getPending());
+		Assert.assertTrue(bringUp.await(5000));
+		Assert.assertEquals(2, bringUp.getConnected());
+	}
+	
+	/**
+	 * illegal parameters fall back to the defaults.
+	 */
+	@Test
+	public void testCreate() {
+		Map<String, Object> parameters = new HashMap<String, Object> ();
+		parameters.put(ReaderBringUp.KEY_PARALLELISM, "32");
+		parameters.put(ReaderBringUp.KEY_CONNECT_TIMEOUT, "-1");
+		ReaderBringUp bringUp = ReaderBringUp.create(parameters);
+		Assert.assertEquals(32, bringUp.getParallelism());
+		Assert.assertEquals(ReaderBringUp.DEFAULT_CONNECT_TIMEOUT, bringUp.getConnectTimeout());
+		
+		bringUp = ReaderBringUp.create(null);
+		Assert.assertEquals(ReaderBringUp.DEFAULT_PARALLELISM, bringUp.getParallelism());
+	}
+}
@@ -21,19 +21,32 @@
 
 package org.fosstrak.llrp.adaptor.test;
 
+import java.io.DataInputStream;
 import java.io.FileReader;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
 import org.fosstrak.llrp.adaptor.Adaptor;
 import org.fosstrak.llrp.adaptor.AdaptorImpl;
+import org.fosstrak.llrp.adaptor.LLRPFrame;
 import org.fosstrak.llrp.adaptor.Reader;
 import org.fosstrak.llrp.adaptor.ReaderImpl;
+import org.fosstrak.llrp.adaptor.ReaderQueueSettings;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
 import org.jdom.Document;
 import org.jdom.input.SAXBuilder;
 import org.junit.Test;
 import org.llrp.ltk.generated.LLRPMessageFactory;
 import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.UnsignedInteger;
 
 import util.test.AsyncNotif;
 
@@ -63,6 +76,53 @@ public class ReaderTest {
 		Assert.assertEquals(1234, reader.getPort());
 	}
 	
+	@Test
+	public void testQueueSettings() throws Exception {
+		try {
+			Map<String, Object> parameters = new HashMap<String, Object> ();
+			parameters.put(ReaderQueueSettings.KEY_IN_QUEUE_CAPACITY, "512");
+			parameters.put(ReaderQueueSettings.KEY_OVERFLOW_POLICY, "DROP_OLDEST");
+			// illegal values are ignored.
+			parameters.put(ReaderQueueSettings.KEY_OUT_QUEUE_CAPACITY, "-1");
+			ReaderQueueSettings.configure(parameters);
+			
+			// the adaptor creates the reader with its own settings.
+			ReaderQueueSettings settings = new ReaderQueueSettings();
+			settings.setOutQueueCapacity(16);
+			settings.setWaitStrategy(WaitStrategy.YIELD);
+			AdaptorImpl adaptor = new AdaptorImpl(adaptorName);
+			adaptor.define(readerName, readerAddress, readerPort, false, false, settings);
+			ReaderImpl reader = (ReaderImpl) adaptor.getReader(readerName);
+			RingBufferQueue<LLRPMessage> in = (RingBufferQueue<LLRPMessage>) reader.getInQueue();
+			RingBufferQueue<LLRPMessage> out = (RingBufferQueue<LLRPMessage>) reader.getOutQueue();
+			Assert.assertEquals(512, in.capacity());
+			Assert.assertEquals(16, out.capacity());
+			Assert.assertEquals(OverflowPolicy.DROP_OLDEST, in.getOverflowPolicy());
+			Assert.assertEquals(WaitStrategy.YIELD, out.getWaitStrategy());
+			Assert.assertEquals(Integer.valueOf(16), reader.getQueueSettings().getOutQueueCapacity());
+			
+			// a reader of the same name on another adaptor uses the defaults.
+			AdaptorImpl other = new AdaptorImpl("otherAdaptor");
+			other.define(readerName, readerAddress, readerPort, false, false);
+			reader = (ReaderImpl) other.getReader(readerName);
+			Assert.assertNull(reader.getQueueSettings());
+			Assert.assertEquals(ReaderImpl.DEFAULT_OUT_QUEUE_CAPACITY, reader.getOutQueue().capacity());
+			Assert.assertEquals(WaitStrategy.PARK, 
+					((RingBufferQueue<LLRPMessage>) reader.getOutQueue()).getWaitStrategy());
+			
+			// a redefined reader does not keep the settings of its predecessor.
+			adaptor.undefine(readerName);
+			adaptor.define(readerName, readerAddress, readerPort, false, false);
+			reader = (ReaderImpl) adaptor.getReader(readerName);
+			Assert.assertNull(reader.getQueueSettings());
+			Assert.assertEquals(ReaderImpl.DEFAULT_OUT_QUEUE_CAPACITY, reader.getOutQueue().capacity());
+		} finally {
+			ReaderQueueSettings.reset();
+		}
+		Assert.assertEquals(ReaderImpl.DEFAULT_IN_QUEUE_CAPACITY, 
+				new ReaderImpl(null, readerName, readerAddress).getInQueue().capacity());
+	}
+	
 	@Test
 	public void testAsynchronousNotification() throws Exception {
 		AsyncNotif notif = new AsyncNotif(false);
@@ -102,4 +162,50 @@ public class ReaderTest {
 		Assert.assertNull(notif.asyncNotifReaderName);
 		reader.disconnect();
 	}
+	
+	/**
+	 * binary encoded messages are written onto the wire as they are, message 
+	 * objects are encoded once. both keep their order.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testSend() throws Exception {
+		final int port = readerPort + 1;
+		Adaptor adaptor = new AdaptorImpl(adaptorName);
+		ReaderImpl reader = new ReaderImpl(adaptor, readerName, readerAddress, port);
+		reader.connect(false);
+		
+		// act as the physical reader.
+		Socket socket = new Socket(readerAddress, port);
+		socket.setSoTimeout(5000);
+		// wait for the acceptor to open the session.
+		Thread.sleep(1000);
+		try {
+			Document document = new SAXBuilder().build(new FileReader("src/test/config/getCapabilities.xml"));
+			LLRPMessage message = LLRPMessageFactory.createLLRPMessage(document);
+			message.setMessageID(new UnsignedInteger(77));
+			byte[] binary = message.encodeBinary();
+			reader.send(binary);
+			message.setMessageID(new UnsignedInteger(78));
+			reader.send(message);
+			
+			DataInputStream in = new DataInputStream(socket.getInputStream());
+			byte[] received = new byte[binary.length];
+			in.readFully(received);
+			Assert.assertTrue(Arrays.equals(binary, received));
+			in.readFully(received);
+			Assert.assertEquals(78, new LLRPFrame(received).getMessageID().intValue());
+			
+			// the future is completed once the message is written.
+			message.setMessageID(new UnsignedInteger(79));
+			SendFuture future = new SendFuture();
+			reader.send(message, future);
+			Assert.assertNull(future.get(5000, TimeUnit.MILLISECONDS));
+			in.readFully(received);
+			Assert.assertEquals(79, new LLRPFrame(received).getMessageID().intValue());
+		} finally {
+			socket.close();
+			reader.disconnect();
+		}
+	}
 }
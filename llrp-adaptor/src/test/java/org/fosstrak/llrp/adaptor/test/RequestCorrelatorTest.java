@@ -0,0 +1,187 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.RequestCorrelator;
+import org.fosstrak.llrp.adaptor.ResponseFuture;
+import org.fosstrak.llrp.adaptor.queue.SendFuture;
+import org.junit.Test;
+import org.llrp.ltk.generated.messages.GET_READER_CAPABILITIES;
+import org.llrp.ltk.generated.messages.GET_READER_CAPABILITIES_RESPONSE;
+import org.llrp.ltk.generated.messages.GET_READER_CONFIG_RESPONSE;
+import org.llrp.ltk.types.LLRPMessage;
+import org.llrp.ltk.types.UnsignedInteger;
+
+/**
+ * tests the {@link RequestCorrelator}.
+ * @author sawielan
+ *
+ */
+public class RequestCorrelatorTest {
+	
+	/**
+	 * a correlator without management that does not send but completes the 
+	 * sending immediately.
+	 */
+	private static class TestCorrelator extends RequestCorrelator {
+		
+		/** whether the sending fails. */
+		private boolean fail = false;
+		
+		public TestCorrelator(int maxOutstanding, long timeout) {
+			super(null, maxOutstanding, timeout);
+		}
+		
+		@Override
+		protected SendFuture send(String adaptorName, String readerName, LLRPMessage request) {
+			SendFuture future = new SendFuture();
+			if (fail) {
+				future.fail(new Exception("MOCK EXCEPTION"));
+			} else {
+				future.complete();
+			}
+			return future;
+		}
+	}
+	
+	/**
+	 * creates a response with the given message ID.
+	 * @param messageID the message ID.
+	 * @return the response.
+	 */
+	private LLRPMessage response(long messageID) {
+		LLRPMessage response = new GET_READER_CAPABILITIES_RESPONSE();
+		response.setMessageID(new UnsignedInteger(messageID));
+		return response;
+	}
+	
+	/**
+	 * responses complete the request with the same message ID.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testCorrelation() throws Exception {
+		TestCorrelator correlator = new TestCorrelator(8, 10000);
+		ResponseFuture f1 = correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		ResponseFuture f2 = correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		Assert.assertTrue(f1.getMessageID() != f2.getMessageID());
+		Assert.assertEquals(2, correlator.getOutstanding("adaptor", "reader"));
+		
+		// other readers, other message IDs and other message types are ignored.
+		correlator.handle("adaptor", "other", response(f2.getMessageID()));
+		correlator.handle("adaptor", "reader", response(f2.getMessageID() + 100));
+		LLRPMessage wrongType = new GET_READER_CONFIG_RESPONSE();
+		wrongType.setMessageID(new UnsignedInteger(f2.getMessageID()));
+		correlator.handle("adaptor", "reader", wrongType);
+		Assert.assertFalse(f2.isDone());
+		
+		LLRPMessage r2 = response(f2.getMessageID());
+		correlator.handle("adaptor", "reader", r2);
+		Assert.assertTrue(f2.isDone());
+		Assert.assertSame(r2, f2.get(1, TimeUnit.SECONDS));
+		Assert.assertFalse(f1.isDone());
+		
+		LLRPMessage r1 = response(f1.getMessageID());
+		correlator.handle("adaptor", "reader", r1);
+		Assert.assertSame(r1, f1.get(1, TimeUnit.SECONDS));
+		
+		Assert.assertEquals(0, correlator.getOutstanding());
+		Assert.assertEquals(2, correlator.getRoundTripLatency().getCount());
+		Assert.assertTrue(f1.getRoundTripNanos() >= 0);
+	}
+	
+	/**
+	 * responses to messages sent past the correlator do not complete a 
+	 * pending request, even with the same message ID and type.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testForeignResponse() throws Exception {
+		TestCorrelator correlator = new TestCorrelator(8, 10000);
+		ResponseFuture future = correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		Assert.assertEquals(RequestCorrelator.ID_TAG, future.getMessageID() & RequestCorrelator.ID_TAG);
+		
+		// a message sent by the GUI or from a template with the untagged ID.
+		long foreignID = future.getMessageID() & ~RequestCorrelator.ID_TAG;
+		correlator.handle("adaptor", "reader", response(foreignID));
+		correlator.handle("adaptor", "reader", response(1));
+		Assert.assertFalse(future.isDone());
+		Assert.assertEquals(1, correlator.getOutstanding("adaptor", "reader"));
+		
+		LLRPMessage answer = response(future.getMessageID());
+		correlator.handle("adaptor", "reader", answer);
+		Assert.assertSame(answer, future.get(1, TimeUnit.SECONDS));
+	}
+	
+	/**
+	 * the number of outstanding requests per reader is bounded.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testMaxOutstanding() throws Exception {
+		TestCorrelator correlator = new TestCorrelator(2, 10000);
+		ResponseFuture f1 = correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		ResponseFuture rejected = correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		Assert.assertTrue(rejected.isFailed());
+		
+		// another reader has its own limit.
+		Assert.assertFalse(correlator.request("adaptor", "other", new GET_READER_CAPABILITIES()).isDone());
+		
+		// a cancelled request frees its slot.
+		Assert.assertTrue(f1.cancel(false));
+		Assert.assertTrue(f1.isCancelled());
+		Assert.assertFalse(correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES()).isDone());
+		Assert.assertEquals(2, correlator.getOutstanding("adaptor", "reader"));
+	}
+	
+	/**
+	 * requests without response and requests that could not be sent fail.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testFailure() throws Exception {
+		TestCorrelator correlator = new TestCorrelator(8, 50);
+		ResponseFuture timedOut = correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		try {
+			timedOut.get(5, TimeUnit.SECONDS);
+			Assert.fail("request did not time out");
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		
+		correlator.fail = true;
+		ResponseFuture notSent = correlator.request("adaptor", "reader", new GET_READER_CAPABILITIES());
+		Assert.assertTrue(notSent.isFailed());
+		Assert.assertEquals(0, correlator.getOutstanding());
+		
+		// a late response is ignored.
+		correlator.handle("adaptor", "reader", response(timedOut.getMessageID()));
+		Assert.assertEquals(0, correlator.getRoundTripLatency().getCount());
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.WaitStrategy;
+import org.fosstrak.llrp.adaptor.util.SerialQueueWorker;
+import org.junit.Test;
+
+/**
+ * tests {@link SerialQueueWorker}.
+ * @author sawielan
+ *
+ */
+public class SerialQueueWorkerTest {
+	
+	/**
+	 * several workers share a small pool. each worker must process its 
+	 * elements in order and never concurrently.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testOrderAndExclusiveExecution() throws Exception {
+		final int numWorkers = 8;
+		final int perWorker = 2000;
+		ExecutorService pool = Executors.newFixedThreadPool(3);
+		final CountDownLatch done = new CountDownLatch(numWorkers * perWorker);
+		final AtomicInteger violations = new AtomicInteger(0);
+		
+		SerialQueueWorker<?>[] workers = new SerialQueueWorker<?>[numWorkers];
+		for (int w=0; w<numWorkers; w++) {
+			workers[w] = new SerialQueueWorker<Integer>(
+					new RingBufferQueue<Integer>(perWorker, OverflowPolicy.BLOCK, WaitStrategy.YIELD), pool, 16) {
+				
+				private int expected = 0;
+				private final AtomicInteger active = new AtomicInteger(0);
+				
+				@Override
+				protected void process(Integer element) {
+					if (active.incrementAndGet() != 1) {
+						violations.incrementAndGet();
+					}
+					if (element.intValue() != expected++) {
+						violations.incrementAndGet();
+					}
+					active.decrementAndGet();
+					done.countDown();
+				}
+			};
+		}
+		
+		for (int i=0; i<perWorker; i++) {
+			for (int w=0; w<numWorkers; w++) {
+				@SuppressWarnings("unchecked")
+				SerialQueueWorker<Integer> worker = (SerialQueueWorker<Integer>) workers[w];
+				Assert.assertTrue(worker.offer(i));
+			}
+		}
+		
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(0, violations.get());
+		pool.shutdown();
+	}
+	
+	/**
+	 * a stopped worker keeps the elements in the queue.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testStop() throws Exception {
+		final AtomicInteger processed = new AtomicInteger(0);
+		RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>();
+		SerialQueueWorker<Integer> worker = new SerialQueueWorker<Integer>(queue) {
+			@Override
+			protected void process(Integer element) {
+				processed.incrementAndGet();
+			}
+		};
+		worker.stop();
+		worker.offer(1);
+		Assert.assertEquals(1, queue.size());
+		Assert.assertEquals(0, processed.get());
+		
+		// now the worker runs on the shared executor.
+		worker.start();
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((processed.get() == 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(1, processed.get());
+		Assert.assertTrue(queue.isEmpty());
+	}
+}
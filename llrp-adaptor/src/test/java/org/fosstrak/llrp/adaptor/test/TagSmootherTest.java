@@ -0,0 +1,131 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.HandlerRegistry;
+import org.fosstrak.llrp.adaptor.TagSmoother;
+import org.fosstrak.llrp.client.MessageHandler;
+import org.junit.Test;
+import org.llrp.ltk.generated.messages.KEEPALIVE;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.types.LLRPMessage;
+
+import util.test.TagReports;
+
+/**
+ * tests the {@link TagSmoother}.
+ * @author sawielan
+ *
+ */
+public class TagSmootherTest {
+	
+	/**
+	 * records the dispatched messages.
+	 */
+	private static class RecordingHandler implements MessageHandler {
+		
+		private final List<LLRPMessage> messages = new CopyOnWriteArrayList<LLRPMessage> ();
+		
+		public void handle(String adaptorName, String readerName, LLRPMessage message) {
+			messages.add(message);
+		}
+	}
+	
+	/**
+	 * repeated sightings on the same antenna are merged.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testMerge() throws Exception {
+		HandlerRegistry registry = new HandlerRegistry();
+		RecordingHandler handler = new RecordingHandler();
+		registry.registerFullHandler(handler);
+		TagSmoother smoother = new TagSmoother(registry);
+		smoother.setWindow(60000);
+		
+		final String epc = "300833B2DDD9014000000001";
+		smoother.dispatch("adaptor", "reader", TagReports.report(epc, 1, -60, 1000));
+		smoother.dispatch("adaptor", "reader", TagReports.report(epc, 1, -50, 3000));
+		smoother.dispatch("adaptor", "reader", TagReports.report(epc, 1, -70, 2000));
+		smoother.dispatch("adaptor", "reader", TagReports.report(epc, 2, -40, 2500));
+		smoother.dispatch("adaptor", "reader", new KEEPALIVE());
+		
+		// only the keep alive passed.
+		Assert.assertEquals(1, handler.messages.size());
+		Assert.assertEquals(2, smoother.getOpenWindows());
+		Assert.assertEquals(4, smoother.getMergedCount());
+		
+		smoother.flush(true);
+		Assert.assertEquals(2, handler.messages.size());
+		List<TagReportData> tags = ((RO_ACCESS_REPORT) handler.messages.get(1)).getTagReportDataList();
+		Assert.assertEquals(2, tags.size());
+		TagReportData merged = tags.get(0);
+		Assert.assertEquals(1, merged.getAntennaID().getAntennaID().intValue());
+		Assert.assertEquals(3, merged.getTagSeenCount().getTagCount().intValue());
+		Assert.assertEquals(-50, merged.getPeakRSSI().getPeakRSSI().toByte());
+		Assert.assertEquals(1000, merged.getFirstSeenTimestampUTC().getMicroseconds().toLong());
+		Assert.assertEquals(3000, merged.getLastSeenTimestampUTC().getMicroseconds().toLong());
+		Assert.assertEquals(1, tags.get(1).getTagSeenCount().getTagCount().intValue());
+		Assert.assertEquals(0, smoother.getOpenWindows());
+		Assert.assertEquals(2, smoother.getEmittedCount());
+		
+		// the merged report encodes.
+		Assert.assertTrue(handler.messages.get(1).encodeBinary().length > 0);
+	}
+	
+	/**
+	 * the windows are dispatched once expired, a full smoother passes the 
+	 * tags through and a window of 0 disables the smoothing.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testExpiry() throws Exception {
+		HandlerRegistry registry = new HandlerRegistry();
+		RecordingHandler handler = new RecordingHandler();
+		registry.registerFullHandler(handler);
+		TagSmoother smoother = new TagSmoother(registry);
+		smoother.setWindow(50);
+		smoother.setMaxTags(1);
+		
+		smoother.dispatch("adaptor", "reader", TagReports.report("300833B2DDD9014000000001", 1, -60, 1000));
+		smoother.dispatch("adaptor", "reader", TagReports.report("300833B2DDD9014000000002", 1, -60, 1000));
+		Assert.assertEquals(1, handler.messages.size());
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((handler.messages.size() < 2) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, handler.messages.size());
+		Assert.assertEquals(0, smoother.getOpenWindows());
+		
+		smoother.setWindow(0);
+		smoother.dispatch("adaptor", "reader", TagReports.report("300833B2DDD9014000000001", 1, -60, 1000));
+		Assert.assertEquals(3, handler.messages.size());
+		smoother.stop();
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.adaptor.test;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.TagState;
+import org.fosstrak.llrp.adaptor.TagStateIndex;
+import org.fosstrak.llrp.adaptor.epc.EPC;
+import org.junit.Test;
+import org.llrp.ltk.generated.messages.KEEPALIVE;
+
+import util.test.TagReports;
+
+/**
+ * tests the {@link TagStateIndex}.
+ * @author sawielan
+ *
+ */
+public class TagStateIndexTest {
+	
+	/**
+	 * point, prefix and reader lookups follow the tags.
+	 */
+	@Test
+	public void testLookup() {
+		TagStateIndex index = new TagStateIndex(null);
+		final String a = "300833b2ddd9014000000001";
+		final String b = "300833b2ddd9014000000002";
+		final String c = "350833b2ddd9014000000001";
+		index.handle("adaptor", "dock", TagReports.report(a, 1, -60, 1000));
+		index.handle("adaptor", "dock", TagReports.report(b, 2, -50, 1000));
+		index.handle("adaptor", "gate", TagReports.report(c, 1, -40, 1000));
+		index.handle("adaptor", "gate", new KEEPALIVE());
+		Assert.assertEquals(3, index.size());
+		
+		TagState state = index.get(EPC.parse(b));
+		Assert.assertEquals("dock", state.getReaderName());
+		Assert.assertEquals(2, state.getAntenna());
+		Assert.assertEquals(-50, state.getPeakRSSI());
+		Assert.assertEquals(1000, state.getLastSeen());
+		Assert.assertNull(index.get(EPC.parse("300833b2ddd9014000000003")));
+		
+		// the tag moves to the gate, an older sighting is ignored.
+		index.handle("adaptor", "gate", TagReports.report(a, 3, -55, 2000));
+		index.handle("adaptor", "dock", TagReports.report(a, 1, -60, 1500));
+		Assert.assertEquals("gate", index.get(EPC.parse(a)).getReaderName());
+		Assert.assertEquals(1, index.getTags("adaptor", "dock").size());
+		Assert.assertTrue(index.getTags("adaptor", "dock").contains(EPC.parse(b)));
+		Assert.assertEquals(2, index.getTags("adaptor", "gate").size());
+		Assert.assertTrue(index.getTags("adaptor", "nowhere").isEmpty());
+		
+		List<TagState> found = index.findByPrefix("300833B2", 10);
+		Assert.assertEquals(2, found.size());
+		Assert.assertEquals(EPC.parse(a), found.get(0).getEPC());
+		Assert.assertEquals(EPC.parse(b), found.get(1).getEPC());
+		Assert.assertEquals(1, index.findByPrefix("300833B2", 1).size());
+		Assert.assertEquals(3, index.findByPrefix("", 10).size());
+		Assert.assertEquals(1, index.findByPrefix(c, 10).size());
+		Assert.assertTrue(index.findByPrefix("31", 10).isEmpty());
+	}
+	
+	/**
+	 * the least recently seen tags are evicted beyond the maximum, tags 
+	 * expire after the time to live.
+	 * @throws Exception upon error...
+	 */
+	@Test
+	public void testEviction() throws Exception {
+		TagStateIndex index = new TagStateIndex(null, 2, 1600);
+		index.handle("adaptor", "dock", TagReports.report("300833b2ddd9014000000001", 1, -60, 1000));
+		Thread.sleep(index.getTTL() / 16 + 10);
+		index.handle("adaptor", "dock", TagReports.report("300833b2ddd9014000000002", 1, -60, 1000));
+		index.handle("adaptor", "dock", TagReports.report("300833b2ddd9014000000003", 1, -60, 1000));
+		Assert.assertEquals(2, index.size());
+		Assert.assertEquals(1, index.getEvictionCount());
+		Assert.assertNull(index.get(EPC.parse("300833b2ddd9014000000001")));
+		Assert.assertEquals(2, index.getTags("adaptor", "dock").size());
+		
+		index = new TagStateIndex(null, 10, 100);
+		index.start();
+		index.handle("adaptor", "dock", TagReports.report("300833b2ddd9014000000001", 1, -60, 1000));
+		Assert.assertNotNull(index.get(EPC.parse("300833b2ddd9014000000001")));
+		long deadline = System.currentTimeMillis() + 5000;
+		while ((index.size() > 0) && (System.currentTimeMillis() < deadline)) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(0, index.size());
+		Assert.assertNull(index.get(EPC.parse("300833b2ddd9014000000001")));
+		Assert.assertTrue(index.getTags("adaptor", "dock").isEmpty());
+		index.stop();
+	}
+}
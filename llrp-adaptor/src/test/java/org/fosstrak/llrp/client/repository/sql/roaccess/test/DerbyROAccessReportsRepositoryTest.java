@@ -0,0 +1,361 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.client.repository.sql.roaccess.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.client.LLRPMessageItem;
+import org.fosstrak.llrp.client.ROAccessReportsRepository;
+import org.fosstrak.llrp.client.RepositoryFactory;
+import org.fosstrak.llrp.client.repository.WriteBehindRepository;
+import org.fosstrak.llrp.client.repository.sql.AbstractSQLRepository;
+import org.fosstrak.llrp.client.repository.sql.DerbyRepository;
+import org.fosstrak.llrp.client.repository.sql.roaccess.AbstractSQLROAccessReportsRepository;
+import org.fosstrak.llrp.client.repository.sql.roaccess.DerbyROAccessReportsRepository;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItem;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItemVisitor;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.AntennaID;
+import org.llrp.ltk.generated.parameters.EPC_96;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.types.Integer96_HEX;
+import org.llrp.ltk.types.UnsignedShort;
+
+/**
+ * tests the scans over the derby RO_ACCESS_REPORTS repository.
+ * @author sawielan
+ *
+ */
+public class DerbyROAccessReportsRepositoryTest {
+	
+	private static final String EPC = "3069c336d2797f9802345b";
+	
+	// the directory holding the test database.
+	private File dir;
+	
+	// the repository owning the RO_ACCESS_REPORTS repository.
+	private DerbyRepository repo;
+	
+	// the repository under test.
+	private ROAccessReportsRepository roAccess;
+	
+	/**
+	 * RO_ACCESS_REPORTS repository logging with a given time.
+	 */
+	private static class ClockedRepository extends DerbyROAccessReportsRepository {
+		
+		// the log time.
+		private long now;
+		
+		@Override
+		protected long currentTime() {
+			return now;
+		}
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("llrp", "roaccess");
+		dir.delete();
+		dir.mkdirs();
+		open(false);
+	}
+	
+	private void open(boolean partitioned) throws Exception {
+		open(partitioned, AbstractSQLROAccessReportsRepository.DEFAULT_BATCH_SIZE);
+	}
+	
+	private void open(boolean partitioned, int batchSize) throws Exception {
+		if (null != repo) {
+			repo.close();
+		}
+		Map<String, String> args = new HashMap<String, String> ();
+		args.put(RepositoryFactory.ARG_USERNAME, "llrp");
+		args.put(RepositoryFactory.ARG_PASSWRD, "llrp");
+		args.put(RepositoryFactory.ARG_JDBC_STRING, "");
+		args.put(RepositoryFactory.ARG_LOG_RO_ACCESS_REPORT, 
+				Boolean.toString(!partitioned));
+		args.put(RepositoryFactory.ARG_RO_ACCESS_PARTITIONED, 
+				Boolean.toString(partitioned));
+		args.put(RepositoryFactory.ARG_RO_ACCESS_RETENTION_DAYS, "2");
+		args.put(RepositoryFactory.ARG_RO_ACCESS_BATCH_SIZE, Integer.toString(batchSize));
+		args.put(RepositoryFactory.ARG_RO_ACCESS_BATCH_LINGER, "60000");
+		args.put(DerbyRepository.ARG_REPO_LOCATION, 
+				dir.getAbsolutePath() + File.separator);
+		repo = new DerbyRepository();
+		repo.initialize(args);
+		roAccess = repo.getROAccessRepository();
+	}
+	
+	private ClockedRepository clocked(long now) throws Exception {
+		ClockedRepository clocked = new ClockedRepository();
+		clocked.now = now;
+		clocked.initialize(repo);
+		roAccess = clocked;
+		return clocked;
+	}
+	
+	private void report(ClockedRepository clocked, long now, int tags) {
+		clocked.now = now;
+		RO_ACCESS_REPORT report = new RO_ACCESS_REPORT();
+		for (int i=0; i<tags; i++) {
+			report.addToTagReportDataList(tag(i, 1));
+		}
+		clocked.handle("adapter", "reader", report);
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		repo.close();
+		try {
+			DriverManager.getConnection("jdbc:derby:" + dir.getAbsolutePath() + 
+					File.separator + AbstractSQLRepository.DB_NAME + 
+					";shutdown=true");
+		} catch (SQLException e) {
+			// derby reports a successful shutdown by an exception.
+		}
+		delete(dir);
+	}
+	
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (null != children) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+	
+	private TagReportData tag(int id, int antenna) {
+		TagReportData tag = new TagReportData();
+		EPC_96 epc = new EPC_96();
+		epc.setEPC(new Integer96_HEX(String.format("%s%02x", EPC, id)));
+		tag.setEPCParameter(epc);
+		AntennaID antennaID = new AntennaID();
+		antennaID.setAntennaID(new UnsignedShort(antenna));
+		tag.setAntennaID(antennaID);
+		return tag;
+	}
+	
+	private int count(ROAccessQuery query) throws Exception {
+		return roAccess.visit(query, new ROAccessItemVisitor() {
+			public boolean visit(ROAccessItem item) {
+				return true;
+			}
+		});
+	}
+	
+	@Test
+	public void testVisit() throws Exception {
+		Timestamp before = new Timestamp(System.currentTimeMillis() - 1);
+		for (int r=0; r<2; r++) {
+			RO_ACCESS_REPORT report = new RO_ACCESS_REPORT();
+			for (int i=0; i<10; i++) {
+				report.addToTagReportDataList(tag(i, 1 + (i % 2)));
+			}
+			roAccess.handle("adapter", "reader" + r, report);
+		}
+		
+		ROAccessQuery query = new ROAccessQuery();
+		query.setFetchSize(3);
+		Assert.assertEquals(20, count(query));
+		
+		query.setReaderName("reader1");
+		Assert.assertEquals(10, count(query));
+		
+		query.setAntennaID(2);
+		Assert.assertEquals(5, count(query));
+		
+		query.setAntennaID(null);
+		query.setEpc(String.format("%s%02x", EPC, 4));
+		final int[] seen = new int[1];
+		Assert.assertEquals(1, roAccess.visit(query, new ROAccessItemVisitor() {
+			public boolean visit(ROAccessItem item) {
+				Assert.assertEquals("reader1", item.getReaderName().trim());
+				Assert.assertEquals(Integer.valueOf(1), item.getAntennaID());
+				seen[0]++;
+				return true;
+			}
+		}));
+		Assert.assertEquals(1, seen[0]);
+		
+		query = new ROAccessQuery();
+		query.setAdapterName("other");
+		Assert.assertEquals(0, count(query));
+		
+		query = new ROAccessQuery();
+		query.setFrom(before);
+		query.setTo(new Timestamp(System.currentTimeMillis() + 1000));
+		Assert.assertEquals(20, count(query));
+		query.setFrom(new Timestamp(System.currentTimeMillis() + 1000));
+		query.setTo(null);
+		Assert.assertEquals(0, count(query));
+		
+		// the visitor stops the scan.
+		Assert.assertEquals(5, roAccess.visit(new ROAccessQuery(), 
+				new ROAccessItemVisitor() {
+			int n = 0;
+			public boolean visit(ROAccessItem item) {
+				return ++n < 5;
+			}
+		}));
+		
+		// the connection is usable after the scan.
+		Assert.assertEquals(20, count(new ROAccessQuery()));
+	}
+	
+	/**
+	 * a report failing in the middle of a write-behind group must not roll 
+	 * back the messages written in the same group.
+	 */
+	@Test
+	public void testWriteBehindGroupWithFailingReport() throws Exception {
+		WriteBehindRepository writeBehind = new WriteBehindRepository(repo, 64, 
+				OverflowPolicy.BLOCK, 64);
+		ROAccessReportsRepository ro = writeBehind.getROAccessRepository();
+		
+		LLRPMessageItem first = new LLRPMessageItem();
+		first.setAdapter("adapter");
+		first.setReader("reader");
+		first.setTime(new Timestamp(System.currentTimeMillis()));
+		LLRPMessageItem second = new LLRPMessageItem();
+		second.setAdapter("adapter");
+		second.setReader("reader");
+		second.setTime(new Timestamp(System.currentTimeMillis()));
+		
+		RO_ACCESS_REPORT bad = new RO_ACCESS_REPORT();
+		bad.addToTagReportDataList(tag(1, 1));
+		StringBuilder longName = new StringBuilder();
+		for (int i=0; i<100; i++) {
+			longName.append('r');
+		}
+		RO_ACCESS_REPORT good = new RO_ACCESS_REPORT();
+		good.addToTagReportDataList(tag(2, 1));
+		
+		// hold the connection while the writer is busy with the first 
+		// message, so the rest is written as one group.
+		Connection conn = repo.getDBConnection();
+		synchronized (conn) {
+			writeBehind.put(first);
+			long deadline = System.currentTimeMillis() + 5000;
+			while ((writeBehind.getQueueSize() > 0) && (System.currentTimeMillis() < deadline)) {
+				Thread.sleep(1);
+			}
+			Thread.sleep(50);
+			writeBehind.put(second);
+			// the reader name exceeds the column.
+			ro.handle("adapter", longName.toString(), bad);
+			ro.handle("adapter", "reader", good);
+		}
+		Assert.assertTrue(writeBehind.flush(5000));
+		
+		// an unknown id returns an empty item with a fresh id.
+		Assert.assertEquals(first.getId(), repo.get(first.getId()).getId().trim());
+		Assert.assertEquals(second.getId(), repo.get(second.getId()).getId().trim());
+		Assert.assertEquals(2, repo.count("adapter", "reader"));
+		Assert.assertEquals(1, count(new ROAccessQuery()));
+	}
+	
+	@Test
+	public void testClearDropsPendingRows() throws Exception {
+		open(false, 100);
+		RO_ACCESS_REPORT report = new RO_ACCESS_REPORT();
+		for (int i=0; i<10; i++) {
+			report.addToTagReportDataList(tag(i, 1));
+		}
+		roAccess.handle("adapter", "reader", report);
+		
+		// the rows are still pending, the clear discards them.
+		roAccess.clear();
+		((AbstractSQLROAccessReportsRepository) roAccess).flush();
+		Assert.assertEquals(0, count(new ROAccessQuery()));
+		
+		report = new RO_ACCESS_REPORT();
+		report.addToTagReportDataList(tag(1, 1));
+		roAccess.handle("adapter", "reader", report);
+		Assert.assertEquals(1, count(new ROAccessQuery()));
+	}
+	
+	@Test
+	public void testPartitions() throws Exception {
+		open(true);
+		// 2008-12-29 12:00 UTC.
+		final long day = AbstractSQLROAccessReportsRepository.PARTITION_LENGTH;
+		final long start = 14242L * day + day / 2;
+		ClockedRepository clocked = clocked(start);
+		Assert.assertTrue(clocked.getPartitions().isEmpty());
+		
+		report(clocked, start, 3);
+		report(clocked, start + day, 2);
+		report(clocked, start + day + 1000, 1);
+		Assert.assertEquals(2, clocked.getPartitions().size());
+		Assert.assertEquals(
+				AbstractSQLROAccessReportsRepository.TABLE_RO_ACCESS_REPORTS + 
+				"_20081229", clocked.getPartitions().get(0));
+		Assert.assertEquals(6, count(new ROAccessQuery()));
+		
+		// the time range selects the partitions.
+		ROAccessQuery query = new ROAccessQuery();
+		query.setFrom(new Timestamp(start + day / 2));
+		Assert.assertEquals(3, count(query));
+		query.setTo(new Timestamp(start + day + 500));
+		Assert.assertEquals(2, count(query));
+		query.setFrom(null);
+		query.setTo(new Timestamp(start + day / 2));
+		Assert.assertEquals(3, count(query));
+		
+		// a new instance finds the partitions in the database.
+		Assert.assertEquals(clocked.getPartitions(), 
+				clocked(start + day).getPartitions());
+		
+		// the partition of a new day drops the days beyond the retention.
+		clocked = clocked(start + day);
+		report(clocked, start + 3 * day, 4);
+		Assert.assertEquals(2, clocked.getPartitions().size());
+		Assert.assertEquals(
+				AbstractSQLROAccessReportsRepository.TABLE_RO_ACCESS_REPORTS + 
+				"_20081230", clocked.getPartitions().get(0));
+		Assert.assertEquals(7, count(new ROAccessQuery()));
+		
+		Assert.assertEquals(1, clocked.dropBefore(new Timestamp(start + 2 * day)));
+		Assert.assertEquals(4, count(new ROAccessQuery()));
+		
+		clocked.clear();
+		Assert.assertTrue(clocked.getPartitions().isEmpty());
+		Assert.assertEquals(0, count(new ROAccessQuery()));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.client.repository.sql.roaccess.test;
+
+import java.sql.Timestamp;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.client.repository.sql.roaccess.AbstractSQLROAccessReportsRepository;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessItem;
+import org.fosstrak.llrp.client.repository.sql.roaccess.ROAccessReportBatch;
+import org.junit.Test;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.AntennaID;
+import org.llrp.ltk.generated.parameters.EPC_96;
+import org.llrp.ltk.generated.parameters.FirstSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.ROSpecID;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.types.Integer96_HEX;
+import org.llrp.ltk.types.UnsignedInteger;
+import org.llrp.ltk.types.UnsignedLong;
+import org.llrp.ltk.types.UnsignedLong_DATETIME;
+import org.llrp.ltk.types.UnsignedShort;
+
+/**
+ * test the columnar RO_ACCESS_REPORT batch.
+ * @author sawielan
+ *
+ */
+public class ROAccessReportBatchTest {
+	
+	private static final String EPC = "3069c336d2797f9802345bd3";
+
+	@Test
+	public void testToTimestamp() {
+		Timestamp ts = ROAccessReportBatch.toTimestamp(1354000555555L);
+		Assert.assertEquals(1354000555L, ts.getTime());
+		Assert.assertEquals(555555000, ts.getNanos());
+		
+		// less than six digits.
+		ts = ROAccessReportBatch.toTimestamp(42L);
+		Assert.assertEquals(0L, ts.getTime());
+		Assert.assertEquals(42000, ts.getNanos());
+		
+		ts = AbstractSQLROAccessReportsRepository.extractTimestamp(
+				new UnsignedLong(42L));
+		Assert.assertEquals(42000, ts.getNanos());
+	}
+	
+	@Test
+	public void testParse() {
+		TagReportData full = new TagReportData();
+		EPC_96 epc = new EPC_96();
+		epc.setEPC(new Integer96_HEX(EPC));
+		full.setEPCParameter(epc);
+		ROSpecID roSpecID = new ROSpecID();
+		roSpecID.setROSpecID(new UnsignedInteger(4000000000L));
+		full.setROSpecID(roSpecID);
+		AntennaID antennaID = new AntennaID();
+		antennaID.setAntennaID(new UnsignedShort(3));
+		full.setAntennaID(antennaID);
+		FirstSeenTimestampUTC firstSeen = new FirstSeenTimestampUTC();
+		firstSeen.setMicroseconds(new UnsignedLong_DATETIME(1354000555555L));
+		full.setFirstSeenTimestampUTC(firstSeen);
+		
+		TagReportData empty = new TagReportData();
+		
+		RO_ACCESS_REPORT report = new RO_ACCESS_REPORT();
+		report.addToTagReportDataList(full);
+		report.addToTagReportDataList(empty);
+		
+		final long now = System.currentTimeMillis();
+		ROAccessReportBatch batch = ROAccessReportBatch.parse(
+				report, "adapter", "reader", now);
+		Assert.assertEquals(2, batch.size());
+		
+		Assert.assertEquals(EPC, batch.getEpc(0));
+		Assert.assertEquals(4000000000L, batch.getLong(0, 
+				AbstractSQLROAccessReportsRepository.CINDEX_ROSpecID));
+		Assert.assertEquals(3L, batch.getLong(0, 
+				AbstractSQLROAccessReportsRepository.CINDEX_AntennaID));
+		Assert.assertEquals(1354000555555L, batch.getLong(0, 
+				AbstractSQLROAccessReportsRepository.CINDEX_FirstSeenTimestampUTC));
+		Assert.assertTrue(batch.isNull(0, 
+				AbstractSQLROAccessReportsRepository.CINDEX_SpecIndex));
+		Assert.assertTrue(batch.isNull(0, 
+				AbstractSQLROAccessReportsRepository.CINDEX_LastSeenTimestampUTC));
+		Assert.assertFalse(batch.isNull(0, 
+				AbstractSQLROAccessReportsRepository.CINDEX_LOGTIME));
+		
+		for (int i=AbstractSQLROAccessReportsRepository.CINDEX_EPC; 
+				i<=AbstractSQLROAccessReportsRepository.NUM_COLUMNS; i++) {
+			Assert.assertTrue(batch.isNull(1, i));
+			Assert.assertNull(batch.get(1, i));
+		}
+		
+		// the batch renders the same as the item.
+		ROAccessItem item = batch.toItem(0);
+		Assert.assertEquals(new Timestamp(now), item.getLogTime());
+		Assert.assertEquals(Long.valueOf(4000000000L), item.getRoSpecID());
+		Assert.assertEquals(Integer.valueOf(3), item.getAntennaID());
+		Assert.assertNull(item.getSpecIndex());
+		Assert.assertEquals(item.getAsCSV(), 
+				batch.appendCSV(0, new StringBuilder()).toString());
+		Assert.assertEquals(batch.toItem(1).getAsCSV(), 
+				batch.appendCSV(1, new StringBuilder()).toString());
+	}
+}
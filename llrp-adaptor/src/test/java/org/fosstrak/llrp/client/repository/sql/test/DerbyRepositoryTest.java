@@ -0,0 +1,288 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.client.repository.sql.test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.client.LLRPMessageItem;
+import org.fosstrak.llrp.client.RepositoryFactory;
+import org.fosstrak.llrp.client.repository.sql.AbstractSQLRepository;
+import org.fosstrak.llrp.client.repository.sql.DerbyRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * tests the derby repository on an embedded database.
+ * @author sawielan
+ *
+ */
+public class DerbyRepositoryTest {
+	
+	// the directory holding the test database.
+	private File dir;
+	
+	// the repository under test.
+	private DerbyRepository repo;
+	
+	@Before
+	public void setUp() throws Exception {
+		dir = File.createTempFile("llrp", "repo");
+		dir.delete();
+		dir.mkdirs();
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		if (null != repo) {
+			repo.close();
+		}
+		try {
+			DriverManager.getConnection(
+					"jdbc:derby:" + location() + ";shutdown=true");
+		} catch (SQLException e) {
+			// derby reports a successful shutdown by an exception.
+		}
+		delete(dir);
+	}
+	
+	private String location() {
+		return dir.getAbsolutePath() + File.separator + 
+			AbstractSQLRepository.DB_NAME;
+	}
+	
+	private void delete(File file) {
+		File[] children = file.listFiles();
+		if (null != children) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+	
+	private DerbyRepository open() throws Exception {
+		Map<String, String> args = new HashMap<String, String> ();
+		args.put(RepositoryFactory.ARG_USERNAME, "llrp");
+		args.put(RepositoryFactory.ARG_PASSWRD, "llrp");
+		args.put(RepositoryFactory.ARG_JDBC_STRING, "");
+		args.put(DerbyRepository.ARG_REPO_LOCATION, 
+				dir.getAbsolutePath() + File.separator);
+		DerbyRepository r = new DerbyRepository();
+		r.initialize(args);
+		return r;
+	}
+	
+	private LLRPMessageItem item(String reader, long time) {
+		LLRPMessageItem item = new LLRPMessageItem();
+		item.setAdapter("adaptor");
+		item.setReader(reader);
+		item.setTime(new Timestamp(time));
+		return item;
+	}
+	
+	private int schemaVersion(Connection conn) throws SQLException {
+		Statement stmt = conn.createStatement();
+		ResultSet rs = stmt.executeQuery("select max(SCHEMA_VERSION) from " + 
+				AbstractSQLRepository.TABLE_SCHEMA_VERSION);
+		Assert.assertTrue(rs.next());
+		int version = rs.getInt(1);
+		rs.close();
+		stmt.close();
+		return version;
+	}
+	
+	private Set<String> indexes(Connection conn) throws SQLException {
+		Set<String> names = new HashSet<String> ();
+		ResultSet rs = conn.getMetaData().getIndexInfo(null, null, 
+				AbstractSQLRepository.TABLE_LLRP_REPOSITORY.toUpperCase(), 
+				false, false);
+		while (rs.next()) {
+			names.add(rs.getString("INDEX_NAME").toLowerCase());
+		}
+		rs.close();
+		return names;
+	}
+
+	@Test
+	public void testPages() throws Exception {
+		repo = open();
+		Assert.assertEquals(AbstractSQLRepository.SCHEMA_VERSION, 
+				schemaVersion(repo.getDBConnection()));
+		Assert.assertTrue(indexes(repo.getDBConnection()).contains(
+				AbstractSQLRepository.INDEX_READER_TIME));
+		
+		// pairs of messages share their time-stamp, so the pages have to 
+		// break the ties by the message id.
+		for (int i=0; i<20; i++) {
+			repo.put(item("reader1", 1000L * (i / 2)));
+			repo.put(item("reader2", 1000L * (i / 2)));
+		}
+		
+		ArrayList<String> ids = new ArrayList<String> ();
+		LLRPMessageItem cursor = null;
+		ArrayList<LLRPMessageItem> page;
+		do {
+			page = repo.get("adaptor", "reader1", cursor, true, 3, false);
+			Assert.assertTrue(page.size() <= 3);
+			for (LLRPMessageItem msg : page) {
+				Assert.assertEquals("reader1", msg.getReader().trim());
+				if (null != cursor) {
+					Assert.assertTrue(
+							msg.getTime().compareTo(cursor.getTime()) <= 0);
+				}
+				ids.add(msg.getId());
+				cursor = msg;
+			}
+		} while (!page.isEmpty());
+		Assert.assertEquals(20, ids.size());
+		Assert.assertEquals(20, new HashSet<String>(ids).size());
+		
+		// walk back towards the newer messages. pages come newest first.
+		page = repo.get("adaptor", "reader1", cursor, false, 4, false);
+		Assert.assertEquals(4, page.size());
+		Assert.assertEquals(ids.get(15), page.get(0).getId());
+		Assert.assertEquals(ids.get(18), page.get(3).getId());
+		
+		// the oldest page of all the readers.
+		page = repo.get(null, null, null, false, 5, true);
+		Assert.assertEquals(5, page.size());
+		Assert.assertEquals(0L, page.get(4).getTime().getTime());
+		Assert.assertEquals(1000L, page.get(0).getTime().getTime());
+		
+		Assert.assertEquals(0, 
+				repo.get("adaptor", "reader1", null, true, 0, false).size());
+	}
+	
+	@Test
+	public void testCounts() throws Exception {
+		repo = open();
+		for (int i=0; i<6; i++) {
+			repo.put(item("reader" + (i % 3), i));
+		}
+		LLRPMessageItem other = item("reader0", 10);
+		other.setAdapter("other");
+		repo.put(other);
+		
+		Assert.assertEquals(7, repo.count(null, null));
+		Assert.assertEquals(6, repo.count("adaptor", null));
+		Assert.assertEquals(2, repo.count("adaptor", "reader1"));
+		Assert.assertEquals(1, repo.count("other", "reader0"));
+		Assert.assertEquals(0, repo.count("adaptor", "unknown"));
+		Assert.assertEquals(0, repo.count("unknown", null));
+		
+		repo.clearReader("adaptor", "reader1");
+		Assert.assertEquals(5, repo.count(null, null));
+		Assert.assertEquals(4, repo.count("adaptor", null));
+		Assert.assertEquals(0, repo.count("adaptor", "reader1"));
+		
+		// the counts are rebuilt from the table at startup.
+		repo.close();
+		repo = open();
+		Assert.assertEquals(5, repo.count(null, null));
+		Assert.assertEquals(4, repo.count("adaptor", null));
+		Assert.assertEquals(2, repo.count("adaptor", "reader2"));
+		Assert.assertEquals(1, repo.count("other", null));
+		
+		repo.clearAdapter("adaptor");
+		Assert.assertEquals(1, repo.count(null, null));
+		Assert.assertEquals(0, repo.count("adaptor", "reader0"));
+		Assert.assertEquals(1, repo.count("other", "reader0"));
+		
+		repo.clearAll();
+		Assert.assertEquals(0, repo.count(null, null));
+		Assert.assertEquals(0, repo.count("other", null));
+		
+		// a rolled back transaction (as in the write-behind repository).
+		Connection conn = repo.getDBConnection();
+		synchronized (conn) {
+			conn.setAutoCommit(false);
+			repo.put(item("reader0", 20));
+			repo.put(item("reader1", 21));
+			conn.rollback();
+			repo.rebuildCounts();
+			conn.setAutoCommit(true);
+		}
+		Assert.assertEquals(0, repo.count(null, null));
+		Assert.assertEquals(0, repo.count("adaptor", "reader0"));
+	}
+	
+	@Test
+	public void testMigration() throws Exception {
+		// create a table the way older versions did: no key and no indexes.
+		Connection conn = DriverManager.getConnection(
+				"jdbc:derby:" + location() + ";create=true");
+		Statement stmt = conn.createStatement();
+		stmt.execute("CREATE TABLE " + AbstractSQLRepository.TABLE_LLRP_REPOSITORY
+				+ " (MSG_ID CHAR(32), MSG_TYPE CHAR(32), READER CHAR(64), "
+				+ "ADAPTER CHAR(64), MSG_TIME TIMESTAMP, STATUS CHAR(64), "
+				+ "COMMENT VARCHAR(64), MARK CHAR(3), CONTENT CLOB)");
+		stmt.close();
+		PreparedStatement ps = conn.prepareStatement("insert into " + 
+				AbstractSQLRepository.TABLE_LLRP_REPOSITORY + 
+				" values (?, 'type', 'reader', 'adaptor', ?, '', '', '1', '')");
+		for (int i=0; i<3; i++) {
+			ps.setString(1, "msg" + i);
+			ps.setTimestamp(2, new Timestamp(1000L * i));
+			ps.executeUpdate();
+		}
+		ps.close();
+		conn.close();
+		
+		repo = open();
+		Assert.assertEquals(3, repo.count(null, null));
+		Assert.assertEquals(AbstractSQLRepository.SCHEMA_VERSION, 
+				schemaVersion(repo.getDBConnection()));
+		Set<String> names = indexes(repo.getDBConnection());
+		Assert.assertTrue(names.contains(AbstractSQLRepository.INDEX_MSG_ID));
+		Assert.assertTrue(names.contains(AbstractSQLRepository.INDEX_READER_TIME));
+		Assert.assertTrue(names.contains(AbstractSQLRepository.INDEX_TIME));
+		
+		ArrayList<LLRPMessageItem> page = 
+			repo.get("adaptor", "reader", null, true, 2, false);
+		Assert.assertEquals(2, page.size());
+		Assert.assertEquals("msg2", page.get(0).getId().trim());
+		page = repo.get("adaptor", "reader", page.get(1), true, 2, false);
+		Assert.assertEquals(1, page.size());
+		Assert.assertEquals("msg0", page.get(0).getId().trim());
+		
+		// a second start does not migrate again and keeps the messages.
+		repo.close();
+		repo = open();
+		Assert.assertEquals(3, repo.count(null, null));
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+package org.fosstrak.llrp.client.repository.test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.adaptor.queue.RingBufferQueue.OverflowPolicy;
+import org.fosstrak.llrp.client.LLRPMessageItem;
+import org.fosstrak.llrp.client.ROAccessReportsRepository;
+import org.fosstrak.llrp.client.Repository;
+import org.fosstrak.llrp.client.repository.WriteBehindRepository;
+import org.junit.Test;
+
+/**
+ * test the write-behind stage of the repository.
+ * @author sawielan
+ *
+ */
+public class WriteBehindRepositoryTest {
+	
+	@Test
+	public void testWriteAndFlush() throws Exception {
+		StubRepository stub = new StubRepository(null);
+		WriteBehindRepository repo = new WriteBehindRepository(stub, 64, 
+				OverflowPolicy.BLOCK, 8);
+		final int n = 200;
+		for (int i=0; i<n; i++) {
+			repo.put(new LLRPMessageItem());
+		}
+		Assert.assertTrue(repo.flush(5000));
+		Assert.assertEquals(n, stub.items.size());
+		Assert.assertEquals(n, repo.getQueuedCount());
+		Assert.assertEquals(n, repo.getWrittenCount());
+		Assert.assertEquals(0, repo.getDroppedCount());
+		
+		// clear waits for the queued writes.
+		repo.put(new LLRPMessageItem());
+		repo.clearAll();
+		Assert.assertEquals(0, stub.items.size());
+		
+		repo.close();
+		Assert.assertTrue(stub.closed);
+	}
+	
+	@Test
+	public void testDropNewest() throws Exception {
+		CountDownLatch gate = new CountDownLatch(1);
+		StubRepository stub = new StubRepository(gate);
+		WriteBehindRepository repo = new WriteBehindRepository(stub, 4, 
+				OverflowPolicy.DROP_NEWEST, 1);
+		
+		// the first write blocks the writer, so the queue fills up.
+		repo.put(new LLRPMessageItem());
+		Assert.assertTrue(stub.entered.await(5, TimeUnit.SECONDS));
+		for (int i=0; i<10; i++) {
+			repo.put(new LLRPMessageItem());
+		}
+		Assert.assertEquals(5, repo.getQueuedCount());
+		Assert.assertEquals(6, repo.getDroppedCount());
+		
+		gate.countDown();
+		Assert.assertTrue(repo.flush(5000));
+		Assert.assertEquals(5, stub.items.size());
+		Assert.assertEquals(5, repo.getWrittenCount());
+		repo.close();
+	}
+	
+	/**
+	 * stub repository without a database connection that stores the items in 
+	 * a list.
+	 */
+	private static class StubRepository implements Repository {
+		
+		/** the stored items. */
+		private final List<LLRPMessageItem> items = 
+			new ArrayList<LLRPMessageItem> ();
+		
+		/** when not null, the first write waits for this gate. */
+		private final CountDownLatch gate;
+		
+		/** released upon the first write. */
+		private final CountDownLatch entered = new CountDownLatch(1);
+		
+		/** set when closed. */
+		private volatile boolean closed = false;
+		
+		private StubRepository(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		public void put(LLRPMessageItem message) {
+			entered.countDown();
+			if (null != gate) {
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (items) {
+				items.add(message);
+			}
+		}
+
+		public void clearAll() {
+			synchronized (items) {
+				items.clear();
+			}
+		}
+
+		public void close() {
+			closed = true;
+		}
+
+		public void initialize(Map<String, String> args) {
+		}
+
+		public Map<String, String> getArgs() {
+			return null;
+		}
+
+		public boolean isHealth() {
+			return true;
+		}
+
+		public LLRPMessageItem get(String msgSysId) {
+			return null;
+		}
+
+		public ArrayList<LLRPMessageItem> get(String adaptorName,
+				String readerName, int num, boolean content) {
+			return null;
+		}
+
+		public ArrayList<LLRPMessageItem> get(String adaptorName,
+				String readerName, LLRPMessageItem cursor, boolean older,
+				int pageSize, boolean content) {
+			return null;
+		}
+
+		public int count(String adaptor, String reader) {
+			return items.size();
+		}
+
+		public void clearAdapter(String adapter) {
+		}
+
+		public void clearReader(String adapter, String reader) {
+		}
+
+		public Connection getDBConnection() {
+			return null;
+		}
+
+		public ROAccessReportsRepository getROAccessRepository() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.client.test;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.client.LLRPMessageItem;
+import org.junit.Test;
+
+/**
+ * tests the message ids of the {@link LLRPMessageItem}.
+ * @author sawielan
+ *
+ */
+public class LLRPMessageItemTest {
+	
+	/**
+	 * the ids are unique and fit into the key column, whatever the default 
+	 * locale (french month abbreviations have up to five characters).
+	 */
+	@Test
+	public void testIdLength() {
+		Locale locale = Locale.getDefault();
+		try {
+			Locale.setDefault(Locale.FRENCH);
+			Set<String> ids = new HashSet<String> ();
+			for (int i=0; i<1000; i++) {
+				String id = new LLRPMessageItem().getId();
+				Assert.assertTrue(id, id.length() <= LLRPMessageItem.MAX_ID_LENGTH);
+				Assert.assertTrue(id, id.matches("\\d{4}-[A-Z][a-z]{2}-\\d{2}-\\d{2}-\\d{2}-\\d{2}-\\d{3}-\\d{6}"));
+				Assert.assertTrue(ids.add(id));
+			}
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package org.fosstrak.llrp.client.test;
+
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.Assert;
+
+import org.fosstrak.llrp.client.Repository;
+import org.fosstrak.llrp.client.RepositoryFactory;
+import org.fosstrak.llrp.client.repository.sql.DerbyRepository;
+import org.junit.Test;
+
+/**
+ * test the creation of the repository by the {@link RepositoryFactory}.
+ * @author sawielan
+ *
+ */
+public class RepositoryFactoryTest {
+	
+	/**
+	 * repository recording the arguments instead of opening a database.
+	 */
+	public static class RecordingRepository extends DerbyRepository {
+		
+		/** the arguments of the last initialization. */
+		private static Map<String, String> recorded = null;
+		
+		@Override
+		public void initialize(Map<String, String> args) {
+			recorded = args;
+		}
+		
+		@Override
+		public Map<String, String> getArgs() {
+			return recorded;
+		}
+	}
+	
+	@Test
+	public void testCreateFromProperties() throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty(RepositoryFactory.ARG_DB_CLASSNAME, 
+				RecordingRepository.class.getName());
+		properties.setProperty(RepositoryFactory.ARG_LOG_RO_ACCESS_REPORT, "false");
+		properties.setProperty(RepositoryFactory.ARG_RO_ACCESS_BATCH_SIZE, "100");
+		properties.setProperty(RepositoryFactory.ARG_RO_ACCESS_BATCH_LINGER, "250");
+		properties.setProperty(RepositoryFactory.ARG_RO_ACCESS_PARTITIONED, "true");
+		properties.setProperty(RepositoryFactory.ARG_RO_ACCESS_RETENTION_DAYS, "7");
+		
+		Repository repository = RepositoryFactory.create(properties);
+		Assert.assertTrue(repository instanceof RecordingRepository);
+		Map<String, String> args = repository.getArgs();
+		Assert.assertEquals("100", args.get(RepositoryFactory.ARG_RO_ACCESS_BATCH_SIZE));
+		Assert.assertEquals("250", args.get(RepositoryFactory.ARG_RO_ACCESS_BATCH_LINGER));
+		Assert.assertEquals("true", args.get(RepositoryFactory.ARG_RO_ACCESS_PARTITIONED));
+		Assert.assertEquals("7", args.get(RepositoryFactory.ARG_RO_ACCESS_RETENTION_DAYS));
+		Assert.assertNull(args.get(RepositoryFactory.ARG_WRITE_BEHIND));
+	}
+}
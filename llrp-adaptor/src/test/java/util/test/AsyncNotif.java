@@ -62,11 +62,11 @@ public class AsyncNotif extends UnicastRemoteObject implements AsynchronousNotif
 		}
 	}
 	
-	public LLRPMessage asyncNotifMessage = null;
-	public String asyncNotifReaderName = null;
+	public volatile LLRPMessage asyncNotifMessage = null;
+	public volatile String asyncNotifReaderName = null;
 	
-	public LLRPRuntimeException asyncNotifError = null;
-	public String asyncNotifErrorReader = null;
+	public volatile LLRPRuntimeException asyncNotifError = null;
+	public volatile String asyncNotifErrorReader = null;
 	
 	public void notify(byte[] message, String readerName)
 			throws RemoteException {
@@ -0,0 +1,76 @@
+/*
+ *  
+ *  Fosstrak LLRP Commander (www.fosstrak.org)
+ * 
+ *  Copyright (C) 2008 ETH Zurich
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/> 
+ *
+ */
+
+
+package util.test;
+
+import org.fosstrak.llrp.adaptor.epc.EPC;
+import org.llrp.ltk.generated.messages.RO_ACCESS_REPORT;
+import org.llrp.ltk.generated.parameters.AntennaID;
+import org.llrp.ltk.generated.parameters.FirstSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.LastSeenTimestampUTC;
+import org.llrp.ltk.generated.parameters.PeakRSSI;
+import org.llrp.ltk.generated.parameters.TagReportData;
+import org.llrp.ltk.types.SignedByte;
+import org.llrp.ltk.types.UnsignedLong_DATETIME;
+import org.llrp.ltk.types.UnsignedShort;
+
+/**
+ * helper class creating RO_ACCESS_REPORTs for the tests of the tag 
+ * processing.
+ * @author sawielan
+ *
+ */
+public final class TagReports {
+	
+	/** no instances. */
+	private TagReports() {
+	}
+	
+	/**
+	 * creates a report with one tag sighting. the first and the last seen 
+	 * time stamps are both set to the time of the sighting.
+	 * @param epc the EPC (hex).
+	 * @param antenna the antenna.
+	 * @param rssi the peak RSSI.
+	 * @param seen the time stamp of the sighting in microseconds (UTC).
+	 * @return the report.
+	 */
+	public static RO_ACCESS_REPORT report(String epc, int antenna, int rssi, long seen) {
+		TagReportData tag = new TagReportData();
+		tag.setEPCParameter(EPC.parse(epc).toParameter());
+		AntennaID antennaID = new AntennaID();
+		antennaID.setAntennaID(new UnsignedShort(antenna));
+		tag.setAntennaID(antennaID);
+		PeakRSSI peakRSSI = new PeakRSSI();
+		peakRSSI.setPeakRSSI(new SignedByte(rssi));
+		tag.setPeakRSSI(peakRSSI);
+		FirstSeenTimestampUTC firstSeen = new FirstSeenTimestampUTC();
+		firstSeen.setMicroseconds(new UnsignedLong_DATETIME(seen));
+		tag.setFirstSeenTimestampUTC(firstSeen);
+		LastSeenTimestampUTC lastSeen = new LastSeenTimestampUTC();
+		lastSeen.setMicroseconds(new UnsignedLong_DATETIME(seen));
+		tag.setLastSeenTimestampUTC(lastSeen);
+		RO_ACCESS_REPORT report = new RO_ACCESS_REPORT();
+		report.addToTagReportDataList(tag);
+		return report;
+	}
+}